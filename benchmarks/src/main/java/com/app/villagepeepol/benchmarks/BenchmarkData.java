@@ -0,0 +1,114 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.TextFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synteettinen aineisto suorituskykytesteille: mökit ja varaukset muistissa sekä
+ * samat tiedot tekstitiedostoina väliaikaisessa hakemistossa.
+ */
+final class BenchmarkData {
+    // Varauksia keskimäärin yhtä mökkiä kohden
+    private static final int BOOKINGS_PER_COTTAGE = 100;
+    private static final int MAX_COTTAGES = 10_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int DAY_RANGE = 5 * 365;
+
+    final List<Cottage> cottages;
+    final List<Booking> bookings;
+    final Path directory;
+    final Path cottagesFile;
+    final Path bookingsFile;
+
+    private BenchmarkData(List<Cottage> cottages, List<Booking> bookings, Path directory) {
+        this.cottages = cottages;
+        this.bookings = bookings;
+        this.directory = directory;
+        this.cottagesFile = directory.resolve("cottages.txt");
+        this.bookingsFile = directory.resolve("varaukset.txt");
+    }
+
+    /**
+     * Luo aineiston, jossa on annettu määrä varauksia, ja kirjoittaa sen tekstitiedostoiksi.
+     *
+     * @param bookingCount varausten määrä
+     * @return aineisto
+     * @throws IOException jos tiedostojen kirjoittaminen epäonnistuu
+     */
+    static BenchmarkData create(int bookingCount) throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        int cottageCount = Math.max(1, Math.min(MAX_COTTAGES, bookingCount / BOOKINGS_PER_COTTAGE));
+        List<Cottage> cottages = new ArrayList<>(cottageCount);
+        for (int i = 0; i < cottageCount; i++) {
+            cottages.add(new Cottage(i + 1, "Mökki " + i, 20 + random.nextInt(120), 2 + random.nextInt(10)));
+        }
+        List<Booking> bookings = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            bookings.add(new Booking(cottages.get(random.nextInt(cottageCount)),
+                    "Asiakas " + random.nextInt(Math.max(1, bookingCount / 4)),
+                    FIRST_DAY.plusDays(random.nextInt(DAY_RANGE)),
+                    1 + random.nextInt(14)));
+        }
+        BenchmarkData data = new BenchmarkData(cottages, bookings, Files.createTempDirectory("villagepeepol-bench"));
+        TextFiles.writeCottages(data.cottagesFile, cottages);
+        TextFiles.writeBookings(data.bookingsFile, bookings);
+        return data;
+    }
+
+    /**
+     * Laskee varaukset, jotka osuvat jonkin aiemmin alkavan saman mökin varauksen päälle.
+     * Mukaan otetaan vain testin tekemät varaukset, koska synteettisen aineiston varaukset
+     * saavat mennä päällekkäin.
+     *
+     * @param bookings       kaikki varaukset
+     * @param customerPrefix testin tekemien varausten asiakasnimen alku
+     * @return päällekkäisten varausten määrä
+     */
+    static int countOverlaps(List<Booking> bookings, String customerPrefix) {
+        Map<Cottage, List<Booking>> byCottage = new HashMap<>();
+        for (Booking booking : bookings) {
+            if (booking.getCustomerName().startsWith(customerPrefix)) {
+                byCottage.computeIfAbsent(booking.getCottage(), c -> new ArrayList<>()).add(booking);
+            }
+        }
+        int overlapping = 0;
+        for (List<Booking> list : byCottage.values()) {
+            list.sort(Comparator.comparing(Booking::getStartDate));
+            LocalDate end = LocalDate.MIN;
+            for (Booking booking : list) {
+                if (end.isAfter(booking.getStartDate())) {
+                    overlapping++;
+                }
+                LocalDate bookingEnd = booking.getStartDate().plusDays(booking.getDays());
+                end = bookingEnd.isAfter(end) ? bookingEnd : end;
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Poistaa aineiston väliaikaisen hakemiston.
+     *
+     * @throws IOException jos tiedostojen poistaminen epäonnistuu
+     */
+    void delete() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,107 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.BookingConflictException;
+import com.app.villagepeepol.core.BookingService;
+import com.app.villagepeepol.core.Cottage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rasitustesti varausmoottorille. Useat säikeet varaavat yhtä aikaa ensin kaikki samaa mökkiä
+ * ja sitten kukin omaa mökkiään. Lopuksi tarkistetaan, ettei yhtään mökkiä varattu päällekkäin
+ * ja että samat tiedostot uudelleen avattuina sisältävät jokaisen onnistuneen varauksen.
+ * Ohjelma päättyy virhekoodiin 1, jos jompikumpi ehto ei täyty.
+ * <p>
+ * Ajetaan benchmarks.jar-tiedostosta:
+ * {@code java -cp benchmarks/target/benchmarks.jar com.app.villagepeepol.benchmarks.BookingEngineStressTest [säikeet] [yritykset]}
+ */
+public class BookingEngineStressTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2026, 1, 1);
+    private static final String CUSTOMER_PREFIX = "Stressi ";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int attempts = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        BenchmarkData data = BenchmarkData.create(Math.max(threads, 100) * 100);
+        BookingService service = BookingService.open(data.directory, status -> { });
+        int before = service.getBookingCount();
+
+        // Kaikki säikeet samaan mökkiin: varausten täytyy mennä tiukasti yksi kerrallaan
+        Cottage shared = data.cottages.get(0);
+        int sameCottage = run("Sama mökki", threads, attempts, thread -> shared, service);
+        // Jokainen säie omaan mökkiinsä: varaukset eivät odota toisiaan
+        int ownCottage = run("Oma mökki", threads, attempts, thread -> data.cottages.get(1 + thread), service);
+
+        int total = service.getBookingCount();
+        int overlapping = BenchmarkData.countOverlaps(service.getBookings(0, total), CUSTOMER_PREFIX);
+        service.close();
+        BookingService reopened = BookingService.open(data.directory, status -> { });
+        int reopenedCount = reopened.getBookingCount();
+        reopened.close();
+        data.delete();
+
+        System.out.println("Päällekkäisiä varauksia: " + overlapping);
+        System.out.println("Varauksia ennen sulkemista " + total + ", uudelleen avattuna " + reopenedCount);
+        if (overlapping != 0 || reopenedCount != total || total != before + sameCottage + ownCottage) {
+            System.out.println("EPÄONNISTUI");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Valitsee säikeen varaaman mökin.
+     */
+    private interface CottageChoice {
+        Cottage of(int thread);
+    }
+
+    /**
+     * Käynnistää säikeet yhtä aikaa ja yrittää jokaisessa annetun määrän satunnaisia varauksia.
+     *
+     * @return onnistuneiden varausten määrä
+     */
+    private static int run(String name, int threads, int attempts, CottageChoice choice, BookingService service)
+            throws InterruptedException {
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            SplittableRandom random = new SplittableRandom(thread);
+            workers[t] = Thread.ofPlatform().start(() -> {
+                Cottage cottage = choice.of(thread);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < attempts; i++) {
+                    try {
+                        service.book(cottage.getName(), CUSTOMER_PREFIX + thread,
+                                FIRST_DAY.plusDays(random.nextInt(3650)), 1 + random.nextInt(7));
+                        booked.incrementAndGet();
+                    } catch (BookingConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        System.out.printf("%s: %d säiettä, %d yritystä, %d varausta, %d päällekkäistä yritystä, %.0f yritystä/s%n",
+                name, threads, (long) threads * attempts, booked.get(), conflicts.get(),
+                threads * (double) attempts / (elapsed / 1e9));
+        return booked.get();
+    }
+}
@@ -0,0 +1,75 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.BinarySnapshot;
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.CottageRegistry;
+import com.app.villagepeepol.core.MappedFileParser;
+import com.app.villagepeepol.core.TextFiles;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Koko varaustiedoston lukeminen ja kirjoittaminen eri muodoissa.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class FileBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int bookings;
+
+    private BenchmarkData data;
+    private CottageRegistry registry;
+    private MappedFileParser parser;
+    private Path snapshotFile;
+    private Path outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.create(bookings);
+        registry = new CottageRegistry(data.cottages);
+        parser = new MappedFileParser();
+        snapshotFile = data.directory.resolve("snapshot.bin");
+        outputFile = data.directory.resolve("output.txt");
+        BinarySnapshot.write(snapshotFile, data.cottages, data.bookings,
+                BinarySnapshot.FileStamp.of(data.cottagesFile), BinarySnapshot.FileStamp.of(data.bookingsFile));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public List<Booking> loadTextLineByLine() throws IOException {
+        return TextFiles.readBookings(data.bookingsFile, registry);
+    }
+
+    @Benchmark
+    public List<Booking> loadTextMappedParallel() throws IOException {
+        return parser.parseBookings(data.bookingsFile, registry);
+    }
+
+    @Benchmark
+    public BinarySnapshot.Contents loadBinarySnapshot() throws IOException {
+        return BinarySnapshot.read(snapshotFile);
+    }
+
+    @Benchmark
+    public void saveText() throws IOException {
+        TextFiles.writeBookings(outputFile, data.bookings);
+    }
+
+    @Benchmark
+    public void saveBinarySnapshot() throws IOException {
+        BinarySnapshot.write(outputFile, data.cottages, data.bookings,
+                BinarySnapshot.FileStamp.of(data.cottagesFile), BinarySnapshot.FileStamp.of(data.bookingsFile));
+    }
+}
@@ -0,0 +1,52 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.CottageRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Yksittäisen rivin muunnokset tekstimuodosta olioksi ja takaisin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineBenchmark {
+    private final String cottageLine = "Rantasauna;40;5";
+    private final String bookingLine = "Mökki 500;Matti Tepponen;2023-07-01;7";
+    private CottageRegistry registry;
+    private Booking booking;
+
+    @Setup
+    public void setUp() {
+        List<Cottage> cottages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            cottages.add(new Cottage(i + 1, "Mökki " + i, 40, 5));
+        }
+        registry = new CottageRegistry(cottages);
+        booking = new Booking(cottages.get(500), "Matti Tepponen", LocalDate.of(2023, 7, 1), 7);
+    }
+
+    @Benchmark
+    public Cottage cottageFromFileString() {
+        return Cottage.fromFileString(cottageLine);
+    }
+
+    @Benchmark
+    public Booking bookingFromFileString() {
+        return Booking.fromFileString(bookingLine, registry);
+    }
+
+    @Benchmark
+    public String bookingToFileString() {
+        return booking.toFileString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.app.villagepeepol.benchmarks;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Komentoriviparametrit muodossa {@code avain=arvo}. Parametrit, joita ei anneta, saavat oletusarvonsa.
+ */
+final class Options {
+    private final Map<String, String> values = new HashMap<>();
+
+    Options(String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Parametrin muoto on avain=arvo: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+    }
+
+    String string(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    int integer(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double decimal(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    LocalDate date(String key, LocalDate defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : LocalDate.parse(value);
+    }
+}
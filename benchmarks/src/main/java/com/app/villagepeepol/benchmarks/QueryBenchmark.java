@@ -0,0 +1,128 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.AvailabilityIndex;
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.CottageSearch;
+import com.app.villagepeepol.core.OccupancyCalendar;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Varauslistan suodatus: koko listan läpikäynti verrattuna hakemistoihin, sekä vapaiden
+ * mökkien haku ilman välimuistia ja välimuistista. Lisäksi kauden kalenteriruudukon täyttö
+ * kaikille mökeille kalenterin bittijoukoista verrattuna päiväkohtaisiin saatavuuskyselyihin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int bookings;
+
+    private BenchmarkData data;
+    private AvailabilityIndex availabilityIndex;
+    private CottageSearch cottageSearch;
+    private OccupancyCalendar occupancyCalendar;
+    private Cottage cottage;
+    private final LocalDate startDate = LocalDate.of(2022, 7, 1);
+    private final int days = 7;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.create(bookings);
+        availabilityIndex = new AvailabilityIndex();
+        data.bookings.forEach(availabilityIndex::add);
+        cottageSearch = new CottageSearch(availabilityIndex);
+        data.cottages.forEach(cottageSearch::add);
+        cottage = data.cottages.get(data.cottages.size() / 2);
+        occupancyCalendar = new OccupancyCalendar();
+        data.bookings.forEach(occupancyCalendar::add);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public List<Booking> conflictsByScan() {
+        long start = startDate.toEpochDay();
+        long end = start + days;
+        return data.bookings.stream()
+                .filter(b -> b.getCottage() == cottage)
+                .filter(b -> b.getStartDate().toEpochDay() < end && b.getStartDate().toEpochDay() + b.getDays() > start)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Booking> conflictsByIndex() {
+        return availabilityIndex.findConflicts(cottage, startDate, days);
+    }
+
+    @Benchmark
+    public List<Cottage> freeCottagesForSix() {
+        // Tyhjennys pakottaa käymään mökit läpi joka kerta
+        availabilityIndex.getCache().clear();
+        return cottageSearch.findAvailable(6, 0, startDate, days);
+    }
+
+    @Benchmark
+    public List<Cottage> freeCottagesForSixCached() {
+        return cottageSearch.findAvailable(6, 0, startDate, days);
+    }
+
+    @Benchmark
+    public List<Cottage> freeCottagesForSixAfterUnrelatedBooking() {
+        // Toisen jakson varaus ei unohda haun tulosta
+        Booking booking = new Booking(cottage, "Matti Tepponen", startDate.plusYears(5), days);
+        availabilityIndex.add(booking);
+        availabilityIndex.remove(booking);
+        return cottageSearch.findAvailable(6, 0, startDate, days);
+    }
+
+    @Benchmark
+    public int seasonGridFromCalendar() {
+        // Kalenterinäkymän ruudut: jokaisen mökin rivi haetaan kerralla
+        int booked = 0;
+        LocalDate from = startDate.withDayOfYear(1);
+        for (Cottage c : data.cottages) {
+            BitSet nights = occupancyCalendar.bookedNights(c, from, 365);
+            booked += nights.cardinality();
+        }
+        return booked;
+    }
+
+    @Benchmark
+    public int seasonGridFromIndex() {
+        // Sama ruudukko kysymällä jokaisen ruudun saatavuutta erikseen
+        int booked = 0;
+        LocalDate from = startDate.withDayOfYear(1);
+        for (Cottage c : data.cottages) {
+            for (int day = 0; day < 365; day++) {
+                if (!availabilityIndex.isAvailable(c, from.plusDays(day), 1)) {
+                    booked++;
+                }
+            }
+        }
+        return booked;
+    }
+
+    @Benchmark
+    public boolean dayFreeByCalendar() {
+        return occupancyCalendar.isFree(cottage, startDate, days);
+    }
+
+    @Benchmark
+    public boolean dayFreeByIndex() {
+        return availabilityIndex.isAvailable(cottage, startDate, days);
+    }
+}
@@ -0,0 +1,155 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.BookingConflictException;
+import com.app.villagepeepol.core.BookingService;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.CottageRegistry;
+import com.app.villagepeepol.core.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Toistaa {@link WorkloadGenerator}-ohjelman tuottaman skriptin {@link BookingService}-palvelua
+ * vasten ilman käyttöliittymää: lisäykset tehdään samalla varauspolulla kuin palvelimessa ja
+ * perumiset poistavat varauksen ja kirjaavat poiston journaliin.
+ * <p>
+ * Operaatiot lähetetään tavoitenopeudella aikataulun mukaan riippumatta siitä, ehtivätkö aiemmat
+ * valmistua (avoin kuormitus). Viive mitataan operaation aikataulun mukaisesta alkuhetkestä, joten
+ * jonoon joutuminen näkyy viiveessä eikä hidastus piilota itseään. Lisäksi raportoidaan pelkkä
+ * käsittelyaika. Samanaikaisten operaatioiden määrää rajoitetaan; jos raja täyttyy, aikataulu
+ * venyy ja saavutettu nopeus jää tavoitteen alle.
+ * <p>
+ * Lopuksi tulostetaan läpäisy, viiveiden prosenttipisteet ja sovelluksen omat mittarit
+ * ({@link Metrics}), ja samat tiedostot avataan uudelleen sen tarkistamiseksi, että jokainen
+ * onnistunut muutos tallentui. Skripti voi olla myös tuotannon varausjournal.
+ * <p>
+ * Ajetaan benchmarks.jar-tiedostosta, parametrit muodossa {@code avain=arvo}:
+ * {@code java -cp benchmarks/target/benchmarks.jar com.app.villagepeepol.benchmarks.ReplayHarness hakemisto=kuorma nopeus=2000}
+ * <ul>
+ *     <li>{@code hakemisto} aineiston hakemisto, oletus {@code kuorma}</li>
+ *     <li>{@code skripti} toistettava skripti, oletus hakemiston {@value WorkloadGenerator#SCRIPT_FILE}</li>
+ *     <li>{@code nopeus} tavoite operaatioina sekunnissa, oletus 1000</li>
+ *     <li>{@code samanaikaiset} samanaikaisten operaatioiden enimmäismäärä, oletus 256</li>
+ * </ul>
+ * Toisto muuttaa hakemiston tiedostoja, joten saman lähtötilan saa luomalla aineiston uudelleen.
+ */
+public class ReplayHarness {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Path directory = Paths.get(options.string("hakemisto", "kuorma"));
+        Path script = Paths.get(options.string("skripti", directory.resolve(WorkloadGenerator.SCRIPT_FILE).toString()));
+        int rate = options.integer("nopeus", 1000);
+        int concurrency = options.integer("samanaikaiset", 256);
+        List<String> operations = Files.readAllLines(script, StandardCharsets.UTF_8);
+
+        long openStarted = System.nanoTime();
+        BookingService service = BookingService.open(directory, status -> { });
+        int initial = service.getBookingCount();
+        System.out.printf(Locale.ROOT, "Avattu %.2f s: %d mökkiä, %d varausta%n",
+                (System.nanoTime() - openStarted) / 1e9, service.getCottages().size(), initial);
+        // Skriptin rivit viittaavat mökkiin tunnisteella kuten varausjournal; palvelu hakee mökin nimellä
+        CottageRegistry cottages = new CottageRegistry(service.getCottages());
+
+        Metrics.Histogram addLatency = Metrics.histogram("replay.add");
+        Metrics.Histogram removeLatency = Metrics.histogram("replay.remove");
+        Metrics.Histogram serviceTime = Metrics.histogram("replay.service");
+        LongAdder added = new LongAdder();
+        LongAdder conflicts = new LongAdder();
+        LongAdder removed = new LongAdder();
+        LongAdder notFound = new LongAdder();
+        LongAdder errors = new LongAdder();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long interval = 1_000_000_000L / Math.max(1, rate);
+
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < operations.size(); i++) {
+                String operation = operations.get(i);
+                long scheduled = started + i * interval;
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        String[] parts = operation.substring(2).split(";");
+                        Cottage cottage = cottages.resolve(parts[0]);
+                        String cottageName = cottage == null ? parts[0] : cottage.getName();
+                        LocalDate startDate = LocalDate.parse(parts[2]);
+                        int days = Integer.parseInt(parts[3]);
+                        if (operation.startsWith("+;")) {
+                            try {
+                                service.book(cottageName, parts[1], startDate, days);
+                                added.increment();
+                            } catch (BookingConflictException e) {
+                                conflicts.increment();
+                            }
+                            addLatency.record(System.nanoTime() - scheduled);
+                        } else {
+                            if (service.cancel(cottageName, parts[1], startDate, days) != null) {
+                                removed.increment();
+                            } else {
+                                notFound.increment();
+                            }
+                            removeLatency.record(System.nanoTime() - scheduled);
+                        }
+                    } catch (RuntimeException e) {
+                        errors.increment();
+                    } finally {
+                        serviceTime.record(System.nanoTime() - begin);
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        int total = service.getBookingCount();
+
+        long closeStarted = System.nanoTime();
+        service.close();
+        long closeElapsed = System.nanoTime() - closeStarted;
+
+        System.out.printf(Locale.ROOT, "Operaatioita %d, tavoite %d/s, saavutettu %.0f/s, kesto %.2f s%n",
+                operations.size(), rate, operations.size() / (elapsed / 1e9), elapsed / 1e9);
+        System.out.printf("Lisätty %d, päällekkäisiä %d, peruttu %d, ei löytynyt %d, virheitä %d%n",
+                added.sum(), conflicts.sum(), removed.sum(), notFound.sum(), errors.sum());
+        print("Lisäyksen viive", addLatency);
+        print("Perumisen viive", removeLatency);
+        print("Käsittelyaika", serviceTime);
+        System.out.printf(Locale.ROOT, "Sulkeminen ja odottavat tallennukset %.1f ms%n", closeElapsed / 1e6);
+        if (operations.size() / (elapsed / 1e9) < rate * 0.95) {
+            System.out.println("Tavoitenopeutta ei saavutettu: viive sisältää jonotuksen");
+        }
+        System.out.println();
+        System.out.print(Metrics.dump());
+
+        // Samat tiedostot uudelleen: jokaisen onnistuneen muutoksen täytyy näkyä
+        try (BookingService reopened = BookingService.open(directory, status -> { })) {
+            long expected = initial + added.sum() - removed.sum();
+            System.out.println();
+            System.out.println("Varauksia odotettiin " + expected + ", ennen sulkemista " + total
+                    + ", uudelleen avattuna " + reopened.getBookingCount());
+        }
+    }
+
+    private static void print(String label, Metrics.Histogram histogram) {
+        System.out.printf(Locale.ROOT, "%s: n=%d p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                label, histogram.count(), histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6,
+                histogram.percentile(99) / 1e6, histogram.percentile(99.9) / 1e6, histogram.max() / 1e6);
+    }
+}
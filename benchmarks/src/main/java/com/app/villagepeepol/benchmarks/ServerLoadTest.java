@@ -0,0 +1,114 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.BookingService;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.server.BookingServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Paikallinen kuormitustesti HTTP-rajapinnalle. Käynnistää palvelimen synteettisen aineiston
+ * päälle ja lähettää tuhansia samanaikaisia pyyntöjä virtuaalisäikeistä: hakuja, varauslistauksia
+ * ja varauksia. Lopuksi tarkistaa, ettei yhtään mökkiä varattu päällekkäin, ja avaa samat
+ * tiedostot uudelleen varmistaakseen, että jokainen onnistunut varaus tallentui.
+ * <p>
+ * Ajetaan benchmarks.jar-tiedostosta:
+ * {@code java -cp benchmarks/target/benchmarks.jar com.app.villagepeepol.benchmarks.ServerLoadTest [pyynnöt] [samanaikaiset] [varaukset]}
+ */
+public class ServerLoadTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int bookingCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        BenchmarkData data = BenchmarkData.create(bookingCount);
+        BookingService service = BookingService.open(data.directory, status -> { });
+        BookingServer server = new BookingServer(service, 0);
+        server.start();
+        String base = "http://localhost:" + server.getPort() + "/api/";
+        List<Cottage> cottages = data.cottages;
+
+        Map<Integer, AtomicInteger> statuses = new ConcurrentSkipListMap<>();
+        long[] latencies = new long[requests];
+        Semaphore inFlight = new Semaphore(concurrency);
+        SplittableRandom seeds = new SplittableRandom(7);
+        long started = System.nanoTime();
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                SplittableRandom random = seeds.split();
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        HttpRequest request = createRequest(base, cottages, random);
+                        long begin = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException | InterruptedException e) {
+                            status = -1;
+                        }
+                        latencies[index] = System.nanoTime() - begin;
+                        statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        server.stop();
+
+        Arrays.sort(latencies);
+        System.out.printf("Pyyntöjä %d, samanaikaisesti enintään %d, aineistossa %d varausta%n", requests, concurrency, bookingCount);
+        System.out.printf("Kesto %.2f s, %.0f pyyntöä/s%n", elapsed / 1e9, requests / (elapsed / 1e9));
+        System.out.printf("Viive p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6, latencies[requests - 1] / 1e6);
+        System.out.println("Vastaukset tilakoodeittain: " + statuses);
+
+        int total = service.getBookingCount();
+        int overlapping = BenchmarkData.countOverlaps(service.getBookings(0, total), "Kuorma ");
+        service.close();
+        System.out.println("Päällekkäisiä uusia varauksia: " + overlapping);
+
+        // Samat tiedostot uudelleen: jokaisen onnistuneen varauksen täytyy löytyä
+        BookingService reopened = BookingService.open(data.directory, status -> { });
+        System.out.println("Varauksia ennen sulkemista " + total + ", uudelleen avattuna " + reopened.getBookingCount());
+        reopened.close();
+        data.delete();
+    }
+
+    /**
+     * Luo satunnaisen pyynnön: 70 % hakuja, 20 % varauslistauksia ja 10 % varauksia.
+     * Varaukset kohdistuvat pieneen joukkoon mökkejä ja päiviä, jotta päällekkäisiä yrityksiä tulee paljon.
+     */
+    private static HttpRequest createRequest(String base, List<Cottage> cottages, SplittableRandom random) {
+        int kind = random.nextInt(10);
+        if (kind < 7) {
+            return HttpRequest.newBuilder(URI.create(base + "search?guests=" + (1 + random.nextInt(8))
+                    + "&start=" + FIRST_DAY.plusDays(random.nextInt(365)) + "&days=" + (1 + random.nextInt(7)))).build();
+        } else if (kind < 9) {
+            return HttpRequest.newBuilder(URI.create(base + "bookings?offset=" + random.nextInt(1000) + "&limit=50")).build();
+        }
+        Cottage cottage = cottages.get(random.nextInt(Math.min(10, cottages.size())));
+        String form = "cottage=" + URLEncoder.encode(cottage.getName(), StandardCharsets.UTF_8)
+                + "&customer=" + URLEncoder.encode("Kuorma " + random.nextInt(1000), StandardCharsets.UTF_8)
+                + "&start=" + FIRST_DAY.plusDays(random.nextInt(60)) + "&days=" + (1 + random.nextInt(5));
+        return HttpRequest.newBuilder(URI.create(base + "bookings"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+    }
+}
@@ -0,0 +1,362 @@
+package com.app.villagepeepol.benchmarks;
+
+import com.app.villagepeepol.core.AvailabilityIndex;
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.BookingFiles;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.TextFiles;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Tuottaa todenmukaisen mökki- ja varausaineiston ({@code cottages.txt} ja {@code varaukset.txt})
+ * sekä halutessa toistoskriptin {@link ReplayHarness}-kuormitukselle.
+ * <p>
+ * Jokaisen mökin varaukset tehdään peräkkäin: varausten väli arvotaan niin, että mökin käyttöaste
+ * vastaa kauden käyttöastetta, ja kesällä varataan useammin kokonaisia viikkoja. Mökkien suosio
+ * vaihtelee, ja asiakkaat valitaan Zipf-jakaumasta, joten osa asiakkaista varaa monta kertaa.
+ * Varaukset kirjoitetaan siinä järjestyksessä, jossa ne on tehty, eli alkamispäivä miinus
+ * varauksen ennakko. Osa varauksista voidaan tehdä tahallaan päällekkäin vanhojen tiedostojen
+ * kaltaisen aineiston tuottamiseksi.
+ * <p>
+ * Toistoskripti on samassa muodossa kuin varausjournal: {@code +;<varausrivi>} lisää ja
+ * {@code -;<varausrivi>} peruu varauksen. Perutut varaukset valitaan aineiston ja skriptin
+ * aiemmin lisäämistä varauksista.
+ * <p>
+ * Ajetaan benchmarks.jar-tiedostosta, parametrit muodossa {@code avain=arvo}:
+ * {@code java -cp benchmarks/target/benchmarks.jar com.app.villagepeepol.benchmarks.WorkloadGenerator hakemisto=kuorma mokit=500 skripti=100000}
+ * <ul>
+ *     <li>{@code hakemisto} kohdehakemisto, oletus {@code kuorma}</li>
+ *     <li>{@code mokit} mökkien määrä, oletus 200</li>
+ *     <li>{@code alku} ensimmäinen päivä, oletus edellisen vuoden alku</li>
+ *     <li>{@code vuodet} aineiston pituus vuosina, oletus 2</li>
+ *     <li>{@code kayttoaste} keskimääräinen käyttöaste, oletus 0.5</li>
+ *     <li>{@code kausi} sesongin painoarvo hiljaiseen aikaan verrattuna, oletus 3</li>
+ *     <li>{@code paallekkaiset} päällekkäisten varausten osuus, oletus 0</li>
+ *     <li>{@code asiakkaat} eri asiakkaiden määrä, oletus kolmasosa varauksista</li>
+ *     <li>{@code zipf} asiakasjakauman eksponentti; 0 tasainen, suurempi keskittää, oletus 1</li>
+ *     <li>{@code skripti} toistoskriptin operaatioiden määrä, oletus 0 eli ei skriptiä</li>
+ *     <li>{@code poistot} perumisten osuus skriptissä, oletus 0.2</li>
+ *     <li>{@code siemen} satunnaislukujen siemen, oletus 42</li>
+ * </ul>
+ */
+public class WorkloadGenerator {
+    /**
+     * Toistoskriptin nimi kohdehakemistossa.
+     */
+    static final String SCRIPT_FILE = "kuorma.txt";
+
+    // Kuukausien sesonkiprofiili 0–1: hiihtolomat, kesä ja joulu
+    private static final double[] SEASON = {0.3, 0.6, 0.7, 0.35, 0.35, 0.85, 1.0, 0.8, 0.35, 0.3, 0.2, 0.6};
+    private static final String[] COTTAGE_PREFIXES = {"Ranta", "Järvi", "Metsä", "Kallio", "Koivu", "Kuusi",
+            "Mänty", "Lahti", "Niemi", "Saari", "Tunturi", "Kivi", "Kataja", "Pihlaja", "Suvanto", "Kaisla"};
+    private static final String[] COTTAGE_SUFFIXES = {"sauna", "mökki", "maja", "tupa", "pirtti", "huvila", "kota", "aitta"};
+    private static final String[] FIRST_NAMES = {"Matti", "Maija", "Juha", "Anna", "Mikko", "Laura", "Timo", "Sari",
+            "Jari", "Tiina", "Antti", "Johanna", "Pekka", "Elina", "Ville", "Aino", "Eero", "Helmi", "Olli", "Venla"};
+    private static final String[] LAST_NAMES = {"Virtanen", "Korhonen", "Mäkinen", "Nieminen", "Mäkelä", "Hämäläinen",
+            "Laine", "Heikkinen", "Koskinen", "Järvinen", "Lehtonen", "Lehtinen", "Saarinen", "Salminen", "Heinonen",
+            "Niemi", "Heikkilä", "Kinnunen", "Salonen", "Turunen"};
+
+    private final SplittableRandom random;
+    private final LocalDate firstDay;
+    private final LocalDate endDay;
+    private final double occupancy;
+    private final double seasonWeight;
+    private final double meanWeight;
+
+    WorkloadGenerator(long seed, LocalDate firstDay, int years, double occupancy, double seasonWeight) {
+        this.random = new SplittableRandom(seed);
+        this.firstDay = firstDay;
+        this.endDay = firstDay.plusYears(years);
+        this.occupancy = occupancy;
+        this.seasonWeight = seasonWeight;
+        this.meanWeight = Arrays.stream(SEASON).map(m -> 1 + (seasonWeight - 1) * m).average().orElse(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        Path directory = Paths.get(options.string("hakemisto", "kuorma"));
+        int cottageCount = options.integer("mokit", 200);
+        int years = options.integer("vuodet", 2);
+        LocalDate firstDay = options.date("alku", LocalDate.now().minusYears(1).withDayOfYear(1));
+        WorkloadGenerator generator = new WorkloadGenerator(options.integer("siemen", 42), firstDay, years,
+                options.decimal("kayttoaste", 0.5), options.decimal("kausi", 3));
+
+        long started = System.nanoTime();
+        List<Cottage> cottages = generator.cottages(cottageCount);
+        List<Dated> bookings = generator.bookings(cottages);
+        int overlapping = generator.addOverlaps(bookings, cottages, options.decimal("paallekkaiset", 0));
+        String[] customers = generator.customerNames(options.integer("asiakkaat", Math.max(1, bookings.size() / 3)));
+        generator.assignCustomers(bookings, customers, options.decimal("zipf", 1));
+        // Tiedostossa varaukset ovat siinä järjestyksessä, jossa ne on tehty
+        bookings.sort(Comparator.comparingLong(Dated::madeOn));
+        List<Booking> ordered = new ArrayList<>(bookings.size());
+        for (Dated dated : bookings) {
+            ordered.add(dated.booking);
+        }
+
+        Files.createDirectories(directory);
+        // Edellisen toiston journal, tilannevedos ja arkisto kumoaisivat uuden lähtötilan
+        try (DirectoryStream<Path> previous = Files.newDirectoryStream(directory,
+                "{" + BookingFiles.BOOKINGS_FILE + "?*," + BookingFiles.SNAPSHOT_FILE + ",varaukset-*.txt.gz}")) {
+            for (Path file : previous) {
+                Files.delete(file);
+            }
+        }
+        TextFiles.writeCottages(directory.resolve(BookingFiles.COTTAGES_FILE), cottages);
+        TextFiles.writeBookings(directory.resolve(BookingFiles.BOOKINGS_FILE), ordered);
+        int operations = options.integer("skripti", 0);
+        if (operations > 0) {
+            generator.writeScript(directory.resolve(SCRIPT_FILE), operations, options.decimal("poistot", 0.2),
+                    cottages, ordered, customers);
+        }
+
+        System.out.printf("Mökkejä %d, varauksia %d (päällekkäisiä %d), asiakkaita %d, %.1f s%n", cottages.size(),
+                ordered.size(), overlapping, customers.length, (System.nanoTime() - started) / 1e9);
+        generator.printOccupancy(ordered, cottages.size());
+        if (operations > 0) {
+            System.out.println("Toistoskripti: " + directory.resolve(SCRIPT_FILE) + " (" + operations + " operaatiota)");
+        }
+    }
+
+    /**
+     * Varaus ja päivä, jona se tehtiin (epoch-päivä).
+     */
+    static final class Dated {
+        Booking booking;
+        final Cottage cottage;
+        final LocalDate start;
+        final int days;
+        final long madeOn;
+
+        Dated(Cottage cottage, LocalDate start, int days, long madeOn) {
+            this.cottage = cottage;
+            this.start = start;
+            this.days = days;
+            this.madeOn = madeOn;
+        }
+
+        long madeOn() {
+            return madeOn;
+        }
+    }
+
+    /**
+     * Luo mökit. Nimet kootaan suomalaisista osista, ja koko kasvaa kapasiteetin mukana.
+     */
+    List<Cottage> cottages(int count) {
+        List<Cottage> cottages = new ArrayList<>(count);
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            String name = COTTAGE_PREFIXES[random.nextInt(COTTAGE_PREFIXES.length)]
+                    + COTTAGE_SUFFIXES[random.nextInt(COTTAGE_SUFFIXES.length)];
+            for (int n = 2; !names.add(name); n++) {
+                name = name.replaceAll(" \\d+$", "") + " " + n;
+            }
+            // Useimmissa mökeissä on 4–6 paikkaa
+            int capacity = Math.max(2, Math.min(12, (int) Math.round(5 + random.nextGaussian() * 2)));
+            int size = capacity * 9 + random.nextInt(-10, 30);
+            cottages.add(new Cottage(i + 1, name, Math.max(15, size), capacity));
+        }
+        return cottages;
+    }
+
+    /**
+     * Tekee jokaiselle mökille peräkkäiset varaukset koko aineiston ajalle. Asiakkaat lisätään myöhemmin.
+     */
+    List<Dated> bookings(List<Cottage> cottages) {
+        List<Dated> bookings = new ArrayList<>();
+        for (Cottage cottage : cottages) {
+            // Suosio vaihtelee mökeittäin noin ±40 %
+            double popularity = Math.exp(random.nextGaussian() * 0.3);
+            LocalDate day = firstDay.plusDays(random.nextInt(7));
+            while (day.isBefore(endDay)) {
+                double target = Math.min(0.97, occupancy * popularity * weight(day) / meanWeight);
+                int days = stayLength(day);
+                // Keskimääräinen väli, jolla varattujen päivien osuus on tavoitteen mukainen
+                double meanGap = days * (1 - target) / target;
+                int gap = (int) Math.round(-Math.log(1 - random.nextDouble()) * meanGap);
+                LocalDate start = day.plusDays(gap);
+                if (!start.isBefore(endDay)) {
+                    break;
+                }
+                bookings.add(new Dated(cottage, start, days, start.toEpochDay() - leadDays(start)));
+                day = start.plusDays(days);
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * Lisää päällekkäisiä varauksia: kopio jonkin varauksen mökistä muutaman päivän siirrolla.
+     *
+     * @return lisättyjen varausten määrä
+     */
+    int addOverlaps(List<Dated> bookings, List<Cottage> cottages, double rate) {
+        int count = (int) Math.round(bookings.size() * rate);
+        for (int i = 0; i < count; i++) {
+            Dated original = bookings.get(random.nextInt(bookings.size()));
+            LocalDate start = original.start.plusDays(random.nextInt(-2, 3));
+            bookings.add(new Dated(original.cottage, start, original.days, start.toEpochDay() - leadDays(start)));
+        }
+        return count;
+    }
+
+    /**
+     * Luo eri asiakkaiden nimet. Kun etu- ja sukunimien yhdistelmät loppuvat, nimen perään tulee numero.
+     */
+    String[] customerNames(int count) {
+        String[] names = new String[count];
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        for (int i = 0; i < count; i++) {
+            int combination = i % combinations;
+            String name = FIRST_NAMES[combination % FIRST_NAMES.length] + " " + LAST_NAMES[combination / FIRST_NAMES.length];
+            names[i] = i < combinations ? name : name + " " + (i / combinations + 1);
+        }
+        // Sekoitetaan, jotta yleisimmät asiakkaat eivät ole aina samannimisiä
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = names[i];
+            names[i] = names[j];
+            names[j] = swap;
+        }
+        return names;
+    }
+
+    /**
+     * Valitsee jokaiselle varaukselle asiakkaan Zipf-jakaumasta.
+     */
+    void assignCustomers(List<Dated> bookings, String[] customers, double exponent) {
+        double[] cumulative = zipf(customers.length, exponent);
+        for (Dated dated : bookings) {
+            dated.booking = new Booking(dated.cottage, customers[pick(cumulative)], dated.start, dated.days);
+        }
+    }
+
+    /**
+     * Kirjoittaa toistoskriptin. Lisäykset osuvat aineiston ajalle ja voivat olla päällekkäisiä
+     * olemassa olevien kanssa, jolloin toisto laskee ne hylätyiksi. Perumiset valitaan varauksista,
+     * jotka ovat sillä hetkellä voimassa; hylkääntyviä lisäyksiä ei siksi koskaan peruta.
+     */
+    void writeScript(Path file, int operations, double removeRate, List<Cottage> cottages, List<Booking> existing,
+                     String[] customers) throws IOException {
+        AvailabilityIndex index = new AvailabilityIndex();
+        List<Booking> live = new ArrayList<>(existing.size() + operations);
+        for (Booking booking : existing) {
+            if (index.tryAdd(booking).isEmpty()) {
+                live.add(booking);
+            }
+        }
+        double[] cumulative = zipf(customers.length, 1);
+        int span = (int) ChronoUnit.DAYS.between(firstDay, endDay);
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < operations; i++) {
+                if (!live.isEmpty() && random.nextDouble() < removeRate) {
+                    // Poisto lopusta vakioajassa: valittu varaus vaihdetaan viimeisen paikalle
+                    int chosen = random.nextInt(live.size());
+                    Booking booking = live.get(chosen);
+                    live.set(chosen, live.get(live.size() - 1));
+                    live.remove(live.size() - 1);
+                    index.remove(booking);
+                    bw.write("-;" + booking.toFileString());
+                } else {
+                    LocalDate start = firstDay.plusDays(random.nextInt(span));
+                    Booking booking = new Booking(cottages.get(random.nextInt(cottages.size())),
+                            customers[pick(cumulative)], start, stayLength(start));
+                    if (index.tryAdd(booking).isEmpty()) {
+                        live.add(booking);
+                    }
+                    bw.write("+;" + booking.toFileString());
+                }
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Tulostaa toteutuneen käyttöasteen kuukausittain.
+     */
+    void printOccupancy(List<Booking> bookings, int cottageCount) {
+        long[] nights = new long[12];
+        long[] days = new long[12];
+        for (LocalDate day = firstDay; day.isBefore(endDay); day = day.plusDays(1)) {
+            days[day.getMonthValue() - 1] += cottageCount;
+        }
+        for (Booking booking : bookings) {
+            LocalDate day = booking.getStartDate();
+            for (int i = 0; i < booking.getDays() && day.isBefore(endDay); i++, day = day.plusDays(1)) {
+                nights[day.getMonthValue() - 1]++;
+            }
+        }
+        StringBuilder sb = new StringBuilder("Käyttöaste kuukausittain:");
+        for (int month = 0; month < 12; month++) {
+            sb.append(String.format(Locale.ROOT, " %d:%.0f%%", month + 1, 100.0 * nights[month] / Math.max(1, days[month])));
+        }
+        System.out.println(sb);
+    }
+
+    private double weight(LocalDate day) {
+        return 1 + (seasonWeight - 1) * SEASON[day.getMonthValue() - 1];
+    }
+
+    /**
+     * Arpoo varauksen pituuden: kesällä usein viikko, muulloin viikonloppu tai muutama päivä.
+     */
+    private int stayLength(LocalDate start) {
+        int month = start.getMonthValue();
+        if (month >= 6 && month <= 8 && random.nextDouble() < 0.4) {
+            return 7;
+        }
+        double kind = random.nextDouble();
+        if (kind < 0.45) {
+            return 2;
+        } else if (kind < 0.75) {
+            return 3;
+        } else if (kind < 0.9) {
+            return 4 + random.nextInt(3);
+        }
+        return 7 + random.nextInt(8);
+    }
+
+    /**
+     * Arpoo, kuinka monta päivää etukäteen varaus tehtiin; sesongin varaukset tehdään aikaisemmin.
+     */
+    private long leadDays(LocalDate start) {
+        double mean = 20 + 60 * SEASON[start.getMonthValue() - 1];
+        return Math.round(-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    private static double[] zipf(int count, double exponent) {
+        double[] cumulative = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int pick(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
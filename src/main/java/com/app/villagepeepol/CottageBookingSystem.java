@@ -1,28 +1,79 @@
 package com.app.villagepeepol;
 
 import javafx.application.Application;
-import javafx.beans.property.SimpleStringProperty;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import com.app.villagepeepol.core.AvailabilityIndex;
+import com.app.villagepeepol.core.BinarySnapshot;
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.BookingExport;
+import com.app.villagepeepol.core.BookingFiles;
+import com.app.villagepeepol.core.BookingImport;
+import com.app.villagepeepol.core.BookingJournal;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.CottageRegistry;
+import com.app.villagepeepol.core.CottageSearch;
+import com.app.villagepeepol.core.CustomerIndex;
+import com.app.villagepeepol.core.DataFileWatcher;
+import com.app.villagepeepol.core.DateIndex;
+import com.app.villagepeepol.core.Metrics;
+import com.app.villagepeepol.core.OccupancyCalendar;
+import com.app.villagepeepol.core.OccupancyStats;
+import com.app.villagepeepol.core.PerformanceEvents;
+import com.app.villagepeepol.core.QueryCache;
+
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Tämä luokka on mökkivarausjärjestelmän pääluokka.
@@ -30,36 +81,110 @@ import java.util.Optional;
  * ja käynnistää käyttöliittymän.
  */
 public class CottageBookingSystem extends Application {
-    // Tiedostojen nimet
-    private static final String COTTAGES_FILE = "cottages.txt";
-    private static final String BOOKINGS_FILE = "varaukset.txt";
+    // Päivämäärien näyttö- ja syöttömuoto
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    // Kalenterin kuukauden näyttö- ja syöttömuoto
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MM.yyyy");
+    // Kuinka monta varausta julkaistaan bookingList-olioon kerralla käynnistyksessä
+    private static final int LOAD_BATCH_SIZE = 50_000;
+    // Taustakuvan tiedosto ja koko, johon kuva skaalataan
+    private static final String BACKGROUND_IMAGE_FILE = "taustakuva.jpg";
+    private static final double BACKGROUND_WIDTH = 1200;
+    private static final double BACKGROUND_HEIGHT = 800;
     // ObservableListit mökeille ja varauksille
     private ObservableList<Cottage> cottageList = FXCollections.observableArrayList();
     private ObservableList<Booking> bookingList = FXCollections.observableArrayList();
+    // Mökkihakemisto, jota varausten lukeminen käyttää ja joka seuraa cottageListiä
+    private final CottageRegistry cottageRegistry = new CottageRegistry();
+    // Mökkikohtainen varaushakemisto päällekkäisyyksien ja vapaiden jaksojen hakemiseen
+    private final AvailabilityIndex availabilityIndex = new AvailabilityIndex();
+    // Vapaiden mökkien haku kapasiteetin ja varausten perusteella
+    private final CottageSearch cottageSearch = new CottageSearch(availabilityIndex);
+    // Varaukset saapumis- ja lähtöpäivän mukaan
+    private final DateIndex dateIndex = new DateIndex();
+    // Mökkien varatut yöt päivittäin kalenterinäkymää varten
+    private final OccupancyCalendar occupancyCalendar = new OccupancyCalendar();
+    // Asiakkaan nimen osalla hakeva varaushakemisto
+    private final CustomerIndex customerIndex = new CustomerIndex();
+    // Käyttöasteraportin juoksevat summat; asetetaan, kun varaukset on luettu
+    private OccupancyStats occupancyStats;
+    // Arkistosta luetut varaukset; niitä ei kirjoiteta varaustiedostoon, ja niiden poisto kirjataan arkistoon
+    private final Set<Booking> archivedBookings = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Arkiston vuodet ja niistä jo bookingList-olioon luetut vuodet
+    private SortedSet<Integer> archivedYears = new TreeSet<>();
+    private final Set<Integer> loadedYears = new HashSet<>();
+    // Hetki, jolloin varausdialogin Lisää-painiketta painettiin; varauksen kirjaamisen viive mitataan tästä
+    private long bookingConfirmedNanos;
+    // Mökki- ja varaustiedostot nykyisessä hakemistossa
+    private final BookingFiles bookingFiles = new BookingFiles(Paths.get(""));
+    // Journal, johon varausten muutokset kirjataan
+    private final BookingJournal bookingJournal = bookingFiles.getJournal();
+    // Seuraa muiden samaa hakemistoa käyttävien sovellusten muutoksia; käynnistetään lukemisen jälkeen
+    private DataFileWatcher dataFileWatcher;
+    // true, kun muutosten lukeminen odottaa jo JavaFX-säikeessä
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    // Varaustaulukko ja sen kaikkien varausten rivit; rivit muodostetaan uudelleen, kun mökin nimi muuttuu
+    private TableView<DisplayRow<Booking>> bookingTableView;
+    private PagedDisplayList<Booking, DisplayRow<Booking>> bookingRows;
+    // Taustakuva, joka luetaan kerran ja jota kaikki näkymät käyttävät; null, jos kuvaa ei ole
+    private Image backgroundImage;
 
 
     /**
      * Sovelluksen käynnistysmetodi.
      * Luo tiedostot, jos niitä ei ole olemassa.
-     * Lukee mökit ja varaukset tiedostoista.
-     * Näyttää tervetulosivun.
+     * Näyttää tervetulosivun ja lukee mökit ja varaukset tiedostoista taustalla.
      *
      * @param primaryStage sovelluksen ensisijainen näyttöikkuna
      */
     @Override
     public void start(Stage primaryStage) {
+        // Aika prosessin käynnistymisestä tähän asti kuluu JVM:n ja JavaFX:n käynnistymiseen
+        recordSinceProcessStart("startup.jvm");
+        // Taustakuva puretaan taustalla sillä aikaa, kun tiedostoja luetaan
+        backgroundImage = loadBackgroundImage();
+
+        // Pidä mökkihakemisto ajan tasalla mökkilistan muutosten kanssa
+        cottageList.addListener((ListChangeListener<Cottage>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(cottageRegistry::remove);
+                change.getAddedSubList().forEach(cottageRegistry::add);
+                change.getRemoved().forEach(cottageSearch::remove);
+                change.getAddedSubList().forEach(cottageSearch::add);
+            }
+        });
+
+        // Pidä varaushakemisto ajan tasalla varauslistan muutosten kanssa
+        bookingList.addListener((ListChangeListener<Booking>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(availabilityIndex::remove);
+                change.getAddedSubList().forEach(availabilityIndex::add);
+                change.getRemoved().forEach(customerIndex::remove);
+                change.getAddedSubList().forEach(customerIndex::add);
+                change.getRemoved().forEach(dateIndex::remove);
+                change.getAddedSubList().forEach(dateIndex::add);
+                change.getRemoved().forEach(occupancyCalendar::remove);
+                change.getAddedSubList().forEach(occupancyCalendar::add);
+                // Lukemisen aikana summat lasketaan taustalla kerralla
+                if (occupancyStats != null) {
+                    change.getRemoved().forEach(occupancyStats::remove);
+                    change.getAddedSubList().forEach(occupancyStats::add);
+                }
+            }
+        });
+
         // Luo tiedostot, jos niitä ei ole olemassa
-        createFilesIfNotExist();
-        // Lue mökit ja varaukset tiedostoista
-        readCottagesFile();
-        readBookingsFile();
+        bookingFiles.createIfNotExist();
+        // Kirjoita mittarit lopetettaessa, jos tiedosto on annettu järjestelmäominaisuutena
+        Metrics.dumpOnExit();
 
         // Tervetuloa-teksti ja sen tyyli
         Text welcomeText = new Text("Tervetuloa mökkivarausjärjestelmään!");
         welcomeText.setFont(Font.font("Arial", FontWeight.BOLD, 24));
 
-        // Käynnistä-painike ja sen tapahtumankäsittelijä
+        // Käynnistä-painike ja sen tapahtumankäsittelijä; käytössä vasta kun tiedot on luettu
         Button startButton = new Button("Käynnistä");
+        startButton.setDisable(true);
         startButton.setOnAction(e -> {
             showMainPage(primaryStage);
         });
@@ -70,27 +195,122 @@ public class CottageBookingSystem extends Application {
             primaryStage.close();
         });
 
+        // Lue mökit ja varaukset tiedostoista taustalla ja näytä edistyminen
+        Task<OccupancyStats> loadTask = createLoadTask();
+        ProgressIndicator loadProgress = new ProgressIndicator();
+        loadProgress.progressProperty().bind(loadTask.progressProperty());
+        Label loadLabel = new Label();
+        loadLabel.textProperty().bind(loadTask.messageProperty());
+        loadTask.setOnSucceeded(e -> {
+            loadProgress.setVisible(false);
+            loadLabel.textProperty().unbind();
+            loadLabel.setText("");
+            startButton.setDisable(false);
+            recordSinceProcessStart("startup.ready");
+            // Kaikki erät on lisätty bookingList-olioon ennen tätä, joten summat vastaavat listaa
+            occupancyStats = loadTask.getValue();
+            archivedYears = bookingFiles.getArchive().years();
+            // Muiden sovellusten muutokset luetaan tästä eteenpäin sitä mukaa kuin niitä tulee
+            startWatchingFiles();
+            // Pitkäksi kasvanut journal tiivistetään heti käynnistyksen jälkeen
+            compactBookingsIfNeeded();
+        });
+        loadTask.setOnFailed(e -> {
+            loadProgress.setVisible(false);
+            loadLabel.textProperty().unbind();
+            loadLabel.setText("Tietojen lukeminen epäonnistui: " + loadTask.getException().getMessage());
+        });
+        Thread.ofVirtual().name("startup-load").start(loadTask);
+
         // Asettelu tervetuloa-näkymälle
-        VBox welcomeLayout = new VBox(20, welcomeText, startButton, exitButton);
+        VBox welcomeLayout = new VBox(20, welcomeText, loadProgress, loadLabel, startButton, exitButton);
         welcomeLayout.setAlignment(Pos.CENTER);
-        welcomeLayout.setBackground(new Background(new BackgroundFill(Color.LIGHTBLUE, CornerRadii.EMPTY, Insets.EMPTY)));
-
-        // Taustakuva, jos se löytyy
-        File backgroundImageFile = new File("taustakuva.jpg");
-        if (backgroundImageFile.exists()) {
-            Image backgroundImage = new Image("file:taustakuva.jpg");
-            BackgroundSize backgroundSize = new BackgroundSize(1200, 800, false, false, false, false);
-            BackgroundImage backgroundImg = new BackgroundImage(backgroundImage, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.CENTER, backgroundSize);
-            welcomeLayout.setBackground(new Background(backgroundImg));
-        }
+        // Vaaleansininen tausta näkyy, kunnes taustakuva on luettu, tai jos kuvaa ei ole
+        welcomeLayout.setBackground(createBackground(new BackgroundFill(Color.LIGHTBLUE, CornerRadii.EMPTY, Insets.EMPTY)));
 
         // Näkymä tervetuloa-näkymälle
         Scene scene = new Scene(welcomeLayout, 1200, 800);
+        onFirstPulse(scene, () -> recordSinceProcessStart("startup.firstFrame"));
         primaryStage.setTitle("Mökkivarausjärjestelmä - Tervetuloa!");
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
+    /**
+     * Aloittaa taustakuvan lukemisen taustasäikeessä. Kuva skaalataan näkymän kokoon jo
+     * purettaessa, joten muistiin ei jää täysikokoista kuvaa eikä sitä skaalata jokaisella piirtokerralla.
+     *
+     * @return luettava kuva, tai null, jos kuvatiedostoa ei ole
+     */
+    private static Image loadBackgroundImage() {
+        File file = new File(BACKGROUND_IMAGE_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        return new Image(file.toURI().toString(), BACKGROUND_WIDTH, BACKGROUND_HEIGHT, false, true, true);
+    }
+
+    /**
+     * Luo näkymän taustan jaetusta taustakuvasta. Kuva näkyy, kun sen lukeminen on valmis;
+     * siihen asti näkyvät annetut täytöt.
+     *
+     * @param fills kuvan alle piirrettävät täytöt
+     * @return tausta
+     */
+    private Background createBackground(BackgroundFill... fills) {
+        if (backgroundImage == null) {
+            return new Background(fills);
+        }
+        BackgroundSize backgroundSize = new BackgroundSize(BACKGROUND_WIDTH, BACKGROUND_HEIGHT, false, false, false, false);
+        BackgroundImage backgroundImg = new BackgroundImage(backgroundImage, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.CENTER, backgroundSize);
+        return new Background(fills, new BackgroundImage[]{backgroundImg});
+    }
+
+    /**
+     * Kirjaa käynnistyksen vaiheen keston prosessin käynnistymisestä tähän hetkeen. Käynnistyshetki
+     * saadaan käyttöjärjestelmältä, joten kesto sisältää myös JVM:n ja JavaFX:n käynnistymisen.
+     *
+     * @param name histogrammin nimi
+     */
+    private static void recordSinceProcessStart(String name) {
+        ProcessHandle.current().info().startInstant().ifPresent(started ->
+                Metrics.histogram(name).record(Duration.between(started, Instant.now()).toNanos()));
+    }
+
+    /**
+     * Suorittaa toiminnon kerran, kun näkymä on aseteltu ensimmäistä kertaa piirrettäväksi.
+     *
+     * @param scene  näkymä
+     * @param action suoritettava toiminto
+     */
+    private static void onFirstPulse(Scene scene, Runnable action) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            private boolean done;
+
+            @Override
+            public void run() {
+                if (!done) {
+                    done = true;
+                    action.run();
+                    // Kuuntelijaa ei poisteta kesken pulssin kuuntelijoiden läpikäynnin
+                    Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sovelluksen lopetusmetodi.
+     * Kirjoittaa odottavat tallennukset ja synkronoi varausjournalin levylle ennen sovelluksen sulkemista.
+     */
+    @Override
+    public void stop() {
+        if (dataFileWatcher != null) {
+            dataFileWatcher.close();
+        }
+        bookingFiles.close();
+    }
+
     /**
      * Luo pääsivun ja sen komponentit, kuten TableView:t mökeille ja varauksille,
      * painikkeet mökkien ja varausten lisäämiseen ja poistamiseen sekä taustakuvan.
@@ -99,9 +319,10 @@ public class CottageBookingSystem extends Application {
      * @param primaryStage päänäyttämö, johon pääsivu lisätään.
      */
     private void showMainPage(Stage primaryStage) {
+        long start = System.nanoTime();
         // Luo TableView:t mökeille ja varauksille
-        TableView<Cottage> cottageTableView = createCottageTableView();
-        TableView<Booking> bookingTableView = createBookingTableView();
+        TableView<DisplayRow<Cottage>> cottageTableView = createCottageTableView();
+        bookingTableView = createBookingTableView();
 
         // Lisää mökki -painike ja sen tapahtumankäsittelijä
         Button addCottageButton = new Button("Lisää mökki");
@@ -109,18 +330,62 @@ public class CottageBookingSystem extends Application {
             Dialog<Cottage> addCottageDialog = createAddCottageDialog();
             Optional<Cottage> result = addCottageDialog.showAndWait();
             result.ifPresent(cottage -> {
+                // Tunniste annetaan tallennettaessa, joten mökki lisätään hakemistoon vasta sen jälkeen
+                bookingFiles.addCottage(cottage);
                 cottageList.add(cottage);
-                saveCottagesToFile();
             });
         });
 
-        // Poista mökki -painike ja sen tapahtumankäsittelijä
+        // Nimeä mökki -painike ja sen tapahtumankäsittelijä; varaukset viittaavat mökkiin
+        // tunnisteella, joten niitä ei tarvitse kirjoittaa uudelleen
+        Button renameCottageButton = new Button("Nimeä mökki");
+        renameCottageButton.setOnAction(e -> {
+            int selectedIndex = cottageTableView.getSelectionModel().getSelectedIndex();
+            if (selectedIndex >= 0) {
+                Cottage cottage = cottageList.get(selectedIndex);
+                TextInputDialog renameDialog = new TextInputDialog(cottage.getName());
+                renameDialog.setTitle("Nimeä mökki");
+                renameDialog.setHeaderText(null);
+                renameDialog.setContentText("Uusi nimi:");
+                renameDialog.showAndWait().map(String::trim).ifPresent(name -> {
+                    // Erotinmerkki tai rivinvaihto nimessä rikkoisi mökkitiedoston rivin
+                    if (name.isEmpty() || name.contains(";") || name.contains("\n") || name.contains("\r")) {
+                        return;
+                    }
+                    // Poisto ja lisäys pitävät mökkihakemiston nimet ajan tasalla
+                    cottageList.remove(selectedIndex);
+                    cottage.setName(name);
+                    cottageList.add(selectedIndex, cottage);
+                    bookingFiles.updateCottage(cottage);
+                    refreshBookingRows();
+                });
+            }
+        });
+
+        // Poista mökki -painike ja sen tapahtumankäsittelijä; mökin varaukset poistetaan samalla,
+        // myös arkistoidut, jotta niitä ei myöhemmin lueta ilman mökkiä
         Button removeCottageButton = new Button("Poista mökki");
         removeCottageButton.setOnAction(e -> {
             int selectedIndex = cottageTableView.getSelectionModel().getSelectedIndex();
             if (selectedIndex >= 0) {
-                cottageList.remove(selectedIndex);
-                saveCottagesToFile();
+                Cottage cottage = cottageList.get(selectedIndex);
+                List<Booking> bookings = activeBookingsOf(cottage);
+                if (!bookings.isEmpty()) {
+                    Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+                    alert.setTitle("Poista mökki");
+                    alert.setHeaderText(null);
+                    alert.setContentText("Mökillä " + cottage.getName() + " on " + bookings.size()
+                            + " varausta. Poistetaanko mökki ja sen varaukset? Myös mökin arkistoidut varaukset poistetaan.");
+                    if (alert.showAndWait().filter(ButtonType.OK::equals).isEmpty()) {
+                        return;
+                    }
+                }
+                removeBookings(bookings);
+                bookings.forEach(bookingJournal::remove);
+                compactBookingsIfNeeded();
+                removeArchivedBookingsOf(cottage);
+                cottageList.remove(cottage);
+                bookingFiles.removeCottage(cottage);
             }
         });
 
@@ -130,84 +395,160 @@ public class CottageBookingSystem extends Application {
             Dialog<Booking> addBookingDialog = createAddBookingDialog();
             Optional<Booking> result = addBookingDialog.showAndWait();
             result.ifPresent(booking -> {
-                bookingList.add(booking);
-                saveBookingsToFile();
+                PerformanceEvents.BookingCommit event = new PerformanceEvents.BookingCommit();
+                event.begin();
+                // Muiden sovellusten varaukset luetaan ja varaus tarkistetaan uudelleen journalin lukon
+                // alla, jotta kukaan ei ehdi kirjata samoja päiviä tarkistuksen ja kirjauksen väliin
+                Cottage cottage = booking.getCottage();
+                List<Booking> conflicts = new ArrayList<>();
+                List<BookingJournal.Change> committed = bookingJournal.commit(cottageRegistry, this::activeBookings, changes -> {
+                    applyBookingChanges(changes);
+                    if (cottageRegistry.findById(cottage.getId()) != cottage) {
+                        return List.of();
+                    }
+                    conflicts.addAll(availabilityIndex.findConflicts(cottage, booking.getStartDate(), booking.getDays()));
+                    if (!conflicts.isEmpty()) {
+                        return List.of();
+                    }
+                    bookingList.add(booking);
+                    return List.of(new BookingJournal.Change(true, booking));
+                });
+                if (committed.isEmpty()) {
+                    if (conflicts.isEmpty()) {
+                        showInvalidBookingAlert("Mökki " + cottage.getName() + " on poistettu.");
+                    } else {
+                        showBookingConflictAlert(cottage, conflicts,
+                                availabilityIndex.nextFreeWindow(cottage, booking.getStartDate(), booking.getDays()));
+                    }
+                    return;
+                }
+                Metrics.recordSince("booking.commit.dialog", bookingConfirmedNanos);
+                event.cottage = booking.getCottage().getName();
+                event.source = "dialog";
+                event.commit();
+                compactBookingsIfNeeded();
             });
         });
 
-        // Poista varaus -painike ja sen tapahtumankäsittelijä
+        // Poista varaus -painike ja sen tapahtumankäsittelijä; taulukko voi näyttää hakutuloksia,
+        // joten poistettava varaus otetaan valitulta riviltä eikä sen indeksistä
         Button removeBookingButton = new Button("Poista varaus");
         removeBookingButton.setOnAction(e -> {
-            int selectedIndex = bookingTableView.getSelectionModel().getSelectedIndex();
-            if (selectedIndex >= 0) {
-                bookingList.remove(selectedIndex);
-                saveBookingsToFile();
+            DisplayRow<Booking> selected = bookingTableView.getSelectionModel().getSelectedItem();
+            if (selected != null && bookingList.remove(selected.getSource())) {
+                if (archivedBookings.remove(selected.getSource())) {
+                    bookingFiles.getArchive().remove(selected.getSource());
+                } else {
+                    bookingJournal.remove(selected.getSource());
+                    compactBookingsIfNeeded();
+                }
+            }
+        });
+
+        // Asiakashaku varaustaulukon yläpuolella; tyhjä haku näyttää kaikki varaukset
+        TextField customerSearchField = new TextField();
+        customerSearchField.setPromptText("Hae asiakkaan nimellä");
+        ObservableList<DisplayRow<Booking>> allBookingRows = bookingTableView.getItems();
+        Runnable filterBookings = () -> {
+            String query = customerSearchField.getText();
+            if (query == null || query.isBlank()) {
+                bookingTableView.setItems(allBookingRows);
+            } else {
+                bookingTableView.setItems(createBookingRows(FXCollections.observableList(customerIndex.search(query))));
+            }
+        };
+        customerSearchField.textProperty().addListener((observable, oldValue, newValue) -> filterBookings.run());
+        // Päivitä hakutulokset, kun varauksia lisätään tai poistetaan haun ollessa käytössä
+        bookingList.addListener((ListChangeListener<Booking>) change -> {
+            if (bookingTableView.getItems() != allBookingRows) {
+                filterBookings.run();
+            }
+        });
+
+        // Hae vapaat mökit -painike ja sen tapahtumankäsittelijä
+        Button searchButton = new Button("Hae vapaat mökit");
+        searchButton.setOnAction(e -> createSearchDialog().showAndWait());
+
+        // Tulot ja lähdöt -painike ja sen tapahtumankäsittelijä
+        Button arrivalsButton = new Button("Tulot ja lähdöt");
+        arrivalsButton.setOnAction(e -> createArrivalsDialog().showAndWait());
+
+        // Kalenteri-painike näyttää mökkien varatut yöt kuukauden tai kauden ruudukkona
+        Button calendarButton = new Button("Kalenteri");
+        calendarButton.setOnAction(e -> createCalendarDialog().showAndWait());
+
+        // Historia-painike lukee aiemman vuoden varaukset arkistosta taulukkoon
+        Button historyButton = new Button("Historia");
+        historyButton.setOnAction(e -> showHistoryChoice());
+
+        // Käyttöaste-painike ja sen tapahtumankäsittelijä
+        Button reportButton = new Button("Käyttöaste");
+        reportButton.setOnAction(e -> createOccupancyDialog(primaryStage).showAndWait());
+
+        // Tuonti ja vienti -valikko: varaukset tiedostosta, kaikki varaukset CSV-tiedostoon ja
+        // valitun mökin varaukset kalenteritiedostoon; edistyminen näytetään valikon vieressä
+        Label transferLabel = new Label();
+        MenuItem importItem = new MenuItem("Tuo varauksia...");
+        importItem.setOnAction(e -> importBookings(primaryStage, transferLabel));
+        MenuItem exportCsvItem = new MenuItem("Vie varaukset CSV...");
+        exportCsvItem.setOnAction(e -> exportBookingsCsv(primaryStage, transferLabel));
+        MenuItem exportICalendarItem = new MenuItem("Vie mökin kalenteri (iCal)...");
+        exportICalendarItem.setOnAction(e -> {
+            DisplayRow<Cottage> selected = cottageTableView.getSelectionModel().getSelectedItem();
+            if (selected == null) {
+                transferLabel.setText("Valitse mökki");
+            } else {
+                exportCottageICalendar(primaryStage, selected.getSource(), transferLabel);
             }
         });
+        MenuButton transferButton = new MenuButton("Tuonti ja vienti", null, importItem, exportCsvItem, exportICalendarItem);
+
+        // Tallennuksen tila, joka näytetään painikkeiden vieressä
+        Label savingLabel = new Label();
+        bookingFiles.getWriter().setSavingListener(saving -> Platform.runLater(() -> savingLabel.setText(saving ? "Tallennetaan…" : "")));
 
         // Luodaan painikkeille hboxi
-        HBox buttons = new HBox(10, addCottageButton, removeCottageButton, addBookingButton, removeBookingButton);
+        HBox buttons = new HBox(10, addCottageButton, renameCottageButton, removeCottageButton, addBookingButton, removeBookingButton, searchButton, arrivalsButton, calendarButton, historyButton, reportButton, transferButton, transferLabel, savingLabel);
         buttons.setPadding(new Insets(10));
 
         // Luodaan vboxi elementeille
-        VBox mainLayout = new VBox(10, cottageTableView, buttons, bookingTableView);
+        VBox mainLayout = new VBox(10, cottageTableView, buttons, customerSearchField, bookingTableView);
         mainLayout.setPadding(new Insets(10));
 
-        // Lisätään taustakuva projektin juuresta, varmistetaan että se löytyy, lisätään koko ja speksit
-        File backgroundImageFile = new File("taustakuva.jpg");
-        if (backgroundImageFile.exists()) {
-            Image backgroundImage = new Image("file:taustakuva.jpg");
-            BackgroundSize backgroundSize = new BackgroundSize(1200, 800, false, false, false, false);
-            BackgroundImage backgroundImg = new BackgroundImage(backgroundImage, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.CENTER, backgroundSize);
-            mainLayout.setBackground(new Background(backgroundImg));
-        }
+        // Lisätään taustakuva, joka on jo luettu tervetuloa-näkymää varten
+        mainLayout.setBackground(createBackground());
 
         // Luodaan kaikesta tästä scene
         Scene scene = new Scene(mainLayout, 1200, 800);
+        onFirstPulse(scene, () -> Metrics.recordSince("startup.mainPage", start));
+        // Piilotettu diagnostiikkanäkymä avautuu näppäinyhdistelmällä Ctrl+Shift+D
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.D, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> createDiagnosticsDialog().show());
         primaryStage.setTitle("Mökkivarausjärjestelmä");
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
 
-    /**
-     * Luo tiedostot, jos niitä ei ole olemassa.
-     */
-    private void createFilesIfNotExist() {
-        try {
-            Files.createDirectories(Paths.get("").toAbsolutePath());
-            Files.createFile(Paths.get(COTTAGES_FILE));
-            Files.createFile(Paths.get(BOOKINGS_FILE));
-        } catch (IOException e) {
-            System.out.println("Tiedostoja ei voitu luoda");
-        }
-    }
-
     /**
      * Luo TableView:n mökeille, joka sisältää kolme saraketta: nimi, koko ja kapasiteetti.
-     * Asettaa myös sarakkeiden leveydet ja solujen arvot.
+     * Asettaa myös sarakkeiden leveydet. Taulukon rivit muodostetaan mökkilistasta vasta,
+     * kun ne tulevat näkyviin.
      *
      * @return TableView, joka näyttää mökkilistauksen.
      */
-    private TableView<Cottage> createCottageTableView() {
-        // Luo mökin nimen sisältävä sarake
-        TableColumn<Cottage, String> nameColumn = new TableColumn<>("Nimi");
-        nameColumn.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getName()));
-        nameColumn.setMinWidth(150);
-
-        // Luo mökin koon sisältävä sarake
-        TableColumn<Cottage, String> sizeColumn = new TableColumn<>("Koko");
-        sizeColumn.setCellValueFactory(param -> new SimpleStringProperty(Integer.toString(param.getValue().getSize())));
-        sizeColumn.setMinWidth(100);
-
-        // Luo mökin kapasiteetin sisältävä sarake
-        TableColumn<Cottage, String> capacityColumn = new TableColumn<>("Kapasiteetti");
-        capacityColumn.setCellValueFactory(param -> new SimpleStringProperty(Integer.toString(param.getValue().getCapacity())));
-        capacityColumn.setMinWidth(100);
+    private TableView<DisplayRow<Cottage>> createCottageTableView() {
+        // Luo sarakkeet mökin nimelle, koolle ja kapasiteetille
+        TableColumn<DisplayRow<Cottage>, DisplayRow<Cottage>> nameColumn = createTextColumn("Nimi", 0, 150);
+        TableColumn<DisplayRow<Cottage>, DisplayRow<Cottage>> sizeColumn = createTextColumn("Koko", 1, 100);
+        TableColumn<DisplayRow<Cottage>, DisplayRow<Cottage>> capacityColumn = createTextColumn("Kapasiteetti", 2, 100);
 
         // Luo mökkinäkymän taulukon ja asettaa sarakkeet
-        TableView<Cottage> cottageTableView = new TableView<>();
-        cottageTableView.setItems(cottageList);
+        TableView<DisplayRow<Cottage>> cottageTableView = new TableView<>();
+        cottageTableView.setItems(new PagedDisplayList<>(cottageList, cottage -> new DisplayRow<>(cottage,
+                cottage.getName(),
+                Integer.toString(cottage.getSize()),
+                Integer.toString(cottage.getCapacity()))));
         cottageTableView.getColumns().addAll(nameColumn, sizeColumn, capacityColumn);
 
         // Palauttaa näkymän
@@ -215,41 +556,69 @@ public class CottageBookingSystem extends Application {
     }
 
     /**
-     * Luo TableView:n mökeille, joka sisältää kolme saraketta: Valitun mökin nimi, asiakkaan nimi, varauspäivämäärä ja varauksen kesto
-     * Asettaa myös sarakkeiden leveydet ja solujen arvot.
+     * Luo TableView:n varauksille, joka sisältää neljä saraketta: Valitun mökin nimi, asiakkaan nimi, varauspäivämäärä ja varauksen kesto
+     * Asettaa myös sarakkeiden leveydet. Taulukon rivit muodostetaan varauslistasta vasta,
+     * kun ne tulevat näkyviin, joten suurikaan varauslista ei kasvata taulukon muistinkäyttöä.
      *
      * @return TableView, joka näyttää varauslistauksen
      */
-    private TableView<Booking> createBookingTableView() {
-        // Luo mökin nimen sisältävä sarake
-        TableColumn<Booking, String> cottageNameColumn = new TableColumn<>("Mökin nimi");
-        cottageNameColumn.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getCottage().getName()));
-        cottageNameColumn.setMinWidth(150);
-
-        // Luo asiakkaan nimen sisältävä sarake
-        TableColumn<Booking, String> customerNameColumn = new TableColumn<>("Asiakkaan nimi");
-        customerNameColumn.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getCustomerName()));
-        customerNameColumn.setMinWidth(150);
-
-        // Luo varauspäivämäärän sisältävä sarake
-        TableColumn<Booking, String> startDateColumn = new TableColumn<>("Varauspäivämäärä");
-        startDateColumn.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getStartDate().format(DateTimeFormatter.ofPattern("dd.MM.yyyy"))));
-        startDateColumn.setMinWidth(150);
-
-        // Luo varattujen päivien määrän sisältävä sarake
-        TableColumn<Booking, String> daysColumn = new TableColumn<>("Varattujen päivien määrä");
-        daysColumn.setCellValueFactory(param -> new SimpleStringProperty(Integer.toString(param.getValue().getDays())));
-        daysColumn.setMinWidth(150);
+    private TableView<DisplayRow<Booking>> createBookingTableView() {
+        // Luo sarakkeet mökin nimelle, asiakkaan nimelle, varauspäivämäärälle ja varattujen päivien määrälle
+        TableColumn<DisplayRow<Booking>, DisplayRow<Booking>> cottageNameColumn = createTextColumn("Mökin nimi", 0, 150);
+        TableColumn<DisplayRow<Booking>, DisplayRow<Booking>> customerNameColumn = createTextColumn("Asiakkaan nimi", 1, 150);
+        TableColumn<DisplayRow<Booking>, DisplayRow<Booking>> startDateColumn = createTextColumn("Varauspäivämäärä", 2, 150);
+        TableColumn<DisplayRow<Booking>, DisplayRow<Booking>> daysColumn = createTextColumn("Varattujen päivien määrä", 3, 150);
 
         // Luo varausnäkymän taulukon ja asettaa sarakkeet
-        TableView<Booking> bookingTableView = new TableView<>();
-        bookingTableView.setItems(bookingList);
+        TableView<DisplayRow<Booking>> bookingTableView = new TableView<>();
+        bookingRows = createBookingRows(bookingList);
+        bookingTableView.setItems(bookingRows);
         bookingTableView.getColumns().addAll(cottageNameColumn, customerNameColumn, startDateColumn, daysColumn);
 
         // Palauttaa näkymän
         return bookingTableView;
     }
 
+    /**
+     * Luo varaustaulukon rivit annetuista varauksista. Rivit muodostetaan vasta, kun ne tulevat näkyviin.
+     *
+     * @param bookings näytettävät varaukset
+     * @return varaustaulukon rivit
+     */
+    private PagedDisplayList<Booking, DisplayRow<Booking>> createBookingRows(ObservableList<Booking> bookings) {
+        return new PagedDisplayList<>(bookings, booking -> new DisplayRow<>(booking,
+                booking.getCottage() == null ? "" : booking.getCottage().getName(),
+                booking.getCustomerName(),
+                booking.getStartDate().format(DATE_FORMAT),
+                Integer.toString(booking.getDays())));
+    }
+
+    /**
+     * Luo taulukon sarakkeen, joka näyttää rivin valmiiksi muotoillun tekstin. Solun arvo on
+     * rivi itse, joten solun piirtäminen ei luo uusia olioita. Sarakkeen mukaan lajittelu on
+     * pois käytöstä, koska taulukon rivit ovat lähdelistan järjestyksessä.
+     *
+     * @param title    sarakkeen otsikko
+     * @param column   näytettävän tekstin järjestysnumero rivillä
+     * @param minWidth sarakkeen vähimmäisleveys
+     * @param <S>      olio, jonka tiedot rivillä näytetään
+     * @return sarake
+     */
+    private static <S> TableColumn<DisplayRow<S>, DisplayRow<S>> createTextColumn(String title, int column, double minWidth) {
+        TableColumn<DisplayRow<S>, DisplayRow<S>> tableColumn = new TableColumn<>(title);
+        tableColumn.setCellValueFactory(TableColumn.CellDataFeatures::getValue);
+        tableColumn.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(DisplayRow<S> row, boolean empty) {
+                super.updateItem(row, empty);
+                setText(empty || row == null ? null : row.getText(column));
+            }
+        });
+        tableColumn.setSortable(false);
+        tableColumn.setMinWidth(minWidth);
+        return tableColumn;
+    }
+
     /**
      * Luo uuden dialogin, jossa käyttäjä voi lisätä uuden mökin. Dialogi sisältää
      * kentät mökin nimen, koon ja kapasiteetin syöttämiseen. Lisäksi dialogissa on
@@ -353,13 +722,55 @@ public class CottageBookingSystem extends Application {
         ButtonType addButton = new ButtonType("Lisää", ButtonBar.ButtonData.OK_DONE);
         addBookingDialog.getDialogPane().getButtonTypes().addAll(addButton, ButtonType.CANCEL);
 
+        // Estä varaus, joka osuu mökin olemassa olevan varauksen päälle
+        Button addButtonNode = (Button) addBookingDialog.getDialogPane().lookupButton(addButton);
+        addButtonNode.addEventFilter(ActionEvent.ACTION, event -> {
+            bookingConfirmedNanos = System.nanoTime();
+            Cottage cottage = cottageComboBox.getSelectionModel().getSelectedItem();
+            LocalDate startDate;
+            int days;
+            try {
+                startDate = LocalDate.parse(startDateField.getText(), DATE_FORMAT);
+                days = Integer.parseInt(daysField.getText());
+            } catch (DateTimeParseException | NumberFormatException e) {
+                showInvalidBookingAlert("Tarkista aloituspäivämäärä ja päivien määrä.");
+                event.consume();
+                return;
+            }
+            if (!Booking.isValidDays(days)) {
+                showInvalidBookingAlert("Varauksen keston täytyy olla 1–" + Booking.MAX_DAYS + " päivää.");
+                event.consume();
+                return;
+            }
+            if (cottage == null) {
+                showInvalidBookingAlert("Valitse mökki.");
+                event.consume();
+                return;
+            }
+            if (!Booking.isValidCustomerName(customerNameField.getText())) {
+                showInvalidBookingAlert("Asiakkaan nimi ei voi olla tyhjä eikä sisältää puolipistettä.");
+                event.consume();
+                return;
+            }
+            // Muiden sovellusten varaukset luetaan ennen tarkistusta, jotta ilmoitus näytetään dialogissa;
+            // varaus tarkistetaan vielä kirjattaessa
+            syncFromFiles();
+            // Ennen aktiivista jaksoa alkava varaus tarkistetaan myös arkistoituja varauksia vasten
+            loadHistoryFor(startDate, days);
+            List<Booking> conflicts = availabilityIndex.findConflicts(cottage, startDate, days);
+            if (!conflicts.isEmpty()) {
+                showBookingConflictAlert(cottage, conflicts, availabilityIndex.nextFreeWindow(cottage, startDate, days));
+                event.consume();
+            }
+        });
+
         // Aseta muunnin dialogin tulokselle
         addBookingDialog.setResultConverter(dialogButton -> {
             if (dialogButton == addButton) {
                 // Lue varauksen tiedot ja luo uusi Booking-olio
                 Cottage cottage = cottageComboBox.getSelectionModel().getSelectedItem();
                 String customerName = customerNameField.getText();
-                LocalDate startDate = LocalDate.parse(startDateField.getText(), DateTimeFormatter.ofPattern("dd.MM.yyyy"));
+                LocalDate startDate = LocalDate.parse(startDateField.getText(), DATE_FORMAT);
                 int days = Integer.parseInt(daysField.getText());
                 return new Booking(cottage, customerName, startDate, days);
             }
@@ -372,74 +783,881 @@ public class CottageBookingSystem extends Application {
     }
 
     /**
-     * Lue mökit tiedostosta ja lisää ne cottageList-olioon. Jos tiedoston lukemisessa
-     * ilmenee ongelmia, tulostetaan virheilmoitus.
+     * Luo dialogin, jolla haetaan mökit, joihin mahtuu annettu määrä henkilöitä ja jotka ovat
+     * vapaina annetulla aikavälillä. Dialogi sisältää kentät henkilömäärälle, mökin
+     * vähimmäiskoolle, tulopäivälle ja lähtöpäivälle sekä listan löytyneistä mökeistä.
+     *
+     * @return Dialog, jossa haku tehdään
      */
-    private void readCottagesFile() {
-        try (BufferedReader br = new BufferedReader(new FileReader(COTTAGES_FILE))) {
-            // Tyhjennä mökkilista
-            cottageList.clear();
-            String line;
-            // Käy läpi tiedoston rivit ja luo Cottage-olio jokaisesta rivistä
-            while ((line = br.readLine()) != null) {
-                cottageList.add(Cottage.fromFileString(line));
+    private Dialog<Void> createSearchDialog() {
+        Dialog<Void> searchDialog = new Dialog<>();
+        searchDialog.setTitle("Hae vapaat mökit");
+
+        // Luo ruudukko dialogin sisällölle
+        GridPane grid = new GridPane();
+        grid.setAlignment(Pos.CENTER);
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+
+        TextField guestsField = new TextField();
+        guestsField.setPromptText("Henkilömäärä");
+        TextField minSizeField = new TextField();
+        minSizeField.setPromptText("Vähimmäiskoko (vapaaehtoinen)");
+        TextField startDateField = new TextField();
+        startDateField.setPromptText("Tulopäivä (dd.MM.yyyy)");
+        TextField endDateField = new TextField();
+        endDateField.setPromptText("Lähtöpäivä (dd.MM.yyyy)");
+        Button searchButton = new Button("Hae");
+        Label statusLabel = new Label();
+        ListView<Cottage> resultView = new ListView<>();
+        resultView.setPrefHeight(200);
+
+        // Lisää elementit ruudukkoon
+        grid.add(new Label("Henkilömäärä:"), 0, 0);
+        grid.add(guestsField, 1, 0);
+        grid.add(new Label("Vähimmäiskoko:"), 0, 1);
+        grid.add(minSizeField, 1, 1);
+        grid.add(new Label("Tulopäivä:"), 0, 2);
+        grid.add(startDateField, 1, 2);
+        grid.add(new Label("Lähtöpäivä:"), 0, 3);
+        grid.add(endDateField, 1, 3);
+        grid.add(searchButton, 1, 4);
+        grid.add(statusLabel, 1, 5);
+        grid.add(resultView, 0, 6, 2, 1);
+        searchDialog.getDialogPane().setContent(grid);
+        searchDialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        // Hae-painike päivittää tuloslistan
+        searchButton.setOnAction(e -> {
+            try {
+                int guests = Integer.parseInt(guestsField.getText());
+                int minSize = minSizeField.getText().isBlank() ? 0 : Integer.parseInt(minSizeField.getText());
+                LocalDate startDate = LocalDate.parse(startDateField.getText(), DATE_FORMAT);
+                LocalDate endDate = LocalDate.parse(endDateField.getText(), DATE_FORMAT);
+                int days = (int) ChronoUnit.DAYS.between(startDate, endDate);
+                if (days <= 0) {
+                    statusLabel.setText("Lähtöpäivän täytyy olla tulopäivän jälkeen");
+                    resultView.getItems().clear();
+                    return;
+                }
+                List<Cottage> found = cottageSearch.findAvailable(guests, minSize, startDate, days);
+                resultView.getItems().setAll(found);
+                statusLabel.setText("Vapaita mökkejä: " + found.size());
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                statusLabel.setText("Tarkista hakuehdot");
+                resultView.getItems().clear();
             }
-        } catch (IOException e) {
-            // Tulosta virheilmoitus, jos tiedoston lukemisessa ilmenee ongelmia
-            System.out.println("Virhe cottages.txt-tiedoston lukemisessa: " + e.getMessage());
+        });
+
+        return searchDialog;
+    }
+
+    /**
+     * Luo dialogin, joka näyttää valitun päivän saapuvat ja lähtevät varaukset.
+     * Edellinen- ja Seuraava-painikkeilla päivää voi vaihtaa yhden päivän kerrallaan.
+     *
+     * @return dialogi päivän tuloista ja lähdöistä
+     */
+    private Dialog<Void> createArrivalsDialog() {
+        Dialog<Void> arrivalsDialog = new Dialog<>();
+        arrivalsDialog.setTitle("Tulot ja lähdöt");
+
+        // Luo ruudukko dialogin sisällölle
+        GridPane grid = new GridPane();
+        grid.setAlignment(Pos.CENTER);
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 10, 10, 10));
+
+        TextField dateField = new TextField(LocalDate.now().format(DATE_FORMAT));
+        dateField.setPromptText("Päivämäärä (dd.MM.yyyy)");
+        Button previousButton = new Button("Edellinen");
+        Button nextButton = new Button("Seuraava");
+        Button showButton = new Button("Näytä");
+        Label statusLabel = new Label();
+        ListView<String> arrivalsView = new ListView<>();
+        ListView<String> departuresView = new ListView<>();
+        arrivalsView.setPrefSize(300, 250);
+        departuresView.setPrefSize(300, 250);
+
+        // Lisää elementit ruudukkoon
+        grid.add(new Label("Päivä:"), 0, 0);
+        grid.add(new HBox(10, dateField, previousButton, nextButton, showButton), 1, 0, 2, 1);
+        grid.add(statusLabel, 1, 1, 2, 1);
+        grid.add(new Label("Saapuvat"), 1, 2);
+        grid.add(new Label("Lähtevät"), 2, 2);
+        grid.add(arrivalsView, 1, 3);
+        grid.add(departuresView, 2, 3);
+        arrivalsDialog.getDialogPane().setContent(grid);
+        arrivalsDialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        // Päivittää listat päivämääräkentän päivälle
+        Runnable show = () -> {
+            try {
+                LocalDate day = LocalDate.parse(dateField.getText(), DATE_FORMAT);
+                List<Booking> arrivals = dateIndex.arrivals(day);
+                List<Booking> departures = dateIndex.departures(day);
+                arrivalsView.getItems().setAll(arrivals.stream().map(this::describeStay).toList());
+                departuresView.getItems().setAll(departures.stream().map(this::describeStay).toList());
+                statusLabel.setText("Saapuu " + arrivals.size() + ", lähtee " + departures.size());
+            } catch (DateTimeParseException ex) {
+                statusLabel.setText("Tarkista päivämäärä");
+                arrivalsView.getItems().clear();
+                departuresView.getItems().clear();
+            }
+        };
+        showButton.setOnAction(e -> show.run());
+        previousButton.setOnAction(e -> shiftDate(dateField, -1, show));
+        nextButton.setOnAction(e -> shiftDate(dateField, 1, show));
+        show.run();
+
+        return arrivalsDialog;
+    }
+
+    /**
+     * Siirtää päivämääräkentän päivää annetun määrän päiviä ja päivittää näkymän.
+     * Virheellinen päivämäärä jätetään ennalleen.
+     */
+    private void shiftDate(TextField dateField, int days, Runnable show) {
+        try {
+            dateField.setText(LocalDate.parse(dateField.getText(), DATE_FORMAT).plusDays(days).format(DATE_FORMAT));
+        } catch (DateTimeParseException ex) {
+            // Näkymä kertoo virheellisestä päivämäärästä
+        }
+        show.run();
+    }
+
+    /**
+     * @param booking varaus
+     * @return varauksen mökki, asiakas ja majoitusjakso tekstinä
+     */
+    private String describeStay(Booking booking) {
+        String cottageName = booking.getCottage() == null ? "" : booking.getCottage().getName();
+        return cottageName + ": " + booking.getCustomerName() + " ("
+                + booking.getStartDate().format(DATE_FORMAT) + "–"
+                + booking.getStartDate().plusDays(booking.getDays()).format(DATE_FORMAT) + ")";
+    }
+
+    /**
+     * Luo dialogin, joka näyttää mökkien varatut ja vapaat yöt ruudukkona valitusta kuukaudesta
+     * alkaen yhden tai useamman kuukauden ajalta. Edellinen- ja Seuraava-painikkeilla kuukautta
+     * voi vaihtaa. Ruudukko piirretään uudelleen, kun varaukset tai mökit muuttuvat.
+     *
+     * @return kalenteridialogi
+     */
+    private Dialog<Void> createCalendarDialog() {
+        Dialog<Void> calendarDialog = new Dialog<>();
+        calendarDialog.setTitle("Kalenteri");
+        calendarDialog.setResizable(true);
+
+        TextField monthField = new TextField(YearMonth.now().format(MONTH_FORMAT));
+        monthField.setPromptText("Kuukausi (MM.yyyy)");
+        monthField.setPrefColumnCount(7);
+        ChoiceBox<Integer> monthsBox = new ChoiceBox<>(FXCollections.observableArrayList(1, 3, 6, 12));
+        monthsBox.setValue(1);
+        Button previousButton = new Button("Edellinen");
+        Button nextButton = new Button("Seuraava");
+        Button showButton = new Button("Näytä");
+        Label statusLabel = new Label();
+        OccupancyGrid grid = new OccupancyGrid(occupancyCalendar, cottageList);
+        grid.setPrefSize(1000, 600);
+
+        HBox controls = new HBox(10, new Label("Kuukausi:"), monthField, new Label("Kuukausia:"), monthsBox,
+                previousButton, nextButton, showButton, statusLabel);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        VBox content = new VBox(10, controls, grid);
+        VBox.setVgrow(grid, Priority.ALWAYS);
+        content.setPadding(new Insets(10));
+        calendarDialog.getDialogPane().setContent(content);
+        calendarDialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        // Näyttää kuukausikentän kuukaudesta alkavan jakson
+        Runnable show = () -> {
+            try {
+                YearMonth month = YearMonth.parse(monthField.getText().trim(), MONTH_FORMAT);
+                LocalDate from = month.atDay(1);
+                int days = (int) (month.plusMonths(monthsBox.getValue()).atDay(1).toEpochDay() - from.toEpochDay());
+                loadHistoryFor(from, days);
+                grid.setRange(from, days);
+                statusLabel.setText("");
+            } catch (DateTimeParseException ex) {
+                statusLabel.setText("Tarkista kuukausi");
+            }
+        };
+        Consumer<Integer> shift = months -> {
+            try {
+                YearMonth month = YearMonth.parse(monthField.getText().trim(), MONTH_FORMAT);
+                monthField.setText(month.plusMonths(months).format(MONTH_FORMAT));
+            } catch (DateTimeParseException ex) {
+                // Näkymä kertoo virheellisestä kuukaudesta
+            }
+            show.run();
+        };
+        showButton.setOnAction(e -> show.run());
+        monthsBox.setOnAction(e -> show.run());
+        previousButton.setOnAction(e -> shift.accept(-1));
+        nextButton.setOnAction(e -> shift.accept(1));
+
+        // Muiden sovellusten ja omat muutokset näkyvät ruudukossa dialogin ollessa auki
+        InvalidationListener redraw = observable -> grid.requestLayout();
+        bookingList.addListener(redraw);
+        cottageList.addListener(redraw);
+        calendarDialog.setOnHidden(e -> {
+            bookingList.removeListener(redraw);
+            cottageList.removeListener(redraw);
+        });
+        show.run();
+
+        return calendarDialog;
+    }
+
+    /**
+     * Luo dialogin, joka näyttää valitun vuoden käyttöasteen mökeittäin, kaikkien mökkien
+     * paikkakäyttöasteen ja kiireisimmät viikot. Mökit ja viikot voi viedä CSV-tiedostoihin.
+     *
+     * @param owner ikkuna, jonka päälle tiedostovalitsin avataan
+     * @return dialogi käyttöasteesta
+     */
+    private Dialog<Void> createOccupancyDialog(Stage owner) {
+        Dialog<Void> occupancyDialog = new Dialog<>();
+        occupancyDialog.setTitle("Käyttöaste");
+
+        // Luo ruudukko dialogin sisällölle
+        GridPane grid = new GridPane();
+        grid.setAlignment(Pos.CENTER);
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 10, 10, 10));
+
+        TextField yearField = new TextField(String.valueOf(LocalDate.now().getYear()));
+        yearField.setPromptText("Vuosi");
+        Button showButton = new Button("Näytä");
+        Button exportCottagesButton = new Button("Vie mökit CSV");
+        Button exportWeeksButton = new Button("Vie viikot CSV");
+        Label statusLabel = new Label();
+        ListView<String> cottagesView = new ListView<>();
+        ListView<String> weeksView = new ListView<>();
+        cottagesView.setPrefSize(380, 250);
+        weeksView.setPrefSize(220, 250);
+
+        // Lisää elementit ruudukkoon
+        grid.add(new Label("Vuosi:"), 0, 0);
+        grid.add(new HBox(10, yearField, showButton, exportCottagesButton, exportWeeksButton), 1, 0, 2, 1);
+        grid.add(statusLabel, 1, 1, 2, 1);
+        grid.add(new Label("Mökit"), 1, 2);
+        grid.add(new Label("Kiireisimmät viikot"), 2, 2);
+        grid.add(cottagesView, 1, 3);
+        grid.add(weeksView, 2, 3);
+        occupancyDialog.getDialogPane().setContent(grid);
+        occupancyDialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        // Päivittää listat vuosikentän vuodelle
+        Runnable show = () -> {
+            try {
+                int year = Integer.parseInt(yearField.getText().trim());
+                // Vuoden alussa päättyvät varaukset ovat voineet alkaa edellisenä vuonna
+                loadArchivedYears(List.of(year - 1, year));
+                cottagesView.getItems().setAll(occupancyStats.cottageOccupancy(cottageList, year).stream()
+                        .map(o -> String.format("%s: %d yötä, %.1f %%, %d paikkayötä",
+                                o.cottage().getName(), o.nights(), 100 * o.occupancyRate(), o.capacityNights()))
+                        .toList());
+                weeksView.getItems().setAll(occupancyStats.busiestWeeks(year, 10).stream()
+                        .map(w -> w.label() + " (" + w.monday().format(DATE_FORMAT) + "): " + w.nights() + " yötä")
+                        .toList());
+                statusLabel.setText(String.format("Paikkakäyttöaste %.1f %%", 100 * occupancyStats.capacityUtilization(cottageList, year)));
+            } catch (NumberFormatException | DateTimeException ex) {
+                statusLabel.setText("Tarkista vuosi");
+                cottagesView.getItems().clear();
+                weeksView.getItems().clear();
+            }
+        };
+        showButton.setOnAction(e -> show.run());
+        exportCottagesButton.setOnAction(e -> exportOccupancy(owner, yearField, "kayttoaste", statusLabel,
+                (file, year) -> occupancyStats.writeCottageCsv(file, new ArrayList<>(cottageList), year)));
+        exportWeeksButton.setOnAction(e -> exportOccupancy(owner, yearField, "viikot", statusLabel,
+                (file, year) -> occupancyStats.writeWeekCsv(file, year)));
+        show.run();
+
+        return occupancyDialog;
+    }
+
+    /**
+     * Näyttää valinnan arkiston vuosista, joita ei ole vielä luettu, ja lukee valitun vuoden
+     * varaukset taulukkoon.
+     */
+    private void showHistoryChoice() {
+        List<Integer> years = archivedYears.stream().filter(year -> !loadedYears.contains(year)).toList();
+        if (years.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Historia");
+            alert.setHeaderText(null);
+            alert.setContentText("Kaikki arkistoidut vuodet on jo luettu.");
+            alert.showAndWait();
+            return;
         }
+        ChoiceDialog<Integer> choiceDialog = new ChoiceDialog<>(years.get(years.size() - 1), years);
+        choiceDialog.setTitle("Historia");
+        choiceDialog.setHeaderText("Lue arkistoidut varaukset");
+        choiceDialog.setContentText("Vuosi:");
+        choiceDialog.showAndWait().ifPresent(year -> loadArchivedYears(List.of(year)));
     }
 
     /**
-     * Lue varaukset tiedostosta ja lisää ne bookingList-olioon. Jos tiedoston lukemisessa
-     * ilmenee ongelmia, tulostetaan virheilmoitus.
+     * Lukee arkistoidut varaukset vuosilta, joille annettu jakso voi osua, jos jakso alkaa ennen
+     * aktiivista jaksoa. Edellinen vuosi luetaan mukaan, koska sen lopussa alkanut varaus voi
+     * jatkua seuraavalle vuodelle.
+     *
+     * @param startDate jakson alkamispäivämäärä
+     * @param days      jakson pituus päivissä
      */
-    private void readBookingsFile() {
-        try (BufferedReader br = new BufferedReader(new FileReader(BOOKINGS_FILE))) {
-            // Tyhjennä varauslista
-            bookingList.clear();
-            String line;
-            // Käy läpi tiedoston rivit ja luo Booking-olio jokaisesta rivistä
-            while ((line = br.readLine()) != null) {
-                bookingList.add(Booking.fromFileString(line, cottageList));
+    private void loadHistoryFor(LocalDate startDate, int days) {
+        LocalDate activeFrom = bookingFiles.getActiveFrom();
+        if (!startDate.isBefore(activeFrom)) {
+            return;
+        }
+        int lastYear = Math.min(startDate.plusDays(Math.max(days, 0)).getYear(), activeFrom.getYear());
+        List<Integer> years = new ArrayList<>();
+        for (int year = startDate.getYear() - 1; year <= lastYear; year++) {
+            years.add(year);
+        }
+        loadArchivedYears(years);
+    }
+
+    /**
+     * Lukee annettujen vuosien arkistoidut varaukset bookingList-olioon, jos niitä ei ole vielä
+     * luettu. Vuoden tiedosto on pakattu ja pieni, joten se luetaan suoraan JavaFX-säikeessä.
+     * Jos lukemisessa ilmenee ongelmia, tulostetaan virheilmoitus.
+     *
+     * @param years luettavat vuodet
+     */
+    private void loadArchivedYears(List<Integer> years) {
+        for (int year : years) {
+            if (!archivedYears.contains(year) || !loadedYears.add(year)) {
+                continue;
+            }
+            try {
+                List<Booking> bookings = bookingFiles.getArchive().load(year, cottageRegistry);
+                archivedBookings.addAll(bookings);
+                bookingList.addAll(bookings);
+            } catch (IOException e) {
+                System.out.println("Virhe arkiston lukemisessa: " + e.getMessage());
+                loadedYears.remove(year);
             }
+        }
+    }
+
+    /**
+     * Luo diagnostiikkadialogin, joka näyttää suorituskykymittarit: tiedostojen lukemisen keston
+     * ja nopeuden, kirjoitetut tavut, tallennusten viiveen prosenttipisteet ja varausten kirjaamisen
+     * viiveen. Päivitä-painike lukee mittarit uudelleen.
+     *
+     * @return diagnostiikkadialogi
+     */
+    private Dialog<Void> createDiagnosticsDialog() {
+        Dialog<Void> diagnosticsDialog = new Dialog<>();
+        diagnosticsDialog.setTitle("Diagnostiikka");
+
+        TextArea metricsArea = new TextArea(Metrics.dump());
+        metricsArea.setEditable(false);
+        metricsArea.setFont(Font.font("Monospaced", 12));
+        metricsArea.setPrefSize(800, 400);
+        Button refreshButton = new Button("Päivitä");
+        refreshButton.setOnAction(e -> metricsArea.setText(Metrics.dump()));
+
+        VBox content = new VBox(10, refreshButton, metricsArea);
+        content.setPadding(new Insets(10));
+        diagnosticsDialog.getDialogPane().setContent(content);
+        diagnosticsDialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        return diagnosticsDialog;
+    }
+
+    /**
+     * Kirjoittaa käyttöasteraportin CSV-tiedostoon, jonka käyttäjä valitsee.
+     */
+    private void exportOccupancy(Stage owner, TextField yearField, String prefix, Label statusLabel, CsvExport export) {
+        int year;
+        try {
+            year = Integer.parseInt(yearField.getText().trim());
+        } catch (NumberFormatException ex) {
+            statusLabel.setText("Tarkista vuosi");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName(prefix + "-" + year + ".csv");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) {
+            return;
+        }
+        try {
+            export.write(file.toPath(), year);
+            statusLabel.setText("Tallennettu " + file.getName());
+        } catch (IOException | DateTimeException ex) {
+            System.out.println("Virhe raportin tallentamisessa: " + ex.getMessage());
+            statusLabel.setText("Tallentaminen epäonnistui");
+        }
+    }
+
+    /**
+     * Tuo varaukset käyttäjän valitsemasta tiedostosta taustalla. Rivit tarkistetaan taustalla,
+     * ja jokainen tarkistettu erä tallennetaan JavaFX-säikeessä ennen kuin seuraavaa luetaan
+     * pidemmälle, joten tuonti etenee käyttöliittymän tahdissa. Hylätyt rivit kirjoitetaan
+     * tiedoston viereen, ja niiden määrä ilmoitetaan lopuksi.
+     *
+     * @param owner       ikkuna, jonka päälle tiedostovalitsin avataan
+     * @param statusLabel näyttää tuonnin edistymisen
+     */
+    private void importBookings(Stage owner, Label statusLabel) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Tuo varauksia");
+        chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Varaukset", "*.txt", "*.csv"),
+                new FileChooser.ExtensionFilter("Kaikki tiedostot", "*.*"));
+        File file = chooser.showOpenDialog(owner);
+        if (file == null) {
+            return;
+        }
+        Path input = file.toPath();
+        Path rejectsFile = BookingImport.defaultRejectsFile(input);
+        // Rivit tarkistetaan taustalla, joten niitä varten tehdään mökkihakemistosta kopio
+        BookingImport bookingImport = new BookingImport(new CottageRegistry(cottageList),
+                batch -> callOnFxThread(() -> commitImported(batch)));
+        Task<BookingImport.Result> importTask = new Task<>() {
+            @Override
+            protected BookingImport.Result call() throws IOException {
+                return bookingImport.run(input, rejectsFile, progress -> updateMessage("Tuodaan: "
+                        + progress.imported() + " tuotu, " + progress.rejected() + " hylätty"));
+            }
+        };
+        statusLabel.textProperty().bind(importTask.messageProperty());
+        importTask.setOnSucceeded(e -> {
+            statusLabel.textProperty().unbind();
+            BookingImport.Result result = importTask.getValue();
+            statusLabel.setText("Tuotu " + result.imported() + " varausta");
+            if (result.rejected() > 0) {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Tuo varauksia");
+                alert.setHeaderText("Tuotu " + result.imported() + " varausta, hylätty " + result.rejected() + " riviä");
+                alert.setContentText("Hylätyt rivit ja syyt on kirjoitettu tiedostoon " + rejectsFile
+                        + ". Korjatun tiedoston voi tuoda uudelleen.");
+                alert.show();
+            }
+        });
+        importTask.setOnFailed(e -> {
+            statusLabel.textProperty().unbind();
+            System.out.println("Virhe varausten tuonnissa: " + importTask.getException().getMessage());
+            statusLabel.setText("Tuonti epäonnistui");
+        });
+        Thread.ofVirtual().name("booking-import").start(importTask);
+    }
+
+    /**
+     * Tallentaa tuodun erän varaukset: lisää ne bookingList-olioon ja kirjaa journaliin yhdellä
+     * kirjoituksella. Varaus hylätään, jos se osuu mökin olemassa olevan tai saman erän aiemman
+     * varauksen päälle tai jos sen mökki on poistettu tuonnin aikana. Tarkistus tehdään journalin
+     * lukon alla muiden sovellusten kirjaamien varausten lukemisen jälkeen.
+     *
+     * @param batch tarkistetut varaukset
+     * @return hylätyt varaukset ja niiden kanssa päällekkäiset varaukset; poistetun mökin varauksella lista on tyhjä
+     */
+    private Map<Booking, List<Booking>> commitImported(List<Booking> batch) {
+        LocalDate first = batch.stream().map(Booking::getStartDate).min(LocalDate::compareTo).orElse(LocalDate.MAX);
+        loadHistoryFor(first, (int) Math.max(0, ChronoUnit.DAYS.between(first, bookingFiles.getActiveFrom())));
+        Map<Booking, List<Booking>> rejected = new LinkedHashMap<>();
+        bookingJournal.commit(cottageRegistry, this::activeBookings, changes -> {
+            applyBookingChanges(changes);
+            // Saman erän varaukset tarkistetaan toisiaan vasten omassa hakemistossaan ennen lisäämistä
+            AvailabilityIndex batchIndex = new AvailabilityIndex(new QueryCache(0));
+            List<Booking> accepted = new ArrayList<>(batch.size());
+            for (Booking booking : batch) {
+                Cottage cottage = booking.getCottage();
+                if (cottageRegistry.findById(cottage.getId()) != cottage) {
+                    rejected.put(booking, List.of());
+                    continue;
+                }
+                List<Booking> conflicts = availabilityIndex.findConflicts(cottage, booking.getStartDate(), booking.getDays());
+                if (conflicts.isEmpty()) {
+                    conflicts = batchIndex.tryAdd(booking);
+                }
+                if (conflicts.isEmpty()) {
+                    accepted.add(booking);
+                } else {
+                    rejected.put(booking, conflicts);
+                }
+            }
+            bookingList.addAll(accepted);
+            return accepted.stream().map(booking -> new BookingJournal.Change(true, booking)).toList();
+        });
+        compactBookingsIfNeeded();
+        return rejected;
+    }
+
+    /**
+     * Vie kaikki varaukset käyttäjän valitsemaan CSV-tiedostoon taustalla: ensin arkistoidut
+     * varaukset vuosi kerrallaan ja sitten aktiiviset varaukset sivu kerrallaan JavaFX-säikeestä
+     * kopioiden, joten varauslistasta ei tehdä kokonaista kopiota.
+     *
+     * @param owner       ikkuna, jonka päälle tiedostovalitsin avataan
+     * @param statusLabel näyttää viennin tuloksen
+     */
+    private void exportBookingsCsv(Stage owner, Label statusLabel) {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName("varaukset.csv");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) {
+            return;
+        }
+        CottageRegistry cottages = new CottageRegistry(cottageList);
+        // Arkistosta luetut varaukset kirjoitetaan arkiston mukana, joten ne ohitetaan listasta
+        Set<Booking> archived = Collections.newSetFromMap(new IdentityHashMap<>());
+        archived.addAll(archivedBookings);
+        List<Integer> years = new ArrayList<>(archivedYears);
+        Task<Long> exportTask = new Task<>() {
+            @Override
+            protected Long call() throws IOException {
+                Stream<Booking> history = years.stream().flatMap(year -> {
+                    try {
+                        return bookingFiles.getArchive().load(year, cottages).stream();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                Stream<Booking> active = BookingExport.paged((offset, limit) -> callOnFxThread(() ->
+                        new ArrayList<>(bookingList.subList(Math.min(offset, bookingList.size()),
+                                Math.min(offset + limit, bookingList.size())))))
+                        .filter(booking -> !archived.contains(booking));
+                try {
+                    return BookingExport.writeCsv(file.toPath(), Stream.concat(history, active));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        statusLabel.setText("Viedään...");
+        exportTask.setOnSucceeded(e -> statusLabel.setText("Viety " + exportTask.getValue() + " varausta"));
+        exportTask.setOnFailed(e -> {
+            System.out.println("Virhe varausten viennissä: " + exportTask.getException().getMessage());
+            statusLabel.setText("Vienti epäonnistui");
+        });
+        Thread.ofVirtual().name("booking-export").start(exportTask);
+    }
+
+    /**
+     * Vie mökin aktiiviset varaukset käyttäjän valitsemaan iCalendar-tiedostoon, jonka voi tuoda
+     * kalenterisovellukseen.
+     *
+     * @param owner       ikkuna, jonka päälle tiedostovalitsin avataan
+     * @param cottage     mökki, jonka varaukset viedään
+     * @param statusLabel näyttää viennin tuloksen
+     */
+    private void exportCottageICalendar(Stage owner, Cottage cottage, Label statusLabel) {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialFileName(BookingExport.iCalendarFileName(cottage));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("iCalendar", "*.ics"));
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) {
+            return;
+        }
+        try {
+            long count = BookingExport.writeICalendar(file.toPath(), cottage, activeBookingsOf(cottage).stream());
+            statusLabel.setText("Viety " + count + " varausta");
         } catch (IOException e) {
-            // Tulosta virheilmoitus, jos tiedoston lukemisessa ilmenee ongelmia
-            System.out.println("Virhe varaukset.txt-tiedoston lukemisessa: " + e.getMessage());
+            System.out.println("Virhe kalenterin tallentamisessa: " + e.getMessage());
+            statusLabel.setText("Vienti epäonnistui");
         }
     }
 
     /**
-     * Tallenna cottageList-olion sisältämät mökit tiedostoon. Jos tiedoston kirjoittamisessa
-     * ilmenee ongelmia, tulostetaan virheilmoitus.
+     * Suorittaa tehtävän JavaFX-säikeessä ja odottaa sen tulosta. Kutsutaan taustasäikeestä.
+     *
+     * @param call tehtävä
+     * @param <T>  tulos
+     * @return tehtävän tulos
      */
-    private void saveCottagesToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(COTTAGES_FILE))) {
-            // Käy läpi mökkilista ja kirjoita jokainen mökki tiedostoon
-            for (Cottage cottage : cottageList) {
-                bw.write(cottage.toFileString());
-                bw.newLine();
+    private static <T> T callOnFxThread(Callable<T> call) {
+        FutureTask<T> task = new FutureTask<>(call);
+        Platform.runLater(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Keskeytettiin");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Käyttöasteraportin CSV-vienti.
+     */
+    private interface CsvExport {
+        void write(Path file, int year) throws IOException;
+    }
+
+    /**
+     * Näyttää ilmoituksen varauksesta, jonka tietoja ei voi hyväksyä.
+     *
+     * @param message ilmoituksen teksti
+     */
+    private static void showInvalidBookingAlert(String message) {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Virheellinen varaus");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    /**
+     * Näyttää ilmoituksen, kun uusi varaus osuisi mökin olemassa olevien varausten päälle.
+     * Ilmoitus listaa päällekkäiset varaukset ja ehdottaa seuraavaa vapaata alkamispäivää.
+     *
+     * @param cottage    mökki, jota yritettiin varata
+     * @param conflicts  päällekkäiset varaukset
+     * @param nextFree   seuraava päivä, josta alkaen mökki on vapaana halutun ajan
+     */
+    private void showBookingConflictAlert(Cottage cottage, List<Booking> conflicts, LocalDate nextFree) {
+        StringBuilder content = new StringBuilder("Päällekkäiset varaukset:\n");
+        for (Booking conflict : conflicts) {
+            content.append(conflict.getCustomerName()).append(", ")
+                    .append(conflict.getStartDate().format(DATE_FORMAT)).append(", ")
+                    .append(conflict.getDays()).append(" pv\n");
+        }
+        content.append("\nSeuraava vapaa jakso alkaa ").append(nextFree.format(DATE_FORMAT)).append(".");
+
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Lisää varaus");
+        alert.setHeaderText("Mökki " + cottage.getName() + " on jo varattu valituille päiville");
+        alert.setContentText(content.toString());
+        alert.showAndWait();
+    }
+
+    /**
+     * Luo taustatehtävän, joka lukee mökit ja varaukset tiedostoista ja julkaisee ne
+     * cottageList- ja bookingList-olioihin suurina erinä JavaFX-säikeessä. Tehtävä laskee
+     * lopuksi käyttöasteraportin summat luetuista varauksista rinnakkain.
+     *
+     * @return tehtävä, joka ajetaan JavaFX-säikeen ulkopuolella
+     */
+    private Task<OccupancyStats> createLoadTask() {
+        return new Task<>() {
+            @Override
+            protected OccupancyStats call() {
+                long start = System.nanoTime();
+                BinarySnapshot.Contents contents = bookingFiles.load(this::updateMessage);
+                Platform.runLater(() -> cottageList.setAll(contents.cottages()));
+                publishBookings(contents.bookings(), this::updateProgress);
+                updateMessage("Lasketaan käyttöastetta...");
+                OccupancyStats stats = OccupancyStats.compute(contents.bookings());
+                Metrics.recordSince("startup.load", start);
+                updateMessage("Valmis");
+                return stats;
+            }
+        };
+    }
+
+    /**
+     * Lisää luetut varaukset bookingList-olioon JavaFX-säikeessä LOAD_BATCH_SIZE varauksen
+     * erissä, jotta lista ei laukaise muutostapahtumaa jokaisesta rivistä.
+     *
+     * @param bookings luetut varaukset
+     * @param progress saa julkaistujen ja kaikkien varausten määrän jokaisen erän jälkeen
+     */
+    private void publishBookings(List<Booking> bookings, BiConsumer<Long, Long> progress) {
+        for (int from = 0; from < bookings.size(); from += LOAD_BATCH_SIZE) {
+            int to = Math.min(from + LOAD_BATCH_SIZE, bookings.size());
+            publishBookings(bookings.subList(from, to));
+            progress.accept((long) to, (long) bookings.size());
+        }
+    }
+
+    /**
+     * Lisää luetut varaukset bookingList-olioon yhdellä muutoksella JavaFX-säikeessä.
+     *
+     * @param batch lisättävät varaukset
+     */
+    private void publishBookings(List<Booking> batch) {
+        if (!batch.isEmpty()) {
+            Platform.runLater(() -> bookingList.addAll(batch));
+        }
+    }
+
+    /**
+     * Aloittaa mökki- ja varaustiedostojen seuraamisen. Kun toinen samaa hakemistoa käyttävä
+     * sovellus muuttaa niitä, muutokset luetaan JavaFX-säikeessä. Jos seuraamista ei voida
+     * aloittaa, tulostetaan virheilmoitus ja sovellus toimii ilman sitä.
+     */
+    private void startWatchingFiles() {
+        try {
+            dataFileWatcher = new DataFileWatcher(bookingFiles.getWatchedFiles(), () -> {
+                // Useampi ilmoitus ennen lukemista luetaan kerralla
+                if (syncScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(this::syncFromFiles);
+                }
+            });
         } catch (IOException e) {
-            // Tulosta virheilmoitus, jos tiedoston kirjoittamisessa ilmenee ongelmia
-            System.out.println("Virhe cottages.txt-tiedoston kirjoittamisessa: " + e.getMessage());
+            System.out.println("Virhe tiedostojen seuraamisen aloittamisessa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lukee muiden sovellusten tekemät mökkien ja varausten lisäykset, muutokset ja poistot ja
+     * tekee ne cottageList- ja bookingList-olioihin. Mökit luetaan ensin, jotta uusien varausten
+     * mökit löytyvät. Poistetun mökin varaukset poistetaan vain täältä, koska toinen sovellus on
+     * jo kirjannut niiden poiston journaliin ja poistanut arkistoidut varaukset arkistosta.
+     */
+    private void syncFromFiles() {
+        syncScheduled.set(false);
+        BookingFiles.CottageChanges cottageChanges = bookingFiles.readCottageChanges();
+        for (int id : cottageChanges.removed()) {
+            Cottage cottage = cottageRegistry.findById(id);
+            if (cottage != null) {
+                removeBookings(activeBookingsOf(cottage));
+                removeArchivedBookingsOf(cottage);
+                cottageList.remove(cottage);
+            }
+        }
+        for (Cottage updated : cottageChanges.updated()) {
+            Cottage cottage = cottageRegistry.findById(updated.getId());
+            int index = cottage == null ? -1 : cottageList.indexOf(cottage);
+            if (index >= 0) {
+                cottageList.remove(index);
+                cottage.setName(updated.getName());
+                cottage.setSize(updated.getSize());
+                cottage.setCapacity(updated.getCapacity());
+                cottageList.add(index, cottage);
+            }
+        }
+        if (!cottageChanges.updated().isEmpty()) {
+            refreshBookingRows();
+        }
+        cottageList.addAll(cottageChanges.added());
+
+        applyBookingChanges(bookingJournal.poll(cottageRegistry, this::activeBookings));
+        compactBookingsIfNeeded();
+    }
+
+    /**
+     * Tekee muiden sovellusten journaliin kirjaamat varausten lisäykset ja poistot bookingList-olioon.
+     * Lisäys, joka osuu mökin olemassa olevan varauksen päälle, on kirjoitettu ilman tarkistusta; se
+     * ohitetaan ja siitä kerrotaan, eikä seuraava tiivistys kirjoita sitä varaustiedostoon.
+     *
+     * @param changes muutokset kirjoitusjärjestyksessä
+     */
+    private void applyBookingChanges(List<BookingJournal.Change> changes) {
+        for (BookingJournal.Change change : changes) {
+            Booking booking = change.booking();
+            if (change.added()) {
+                Cottage cottage = booking.getCottage();
+                if (cottage != null && !availabilityIndex.findConflicts(cottage, booking.getStartDate(), booking.getDays()).isEmpty()) {
+                    System.out.println("Toisen sovelluksen päällekkäinen varaus ohitettiin: " + booking.toFileString());
+                    Metrics.increment("journal.conflicts", 1);
+                    continue;
+                }
+                bookingList.add(booking);
+            } else if (booking.getCottage() != null) {
+                // Poistettava varaus on sama olio kuin taulukossa oleva vain, jos se luettiin samasta rivistä
+                String line = booking.toFileString();
+                dateIndex.arrivals(booking.getStartDate()).stream()
+                        .filter(candidate -> !archivedBookings.contains(candidate) && candidate.toFileString().equals(line))
+                        .findFirst()
+                        .ifPresent(bookingList::remove);
+            }
         }
     }
 
     /**
-     * Tallenna bookingList-olion sisältämät varaukset tiedostoon. Jos tiedoston kirjoittamisessa
-     * ilmenee ongelmia, tulostetaan virheilmoitus.
+     * Palauttaa mökin varaukset ilman arkistosta luettuja. Varaukset haetaan mökin
+     * saatavuushakemistosta, joten koko varauslistaa ei käydä läpi.
+     *
+     * @param cottage mökki
+     * @return mökin aktiiviset varaukset alkamispäivän mukaisessa järjestyksessä
+     */
+    private List<Booking> activeBookingsOf(Cottage cottage) {
+        List<Booking> bookings = new ArrayList<>();
+        for (Booking booking : availabilityIndex.bookingsOf(cottage)) {
+            if (!archivedBookings.contains(booking)) {
+                bookings.add(booking);
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * Poistaa poistetun mökin arkistosta luetut varaukset bookingList-oliosta. Arkistosta ne
+     * poistaa {@link BookingFiles#removeCottage(Cottage)}.
+     *
+     * @param cottage poistettu mökki
+     */
+    private void removeArchivedBookingsOf(Cottage cottage) {
+        List<Booking> archived = new ArrayList<>();
+        for (Booking booking : availabilityIndex.bookingsOf(cottage)) {
+            if (archivedBookings.contains(booking)) {
+                archived.add(booking);
+            }
+        }
+        removeBookings(archived);
+        archived.forEach(archivedBookings::remove);
+    }
+
+    /**
+     * Poistaa annetut varaukset bookingList-oliosta yhdellä läpikäynnillä. Poistoja ei kirjata journaliin.
+     *
+     * @param bookings poistettavat varaukset
+     */
+    private void removeBookings(List<Booking> bookings) {
+        if (!bookings.isEmpty()) {
+            Set<Booking> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            removed.addAll(bookings);
+            bookingList.removeAll(removed);
+        }
+    }
+
+    /**
+     * Muodostaa varaustaulukon rivit uudelleen, kun varausten näytettävät tiedot, kuten mökin nimi, ovat muuttuneet.
+     */
+    private void refreshBookingRows() {
+        if (bookingTableView == null) {
+            return;
+        }
+        bookingRows.invalidate();
+        if (bookingTableView.getItems() instanceof PagedDisplayList<?, ?> rows) {
+            rows.invalidate();
+        }
+        bookingTableView.refresh();
+    }
+
+    /**
+     * Tallenna bookingList-olion sisältämät varaukset tiedostoon. Tiedosto kirjoitetaan
+     * taustalla varausjournalin tiivistyksenä, joten metodi palaa heti.
      */
     private void saveBookingsToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(BOOKINGS_FILE))) {
-            // Käy läpi varauslista ja kirjoita jokainen varaus tiedostoon
-            for (Booking booking : bookingList) {
-                bw.write(booking.toFileString());
-                bw.newLine();
+        // Kopioi lista tässä säikeessä, jotta se vastaa journaliin kirjattuja muutoksia
+        bookingJournal.compact(activeBookings());
+    }
+
+    /**
+     * @return kopio bookingList-olion varauksista ilman arkistosta luettuja, jotka pysyvät arkistossa
+     */
+    private List<Booking> activeBookings() {
+        List<Booking> bookings = new ArrayList<>(bookingList.size());
+        for (Booking booking : bookingList) {
+            if (!archivedBookings.contains(booking)) {
+                bookings.add(booking);
             }
-        } catch (IOException e) {
-            // Tulosta virheilmoitus, jos tiedoston kirjoittamisessa ilmenee ongelmia
-            System.out.println("Virhe varaukset.txt-tiedoston kirjoittamisessa: " + e.getMessage());
+        }
+        return bookings;
+    }
+
+    /**
+     * Tiivistä varausjournal varaustiedostoon, jos siihen on kertynyt riittävästi muutoksia.
+     */
+    private void compactBookingsIfNeeded() {
+        if (bookingJournal.shouldCompact()) {
+            saveBookingsToFile();
         }
     }
 }
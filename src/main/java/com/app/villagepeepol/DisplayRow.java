@@ -0,0 +1,69 @@
+package com.app.villagepeepol;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+/**
+ * DisplayRow on taulukon rivin muuttumaton näyttöarvo: alkuperäinen olio ja sen sarakkeiden
+ * tekstit valmiiksi muotoiltuina. Rivi toimii itse solun arvona, joten solun piirtäminen ei
+ * luo uusia olioita.
+ *
+ * @param <S> olio, jonka tiedot rivillä näytetään
+ */
+public class DisplayRow<S> implements ObservableValue<DisplayRow<S>> {
+    private final S source;
+    private final String[] texts;
+
+    /**
+     * Luo rivin annetulle oliolle.
+     *
+     * @param source olio, jonka tiedot rivillä näytetään
+     * @param texts  sarakkeiden tekstit järjestyksessä
+     */
+    public DisplayRow(S source, String... texts) {
+        this.source = source;
+        this.texts = texts;
+    }
+
+    /**
+     * @return olio, jonka tiedot rivillä näytetään
+     */
+    public S getSource() {
+        return source;
+    }
+
+    /**
+     * @param column sarakkeen järjestysnumero
+     * @return sarakkeen teksti
+     */
+    public String getText(int column) {
+        return texts[column];
+    }
+
+    /**
+     * @return tämä rivi; arvo ei koskaan muutu
+     */
+    @Override
+    public DisplayRow<S> getValue() {
+        return this;
+    }
+
+    // Arvo ei muutu, joten kuuntelijoita ei tarvitse säilyttää
+
+    @Override
+    public void addListener(ChangeListener<? super DisplayRow<S>> listener) {
+    }
+
+    @Override
+    public void removeListener(ChangeListener<? super DisplayRow<S>> listener) {
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+    }
+
+    @Override
+    public void removeListener(InvalidationListener listener) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.app.villagepeepol;
+
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.Metrics;
+import com.app.villagepeepol.core.OccupancyCalendar;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * OccupancyGrid näyttää mökit riveinä ja jakson päivät sarakkeina, ja jokainen ruutu kertoo,
+ * onko mökin yö varattu. Ruudukko piirretään kankaalle vain siltä osin kuin se näkyy, ja rivin
+ * päivät luetaan {@link OccupancyCalendar}-kalenterista yhdellä haulla, joten piirtäminen ja
+ * vierittäminen eivät riipu mökkien, päivien tai varausten kokonaismäärästä.
+ * <p>
+ * Mökkien nimet pysyvät vasemmassa reunassa ja päivät yläreunassa vieritettäessä.
+ */
+public class OccupancyGrid extends Region {
+    private static final double CELL_WIDTH = 22;
+    private static final double CELL_HEIGHT = 20;
+    private static final double NAME_WIDTH = 160;
+    private static final double HEADER_HEIGHT = 36;
+    private static final Color BOOKED = Color.rgb(205, 92, 92);
+    private static final Color FREE = Color.rgb(232, 245, 233);
+    private static final Color FREE_WEEKEND = Color.rgb(210, 232, 212);
+    private static final Color CORNER = Color.WHITE;
+    private static final Color HEADER = Color.rgb(245, 245, 245);
+
+    private final OccupancyCalendar calendar;
+    private final List<Cottage> cottages;
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar horizontal = new ScrollBar();
+    private final ScrollBar vertical = new ScrollBar();
+    private LocalDate from = LocalDate.now().withDayOfMonth(1);
+    private int days = from.lengthOfMonth();
+
+    /**
+     * Luo ruudukon.
+     *
+     * @param calendar kalenteri, josta varatut yöt luetaan
+     * @param cottages näytettävät mökit; lista luetaan jokaisella piirtokerralla
+     */
+    public OccupancyGrid(OccupancyCalendar calendar, List<Cottage> cottages) {
+        this.calendar = calendar;
+        this.cottages = cottages;
+        vertical.setOrientation(Orientation.VERTICAL);
+        horizontal.valueProperty().addListener((observable, oldValue, newValue) -> redraw());
+        vertical.valueProperty().addListener((observable, oldValue, newValue) -> redraw());
+        setOnScroll(event -> {
+            ScrollBar bar = event.isShiftDown() || event.getDeltaX() != 0 ? horizontal : vertical;
+            double delta = bar == horizontal && event.getDeltaX() != 0 ? event.getDeltaX() : event.getDeltaY();
+            bar.setValue(Math.max(bar.getMin(), Math.min(bar.getMax(), bar.getValue() - delta)));
+        });
+        getChildren().addAll(canvas, horizontal, vertical);
+    }
+
+    /**
+     * Vaihtaa näytettävän jakson ja vierittää sen alkuun.
+     *
+     * @param from ensimmäinen päivä
+     * @param days päivien määrä
+     */
+    public void setRange(LocalDate from, int days) {
+        this.from = from;
+        this.days = days;
+        horizontal.setValue(0);
+        requestLayout();
+        redraw();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double barWidth = vertical.prefWidth(-1);
+        double barHeight = horizontal.prefHeight(-1);
+        double width = Math.max(0, getWidth() - barWidth);
+        double height = Math.max(0, getHeight() - barHeight);
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        horizontal.resizeRelocate(0, height, width, barHeight);
+        vertical.resizeRelocate(width, 0, barWidth, height);
+        updateScrollBar(horizontal, days * CELL_WIDTH, width - NAME_WIDTH);
+        updateScrollBar(vertical, cottages.size() * CELL_HEIGHT, height - HEADER_HEIGHT);
+        redraw();
+    }
+
+    private static void updateScrollBar(ScrollBar bar, double content, double visible) {
+        double max = Math.max(0, content - Math.max(0, visible));
+        bar.setMax(max);
+        bar.setVisibleAmount(Math.max(0, visible));
+        bar.setUnitIncrement(CELL_HEIGHT);
+        bar.setBlockIncrement(Math.max(CELL_HEIGHT, visible));
+        bar.setValue(Math.min(bar.getValue(), max));
+    }
+
+    /**
+     * Piirtää näkyvän osan ruudukosta uudelleen. Kutsutaan, kun varaukset tai mökit muuttuvat.
+     */
+    public void redraw() {
+        long start = System.nanoTime();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        g.clearRect(0, 0, width, height);
+        g.setFont(Font.font(11));
+        g.setTextBaseline(VPos.CENTER);
+
+        // Näkyvät sarakkeet ja rivit vierityksen mukaan
+        int firstDay = (int) (horizontal.getValue() / CELL_WIDTH);
+        int lastDay = Math.min(days, (int) Math.ceil((horizontal.getValue() + width - NAME_WIDTH) / CELL_WIDTH));
+        int firstRow = (int) (vertical.getValue() / CELL_HEIGHT);
+        int lastRow = Math.min(cottages.size(), (int) Math.ceil((vertical.getValue() + height - HEADER_HEIGHT) / CELL_HEIGHT));
+        double offsetX = NAME_WIDTH - horizontal.getValue();
+        double offsetY = HEADER_HEIGHT - vertical.getValue();
+        LocalDate firstDate = from.plusDays(firstDay);
+        int visibleDays = Math.max(0, lastDay - firstDay);
+
+        // Ruudut: rivin varatut yöt luetaan kerralla kalenterista
+        for (int row = firstRow; row < lastRow; row++) {
+            double y = offsetY + row * CELL_HEIGHT;
+            BitSet nights = calendar.bookedNights(cottages.get(row), firstDate, visibleDays);
+            LocalDate date = firstDate;
+            for (int day = firstDay; day < lastDay; day++) {
+                boolean weekend = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
+                g.setFill(nights.get(day - firstDay) ? BOOKED : weekend ? FREE_WEEKEND : FREE);
+                g.fillRect(offsetX + day * CELL_WIDTH, y, CELL_WIDTH - 1, CELL_HEIGHT - 1);
+                date = date.plusDays(1);
+            }
+        }
+
+        // Päiväotsikot ja kuukauden vaihtuminen
+        g.setFill(HEADER);
+        g.fillRect(NAME_WIDTH, 0, width - NAME_WIDTH, HEADER_HEIGHT);
+        g.setTextAlign(TextAlignment.CENTER);
+        LocalDate date = firstDate;
+        for (int day = firstDay; day < lastDay; day++) {
+            double x = offsetX + day * CELL_WIDTH;
+            g.setFill(Color.BLACK);
+            if (date.getDayOfMonth() == 1 || day == firstDay) {
+                g.setTextAlign(TextAlignment.LEFT);
+                g.fillText(date.getMonthValue() + "/" + date.getYear(), Math.max(x, NAME_WIDTH) + 2, HEADER_HEIGHT / 4);
+                g.setTextAlign(TextAlignment.CENTER);
+            }
+            g.fillText(Integer.toString(date.getDayOfMonth()), x + CELL_WIDTH / 2, HEADER_HEIGHT * 3 / 4);
+            date = date.plusDays(1);
+        }
+
+        // Mökkien nimet
+        g.setFill(HEADER);
+        g.fillRect(0, HEADER_HEIGHT, NAME_WIDTH, height - HEADER_HEIGHT);
+        g.setFill(Color.BLACK);
+        g.setTextAlign(TextAlignment.LEFT);
+        for (int row = firstRow; row < lastRow; row++) {
+            g.fillText(cottages.get(row).getName(), 4, offsetY + row * CELL_HEIGHT + CELL_HEIGHT / 2, NAME_WIDTH - 8);
+        }
+        g.setFill(CORNER);
+        g.fillRect(0, 0, NAME_WIDTH, HEADER_HEIGHT);
+        Metrics.recordSince("calendar.render", start);
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return NAME_WIDTH + CELL_WIDTH * 31 + vertical.prefWidth(-1);
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return HEADER_HEIGHT + CELL_HEIGHT * 20 + horizontal.prefHeight(-1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.app.villagepeepol;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * PagedDisplayList on lähdelistan näkymä, joka muuntaa lähteen oliot näyttöriveiksi vasta,
+ * kun taulukko pyytää niitä. Muunnetut rivit säilytetään sivuina, ja vain viimeksi käytetyt
+ * sivut pidetään muistissa, joten näyttörivien muistinkäyttö pysyy samana lähdelistan koosta
+ * riippumatta. Lähdelistan oliot ovat silti kaikki muistissa.
+ * <p>
+ * Näkymän indeksit vastaavat suoraan lähdelistan indeksejä. Näkymää ei voi muokata,
+ * vaan muutokset tehdään lähdelistaan.
+ *
+ * @param <S> lähdelistan olio
+ * @param <R> näyttörivi
+ */
+public class PagedDisplayList<S, R> extends TransformationList<R, S> {
+    static final int PAGE_SIZE = 256;
+    static final int MAX_PAGES = 64;
+
+    private final Function<? super S, ? extends R> mapper;
+    private final Map<Integer, Object[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * Luo näkymän annetun listan päälle.
+     *
+     * @param source lähdelista
+     * @param mapper muuntaa lähteen olion näyttöriviksi
+     */
+    public PagedDisplayList(ObservableList<? extends S> source, Function<? super S, ? extends R> mapper) {
+        super(source);
+        this.mapper = mapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public R get(int index) {
+        Objects.checkIndex(index, size());
+        Object[] page = pages.computeIfAbsent(index / PAGE_SIZE, k -> new Object[PAGE_SIZE]);
+        R row = (R) page[index % PAGE_SIZE];
+        if (row == null) {
+            row = mapper.apply(getSource().get(index));
+            page[index % PAGE_SIZE] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Unohtaa kaikki muodostetut rivit, jotta ne muodostetaan uudelleen lähteen olioiden
+     * muuttuneista tiedoista. Taulukko on päivitettävä tämän jälkeen, jotta näkyvät rivit haetaan uudelleen.
+     */
+    public void invalidate() {
+        pages.clear();
+    }
+
+    @Override
+    public int size() {
+        return getSource().size();
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        return index;
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        return index;
+    }
+
+    @Override
+    protected void sourceChanged(ListChangeListener.Change<? extends S> change) {
+        beginChange();
+        while (change.next()) {
+            int from = change.getFrom();
+            if (change.wasPermutated()) {
+                int[] permutation = new int[change.getTo() - from];
+                for (int i = from; i < change.getTo(); i++) {
+                    permutation[i - from] = change.getPermutation(i);
+                }
+                invalidateFrom(from);
+                nextPermutation(from, change.getTo(), permutation);
+            } else if (change.wasUpdated()) {
+                invalidateFrom(from);
+                for (int i = from; i < change.getTo(); i++) {
+                    nextUpdate(i);
+                }
+            } else {
+                if (change.wasRemoved()) {
+                    nextRemove(from, removedRows(from, change.getRemoved()));
+                }
+                // Korvatut oliot eivät siirrä muita rivejä, joten vain niiden rivit unohdetaan
+                if (change.wasReplaced() && change.getRemovedSize() == change.getAddedSize()) {
+                    invalidate(from, change.getTo());
+                } else {
+                    invalidateFrom(from);
+                }
+                if (change.wasAdded()) {
+                    nextAdd(from, change.getTo());
+                }
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Palauttaa poistettujen olioiden rivit: välimuistissa olevat sellaisenaan ja muut
+     * muunnettuina vasta, kun niitä pyydetään.
+     */
+    @SuppressWarnings("unchecked")
+    private List<R> removedRows(int from, List<? extends S> removed) {
+        Object[] rows = new Object[removed.size()];
+        for (int i = 0; i < rows.length; i++) {
+            Object[] page = pages.get((from + i) / PAGE_SIZE);
+            rows[i] = page == null ? null : page[(from + i) % PAGE_SIZE];
+        }
+        return new AbstractList<>() {
+            @Override
+            public R get(int index) {
+                if (rows[index] == null) {
+                    rows[index] = mapper.apply(removed.get(index));
+                }
+                return (R) rows[index];
+            }
+
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+
+    /**
+     * Unohtaa rivit välillä [from, to). Sivut säilyvät välimuistissa.
+     */
+    private void invalidate(int from, int to) {
+        for (int index = from; index < to; index++) {
+            Object[] page = pages.get(index / PAGE_SIZE);
+            if (page != null) {
+                page[index % PAGE_SIZE] = null;
+            }
+        }
+    }
+
+    /**
+     * Unohtaa sivut annetusta indeksistä eteenpäin, koska niiden rivien indeksit ovat muuttuneet.
+     */
+    private void invalidateFrom(int index) {
+        int firstPage = index / PAGE_SIZE;
+        pages.keySet().removeIf(page -> page >= firstPage);
+    }
+}
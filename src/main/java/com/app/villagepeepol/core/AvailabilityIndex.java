@@ -0,0 +1,262 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AvailabilityIndex pitää jokaiselle mökille järjestetyn hakemiston sen varauksista
+ * puoliavoimina väleinä [alkamispäivä, alkamispäivä + päivät).
+ * <p>
+ * Välit on järjestetty alkamispäivän mukaan, ja jokaiselle mökille pidetään kirjaa sen
+ * pisimmästä varauksesta. Päällekkäisyyden tarkistus katsoo siksi vain ne varaukset, jotka
+ * alkavat pisimmän varauksen mittaisessa ikkunassa ennen haettua väliä, eikä koko varauslistaa.
+ * <p>
+ * Hakemistoa voi käyttää useasta säikeestä. Jokaisella mökillä on oma lukkonsa, joten eri
+ * mökkien käsittely ei koskaan odota toisiaan, ja saman mökin käsittelyt tapahtuvat yksi
+ * kerrallaan. {@link #tryAdd(Booking)} tarkistaa päällekkäisyydet ja lisää varauksen saman
+ * lukon sisällä, joten kaksi samanaikaista varausta ei voi osua samoille päiville.
+ * <p>
+ * Vapaiden jaksojen haun tulokset pidetään {@link QueryCache}-välimuistissa. Hakemisto unohtaa
+ * välimuistista ne tulokset, joihin lisätty tai poistettu varaus vaikuttaa.
+ */
+public class AvailabilityIndex {
+    private final Map<Cottage, Schedule> schedules = new ConcurrentHashMap<>();
+    private final QueryCache cache;
+
+    /**
+     * Vapaan jakson haun avain välimuistissa.
+     */
+    private record FreeWindowKey(Cottage cottage, LocalDate from, int days) {
+    }
+
+    /**
+     * Luo tyhjän hakemiston, jonka välimuistin koko luetaan järjestelmäominaisuudesta.
+     */
+    public AvailabilityIndex() {
+        this(new QueryCache());
+    }
+
+    /**
+     * Luo tyhjän hakemiston.
+     *
+     * @param cache välimuisti hakemiston ja sitä käyttävien hakujen tuloksille
+     */
+    public AvailabilityIndex(QueryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return välimuisti, jonka tuloksista hakemisto unohtaa varausten muutosten koskemat
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Lisää varauksen hakemistoon.
+     *
+     * @param booking lisättävä varaus
+     */
+    public void add(Booking booking) {
+        if (booking.getCottage() == null) {
+            return;
+        }
+        schedules.computeIfAbsent(booking.getCottage(), c -> new Schedule()).add(booking);
+        cache.invalidate(booking);
+    }
+
+    /**
+     * Lisää varauksen hakemistoon vain, jos mikään saman mökin varaus ei osu sen päiville.
+     * Tarkistus ja lisäys tehdään mökin lukon sisällä yhtenä toimenpiteenä.
+     *
+     * @param booking lisättävä varaus
+     * @return päällekkäiset varaukset; tyhjä lista, jos varaus lisättiin
+     */
+    public List<Booking> tryAdd(Booking booking) {
+        if (booking.getCottage() == null) {
+            return List.of();
+        }
+        List<Booking> conflicts = schedules.computeIfAbsent(booking.getCottage(), c -> new Schedule()).tryAdd(booking);
+        if (conflicts.isEmpty()) {
+            cache.invalidate(booking);
+        }
+        return conflicts;
+    }
+
+    /**
+     * Poistaa varauksen hakemistosta.
+     *
+     * @param booking poistettava varaus
+     */
+    public void remove(Booking booking) {
+        Schedule schedule = schedules.get(booking.getCottage());
+        if (schedule != null) {
+            schedule.remove(booking);
+            cache.invalidate(booking);
+        }
+    }
+
+    /**
+     * Tyhjentää hakemiston.
+     */
+    public void clear() {
+        schedules.clear();
+        cache.clear();
+    }
+
+    /**
+     * Tarkistaa, onko mökki vapaana koko annetun jakson.
+     *
+     * @param cottage   tarkistettava mökki
+     * @param startDate jakson ensimmäinen päivä
+     * @param days      jakson pituus päivissä
+     * @return true, jos mikään mökin varaus ei osu jaksolle
+     */
+    public boolean isAvailable(Cottage cottage, LocalDate startDate, int days) {
+        Schedule schedule = schedules.get(cottage);
+        return schedule == null || schedule.firstConflict(startDate.toEpochDay(), startDate.toEpochDay() + days) == null;
+    }
+
+    /**
+     * Palauttaa kaikki mökin varaukset, jotka osuvat annetulle jaksolle.
+     *
+     * @param cottage   tarkistettava mökki
+     * @param startDate jakson ensimmäinen päivä
+     * @param days      jakson pituus päivissä
+     * @return päällekkäiset varaukset alkamispäivän mukaisessa järjestyksessä
+     */
+    public List<Booking> findConflicts(Cottage cottage, LocalDate startDate, int days) {
+        Schedule schedule = schedules.get(cottage);
+        if (schedule == null) {
+            return List.of();
+        }
+        return schedule.conflicts(startDate.toEpochDay(), startDate.toEpochDay() + days);
+    }
+
+    /**
+     * Palauttaa mökin kaikki varaukset. Hakemisto pitää varaukset mökeittäin, joten haku käy
+     * läpi vain tämän mökin varaukset.
+     *
+     * @param cottage mökki
+     * @return mökin varaukset alkamispäivän mukaisessa järjestyksessä
+     */
+    public List<Booking> bookingsOf(Cottage cottage) {
+        Schedule schedule = schedules.get(cottage);
+        return schedule == null ? List.of() : schedule.all();
+    }
+
+    /**
+     * Etsii ensimmäisen vähintään annetun pituisen vapaan jakson, joka alkaa aikaisintaan annettuna päivänä.
+     * Tulos pysyy välimuistissa, kunnes mökille lisätään tai siltä poistetaan varaus, joka osuu
+     * haun alun ja löydetyn jakson lopun väliin.
+     *
+     * @param cottage mökki, jolle vapaata jaksoa etsitään
+     * @param from    aikaisin sallittu alkamispäivä
+     * @param days    jakson pituus päivissä
+     * @return vapaan jakson ensimmäinen päivä
+     */
+    public LocalDate nextFreeWindow(Cottage cottage, LocalDate from, int days) {
+        return cache.get(new FreeWindowKey(cottage, from, days), cottage, from.toEpochDay(),
+                (LocalDate free) -> free.toEpochDay() + days, () -> {
+                    Schedule schedule = schedules.get(cottage);
+                    if (schedule == null) {
+                        return from;
+                    }
+                    return LocalDate.ofEpochDay(schedule.nextFreeWindow(from.toEpochDay(), days));
+                });
+    }
+
+    /**
+     * Yhden mökin varaukset alkamispäivän mukaan järjestettynä. Olio toimii myös mökin lukkona.
+     */
+    private static class Schedule {
+        private final TreeMap<Long, List<Booking>> byStart = new TreeMap<>();
+        // Pisin mökille koskaan lisätty varaus; rajaa taaksepäin katsottavan ikkunan
+        private int maxDays;
+
+        synchronized void add(Booking booking) {
+            byStart.computeIfAbsent(booking.getStartDate().toEpochDay(), k -> new ArrayList<>(1)).add(booking);
+            maxDays = Math.max(maxDays, booking.getDays());
+        }
+
+        synchronized List<Booking> tryAdd(Booking booking) {
+            long start = booking.getStartDate().toEpochDay();
+            List<Booking> conflicts = conflicts(start, start + booking.getDays());
+            if (conflicts.isEmpty()) {
+                add(booking);
+            }
+            return conflicts;
+        }
+
+        synchronized void remove(Booking booking) {
+            long start = booking.getStartDate().toEpochDay();
+            List<Booking> bookings = byStart.get(start);
+            if (bookings != null) {
+                bookings.remove(booking);
+                if (bookings.isEmpty()) {
+                    byStart.remove(start);
+                }
+            }
+        }
+
+        /**
+         * @return varaukset, jotka voivat osua väliin [start, end) eli alkavat ennen välin loppua
+         * ja aikaisintaan pisimmän varauksen verran ennen välin alkua
+         */
+        private Collection<List<Booking>> candidates(long start, long end) {
+            if (start - maxDays + 1 > end) {
+                return List.of();
+            }
+            return byStart.subMap(start - maxDays + 1, true, end, false).values();
+        }
+
+        synchronized Booking firstConflict(long start, long end) {
+            for (List<Booking> bookings : candidates(start, end)) {
+                for (Booking booking : bookings) {
+                    if (endOf(booking) > start) {
+                        return booking;
+                    }
+                }
+            }
+            return null;
+        }
+
+        synchronized List<Booking> conflicts(long start, long end) {
+            List<Booking> result = new ArrayList<>();
+            for (List<Booking> bookings : candidates(start, end)) {
+                for (Booking booking : bookings) {
+                    if (endOf(booking) > start) {
+                        result.add(booking);
+                    }
+                }
+            }
+            return result;
+        }
+
+        synchronized List<Booking> all() {
+            List<Booking> result = new ArrayList<>();
+            byStart.values().forEach(result::addAll);
+            return result;
+        }
+
+        synchronized long nextFreeWindow(long from, int days) {
+            long candidate = from;
+            for (List<Booking> bookings : byStart.tailMap(from - maxDays + 1, true).values()) {
+                for (Booking booking : bookings) {
+                    long bookingStart = booking.getStartDate().toEpochDay();
+                    if (bookingStart >= candidate + days) {
+                        // Varaukset ovat alkamispäivän mukaisessa järjestyksessä, joten väli on vapaa
+                        return candidate;
+                    }
+                    candidate = Math.max(candidate, endOf(booking));
+                }
+            }
+            return candidate;
+        }
+
+        private static long endOf(Booking booking) {
+            return booking.getStartDate().toEpochDay() + booking.getDays();
+        }
+    }
+}
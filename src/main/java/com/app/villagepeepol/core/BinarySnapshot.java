@@ -0,0 +1,293 @@
+package com.app.villagepeepol.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * BinarySnapshot lukee ja kirjoittaa mökit ja varaukset binäärimuodossa, joka voidaan
+ * lukea muistiin kuvattuna ilman tekstin jäsentämistä.
+ * <p>
+ * Tiedosto alkaa otsikolla, jossa on tunniste, versio, tekstitiedostojen koko ja muokkausaika
+ * vientihetkellä, tietueiden määrät ja rungon CRC32-tarkistussumma. Runko sisältää
+ * merkkijonotaulun (mökkien ja asiakkaiden nimet kerran kukin) sekä kiinteän mittaiset
+ * mökki- ja varaustietueet. Varaus viittaa mökkitietueeseen sen järjestysnumerolla; jos varauksen
+ * mökkiä ei löytynyt, tietueeseen tallennetaan tiedoston mökkikenttä merkkijonotaulusta. Tekstitiedostot ovat edelleen muokattava alkuperäinen lähde:
+ * binääritiedostoa käytetään vain, jos tekstitiedostot eivät ole muuttuneet sen viennin jälkeen.
+ */
+public class BinarySnapshot {
+    private static final int MAGIC = 0x56505331;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 60;
+    // Mökkitietue: tunniste, nimen indeksi, koko ja kapasiteetti
+    private static final int COTTAGE_RECORD_SIZE = 16;
+    // Varaustietue: mökin indeksi (tai -2 - mökkikentän indeksi), asiakkaan nimen indeksi, alkamispäivä ja kesto
+    private static final int BOOKING_RECORD_SIZE = 14;
+
+    /**
+     * Binääritiedoston sisältö.
+     *
+     * @param cottages mökit tiedoston järjestyksessä
+     * @param bookings varaukset tiedoston järjestyksessä
+     */
+    public record Contents(List<Cottage> cottages, List<Booking> bookings) {
+    }
+
+    /**
+     * Tekstitiedoston koko ja muokkausaika, joista tunnistetaan, onko tiedosto muuttunut.
+     *
+     * @param size     tiedoston koko tavuina
+     * @param modified muokkausaika millisekunteina
+     */
+    public record FileStamp(long size, long modified) {
+        /**
+         * @param file tiedosto
+         * @return tiedoston koko ja muokkausaika, tai (-1, -1), jos tiedostoa ei ole
+         */
+        public static FileStamp of(Path file) {
+            try {
+                return new FileStamp(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                return new FileStamp(-1, -1);
+            }
+        }
+    }
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Lukee binääritiedoston, jos se on olemassa ja vastaa tekstitiedostojen nykyistä tilaa.
+     *
+     * @param file         binääritiedosto
+     * @param cottagesFile mökkitekstitiedosto
+     * @param bookingsFile varaustekstitiedosto
+     * @return tiedoston sisältö, tai null, jos tiedostoa ei ole, se on vanhaa versiota tai tekstitiedostot ovat muuttuneet
+     * @throws IOException jos tiedosto on olemassa mutta rikkinäinen tai sen lukeminen epäonnistuu
+     */
+    public static Contents readIfCurrent(Path file, Path cottagesFile, Path bookingsFile) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Vanhan version tiedosto viedään uudelleen tekstitiedostoista
+            ByteBuffer version = ByteBuffer.allocate(8);
+            if (channel.read(version, 0) == 8 && version.getInt(0) == MAGIC && version.getInt(4) != VERSION) {
+                return null;
+            }
+            MappedByteBuffer buffer = map(channel);
+            FileStamp cottagesStamp = new FileStamp(buffer.getLong(8), buffer.getLong(16));
+            FileStamp bookingsStamp = new FileStamp(buffer.getLong(24), buffer.getLong(32));
+            if (!cottagesStamp.equals(FileStamp.of(cottagesFile)) || !bookingsStamp.equals(FileStamp.of(bookingsFile))) {
+                return null;
+            }
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Lukee binääritiedoston riippumatta tekstitiedostojen tilasta.
+     *
+     * @param file binääritiedosto
+     * @return tiedoston sisältö
+     * @throws IOException jos tiedosto on rikkinäinen tai sen lukeminen epäonnistuu
+     */
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(map(channel));
+        }
+    }
+
+    /**
+     * Kirjoittaa mökit ja varaukset binääritiedostoon väliaikaistiedoston ja atomisen
+     * uudelleennimeämisen kautta.
+     *
+     * @param file          binääritiedosto
+     * @param cottages      mökit
+     * @param bookings      varaukset
+     * @param cottagesStamp mökkitekstitiedoston tila ennen kuin mökit luettiin siitä
+     * @param bookingsStamp varaustekstitiedoston tila ennen kuin varaukset luettiin siitä
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public static void write(Path file, List<Cottage> cottages, List<Booking> bookings,
+                             FileStamp cottagesStamp, FileStamp bookingsStamp) throws IOException {
+        // Kokoa merkkijonotaulu: jokainen nimi kerran
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        Map<Cottage, Integer> cottageIndexes = new IdentityHashMap<>();
+        for (Cottage cottage : cottages) {
+            cottageIndexes.putIfAbsent(cottage, cottageIndexes.size());
+            intern(cottage.getName(), stringIndexes, strings);
+        }
+        for (Booking booking : bookings) {
+            intern(booking.getCustomerName(), stringIndexes, strings);
+            if (!cottageIndexes.containsKey(booking.getCottage())) {
+                intern(cottageKeyOf(booking), stringIndexes, strings);
+            }
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile())) {
+            // Otsikko kirjoitetaan loppuun, kun rungon tarkistussumma on tiedossa
+            out.write(new byte[HEADER_SIZE]);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, crc), 1 << 16));
+            int offset = 0;
+            for (byte[] string : strings) {
+                data.writeInt(offset);
+                offset += string.length;
+            }
+            data.writeInt(offset);
+            for (byte[] string : strings) {
+                data.write(string);
+            }
+            for (Cottage cottage : cottages) {
+                data.writeInt(cottage.getId());
+                data.writeInt(stringIndexes.get(cottage.getName()));
+                data.writeInt(cottage.getSize());
+                data.writeInt(cottage.getCapacity());
+            }
+            for (Booking booking : bookings) {
+                if (booking.getDays() < Short.MIN_VALUE || booking.getDays() > Short.MAX_VALUE) {
+                    throw new IOException("Varauksen kesto ei mahdu binääritiedostoon: " + booking.getDays());
+                }
+                Integer cottageIndex = cottageIndexes.get(booking.getCottage());
+                data.writeInt(cottageIndex != null ? cottageIndex : -2 - stringIndexes.get(cottageKeyOf(booking)));
+                data.writeInt(stringIndexes.get(booking.getCustomerName()));
+                data.writeInt(Math.toIntExact(booking.getStartDate().toEpochDay()));
+                data.writeShort(booking.getDays());
+            }
+            data.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putLong(cottagesStamp.size()).putLong(cottagesStamp.modified())
+                    .putLong(bookingsStamp.size()).putLong(bookingsStamp.modified())
+                    .putInt(strings.size()).putInt(cottages.size()).putInt(bookings.size())
+                    .putLong(crc.getValue());
+            header.flip();
+            out.getChannel().write(header, 0);
+            out.getFD().sync();
+        }
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Vie tekstitiedostot binääritiedostoon tai tuo binääritiedoston takaisin tekstitiedostoiksi.
+     * <p>
+     * Käyttö: {@code export <cottages.txt> <varaukset.txt> <snapshot.bin>} tai
+     * {@code import <snapshot.bin> <cottages.txt> <varaukset.txt>}
+     *
+     * @param args komento ja tiedostopolut
+     * @throws IOException jos tiedostojen lukeminen tai kirjoittaminen epäonnistuu
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("export")) {
+            Path cottagesFile = Paths.get(args[1]);
+            Path bookingsFile = Paths.get(args[2]);
+            FileStamp cottagesStamp = FileStamp.of(cottagesFile);
+            FileStamp bookingsStamp = FileStamp.of(bookingsFile);
+            MappedFileParser parser = new MappedFileParser();
+            List<Cottage> cottages = parser.parseCottages(cottagesFile);
+            List<Booking> bookings = parser.parseBookings(bookingsFile, new CottageRegistry(cottages));
+            write(Paths.get(args[3]), cottages, bookings, cottagesStamp, bookingsStamp);
+            System.out.println("Vietiin " + cottages.size() + " mökkiä ja " + bookings.size() + " varausta");
+        } else if (args.length == 4 && args[0].equals("import")) {
+            Contents contents = read(Paths.get(args[1]));
+            TextFiles.writeCottages(Paths.get(args[2]), contents.cottages());
+            TextFiles.writeBookings(Paths.get(args[3]), contents.bookings());
+            System.out.println("Tuotiin " + contents.cottages().size() + " mökkiä ja " + contents.bookings().size() + " varausta");
+        } else {
+            System.out.println("Käyttö: export <cottages.txt> <varaukset.txt> <snapshot.bin>");
+            System.out.println("        import <snapshot.bin> <cottages.txt> <varaukset.txt>");
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            throw new IOException("Binääritiedoston koko ei kelpaa: " + size);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Tiedosto ei ole mökkivarausjärjestelmän binääritiedosto");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Binääritiedoston versiota " + buffer.getInt(4) + " ei tueta");
+        }
+        return buffer;
+    }
+
+    private static Contents decode(MappedByteBuffer buffer) throws IOException {
+        int stringCount = buffer.getInt(40);
+        int cottageCount = buffer.getInt(44);
+        int bookingCount = buffer.getInt(48);
+        long checksum = buffer.getLong(52);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, buffer.limit() - HEADER_SIZE));
+        if (crc.getValue() != checksum) {
+            throw new IOException("Binääritiedoston tarkistussumma ei täsmää");
+        }
+
+        // Merkkijonotaulu: siirtymät ja niiden perässä nimet UTF-8-tavuina
+        int offsets = HEADER_SIZE;
+        int blob = offsets + (stringCount + 1) * Integer.BYTES;
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            int start = buffer.getInt(offsets + i * Integer.BYTES);
+            int end = buffer.getInt(offsets + (i + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            buffer.get(blob + start, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int position = blob + buffer.getInt(offsets + stringCount * Integer.BYTES);
+        List<Cottage> cottages = new ArrayList<>(cottageCount);
+        for (int i = 0; i < cottageCount; i++, position += COTTAGE_RECORD_SIZE) {
+            cottages.add(new Cottage(buffer.getInt(position), strings[buffer.getInt(position + 4)],
+                    buffer.getInt(position + 8), buffer.getInt(position + 12)));
+        }
+        CottageRegistry registry = new CottageRegistry(cottages);
+        if (position + (long) bookingCount * BOOKING_RECORD_SIZE != buffer.limit()) {
+            throw new IOException("Binääritiedoston pituus ei vastaa tietueiden määrää");
+        }
+        List<Booking> bookings = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++, position += BOOKING_RECORD_SIZE) {
+            int cottageIndex = buffer.getInt(position);
+            String customerName = strings[buffer.getInt(position + 4)];
+            LocalDate startDate = LocalDate.ofEpochDay(buffer.getInt(position + 8));
+            int days = buffer.getShort(position + 12);
+            bookings.add(cottageIndex >= 0
+                    ? new Booking(cottages.get(cottageIndex), customerName, startDate, days)
+                    : Booking.of(strings[-2 - cottageIndex], registry, customerName, startDate, days));
+        }
+        return new Contents(cottages, bookings);
+    }
+
+    /**
+     * @return varausrivin mökkikenttä varaukselle, jonka mökki ei ole tiedostossa
+     */
+    private static String cottageKeyOf(Booking booking) {
+        String line = booking.toFileString();
+        return line.substring(0, line.indexOf(';'));
+    }
+
+    private static void intern(String string, Map<String, Integer> indexes, List<byte[]> strings) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
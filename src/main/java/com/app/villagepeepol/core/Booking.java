@@ -0,0 +1,199 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+
+/**
+ * Booking-luokka edustaa mökin varausta.
+ */
+public class Booking {
+    /**
+     * Pisin sallittu varaus päivinä. Kalenteri ja käyttöasteraportti käsittelevät varauksen
+     * jokaisen yön, joten yksikin rajaton varaus jaetussa journalissa pysäyttäisi jokaisen sen
+     * lukevan sovelluksen.
+     */
+    public static final int MAX_DAYS = 365;
+
+    private Cottage cottage;
+    // Tiedoston mökkikenttä silloin, kun mökkiä ei löytynyt; säilytetään, jotta rivi kirjoitetaan ennallaan
+    private String cottageKey;
+    private String customerName;
+    private LocalDate startDate;
+    private int days;
+
+    /**
+     * Luo Booking-olion annetuilla mökillä, asiakkaan nimellä, alkamispäivämäärällä ja päivien määrällä.
+     *
+     * @param cottage      varattu mökki
+     * @param customerName varausta tekevän asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     */
+    public Booking(Cottage cottage, String customerName, LocalDate startDate, int days) {
+        this.cottage = cottage;
+        this.customerName = customerName;
+        this.startDate = startDate;
+        this.days = days;
+    }
+
+    private Booking(Cottage cottage, String cottageKey, String customerName, LocalDate startDate, int days) {
+        this(cottage, customerName, startDate, days);
+        this.cottageKey = cottage == null ? cottageKey : null;
+    }
+
+    /**
+     * Luo varauksen tiedoston kentistä. Mökki haetaan tunnisteella tai vanhan muodon rivillä nimellä.
+     *
+     * @param cottageKey   tiedoston mökkikenttä
+     * @param cottages     hakemisto saatavilla olevista mökeistä
+     * @param customerName varausta tekevän asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     * @return varaus; sen mökki on null, jos mökkiä ei löydy
+     */
+    static Booking of(String cottageKey, CottageRegistry cottages, String customerName, LocalDate startDate, int days) {
+        return new Booking(cottages.resolve(cottageKey), cottageKey, customerName, startDate, days);
+    }
+
+    /**
+     * @return varaukseen liittyvä mökki
+     */
+    public Cottage getCottage() {
+        return cottage;
+    }
+
+    /**
+     * @param cottage asetettava mökki
+     */
+    public void setCottage(Cottage cottage) {
+        this.cottage = cottage;
+    }
+
+    /**
+     * @return varaukseen liittyvän asiakkaan nimi
+     */
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    /**
+     * @param customerName asetettava asiakkaan nimi
+     */
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    /**
+     * @return varauksen alkamispäivämäärä
+     */
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * @param startDate asetettava alkamispäivämäärä
+     */
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * @return varauksen kesto päivissä
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @param days asetettava päivien määrä
+     */
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    /**
+     * Tarkistaa, voiko asiakkaan nimen kirjoittaa varaustiedoston riville: erotinmerkki tai
+     * rivinvaihto nimessä rikkoisi rivin.
+     *
+     * @param customerName asiakkaan nimi
+     * @return true, jos nimi ei ole tyhjä eikä sisällä erotinmerkkiä tai rivinvaihtoa
+     */
+    public static boolean isValidCustomerName(String customerName) {
+        return !customerName.isBlank() && customerName.indexOf(';') < 0
+                && customerName.indexOf('\n') < 0 && customerName.indexOf('\r') < 0;
+    }
+
+    /**
+     * Tarkistaa varauksen keston ennen kuin varaus tehdään.
+     *
+     * @param days varauksen kesto päivissä
+     * @return true, jos kesto on 1–{@value #MAX_DAYS} päivää
+     */
+    public static boolean isValidDays(int days) {
+        return days > 0 && days <= MAX_DAYS;
+    }
+
+    /**
+     * Tarkistaa varauksen keston kuten {@link #isValidDays(int)}.
+     *
+     * @param days varauksen kesto päivissä
+     * @return kesto
+     * @throws IllegalArgumentException jos kesto ei ole 1–{@value #MAX_DAYS} päivää
+     */
+    public static int requireValidDays(int days) {
+        if (!isValidDays(days)) {
+            throw new IllegalArgumentException("Varauksen keston täytyy olla 1–" + MAX_DAYS + " päivää: " + days);
+        }
+        return days;
+    }
+
+    /**
+     * Luo Booking-olion tiedostomerkkijonosta.
+     *
+     * @param fileString tiedostomerkkijono, josta olio luodaan
+     * @param cottages hakemisto saatavilla olevista mökeistä
+     * @return tiedostomerkkijonosta luotu Booking-olio
+     */
+    public static Booking fromFileString(String fileString, CottageRegistry cottages) {
+        String[] parts = fileString.split(";");
+        return of(parts[0], cottages, parts[1], LocalDate.parse(parts[2]), Integer.parseInt(parts[3]));
+    }
+
+    /**
+     * Muuntaa tämän Booking-olion tiedostomerkkijonoksi. Mökki kirjoitetaan tunnisteena, tai nimenä,
+     * jos mökillä ei vielä ole tunnistetta. Jos mökkiä ei löytynyt luettaessa, kirjoitetaan tiedoston
+     * alkuperäinen mökkikenttä.
+     *
+     * @return tämän Booking-olion tiedostomerkkijonoesitys
+     */
+    public String toFileString() {
+        return cottageField() + ";" + customerName + ";" + startDate + ";" + days;
+    }
+
+    private String cottageField() {
+        if (cottage == null) {
+            return cottageKey == null ? "" : cottageKey;
+        }
+        return cottage.getId() > 0 ? Integer.toString(cottage.getId()) : cottage.getName();
+    }
+
+    /**
+     * Muuntaa tiedostorivin nykyiseen muotoon: vanhan muodon rivin mökin nimi vaihdetaan mökin
+     * tunnisteeksi. Rivi palautetaan ennallaan, jos se on jo nykyisessä muodossa, mökkiä ei löydy
+     * tai mökillä ei ole tunnistetta.
+     *
+     * @param line     tiedostorivi
+     * @param cottages hakemisto saatavilla olevista mökeistä
+     * @return rivi nykyisessä muodossa
+     */
+    static String normalize(String line, CottageRegistry cottages) {
+        int separator = line.indexOf(';');
+        if (separator < 0) {
+            return line;
+        }
+        Cottage cottage = cottages.resolve(line.substring(0, separator));
+        if (cottage == null || cottage.getId() == 0 || line.startsWith(cottage.getId() + ";")) {
+            return line;
+        }
+        return cottage.getId() + line.substring(separator);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,261 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * BookingArchive säilyttää päättyneet varaukset vuosittain omissa pakatuissa tiedostoissaan
+ * ({@code varaukset-2023.txt.gz}), jotta varaustiedosto sisältää vain kuluvan kauden varaukset
+ * eikä käynnistys hidastu historian kasvaessa.
+ * <p>
+ * Varaus siirretään arkistoon, kun se on päättynyt ennen aktiivisen jakson alkua, ja se
+ * tallennetaan alkamisvuotensa tiedostoon. Vuoden tiedosto luetaan vasta, kun sitä tarvitaan,
+ * esimerkiksi historiaa selattaessa tai raporttia laskettaessa. Tiedostot kirjoitetaan
+ * {@link PersistenceWriter}-taustakirjoittajalla samalla tavalla atomisesti kuin muutkin tiedostot.
+ * <p>
+ * Arkistoon siirto on turvallinen kaatumisen varalta: varaukset poistetaan varaustiedostosta
+ * vasta, kun vuoden tiedosto on levyllä. Jos ohjelma kaatuu välissä, samat varaukset siirretään
+ * seuraavalla käynnistyksellä uudelleen, ja vuoden tiedostoon jo kuuluvat rivit ohitetaan.
+ * Siksi arkistossa ei voi olla kahta täysin samanlaista varausta.
+ * <p>
+ * Lisäykset ja poistot yhdistetään vuoden tiedoston nykyiseen sisältöön vasta kirjoitettaessa
+ * ({@link PendingLines}), joten useampi samaa hakemistoa käyttävä sovellus voi arkistoida ja
+ * poistaa varauksia yhtä aikaa kadottamatta toistensa muutoksia. Siksi vuoden tiedosto luetaan
+ * aina levyltä eikä sitä pidetä muistissa.
+ */
+public class BookingArchive {
+    private static final String PREFIX = "varaukset-";
+    private static final String SUFFIX = ".txt.gz";
+
+    private final Path directory;
+    private final PersistenceWriter writer;
+    // Vuosien kirjoittamattomat lisäykset ja poistot; suojattu olion lukolla
+    private final Map<Integer, PendingLines> pendingYears = new HashMap<>();
+
+    /**
+     * Luo arkiston annettuun hakemistoon.
+     *
+     * @param directory hakemisto, jossa vuosien tiedostot ovat
+     * @param writer    taustakirjoittaja, joka kirjoittaa vuosien tiedostot
+     */
+    public BookingArchive(Path directory, PersistenceWriter writer) {
+        this.directory = directory;
+        this.writer = writer;
+    }
+
+    /**
+     * @return aktiivisen jakson oletusalku: edellisen vuoden alku, jotta edellinen kausi on
+     * vertailua varten yhä muistissa
+     */
+    public static LocalDate defaultActiveFrom() {
+        return LocalDate.now().minusYears(1).withDayOfYear(1);
+    }
+
+    /**
+     * @return vuodet, joiden varauksia arkistossa on, nousevassa järjestyksessä
+     */
+    public SortedSet<Integer> years() {
+        SortedSet<Integer> years = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.toAbsolutePath(), PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    years.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Muu samannäköinen tiedosto ei kuulu arkistoon
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Virhe arkiston lukemisessa: " + e.getMessage());
+        }
+        return years;
+    }
+
+    /**
+     * @param year vuosi
+     * @return vuoden varaukset sisältävä tiedosto
+     */
+    public Path segmentFile(int year) {
+        return directory.resolve(PREFIX + year + SUFFIX);
+    }
+
+    /**
+     * Lukee vuoden varaukset arkistosta.
+     *
+     * @param year     vuosi
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @return vuonna alkaneet arkistoidut varaukset, tai tyhjä lista, jos vuotta ei ole arkistossa
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public List<Booking> load(int year, CottageRegistry cottages) throws IOException {
+        List<String> lines = readLines(segmentFile(year));
+        synchronized (this) {
+            PendingLines pending = pendingYears.get(year);
+            if (pending != null) {
+                lines = pending.applyTo(lines);
+            }
+        }
+        List<Booking> bookings = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            bookings.add(Booking.fromFileString(line, cottages));
+        }
+        return bookings;
+    }
+
+    /**
+     * Siirtää aktiivista jaksoa ennen päättyneet varaukset arkistoon ja odottaa, että vuosien
+     * tiedostot ovat levyllä. Varaukset, joiden mökkiä ei tunneta, jäävät aktiivisiksi.
+     *
+     * @param bookings   kaikki voimassa olevat varaukset
+     * @param activeFrom aktiivisen jakson ensimmäinen päivä
+     * @return varaukset, jotka jäävät varaustiedostoon, alkuperäisessä järjestyksessä
+     * @throws IOException jos vuoden tiedoston lukeminen tai kirjoittaminen epäonnistuu
+     */
+    public List<Booking> archive(List<Booking> bookings, LocalDate activeFrom) throws IOException {
+        List<Booking> active = new ArrayList<>(bookings.size());
+        Map<Integer, List<String>> archived = new TreeMap<>();
+        for (Booking booking : bookings) {
+            if (booking.getCottage() != null && !booking.getStartDate().plusDays(booking.getDays()).isAfter(activeFrom)) {
+                archived.computeIfAbsent(booking.getStartDate().getYear(), y -> new ArrayList<>()).add(booking.toFileString());
+            } else {
+                active.add(booking);
+            }
+        }
+        if (archived.isEmpty()) {
+            return active;
+        }
+        List<CompletableFuture<Long>> written = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, List<String>> entry : archived.entrySet()) {
+                PendingLines pending = pendingYear(entry.getKey());
+                entry.getValue().forEach(pending::add);
+                written.add(submit(entry.getKey(), pending));
+            }
+        }
+        try {
+            CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new IOException("Varausten arkistointi epäonnistui", e.getCause());
+        }
+        return active;
+    }
+
+    /**
+     * Poistaa varauksen arkistosta. Vuoden tiedosto kirjoitetaan uudelleen taustalla.
+     *
+     * @param booking poistettava arkistoitu varaus
+     */
+    public synchronized void remove(Booking booking) {
+        int year = booking.getStartDate().getYear();
+        PendingLines pending = pendingYear(year);
+        pending.remove(booking.toFileString());
+        submit(year, pending).whenComplete((checksum, error) -> {
+            if (error != null) {
+                System.out.println("Virhe arkistoidun varauksen poistamisessa: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Poistaa arkistosta kaikki mökin varaukset, kun mökki poistetaan. Vuosien tiedostot kirjoitetaan
+     * uudelleen taustalla.
+     *
+     * @param cottage poistettu mökki
+     * @throws IOException jos vuoden tiedoston lukeminen epäonnistuu
+     */
+    public synchronized void removeCottage(Cottage cottage) throws IOException {
+        String prefix = cottage.getId() + ";";
+        for (int year : years()) {
+            PendingLines pending = pendingYear(year);
+            boolean changed = false;
+            for (String line : pending.applyTo(readLines(segmentFile(year)))) {
+                if (line.startsWith(prefix)) {
+                    pending.remove(line);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                submit(year, pending).whenComplete((checksum, error) -> {
+                    if (error != null) {
+                        System.out.println("Virhe arkistoidun varauksen poistamisessa: " + error.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Muuntaa vanhan muodon rivit, joissa varaus viittaa mökin nimeen, viittaamaan mökin tunnisteeseen.
+     * Vuosien tiedostot kirjoitetaan uudelleen taustalla; tuntemattomaan mökkiin viittaavat rivit
+     * jätetään ennalleen.
+     *
+     * @param cottages mökit, joille tunnisteet on annettu; nimi ratkaistaan ennen tunnistetta
+     * @throws IOException jos vuoden tiedoston lukeminen epäonnistuu
+     */
+    public synchronized void migrate(CottageRegistry cottages) throws IOException {
+        for (int year : years()) {
+            PendingLines pending = pendingYear(year);
+            boolean changed = false;
+            for (String line : readLines(segmentFile(year))) {
+                String migrated = Booking.normalize(line, cottages);
+                if (!migrated.equals(line)) {
+                    pending.remove(line);
+                    pending.add(migrated);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                submit(year, pending).whenComplete((checksum, error) -> {
+                    if (error != null) {
+                        System.out.println("Virhe arkiston muuntamisessa: " + error.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    private PendingLines pendingYear(int year) {
+        return pendingYears.computeIfAbsent(year, y -> new PendingLines(true));
+    }
+
+    /**
+     * Kirjoittaa vuoden tiedoston taustalla: nykyinen tiedosto luetaan ja odottavat muutokset
+     * tehdään sen päälle kirjoitushetkellä.
+     */
+    private CompletableFuture<Long> submit(int year, PendingLines pending) {
+        Path file = segmentFile(year);
+        return writer.submitMerged(file, pending.content(() -> readLines(file)))
+                .whenComplete((checksum, error) -> {
+                    if (error == null) {
+                        pending.written();
+                    }
+                });
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Vuotta ei ole vielä arkistoitu
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,39 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * BookingConflictException kertoo, että varausta ei voitu tehdä, koska mökillä on jo
+ * päällekkäisiä varauksia. Poikkeus sisältää päällekkäiset varaukset ja ensimmäisen
+ * vapaan jakson, jotta kutsuja voi ehdottaa toista ajankohtaa.
+ */
+public class BookingConflictException extends Exception {
+    private final List<Booking> conflicts;
+    private final LocalDate nextFree;
+
+    /**
+     * @param cottage   mökki, jota yritettiin varata
+     * @param conflicts päällekkäiset varaukset
+     * @param nextFree  ensimmäinen vapaa yhtä pitkä jakso halutun alkamispäivän jälkeen
+     */
+    public BookingConflictException(Cottage cottage, List<Booking> conflicts, LocalDate nextFree) {
+        super("Mökki " + cottage.getName() + " on jo varattu valitulle ajalle");
+        this.conflicts = List.copyOf(conflicts);
+        this.nextFree = nextFree;
+    }
+
+    /**
+     * @return päällekkäiset varaukset
+     */
+    public List<Booking> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return ensimmäinen vapaa jakso, joka alkaa aikaisintaan halutulla alkamispäivällä
+     */
+    public LocalDate getNextFree() {
+        return nextFree;
+    }
+}
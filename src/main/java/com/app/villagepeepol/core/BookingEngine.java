@@ -0,0 +1,414 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BookingEngine tekee varauksia useasta säikeestä yhtä aikaa niin, ettei samaa mökkiä
+ * voi varata päällekkäin.
+ * <p>
+ * Varaus tehdään kahdessa vaiheessa. Ensin päivät varataan {@link AvailabilityIndex}-hakemistosta
+ * mökin omalla lukolla: eri mökkien varaukset eivät odota toisiaan, ja saman mökin varaukset
+ * käsitellään tiukasti yksi kerrallaan. Sen jälkeen varaus kirjataan journaliin ja varauslistaan
+ * {@link BookingJournal#commit}-metodilla journalin lukon alla. Sama lukitus lukee ensin muiden
+ * samaa hakemistoa käyttävien sovellusten kirjaamat varaukset, joten kaksi sovellusta ei voi
+ * hyväksyä päällekkäisiä päiviä: toisen sovelluksen jo kirjaama varaus voittaa tämän sovelluksen
+ * kirjaamattoman varauksen, ja kirjattujen varausten kanssa päällekkäinen vieras varaus ohitetaan.
+ * <p>
+ * Yhteinen vaihe on lyhyt: muiden sovellusten rivit luetaan vain siitä, mihin edellinen kirjaus
+ * jäi, journal synkronoidaan levylle taustalla ja tiivistys aloitetaan vasta vaiheen jälkeen.
+ * Varausta ennen ei lueta erikseen muiden sovellusten muutoksia. Samaan aikaan odottavat varaukset
+ * kirjataan yhdessä, joten journal lukitaan ja siihen kirjoitetaan kerran ryhmää kohden eikä
+ * jokaista varausta kohden. Journalin ja kirjausjonon lukot ovat tavallisia lukkoja, joten niitä
+ * odottava virtuaalisäie vapauttaa kantosäikeensä.
+ * <p>
+ * Lukot otetaan aina samassa järjestyksessä, ensin kirjausjono, sitten journal ja viimeisenä
+ * varauslista, ja tiivistyksen kopio otetaan journalin lukon sisällä, joten se vastaa täsmälleen
+ * journaliin kirjattuja varauksia.
+ */
+public class BookingEngine {
+    private final AvailabilityIndex availabilityIndex;
+    private final BookingJournal journal;
+    private final CottageRegistry cottages;
+    // Varaukset lisäysjärjestyksessä; perutun varauksen paikalla on null, kunnes lista tiivistetään.
+    // Suojattu omalla lukollaan, samoin kuin paikat ja tyhjien paikkojen määrä
+    private final List<Booking> bookings;
+    // Varausten paikat varauslistassa, jotta peruttu varaus poistetaan käymättä listaa läpi
+    private final Map<Booking, Integer> positions = new IdentityHashMap<>();
+    private int removedCount;
+    // Saatavuushakemistoon lisätyt varaukset, joita ei ole vielä kirjattu journaliin
+    private final Set<Booking> pending = ConcurrentHashMap.newKeySet();
+    // Kirjaamattomat varaukset, jotka toisen sovelluksen kirjaama varaus ohitti, ja ohittaneet varaukset
+    private final Map<Booking, List<Booking>> lost = new ConcurrentHashMap<>();
+    // Kirjausta odottavat varaukset ja lukko, jonka haltija kirjaa ne kaikki kerralla
+    private final Queue<Append> appends = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    /**
+     * Yhden kutsun kirjausta odottavat varaukset ja kirjauksen tulos.
+     */
+    private static class Append {
+        final List<Booking> accepted;
+        final Map<Booking, List<Booking>> overtaken = new LinkedHashMap<>();
+        // Asetetaan ja luetaan kirjauslukon alla
+        boolean done;
+
+        Append(List<Booking> accepted) {
+            this.accepted = accepted;
+        }
+    }
+
+    /**
+     * Luo varausmoottorin valmiiksi luettujen varausten päälle.
+     *
+     * @param availabilityIndex hakemisto, johon annetut varaukset on jo lisätty
+     * @param bookings          voimassa olevat varaukset; moottori omistaa listan tästä eteenpäin
+     * @param journal           journal, johon uudet varaukset kirjataan
+     * @param cottages          hakemisto mökeistä, joihin muiden sovellusten kirjaamat varaukset viittaavat
+     */
+    public BookingEngine(AvailabilityIndex availabilityIndex, List<Booking> bookings, BookingJournal journal,
+                         CottageRegistry cottages) {
+        this.availabilityIndex = availabilityIndex;
+        this.bookings = bookings;
+        for (int i = 0; i < bookings.size(); i++) {
+            positions.put(bookings.get(i), i);
+        }
+        this.journal = journal;
+        this.cottages = cottages;
+    }
+
+    /**
+     * Varaa mökin, jos se on vapaana koko jakson.
+     *
+     * @param cottage      varattava mökki
+     * @param customerName asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     * @return tehty varaus
+     * @throws BookingConflictException jos mökillä on jo päällekkäinen varaus, myös toisen sovelluksen kirjaama
+     */
+    public Booking book(Cottage cottage, String customerName, LocalDate startDate, int days)
+            throws BookingConflictException {
+        PerformanceEvents.BookingCommit event = new PerformanceEvents.BookingCommit();
+        event.begin();
+        long start = System.nanoTime();
+        Booking booking = new Booking(cottage, customerName, startDate, days);
+        // Merkitään kirjaamattomaksi ennen lisäystä, jotta vieras varaus tunnistaa sen aina sellaiseksi
+        pending.add(booking);
+        List<Booking> conflicts = availabilityIndex.tryAdd(booking);
+        if (conflicts.isEmpty()) {
+            conflicts = commit(List.of(booking)).getOrDefault(booking, List.of());
+        } else {
+            pending.remove(booking);
+        }
+        if (!conflicts.isEmpty()) {
+            Metrics.increment("booking.conflicts", 1);
+            throw new BookingConflictException(cottage, conflicts, availabilityIndex.nextFreeWindow(cottage, startDate, days));
+        }
+        compactIfNeeded();
+        Metrics.recordSince("booking.commit", start);
+        event.cottage = cottage.getName();
+        event.source = "engine";
+        event.commit();
+        return booking;
+    }
+
+    /**
+     * Varaa erän varauksia. Jokainen varaus tarkistetaan kuten {@link #book}-metodissa, myös
+     * saman erän aiempia varauksia vasten, mutta onnistuneet varaukset kirjataan journaliin ja
+     * varauslistaan yhdellä kertaa, joten journal lukitaan vain kerran erää kohden.
+     *
+     * @param batch varattavat varaukset
+     * @return varaukset, joita ei voitu tehdä, ja niiden kanssa päällekkäiset varaukset erän järjestyksessä
+     */
+    public Map<Booking, List<Booking>> bookAll(List<Booking> batch) {
+        long start = System.nanoTime();
+        List<Booking> accepted = new ArrayList<>(batch.size());
+        Map<Booking, List<Booking>> rejected = new LinkedHashMap<>();
+        for (Booking booking : batch) {
+            pending.add(booking);
+            List<Booking> conflicts = availabilityIndex.tryAdd(booking);
+            if (conflicts.isEmpty()) {
+                accepted.add(booking);
+            } else {
+                pending.remove(booking);
+                rejected.put(booking, conflicts);
+            }
+        }
+        Map<Booking, List<Booking>> overtaken = commit(accepted);
+        if (!overtaken.isEmpty()) {
+            Map<Booking, List<Booking>> inOrder = new LinkedHashMap<>();
+            for (Booking booking : batch) {
+                List<Booking> conflicts = rejected.containsKey(booking) ? rejected.get(booking) : overtaken.get(booking);
+                if (conflicts != null) {
+                    inOrder.put(booking, conflicts);
+                }
+            }
+            rejected = inOrder;
+        }
+        compactIfNeeded();
+        Metrics.increment("booking.conflicts", rejected.size());
+        Metrics.recordSince("booking.commit.batch", start);
+        return rejected;
+    }
+
+    /**
+     * Peruu varauksen: poistaa sen saatavuushakemistosta ja varauslistasta ja kirjaa poiston
+     * journaliin. Peruttava varaus haetaan mökin saatavuushakemistosta ja poistetaan varauslistasta
+     * sen paikan perusteella, joten kumpikaan ei käy koko varauslistaa läpi.
+     *
+     * @param cottage      mökki
+     * @param customerName asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     * @return peruttu varaus, tai null, jos sellaista varausta ei ole
+     */
+    public Booking cancel(Cottage cottage, String customerName, LocalDate startDate, int days) {
+        long start = System.nanoTime();
+        List<BookingJournal.Change> cancelled = journal.commit(cottages, this::copy, changes -> {
+            apply(changes);
+            Booking found = null;
+            for (Booking booking : availabilityIndex.findConflicts(cottage, startDate, days)) {
+                if (matches(booking, customerName, startDate, days)) {
+                    found = booking;
+                }
+            }
+            if (found == null || !removeBooking(found)) {
+                return List.of();
+            }
+            availabilityIndex.remove(found);
+            return List.of(new BookingJournal.Change(false, found));
+        });
+        if (cancelled.isEmpty()) {
+            return null;
+        }
+        compactIfNeeded();
+        Metrics.recordSince("booking.cancel", start);
+        return cancelled.get(0).booking();
+    }
+
+    /**
+     * Lukee muiden samaa hakemistoa käyttävien sovellusten journaliin kirjaamat varaukset ja
+     * poistot ja tekee ne varauslistaan ja saatavuushakemistoon. Muutokset tehdään journalin
+     * lukossa, jotta tiivistys ei ohita niitä.
+     */
+    public void pollChanges() {
+        journal.poll(cottages, this::copy, this::apply);
+    }
+
+    /**
+     * @return varausten määrä
+     */
+    public int size() {
+        synchronized (bookings) {
+            return positions.size();
+        }
+    }
+
+    /**
+     * Palauttaa sivun varauksia lisäysjärjestyksessä.
+     *
+     * @param offset ensimmäisen palautettavan varauksen kohta
+     * @param limit  palautettavien varausten enimmäismäärä
+     * @return kopio annetun välin varauksista
+     */
+    public List<Booking> getBookings(int offset, int limit) {
+        synchronized (bookings) {
+            compactList();
+            int from = Math.min(Math.max(offset, 0), bookings.size());
+            int to = (int) Math.min((long) from + Math.max(limit, 0), bookings.size());
+            return new ArrayList<>(bookings.subList(from, to));
+        }
+    }
+
+    /**
+     * Kirjaa saatavuushakemistoon jo lisätyt varaukset journaliin ja varauslistaan. Journalin lukon
+     * alla tehdään ensin muiden sovellusten kirjaamat muutokset; jos jokin niistä ohitti annetun
+     * varauksen, sitä ei kirjata.
+     * <p>
+     * Kirjaukset tehdään ryhmissä: kutsu lisää varauksensa jonoon, ja kirjausvuoron saanut säie
+     * kirjaa kaikki jonossa odottavat varaukset yhdellä journalin lukituksella ja kirjoituksella.
+     * Muut odottavat vuoroaan kirjauslukolla, ja niiden varaukset ovat jo kirjattuja, kun vuoro tulee.
+     *
+     * @param accepted kirjaamattomat varaukset
+     * @return ohitetut varaukset ja ne ohittaneet varaukset
+     */
+    private Map<Booking, List<Booking>> commit(List<Booking> accepted) {
+        Append append = new Append(accepted);
+        appends.add(append);
+        appendLock.lock();
+        try {
+            if (!append.done) {
+                List<Append> group = new ArrayList<>();
+                for (Append next = appends.poll(); next != null; next = appends.poll()) {
+                    group.add(next);
+                }
+                try {
+                    commitGroup(group);
+                } finally {
+                    for (Append next : group) {
+                        next.done = true;
+                    }
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        return append.overtaken;
+    }
+
+    private void commitGroup(List<Append> group) {
+        journal.commit(cottages, this::copy, changes -> {
+            apply(changes);
+            List<BookingJournal.Change> own = new ArrayList<>();
+            synchronized (bookings) {
+                for (Append append : group) {
+                    for (Booking booking : append.accepted) {
+                        pending.remove(booking);
+                        List<Booking> conflicts = lost.remove(booking);
+                        if (conflicts != null) {
+                            append.overtaken.put(booking, conflicts);
+                        } else {
+                            addBooking(booking);
+                            own.add(new BookingJournal.Change(true, booking));
+                        }
+                    }
+                }
+            }
+            Metrics.increment("booking.commit.groups", 1);
+            return own;
+        });
+    }
+
+    /**
+     * Tekee muiden sovellusten kirjaamat muutokset. Kutsutaan journalin lukon alla, joten mikään
+     * varaus ei ehdi kirjautua kesken. Vieras varaus on jo journalissa, joten se ohittaa tämän
+     * sovelluksen kirjaamattomat varaukset, jotka poistetaan saatavuushakemistosta. Jos vieras
+     * varaus osuu kirjattuun varaukseen, se on kirjoitettu ilman tarkistusta; se ohitetaan ja
+     * siitä kerrotaan, eikä seuraava tiivistys kirjoita sitä varaustiedostoon.
+     */
+    private void apply(List<BookingJournal.Change> changes) {
+        for (BookingJournal.Change change : changes) {
+            Booking booking = change.booking();
+            if (!change.added()) {
+                removeMatching(booking);
+                continue;
+            }
+            List<Booking> conflicts = availabilityIndex.tryAdd(booking);
+            while (!conflicts.isEmpty() && pending.containsAll(conflicts)) {
+                for (Booking own : conflicts) {
+                    if (pending.remove(own)) {
+                        availabilityIndex.remove(own);
+                        lost.put(own, List.of(booking));
+                    }
+                }
+                conflicts = availabilityIndex.tryAdd(booking);
+            }
+            if (conflicts.isEmpty()) {
+                synchronized (bookings) {
+                    addBooking(booking);
+                }
+            } else {
+                System.out.println("Toisen sovelluksen päällekkäinen varaus ohitettiin: " + booking.toFileString());
+                Metrics.increment("journal.conflicts", 1);
+            }
+        }
+    }
+
+    /**
+     * Poistaa viimeisimmän varauksen, jonka asiakas ja päivät ovat samat kuin annetun varauksen.
+     * Ehdokkaat haetaan mökin saatavuushakemistosta, joten koko varauslistaa ei tarvitse verrata.
+     */
+    private void removeMatching(Booking removed) {
+        if (removed.getCottage() == null) {
+            return;
+        }
+        List<Booking> candidates = availabilityIndex.findConflicts(removed.getCottage(), removed.getStartDate(), removed.getDays());
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Booking booking = candidates.get(i);
+            // Saatavuushakemistossa voi olla arkistoituja ja kirjaamattomia varauksia, jotka eivät ole varauslistassa
+            if (matches(booking, removed.getCustomerName(), removed.getStartDate(), removed.getDays())
+                    && removeBooking(booking)) {
+                availabilityIndex.remove(booking);
+                return;
+            }
+        }
+    }
+
+    private static boolean matches(Booking booking, String customerName, LocalDate startDate, int days) {
+        return booking.getStartDate().equals(startDate) && booking.getDays() == days
+                && booking.getCustomerName().equals(customerName);
+    }
+
+    /**
+     * Lisää varauksen varauslistan loppuun. Kutsutaan varauslistan lukon alla.
+     */
+    private void addBooking(Booking booking) {
+        positions.put(booking, bookings.size());
+        bookings.add(booking);
+    }
+
+    /**
+     * Poistaa varauksen varauslistasta jättämällä sen paikan tyhjäksi.
+     *
+     * @return true, jos varaus oli varauslistassa
+     */
+    private boolean removeBooking(Booking booking) {
+        synchronized (bookings) {
+            Integer position = positions.remove(booking);
+            if (position == null) {
+                return false;
+            }
+            bookings.set(position, null);
+            removedCount++;
+            // Tyhjiä paikkoja saa olla enintään yhtä monta kuin varauksia, joten tiivistys maksaa vakioajan poistoa kohden
+            if (removedCount > positions.size()) {
+                compactList();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Poistaa perumisista jääneet tyhjät paikat varauslistasta. Kutsutaan varauslistan lukon alla.
+     */
+    private void compactList() {
+        if (removedCount == 0) {
+            return;
+        }
+        int to = 0;
+        for (int from = 0; from < bookings.size(); from++) {
+            Booking booking = bookings.get(from);
+            if (booking != null) {
+                bookings.set(to, booking);
+                positions.put(booking, to);
+                to++;
+            }
+        }
+        bookings.subList(to, bookings.size()).clear();
+        removedCount = 0;
+    }
+
+    private List<Booking> copy() {
+        synchronized (bookings) {
+            compactList();
+            return new ArrayList<>(bookings);
+        }
+    }
+
+    /**
+     * Tiivistää journalin, jos siihen on kertynyt riittävästi muutoksia.
+     */
+    public void compactIfNeeded() {
+        journal.compactIfNeeded(this::copy);
+    }
+}
@@ -0,0 +1,240 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * BookingExport kirjoittaa varaukset CSV-tiedostoon tai mökin varaukset iCalendar-kalenteriksi.
+ * Varaukset luetaan sivu kerrallaan ja kirjoitetaan sitä mukaa, joten koko varauslistasta ei
+ * tehdä kopiota muistiin. CSV-tiedoston voi tuoda takaisin {@link BookingImport}-luokalla.
+ * <p>
+ * Komentoriviltä: {@code BookingExport csv <tiedosto> [hakemisto] [mökki]} tai
+ * {@code BookingExport ical <kohdehakemisto> [hakemisto] [mökki]}. CSV-tiedostoon kirjoitetaan
+ * ensin arkistoidut varaukset vuosi kerrallaan ja sitten aktiivisen jakson varaukset. Kalenteri
+ * sisältää aktiivisen jakson varaukset, ja se kirjoitetaan jokaisesta mökistä omaan tiedostoonsa
+ * {@code mokki-<tunniste>.ics}.
+ */
+public class BookingExport {
+    /**
+     * CSV-tiedoston otsikkorivi. Mökki tunnistetaan tuotaessa tunnisteella; nimi on mukana lukijaa varten.
+     */
+    public static final String CSV_HEADER = "tunniste,mokki,asiakas,alkupaiva,paivia";
+    // Kuinka monta varausta luetaan kerralla
+    private static final int PAGE_SIZE = 10_000;
+    private static final DateTimeFormatter ICAL_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter ICAL_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    // iCalendar-rivin enimmäispituus tavuina ennen jatkoriviä
+    private static final int ICAL_LINE_LENGTH = 75;
+
+    private BookingExport() {
+    }
+
+    /**
+     * Varaussivujen lähde, esimerkiksi {@link BookingService#getBookings(int, int)}.
+     */
+    public interface Pages {
+        /**
+         * @param offset ensimmäisen palautettavan varauksen kohta
+         * @param limit  palautettavien varausten enimmäismäärä
+         * @return sivun varaukset; tyhjä lista, kun varauksia ei ole enempää
+         */
+        List<Booking> page(int offset, int limit);
+    }
+
+    /**
+     * Palauttaa varaukset virtana, joka hakee seuraavan sivun vasta, kun edellinen on käsitelty.
+     * Jos varauksia lisätään tai poistetaan luettaessa, varaus voi jäädä pois tai tulla kahdesti.
+     *
+     * @param pages sivujen lähde
+     * @return varaukset lähteen järjestyksessä
+     */
+    public static Stream<Booking> paged(Pages pages) {
+        return Stream.iterate(0, offset -> offset + PAGE_SIZE)
+                .map(offset -> pages.page(offset, PAGE_SIZE))
+                .takeWhile(page -> !page.isEmpty())
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Kirjoittaa varaukset CSV-tiedostoon.
+     *
+     * @param file     kirjoitettava tiedosto
+     * @param bookings kirjoitettavat varaukset; virta käydään läpi kerran
+     * @return kirjoitettujen varausten määrä
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public static long writeCsv(Path file, Stream<Booking> bookings) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            bw.write(CSV_HEADER);
+            bw.newLine();
+            for (Iterator<Booking> it = bookings.iterator(); it.hasNext(); ) {
+                Booking booking = it.next();
+                Cottage cottage = booking.getCottage();
+                if (cottage == null) {
+                    continue;
+                }
+                bw.write(cottage.getId() + "," + csv(cottage.getName()) + "," + csv(booking.getCustomerName())
+                        + "," + booking.getStartDate() + "," + booking.getDays());
+                bw.newLine();
+                count++;
+            }
+        }
+        Metrics.recordSince("export.csv", start);
+        Metrics.increment("export.rows", count);
+        return count;
+    }
+
+    /**
+     * Kirjoittaa mökin varaukset iCalendar-tiedostoon. Jokainen varaus on koko päivän tapahtuma
+     * tulopäivästä lähtöpäivään, ja sen tunniste pysyy samana seuraavissa vienneissä, joten
+     * kalenterisovellus päivittää aiemmin tuodut varaukset.
+     *
+     * @param file     kirjoitettava tiedosto
+     * @param cottage  mökki, jonka kalenteri kirjoitetaan
+     * @param bookings mökin varaukset
+     * @return kirjoitettujen varausten määrä
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public static long writeICalendar(Path file, Cottage cottage, Stream<Booking> bookings) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        String stamp = ICAL_TIMESTAMP.format(Instant.now());
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            icalLine(bw, "BEGIN:VCALENDAR");
+            icalLine(bw, "VERSION:2.0");
+            icalLine(bw, "PRODID:-//VillagePeepol//Mokkivaraukset//FI");
+            icalLine(bw, "CALSCALE:GREGORIAN");
+            icalLine(bw, "X-WR-CALNAME:" + icalText(cottage.getName()));
+            for (Iterator<Booking> it = bookings.iterator(); it.hasNext(); ) {
+                Booking booking = it.next();
+                if (booking.getCottage() != cottage) {
+                    continue;
+                }
+                LocalDate arrival = booking.getStartDate();
+                icalLine(bw, "BEGIN:VEVENT");
+                // Mökillä ei ole päällekkäisiä varauksia, joten mökki ja tulopäivä yksilöivät varauksen
+                icalLine(bw, "UID:mokki-" + cottage.getId() + "-" + arrival + "@villagepeepol");
+                icalLine(bw, "DTSTAMP:" + stamp);
+                icalLine(bw, "DTSTART;VALUE=DATE:" + arrival.format(ICAL_DATE));
+                icalLine(bw, "DTEND;VALUE=DATE:" + arrival.plusDays(booking.getDays()).format(ICAL_DATE));
+                icalLine(bw, "SUMMARY:" + icalText(booking.getCustomerName()));
+                icalLine(bw, "END:VEVENT");
+                count++;
+            }
+            icalLine(bw, "END:VCALENDAR");
+        }
+        Metrics.recordSince("export.ical", start);
+        Metrics.increment("export.rows", count);
+        return count;
+    }
+
+    /**
+     * @return mökin kalenteritiedoston nimi
+     */
+    public static String iCalendarFileName(Cottage cottage) {
+        return "mokki-" + cottage.getId() + ".ics";
+    }
+
+    /**
+     * Vie varaukset komentoriviltä ilman käyttöliittymää.
+     *
+     * @param args muoto (csv tai ical), kohde, tiedostojen hakemisto ja mökin nimi
+     * @throws IOException jos tiedostojen kirjoittaminen epäonnistuu
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("csv") || args[0].equals("ical"))) {
+            System.out.println("Käyttö: BookingExport csv <tiedosto> [hakemisto] [mökki]");
+            System.out.println("        BookingExport ical <kohdehakemisto> [hakemisto] [mökki]");
+            return;
+        }
+        long start = System.nanoTime();
+        try (BookingService service = BookingService.open(Paths.get(args.length > 2 ? args[2] : ""), status -> { })) {
+            Cottage only = null;
+            if (args.length > 3) {
+                only = service.findCottage(args[3]);
+                if (only == null) {
+                    System.out.println("Mökkiä ei löydy: " + args[3]);
+                    return;
+                }
+            }
+            long count = 0;
+            if (args[0].equals("csv")) {
+                Cottage cottage = only;
+                // Arkisto luetaan vuosi kerrallaan vasta, kun edellisen vuoden varaukset on kirjoitettu
+                Stream<Booking> archived = service.getArchivedYears().stream().flatMap(year -> {
+                    try {
+                        return service.getArchivedBookings(year).stream();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                Stream<Booking> active = cottage == null
+                        ? paged(service::getBookings)
+                        : service.getBookingsOf(cottage.getName()).stream();
+                try {
+                    count = writeCsv(Paths.get(args[1]), Stream.concat(archived, active)
+                            .filter(booking -> cottage == null || booking.getCottage() == cottage));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } else {
+                Path directory = Paths.get(args[1]);
+                Files.createDirectories(directory);
+                for (Cottage cottage : only == null ? service.getCottages() : List.of(only)) {
+                    count += writeICalendar(directory.resolve(iCalendarFileName(cottage)), cottage,
+                            service.getBookingsOf(cottage.getName()).stream());
+                }
+            }
+            System.out.printf(Locale.ROOT, "Viety %d varausta %.2f s%n", count, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Kirjoittaa iCalendar-rivin ja jakaa sen jatkoriveiksi, jos se on yli 75 tavua.
+     * Rivi jaetaan vain merkkien välistä, jotta monitavuinen merkki ei katkea.
+     */
+    private static void icalLine(Writer writer, String line) throws IOException {
+        int bytes = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int length = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes + length > ICAL_LINE_LENGTH) {
+                // Jatkorivi alkaa välilyönnillä, joka lasketaan sen pituuteen
+                writer.write("\r\n ");
+                bytes = 1;
+            }
+            writer.write(line, i, Character.charCount(codePoint));
+            bytes += length;
+            i += Character.charCount(codePoint);
+        }
+        writer.write("\r\n");
+    }
+
+    private static String icalText(String value) {
+        return value.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,")
+                .replace("\r\n", "\\n").replace("\n", "\\n").replace("\r", "\\n");
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
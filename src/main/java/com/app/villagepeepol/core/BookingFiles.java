@@ -0,0 +1,701 @@
+package com.app.villagepeepol.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * BookingFiles kokoaa yhteen hakemiston mökki- ja varaustiedostot: niiden lukemisen
+ * käynnistyksessä, binäärisen tilannevedoksen, varausjournalin ja taustakirjoittajan.
+ * Luokka ei riipu JavaFX:stä, joten sekä työpöytäsovellus että palvelin käyttävät samoja
+ * tiedostoja samalla tavalla.
+ * <p>
+ * Varaustiedostossa pidetään vain aktiivisen jakson varaukset. Sitä ennen päättyneet varaukset
+ * siirretään käynnistyksessä {@link BookingArchive}-arkistoon, josta ne luetaan vain tarvittaessa.
+ * <p>
+ * Useampi sovellus voi käyttää samaa hakemistoa yhtä aikaa. Kaikki kirjoitukset tehdään
+ * {@value #LOCK_FILE}-tiedoston {@link DirectoryLock}-lukon alla, ja mökkitiedostoon kirjoitetaan
+ * vain tämän sovelluksen lisäykset ja poistot tiedoston nykyisen sisällön päälle. Muiden
+ * sovellusten muutokset saa {@link #readCottageChanges()}- ja {@link BookingJournal#poll(CottageRegistry, java.util.function.Supplier)}
+ * -metodeilla, ja {@link DataFileWatcher} kertoo, milloin niitä kannattaa kysyä.
+ * <p>
+ * Varaukset viittaavat mökkiin sen pysyvällä tunnisteella. Mökkitiedoston ensimmäinen rivi
+ * {@code #;N} kertoo suurimman koskaan annetun tunnisteen, jotta poistetun mökin tunnistetta ei
+ * anneta uudelleen. Vanhan muodon tiedostot, joissa varaukset viittaavat mökin nimeen, muunnetaan
+ * luettaessa: mökeille annetaan tunnisteet tiedoston järjestyksessä ja tiedostot kirjoitetaan
+ * uudelleen taustalla.
+ */
+public class BookingFiles implements Closeable {
+    // Tiedostojen nimet
+    public static final String COTTAGES_FILE = "cottages.txt";
+    public static final String BOOKINGS_FILE = "varaukset.txt";
+    // Binäärinen tilannevedos tekstitiedostoista nopeaa käynnistystä varten
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+    // Lukkotiedosto, jolla samaa hakemistoa käyttävät sovellukset sovittavat kirjoituksensa
+    public static final String LOCK_FILE = "varaukset.lock";
+    // Mökkitiedoston otsikkorivin alku; rivillä on suurin koskaan annettu mökin tunniste
+    private static final String LAST_ID = "#;";
+
+    private final Path cottagesFile;
+    private final Path bookingsFile;
+    private final Path snapshotFile;
+    // Rinnakkainen jäsennin mökki- ja varaustiedostoille
+    private final MappedFileParser fileParser = new MappedFileParser();
+    // Hakemiston tiedostojen lukko muita samaa hakemistoa käyttäviä sovelluksia vastaan
+    private final DirectoryLock lock;
+    // Taustasäie, joka kirjoittaa mökki- ja varaustiedostot
+    private final PersistenceWriter writer;
+    // Journal, johon varausten muutokset kirjataan
+    private final BookingJournal journal;
+    // Päättyneet varaukset vuosittain
+    private final BookingArchive archive;
+    // Aktiivisen jakson ensimmäinen päivä; tätä ennen päättyneet varaukset arkistoidaan
+    private final LocalDate activeFrom;
+    // Tämän sovelluksen mökkimuutokset, joita ei ole vielä kirjoitettu; rivit ovat yksilöllisiä tunnisteen vuoksi
+    private final PendingLines cottageChanges = new PendingLines(true);
+    // Suurin tämän sovelluksen antama mökin tunniste
+    private int lastAssignedId;
+    // Mökkitiedoston rivit sellaisina kuin tämä sovellus ne viimeksi tunsi, ja tiedoston tunniste silloin
+    private List<String> knownCottageLines = new ArrayList<>();
+    private List<Object> knownCottagesIdentity;
+
+    /**
+     * Muiden sovellusten mökkitiedostoon tekemät muutokset.
+     *
+     * @param added   lisätyt mökit
+     * @param updated muutettujen mökkien uudet tiedot; mökin tunniste kertoo, mitä mökkiä muutos koskee
+     * @param removed poistettujen mökkien tunnisteet
+     */
+    public record CottageChanges(List<Cottage> added, List<Cottage> updated, List<Integer> removed) {
+        /**
+         * @return true, jos muutoksia ei ole
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    /**
+     * Luo tiedostot annettuun hakemistoon. Aktiivinen jakso alkaa {@link BookingArchive#defaultActiveFrom()}-päivästä.
+     *
+     * @param directory hakemisto, jossa mökki- ja varaustiedostot ovat
+     */
+    public BookingFiles(Path directory) {
+        this(directory, BookingArchive.defaultActiveFrom());
+    }
+
+    /**
+     * Luo tiedostot annettuun hakemistoon.
+     *
+     * @param directory  hakemisto, jossa mökki- ja varaustiedostot ovat
+     * @param activeFrom aktiivisen jakson ensimmäinen päivä; {@link LocalDate#MIN}, jos mitään ei arkistoida
+     */
+    public BookingFiles(Path directory, LocalDate activeFrom) {
+        this.cottagesFile = directory.resolve(COTTAGES_FILE);
+        this.bookingsFile = directory.resolve(BOOKINGS_FILE);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.lock = new DirectoryLock(directory.resolve(LOCK_FILE));
+        this.writer = new PersistenceWriter(lock);
+        this.journal = new BookingJournal(bookingsFile, writer, lock);
+        this.archive = new BookingArchive(directory, writer);
+        this.activeFrom = activeFrom;
+    }
+
+    /**
+     * @return varausjournal, johon varausten lisäykset ja poistot kirjataan
+     */
+    public BookingJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return arkisto, josta aiempien vuosien varaukset luetaan
+     */
+    public BookingArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return aktiivisen jakson ensimmäinen päivä; tätä ennen päättyneet varaukset ovat arkistossa
+     */
+    public LocalDate getActiveFrom() {
+        return activeFrom;
+    }
+
+    /**
+     * @return tiedostot, joiden muutoksista {@link DataFileWatcher} ilmoittaa
+     */
+    public List<Path> getWatchedFiles() {
+        return List.of(cottagesFile, bookingsFile, journal.getJournalFile());
+    }
+
+    /**
+     * @return taustakirjoittaja, joka kirjoittaa tiedostot
+     */
+    public PersistenceWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Luo tiedostot, jos niitä ei ole olemassa.
+     */
+    public void createIfNotExist() {
+        try {
+            Files.createDirectories(cottagesFile.toAbsolutePath().getParent());
+            if (!Files.exists(cottagesFile)) {
+                Files.createFile(cottagesFile);
+            }
+            if (!Files.exists(bookingsFile)) {
+                Files.createFile(bookingsFile);
+            }
+        } catch (IOException e) {
+            System.out.println("Tiedostoja ei voitu luoda");
+        }
+    }
+
+    /**
+     * Lukee mökit ja varaukset. Binäärinen tilannevedos luetaan, jos se vastaa tekstitiedostojen
+     * nykyistä tilaa; muuten tekstitiedostot jäsennetään ja tilannevedos kirjoitetaan taustalla
+     * seuraavaa käynnistystä varten. Sen jälkeen varausjournal toistetaan varausten päälle ja avataan
+     * uusia muutoksia varten. Lopuksi aktiivista jaksoa ennen päättyneet varaukset siirretään arkistoon.
+     *
+     * @param status saa tiedon lukemisen vaiheesta
+     * @return mökit ja aktiivisen jakson varaukset
+     */
+    public BinarySnapshot.Contents load(Consumer<String> status) {
+        Loaded loaded;
+        try {
+            // Muut sovellukset eivät tiivistä journalia tiedostojen lukemisen aikana
+            loaded = lock.locked(() -> loadLocked(status));
+        } catch (IOException e) {
+            System.out.println("Virhe " + LOCK_FILE + "-tiedoston lukitsemisessa: " + e.getMessage());
+            loaded = loadLocked(status);
+        }
+        if (loaded.migrated()) {
+            saveCottages();
+        }
+        if (!loaded.replayed()) {
+            return new BinarySnapshot.Contents(loaded.cottages(), loaded.bookings());
+        }
+        // Arkistointi odottaa taustakirjoittajaa, joka ottaa itse lukon, joten se tehdään lukon ulkopuolella
+        List<Booking> active = archiveFinished(loaded.bookings(), status);
+        if (loaded.migrated()) {
+            migrateBookings(loaded.cottages(), active, status);
+        }
+        return new BinarySnapshot.Contents(loaded.cottages(), active);
+    }
+
+    /**
+     * Luetut mökit ja varaukset.
+     *
+     * @param replayed true, jos varausjournal toistettiin ja avattiin
+     * @param migrated true, jos tiedostot olivat vanhassa muodossa ja mökeille annettiin tunnisteet
+     */
+    private record Loaded(List<Cottage> cottages, List<Booking> bookings, boolean replayed, boolean migrated) {
+    }
+
+    private Loaded loadLocked(Consumer<String> status) {
+        List<Object> cottagesIdentity = identityOrNull(cottagesFile);
+        List<Cottage> cottages;
+        List<Booking> snapshot;
+        boolean migrated = false;
+        BinarySnapshot.Contents binary = readBinarySnapshot();
+        if (binary != null) {
+            status.accept("Luetaan tilannevedosta...");
+            cottages = binary.cottages();
+            snapshot = binary.bookings();
+        } else {
+            // Tekstitiedostojen tila otetaan ennen lukemista, jotta myöhempi muutos huomataan
+            BinarySnapshot.FileStamp cottagesStamp = BinarySnapshot.FileStamp.of(cottagesFile);
+            BinarySnapshot.FileStamp bookingsStamp = BinarySnapshot.FileStamp.of(bookingsFile);
+            status.accept("Luetaan mökkejä...");
+            cottages = readCottagesFile();
+            migrated = assignMissingIds(cottages);
+            status.accept("Luetaan varauksia...");
+            snapshot = readBookingsFile(registryFor(cottages, migrated));
+            if (!migrated) {
+                // Muunnetut tiedostot kirjoitetaan pian uudelleen, joten tilannevedos viedään vasta niistä
+                Thread.ofVirtual().name("snapshot-export")
+                        .start(() -> saveBinarySnapshot(cottages, snapshot, cottagesStamp, bookingsStamp));
+            }
+        }
+        rememberCottages(cottages, cottagesIdentity);
+
+        status.accept("Luetaan varausjournalia...");
+        long start = System.nanoTime();
+        try {
+            List<Booking> bookings = journal.load(snapshot, registryFor(cottages, migrated));
+            Metrics.recordSince("read.journal", start);
+            return new Loaded(cottages, bookings, true, migrated);
+        } catch (IOException e) {
+            // Tulosta virheilmoitus, jos journalin lukemisessa ilmenee ongelmia
+            System.out.println("Virhe varausjournalin lukemisessa: " + e.getMessage());
+            return new Loaded(cottages, snapshot, false, migrated);
+        }
+    }
+
+    /**
+     * Antaa tunnisteen vanhan muodon mökeille ja kirjaa mökkitiedoston rivit muunnettaviksi.
+     * Tunnisteet annetaan tiedoston järjestyksessä suurimmasta olemassa olevasta eteenpäin, joten
+     * samaa hakemistoa yhtä aikaa lukevat sovellukset antavat samat tunnisteet.
+     *
+     * @param cottages mökkitiedostosta luetut mökit
+     * @return true, jos jollekin mökille annettiin tunniste
+     */
+    private synchronized boolean assignMissingIds(List<Cottage> cottages) {
+        int last = 0;
+        for (Cottage cottage : cottages) {
+            last = Math.max(last, cottage.getId());
+        }
+        boolean migrated = false;
+        for (Cottage cottage : cottages) {
+            if (cottage.getId() == 0) {
+                String legacyLine = cottage.toLegacyFileString();
+                cottage.setId(++last);
+                cottageChanges.remove(legacyLine);
+                cottageChanges.add(cottage.toFileString());
+                migrated = true;
+            }
+        }
+        lastAssignedId = Math.max(lastAssignedId, last);
+        return migrated;
+    }
+
+    /**
+     * @return hakemisto varausten lukemiseen; vanhan muodon tiedostoissa varaus viittaa mökkiin nimellä
+     */
+    private static CottageRegistry registryFor(List<Cottage> cottages, boolean migrated) {
+        return migrated ? CottageRegistry.forLegacyFiles(cottages) : new CottageRegistry(cottages);
+    }
+
+    /**
+     * Kirjoittaa vanhan muodon varaustiedoston ja arkiston uudelleen niin, että varaukset viittaavat
+     * mökkeihin tunnisteella. Jos arkiston lukemisessa ilmenee ongelmia, tulostetaan virheilmoitus;
+     * vanhan muodon rivit luetaan edelleen oikein.
+     *
+     * @param cottages mökit, joille tunnisteet on annettu
+     * @param bookings aktiivisen jakson varaukset
+     * @param status   saa tiedon lukemisen vaiheesta
+     */
+    private void migrateBookings(List<Cottage> cottages, List<Booking> bookings, Consumer<String> status) {
+        status.accept("Muunnetaan varaukset mökkien tunnisteisiin...");
+        journal.compact(bookings);
+        try {
+            archive.migrate(CottageRegistry.forLegacyFiles(cottages));
+        } catch (IOException e) {
+            System.out.println("Virhe arkiston muuntamisessa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Siirtää aktiivista jaksoa ennen päättyneet varaukset arkistoon ja tiivistää varaustiedoston
+     * ilman niitä. Jos arkistointi epäonnistuu, tulostetaan virheilmoitus ja kaikki varaukset
+     * jäävät varaustiedostoon.
+     *
+     * @param bookings kaikki voimassa olevat varaukset
+     * @param status   saa tiedon lukemisen vaiheesta
+     * @return aktiivisen jakson varaukset
+     */
+    private List<Booking> archiveFinished(List<Booking> bookings, Consumer<String> status) {
+        try {
+            status.accept("Arkistoidaan päättyneitä varauksia...");
+            List<Booking> active = archive.archive(bookings, activeFrom);
+            if (active.size() < bookings.size()) {
+                // Vuosien tiedostot ovat jo levyllä, joten varaukset voi poistaa varaustiedostosta
+                journal.compact(active);
+            }
+            return active;
+        } catch (IOException e) {
+            System.out.println("Virhe varausten arkistoinnissa: " + e.getMessage());
+            return bookings;
+        }
+    }
+
+    /**
+     * Antaa mökille uuden tunnisteen ja lisää sen mökkitiedostoon. Rivi lisätään tiedoston loppuun
+     * heti lukon alla, jotta toinen samaa hakemistoa käyttävä sovellus ei anna samaa tunnistetta.
+     * Jos tiedoston kirjoittamisessa ilmenee ongelmia, tulostetaan virheilmoitus ja mökki
+     * tallennetaan taustalla seuraavan kirjoituksen mukana.
+     *
+     * @param cottage lisätty mökki, jolla ei vielä ole tunnistetta
+     */
+    public void addCottage(Cottage cottage) {
+        try {
+            lock.locked(() -> {
+                synchronized (this) {
+                    cottage.setId(nextId(readLastId()));
+                    appendLine(cottagesFile, cottage.toFileString());
+                    knownCottageLines.add(cottage.toFileString());
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            System.out.println("Virhe " + COTTAGES_FILE + "-tiedoston kirjoittamisessa: " + e.getMessage());
+            synchronized (this) {
+                if (cottage.getId() == 0) {
+                    cottage.setId(nextId(0));
+                }
+                cottageChanges.add(cottage.toFileString());
+                knownCottageLines.add(cottage.toFileString());
+            }
+            saveCottages();
+        }
+    }
+
+    /**
+     * Tallentaa mökin muuttuneet tiedot mökkitiedostoon taustalla. Varaukset viittaavat mökkiin
+     * tunnisteella, joten nimen vaihtaminen ei koske varauksiin.
+     *
+     * @param cottage muutettu mökki
+     */
+    public void updateCottage(Cottage cottage) {
+        synchronized (this) {
+            String prefix = cottage.getId() + ";";
+            for (int i = 0; i < knownCottageLines.size(); i++) {
+                String line = knownCottageLines.get(i);
+                if (line.startsWith(prefix)) {
+                    cottageChanges.remove(line);
+                    knownCottageLines.set(i, cottage.toFileString());
+                    break;
+                }
+            }
+            cottageChanges.add(cottage.toFileString());
+        }
+        saveCottages();
+    }
+
+    /**
+     * Poistaa mökin mökkitiedostosta taustalla. Peräkkäiset tallennukset yhdistetään yhdeksi kirjoitukseksi.
+     * Mökin tunnistetta ei anneta uudelleen. Mökin arkistoidut varaukset poistetaan arkistosta, jotta
+     * niitä ei myöhemmin lueta ilman mökkiä; aktiivisten varausten poisto kirjataan journaliin erikseen.
+     *
+     * @param cottage poistettu mökki
+     */
+    public void removeCottage(Cottage cottage) {
+        synchronized (this) {
+            cottageChanges.remove(cottage.toFileString());
+            knownCottageLines.remove(cottage.toFileString());
+        }
+        saveCottages();
+        try {
+            archive.removeCottage(cottage);
+        } catch (IOException e) {
+            System.out.println("Virhe mökin arkistoitujen varausten poistamisessa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lukee muiden sovellusten mökkitiedostoon tekemät muutokset edellisen kutsun jälkeen.
+     * Tiedosto luetaan vain, jos se on muuttunut. Tämän sovelluksen kirjoittamattomat muutokset
+     * tehdään luetun tiedoston päälle, jotta niitä ei tulkita toisen sovelluksen muutoksiksi.
+     * Jos lukemisessa ilmenee ongelmia, tulostetaan virheilmoitus ja palautetaan tyhjät muutokset.
+     *
+     * @return lisätyt ja poistetut mökit
+     */
+    public CottageChanges readCottageChanges() {
+        try {
+            // Lukon alla tiedosto ja kirjoittamattomat muutokset vastaavat toisiaan
+            return lock.locked(() -> {
+                synchronized (this) {
+                    List<Object> identity = DirectoryLock.identityOf(cottagesFile);
+                    if (Objects.equals(identity, knownCottagesIdentity)) {
+                        return new CottageChanges(List.of(), List.of(), List.of());
+                    }
+                    List<String> current = cottageChanges.applyTo(readCottageLines());
+                    Map<String, Integer> known = new HashMap<>();
+                    knownCottageLines.forEach(line -> known.merge(line, 1, Integer::sum));
+                    // Saman tunnisteen poistettu ja lisätty rivi on muutos samaan mökkiin
+                    Map<Integer, Cottage> added = new LinkedHashMap<>();
+                    for (String line : current) {
+                        if (known.merge(line, -1, Integer::sum) < 0) {
+                            Cottage cottage = Cottage.fromFileString(line);
+                            added.put(cottage.getId(), cottage);
+                        }
+                    }
+                    List<Cottage> updated = new ArrayList<>();
+                    List<Integer> removed = new ArrayList<>();
+                    known.forEach((line, count) -> {
+                        if (count > 0) {
+                            int id = Cottage.fromFileString(line).getId();
+                            Cottage changed = added.remove(id);
+                            if (changed != null) {
+                                updated.add(changed);
+                            } else {
+                                removed.add(id);
+                            }
+                        }
+                    });
+                    knownCottageLines = current;
+                    knownCottagesIdentity = identity;
+                    return new CottageChanges(new ArrayList<>(added.values()), updated, removed);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Virhe cottages.txt-tiedoston lukemisessa: " + e.getMessage());
+            return new CottageChanges(List.of(), List.of(), List.of());
+        }
+    }
+
+    /**
+     * Kirjoittaa odottavat tallennukset, sulkee varausjournalin ja vapauttaa lukkotiedoston.
+     */
+    @Override
+    public void close() {
+        writer.close();
+        journal.close();
+        lock.close();
+    }
+
+    /**
+     * Kirjoittaa mökkitiedoston: nykyinen tiedosto luetaan lukon alla ja tämän sovelluksen
+     * muutokset tehdään sen päälle. Otsikkorivi kertoo suurimman koskaan annetun tunnisteen,
+     * myös jo poistetun mökin.
+     */
+    private void saveCottages() {
+        PersistenceWriter.Content lines = cottageChanges.content(this::readCottageLines);
+        writer.submitMerged(cottagesFile, out -> {
+                    int last = readLastId();
+                    synchronized (this) {
+                        last = Math.max(last, lastAssignedId);
+                    }
+                    out.write(LAST_ID + last);
+                    out.newLine();
+                    lines.writeTo(out);
+                })
+                .whenComplete((checksum, error) -> {
+                    if (error == null) {
+                        cottageChanges.written();
+                    }
+                });
+    }
+
+    /**
+     * Muistaa luetut mökit muiden sovellusten muutosten tunnistamista varten.
+     *
+     * @param cottages luetut mökit
+     * @param identity mökkitiedoston tunniste ennen lukemista
+     */
+    private synchronized void rememberCottages(List<Cottage> cottages, List<Object> identity) {
+        List<String> lines = new ArrayList<>(cottages.size());
+        for (Cottage cottage : cottages) {
+            lines.add(cottage.toFileString());
+        }
+        knownCottageLines = lines;
+        knownCottagesIdentity = identity;
+    }
+
+    private static List<Object> identityOrNull(Path file) {
+        try {
+            return DirectoryLock.identityOf(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private List<String> readCottageLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (Files.exists(cottagesFile)) {
+            for (String line : Files.readAllLines(cottagesFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank() && !line.startsWith(LAST_ID)) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Lukee mökkitiedostosta suurimman annetun tunnisteen: otsikkorivin arvon tai suurimman
+     * tiedostossa olevan tunnisteen. Kutsutaan lukon alla.
+     *
+     * @return suurin annettu tunniste, tai 0, jos tunnisteita ei ole
+     */
+    private int readLastId() throws IOException {
+        int last = 0;
+        if (Files.exists(cottagesFile)) {
+            for (String line : Files.readAllLines(cottagesFile, StandardCharsets.UTF_8)) {
+                try {
+                    if (line.startsWith(LAST_ID)) {
+                        last = Math.max(last, Integer.parseInt(line.substring(LAST_ID.length()).trim()));
+                    } else if (!line.isBlank()) {
+                        last = Math.max(last, Cottage.fromFileString(line).getId());
+                    }
+                } catch (RuntimeException e) {
+                    // Rikkinäinen rivi ei vaikuta tunnisteisiin
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Varaa seuraavan tunnisteen. Kutsutaan olion lukon alla.
+     *
+     * @param lastInFile suurin mökkitiedostossa annettu tunniste
+     * @return uusi tunniste, joka on suurempi kuin yksikään tämän sovelluksen tuntema
+     */
+    private int nextId(int lastInFile) {
+        int last = Math.max(lastInFile, lastAssignedId);
+        for (String line : knownCottageLines) {
+            int separator = line.indexOf(';');
+            try {
+                last = Math.max(last, Integer.parseInt(line.substring(0, separator)));
+            } catch (RuntimeException e) {
+                // Vanhan muodon rivillä ei ole tunnistetta
+            }
+        }
+        lastAssignedId = last + 1;
+        return lastAssignedId;
+    }
+
+    /**
+     * Lisää rivin tiedoston loppuun. Jos tiedoston viimeinen rivi on päättämättä, rivinvaihto
+     * lisätään ensin.
+     */
+    private static void appendLine(Path file, String line) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            StringBuilder text = new StringBuilder();
+            long size = channel.size();
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if (last.get(0) != '\n' && last.get(0) != '\r') {
+                    text.append(System.lineSeparator());
+                }
+            }
+            text.append(line).append(System.lineSeparator());
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes, size + bytes.position());
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Lue mökit ja varaukset binäärisestä tilannevedoksesta, jos se on olemassa ja vastaa
+     * tekstitiedostojen nykyistä tilaa. Jos tiedoston lukemisessa ilmenee ongelmia,
+     * tulostetaan virheilmoitus ja tiedot luetaan tekstitiedostoista.
+     *
+     * @return tilannevedoksen sisältö, tai null, jos tiedot pitää lukea tekstitiedostoista
+     */
+    private BinarySnapshot.Contents readBinarySnapshot() {
+        PerformanceEvents.FileRead event = new PerformanceEvents.FileRead();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            BinarySnapshot.Contents contents = BinarySnapshot.readIfCurrent(snapshotFile, cottagesFile, bookingsFile);
+            if (contents != null) {
+                recordRead("read.snapshot", snapshotFile, start, contents.bookings().size(), event);
+            }
+            return contents;
+        } catch (IOException e) {
+            System.out.println("Virhe " + SNAPSHOT_FILE + "-tiedoston lukemisessa: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Tallenna tekstitiedostoista luetut mökit ja varaukset binääriseksi tilannevedokseksi,
+     * jotta seuraava käynnistys voi ohittaa tekstin jäsentämisen. Jos tiedoston kirjoittamisessa
+     * ilmenee ongelmia, tulostetaan virheilmoitus.
+     *
+     * @param cottages      mökkitiedostosta luetut mökit
+     * @param bookings      varaustiedostosta luetut varaukset ilman journalia
+     * @param cottagesStamp mökkitiedoston tila ennen lukemista
+     * @param bookingsStamp varaustiedoston tila ennen lukemista
+     */
+    private void saveBinarySnapshot(List<Cottage> cottages, List<Booking> bookings,
+                                    BinarySnapshot.FileStamp cottagesStamp, BinarySnapshot.FileStamp bookingsStamp) {
+        try {
+            BinarySnapshot.write(snapshotFile, cottages, bookings, cottagesStamp, bookingsStamp);
+        } catch (IOException e) {
+            System.out.println("Virhe " + SNAPSHOT_FILE + "-tiedoston kirjoittamisessa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lue mökit tiedostosta. Jos tiedoston lukemisessa ilmenee ongelmia, tulostetaan
+     * virheilmoitus ja palautetaan tyhjä lista.
+     *
+     * @return tiedostosta luetut mökit
+     */
+    private List<Cottage> readCottagesFile() {
+        PerformanceEvents.FileRead event = new PerformanceEvents.FileRead();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            // Jäsennä tiedosto rinnakkain muistiin kuvattuna
+            List<Cottage> cottages = fileParser.parseCottages(cottagesFile);
+            recordRead("read.cottages", cottagesFile, start, cottages.size(), event);
+            return cottages;
+        } catch (IOException e) {
+            // Tulosta virheilmoitus, jos tiedoston lukemisessa ilmenee ongelmia
+            System.out.println("Virhe cottages.txt-tiedoston lukemisessa: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Lue varaukset tiedostosta. Jos tiedoston lukemisessa ilmenee ongelmia, tulostetaan
+     * virheilmoitus ja palautetaan tyhjä lista.
+     *
+     * @param cottages hakemisto luetuista mökeistä
+     * @return varaustiedostosta luetut varaukset ilman journalia
+     */
+    private List<Booking> readBookingsFile(CottageRegistry cottages) {
+        PerformanceEvents.FileRead event = new PerformanceEvents.FileRead();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            // Jäsennä varaustiedosto rinnakkain muistiin kuvattuna
+            List<Booking> bookings = fileParser.parseBookings(bookingsFile, cottages);
+            recordRead("read.bookings", bookingsFile, start, bookings.size(), event);
+            return bookings;
+        } catch (IOException e) {
+            // Tulosta virheilmoitus, jos tiedoston lukemisessa ilmenee ongelmia
+            System.out.println("Virhe varaukset.txt-tiedoston lukemisessa: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Kirjaa tiedoston lukemisen keston, koon ja jäsennysnopeuden mittareihin ja JFR-tapahtumaan.
+     *
+     * @param name    mittarien nimen alku
+     * @param file    luettu tiedosto
+     * @param start   {@link System#nanoTime()} lukemisen alussa
+     * @param records luettujen rivien määrä
+     * @param event   lukemisen alussa aloitettu tapahtuma
+     */
+    private static void recordRead(String name, Path file, long start, int records, PerformanceEvents.FileRead event) {
+        long elapsed = Metrics.recordSince(name, start);
+        long bytes;
+        try {
+            bytes = Files.size(file);
+        } catch (IOException e) {
+            bytes = 0;
+        }
+        Metrics.increment(name + ".bytes", bytes);
+        Metrics.set(name + ".records", records);
+        Metrics.set(name + ".bytesPerSecond", (long) (bytes * 1e9 / Math.max(elapsed, 1)));
+        event.file = file.toString();
+        event.bytes = bytes;
+        event.records = records;
+        event.commit();
+    }
+}
@@ -0,0 +1,404 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * BookingImport tuo varauksia suuresta tiedostosta, esimerkiksi vanhasta järjestelmästä siirrettäessä.
+ * Tiedosto luetaan {@value #CHUNK_SIZE} rivin paloissa, palojen rivit tarkistetaan ja niiden mökit
+ * haetaan rinnakkain, ja tarkistetut varaukset tallennetaan tiedoston järjestyksessä erä kerrallaan.
+ * Kesken olevia paloja on enintään muutama; jos tallennus ei pysy lukemisen perässä, lukeminen
+ * odottaa, joten muistinkäyttö ei riipu tiedoston koosta.
+ * <p>
+ * Tiedoston rivit ovat varaustiedoston muodossa {@code mökki;asiakas;päivämäärä;päivät}, jossa
+ * mökki on tunniste tai nimi ja päivämäärä muodossa yyyy-MM-dd tai dd.MM.yyyy, tai
+ * {@link BookingExport}-luokan kirjoittamaa CSV:tä, jos ensimmäinen rivi on sen otsikkorivi.
+ * Tyhjät ja {@code #}-merkillä alkavat rivit ohitetaan.
+ * <p>
+ * Virheellinen rivi tai varaus, joka osuu mökin olemassa olevan tai aiemmin tuodun varauksen
+ * päälle, ei keskeytä tuontia: rivi kirjoitetaan hylättyjen tiedostoon syyn kertovan
+ * {@code #}-rivin alle. Korjatun hylättyjen tiedoston voi tuoda sellaisenaan uudelleen.
+ * <p>
+ * Komentoriviltä: {@code BookingImport <tiedosto> [hylätyt] [hakemisto]}.
+ */
+public class BookingImport {
+    /**
+     * Yhdellä kertaa luettavien ja tallennettavien rivien määrä.
+     */
+    public static final int CHUNK_SIZE = 10_000;
+    // Hylättyjen tiedoston oletuspääte tuotavan tiedoston nimen perässä
+    private static final String REJECTS_SUFFIX = ".hylatyt";
+    private static final DateTimeFormatter FINNISH_DATE = DateTimeFormatter.ofPattern("d.M.yyyy");
+
+    /**
+     * Tuonnin edistyminen.
+     *
+     * @param rows     luetut varausrivit
+     * @param imported tallennetut varaukset
+     * @param rejected hylätyt rivit
+     */
+    public record Result(long rows, long imported, long rejected) {
+    }
+
+    /**
+     * Tarkistettu rivi: varaus tai syy, miksi rivi hylättiin.
+     */
+    private record Row(long number, String text, Booking booking, String error) {
+    }
+
+    private final CottageRegistry cottages;
+    private final Function<List<Booking>, Map<Booking, List<Booking>>> sink;
+    private final Executor executor;
+    private final int maxPendingChunks;
+
+    /**
+     * Luo tuonnin, joka tarkistaa rivit yhteisessä fork-join-poolissa.
+     *
+     * @param cottages hakemisto mökeistä, joihin rivit viittaavat; sitä ei saa muuttaa tuonnin aikana
+     * @param sink     tallentaa tarkistetun erän ja palauttaa varaukset, joita ei voitu tehdä, ja niiden
+     *                 kanssa päällekkäiset varaukset, kuten {@link BookingService#bookAll(List)}; tyhjä
+     *                 lista tarkoittaa, että varauksen mökki on poistettu
+     */
+    public BookingImport(CottageRegistry cottages, Function<List<Booking>, Map<Booking, List<Booking>>> sink) {
+        this.cottages = cottages;
+        this.sink = sink;
+        this.executor = ForkJoinPool.commonPool();
+        this.maxPendingChunks = ForkJoinPool.getCommonPoolParallelism() + 1;
+    }
+
+    /**
+     * @param input tuotava tiedosto
+     * @return hylättyjen rivien oletustiedosto tuotavan tiedoston vieressä
+     */
+    public static Path defaultRejectsFile(Path input) {
+        return input.resolveSibling(input.getFileName() + REJECTS_SUFFIX);
+    }
+
+    /**
+     * Tuo tiedoston varaukset. Hylättyjen tiedosto luodaan vain, jos jokin rivi hylätään.
+     *
+     * @param input       tuotava tiedosto
+     * @param rejectsFile tiedosto, johon hylätyt rivit kirjoitetaan
+     * @param progress    saa tuonnin tilanteen jokaisen tallennetun erän jälkeen
+     * @return tuonnin tulos
+     * @throws IOException jos tiedoston lukeminen tai hylättyjen kirjoittaminen epäonnistuu
+     */
+    public Result run(Path input, Path rejectsFile, Consumer<Result> progress) throws IOException {
+        long start = System.nanoTime();
+        if (Files.exists(rejectsFile) && Files.isSameFile(input, rejectsFile)) {
+            throw new IOException("Hylättyjen tiedosto ei voi olla tuotava tiedosto: " + rejectsFile);
+        }
+        // Edellisen tuonnin hylätyt eivät saa jäädä näkyviin, jos tällä kertaa mitään ei hylätä
+        Files.deleteIfExists(rejectsFile);
+        Progress counts = new Progress();
+        ArrayDeque<CompletableFuture<List<Row>>> pending = new ArrayDeque<>();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Rejects rejects = new Rejects(rejectsFile)) {
+            boolean csv = false;
+            List<String> lines = new ArrayList<>(CHUNK_SIZE);
+            long chunkStart = 1;
+            long number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (number == 1) {
+                    // Taulukkolaskennan tallentama tiedosto voi alkaa BOM-merkillä
+                    line = line.startsWith("\uFEFF") ? line.substring(1) : line;
+                    if (line.equals(BookingExport.CSV_HEADER)) {
+                        csv = true;
+                        rejects.header = BookingExport.CSV_HEADER;
+                        continue;
+                    }
+                }
+                if (lines.isEmpty()) {
+                    chunkStart = number;
+                }
+                lines.add(line);
+                if (lines.size() == CHUNK_SIZE) {
+                    submit(pending, lines, chunkStart, csv, rejects, counts, progress);
+                    lines = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(pending, lines, chunkStart, csv, rejects, counts, progress);
+            }
+            while (!pending.isEmpty()) {
+                commit(join(pending.removeFirst()), rejects, counts, progress);
+            }
+        } finally {
+            // Lukemisen virhe ei jätä tarkistuksia kesken taustalle
+            pending.forEach(future -> future.cancel(false));
+        }
+        Metrics.recordSince("import.total", start);
+        return counts.result();
+    }
+
+    /**
+     * Aloittaa palan tarkistamisen. Jos kesken on jo enimmäismäärä paloja, vanhin tallennetaan ensin.
+     */
+    private void submit(ArrayDeque<CompletableFuture<List<Row>>> pending, List<String> lines, long firstNumber,
+                        boolean csv, Rejects rejects, Progress counts, Consumer<Result> progress) throws IOException {
+        if (pending.size() >= maxPendingChunks) {
+            commit(join(pending.removeFirst()), rejects, counts, progress);
+        }
+        pending.addLast(CompletableFuture.supplyAsync(() -> validate(lines, firstNumber, csv), executor));
+    }
+
+    private static List<Row> join(CompletableFuture<List<Row>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Tallentaa palan tarkistetut varaukset ja kirjoittaa hylätyt rivit tiedoston järjestyksessä.
+     */
+    private void commit(List<Row> rows, Rejects rejects, Progress counts, Consumer<Result> progress) throws IOException {
+        long start = System.nanoTime();
+        List<Booking> batch = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.booking() != null) {
+                batch.add(row.booking());
+            }
+        }
+        Map<Booking, List<Booking>> conflicts = batch.isEmpty() ? Map.of() : sink.apply(batch);
+        for (Row row : rows) {
+            String error = row.error();
+            if (error == null && conflicts.containsKey(row.booking())) {
+                error = describeConflict(conflicts.get(row.booking()));
+            }
+            if (error != null) {
+                rejects.write(row.number(), row.text(), error);
+            }
+        }
+        long rejected = rows.size() - batch.size() + conflicts.size();
+        counts.rows += rows.size();
+        counts.imported += batch.size() - conflicts.size();
+        counts.rejected += rejected;
+        Metrics.increment("import.rows", rows.size());
+        Metrics.increment("import.rejected", rejected);
+        Metrics.recordSince("import.batch", start);
+        progress.accept(counts.result());
+    }
+
+    /**
+     * Tarkistaa palan rivit. Kutsutaan poolin säikeessä; mökkihakemistoa vain luetaan.
+     */
+    private List<Row> validate(List<String> lines, long firstNumber, boolean csv) {
+        List<Row> rows = new ArrayList<>(lines.size());
+        long number = firstNumber;
+        for (String line : lines) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                try {
+                    rows.add(new Row(number, line, csv ? parseCsv(line) : parseLine(line), null));
+                } catch (IllegalArgumentException | DateTimeException e) {
+                    rows.add(new Row(number, line, null, e.getMessage()));
+                }
+            }
+            number++;
+        }
+        return rows;
+    }
+
+    /**
+     * Jäsentää varaustiedoston muotoisen rivin {@code mökki;asiakas;päivämäärä;päivät}.
+     */
+    private Booking parseLine(String line) {
+        String[] parts = line.split(";", -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Rivillä pitää olla 4 kenttää, oli " + parts.length);
+        }
+        Cottage cottage = cottages.resolve(parts[0].trim());
+        if (cottage == null) {
+            throw new IllegalArgumentException("Mökkiä ei löydy: " + parts[0]);
+        }
+        return booking(cottage, parts[1], parts[2], parts[3]);
+    }
+
+    /**
+     * Jäsentää {@link BookingExport#CSV_HEADER}-otsikon mukaisen CSV-rivin.
+     */
+    private Booking parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 5) {
+            throw new IllegalArgumentException("Rivillä pitää olla 5 kenttää, oli " + fields.size());
+        }
+        Cottage cottage = null;
+        try {
+            cottage = cottages.findById(Integer.parseInt(fields.get(0).trim()));
+        } catch (NumberFormatException e) {
+            // Tunnisteeton rivi viittaa mökkiin nimellä
+        }
+        if (cottage == null) {
+            cottage = cottages.findByName(fields.get(1));
+        }
+        if (cottage == null) {
+            throw new IllegalArgumentException("Mökkiä ei löydy: " + fields.get(1));
+        }
+        return booking(cottage, fields.get(2), fields.get(3), fields.get(4));
+    }
+
+    private static Booking booking(Cottage cottage, String customerName, String date, String days) {
+        if (!Booking.isValidCustomerName(customerName)) {
+            throw new IllegalArgumentException("Virheellinen asiakkaan nimi");
+        }
+        LocalDate startDate;
+        try {
+            date = date.trim();
+            startDate = date.indexOf('.') >= 0 ? LocalDate.parse(date, FINNISH_DATE) : LocalDate.parse(date);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Virheellinen päivämäärä: " + date);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(days.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Virheellinen kesto: " + days);
+        }
+        Booking.requireValidDays(length);
+        return new Booking(cottage, customerName, startDate, length);
+    }
+
+    /**
+     * Jakaa CSV-rivin kentiksi. Lainausmerkeissä oleva kenttä voi sisältää pilkkuja ja kaksinkertaisia lainausmerkkejä.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Lainausmerkki puuttuu");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String describeConflict(List<Booking> conflicts) {
+        if (conflicts.isEmpty()) {
+            return "Mökki on poistettu";
+        }
+        Booking conflict = conflicts.get(0);
+        return "Päällekkäinen varaus: " + conflict.getCustomerName() + ", " + conflict.getStartDate()
+                + ", " + conflict.getDays() + " pv";
+    }
+
+    /**
+     * Tuo varaukset komentoriviltä ilman käyttöliittymää.
+     *
+     * @param args tuotava tiedosto, hylättyjen tiedosto ja tiedostojen hakemisto
+     * @throws IOException jos tiedostojen lukeminen tai kirjoittaminen epäonnistuu
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Käyttö: BookingImport <tiedosto> [hylätyt] [hakemisto]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path rejectsFile = args.length > 1 ? Paths.get(args[1]) : defaultRejectsFile(input);
+        long start = System.nanoTime();
+        try (BookingService service = BookingService.open(Paths.get(args.length > 2 ? args[2] : ""), status -> { })) {
+            BookingImport bookingImport = new BookingImport(new CottageRegistry(service.getCottages()), service::bookAll);
+            Result result = bookingImport.run(input, rejectsFile, progress ->
+                    System.out.printf("Luettu %d, tuotu %d, hylätty %d\r", progress.rows(), progress.imported(), progress.rejected()));
+            System.out.println();
+            System.out.printf(Locale.ROOT, "Tuotu %d varausta %.2f s, hylätty %d%n",
+                    result.imported(), (System.nanoTime() - start) / 1e9, result.rejected());
+            if (result.rejected() > 0) {
+                System.out.println("Hylätyt rivit: " + rejectsFile);
+            }
+        }
+    }
+
+    /**
+     * Juoksevat summat; päivitetään vain tallentavassa säikeessä.
+     */
+    private static class Progress {
+        long rows;
+        long imported;
+        long rejected;
+
+        Result result() {
+            return new Result(rows, imported, rejected);
+        }
+    }
+
+    /**
+     * Hylättyjen rivien tiedosto, joka avataan vasta ensimmäisen hylätyn rivin kohdalla.
+     */
+    private static class Rejects implements Closeable {
+        private final Path file;
+        private BufferedWriter writer;
+        // CSV-tiedoston otsikkorivi, jotta hylättyjen tiedoston voi tuoda uudelleen
+        private String header;
+
+        Rejects(Path file) {
+            this.file = file;
+        }
+
+        void write(long number, String line, String error) throws IOException {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                if (header != null) {
+                    writer.write(header);
+                    writer.newLine();
+                }
+            }
+            writer.write("# rivi " + number + ": " + error.replace('\n', ' ').replace('\r', ' '));
+            writer.newLine();
+            writer.write(line);
+            writer.newLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+}
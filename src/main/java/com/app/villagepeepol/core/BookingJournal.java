@@ -0,0 +1,1009 @@
+package com.app.villagepeepol.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * BookingJournal tallentaa varausten lisäykset ja poistot lisäystiedostoon (journal)
+ * sen sijaan, että koko varaustiedosto kirjoitettaisiin uudelleen jokaisen muutoksen jälkeen.
+ * <p>
+ * Jokainen muutos on yksi rivi muodossa {@code +;<varausrivi>} tai {@code -;<varausrivi>}.
+ * Rivit synkronoidaan levylle (fsync) erissä taustasäikeessä. Koko varaustiedosto
+ * kirjoitetaan uudelleen vain tiivistyksessä, jonka {@link PersistenceWriter} ajaa taustalla.
+ * Käynnistettäessä tila rakennetaan viimeisimmästä varaustiedostosta ja journalin lopusta.
+ * <p>
+ * Tiivistyksen ajaksi journal siirretään tiedostoon, jonka nimen lopussa on sen varaustiedoston
+ * tarkistussumma, jonka päälle journal on kirjoitettu. Jos ohjelma kaatuu tiivistyksen aikana,
+ * siirretty journal toistetaan vain, jos varaustiedostoa ei vielä ehditty korvata.
+ * <p>
+ * Useampi sovellus voi käyttää samaa journalia, kun sille annetaan {@link DirectoryLock}.
+ * Rivit kirjoitetaan lukon alla journalin loppuun, ja {@link #poll(CottageRegistry, Supplier)} palauttaa
+ * muiden sovellusten sen jälkeen kirjoittamat rivit muutoksina. Jos toinen sovellus on tiivistänyt
+ * journalin, vanhan journalin loppu luetaan ennen siirtymistä uuteen. Journal tiivistetään vain,
+ * kun kaikki muiden kirjoittamat rivit on palautettu kutsujalle eikä kukaan muu ole tiivistämässä,
+ * jotta uusi varaustiedosto ei koskaan jätä pois toisen sovelluksen muutoksia. Tiivistäjä pitää
+ * tiivistettävää journalia lukittuna, kunnes uusi varaustiedosto on levyllä; jos tiivistäjä kaatuu,
+ * lukko vapautuu ja seuraava tiivistys jatkaa sen perään.
+ * <p>
+ * Journalin ensimmäinen rivi kertoo sen sukupolven. Jos sukupolvi on kasvanut useammalla kuin
+ * yhdellä edellisen lukemisen jälkeen, välissä olleen journalin rivit ovat vain varaustiedostossa.
+ * Silloin varaustiedosto ja journal luetaan kokonaan, ja muutokset lasketaan vertaamalla niitä
+ * kutsujan varauksiin.
+ * <p>
+ * Päällekkäisyyden tarkistus ja kirjaus tehdään {@link #commit(CottageRegistry, Supplier, Function)}-metodilla
+ * yhden lukituksen aikana: kutsuja saa ensin muiden kirjoittamat rivit ja tarkistaa omat muutoksensa
+ * niitä vasten, eikä kukaan muu voi kirjoittaa väliin ennen kuin muutokset on kirjattu.
+ */
+public class BookingJournal implements Closeable {
+    // Journalirivien etuliitteet
+    private static final String ADD = "+;";
+    private static final String REMOVE = "-;";
+    // Journalin ensimmäinen rivi: sukupolvi, joka kasvaa jokaisessa tiivistyksessä
+    private static final String GENERATION = "#;";
+    // Kuinka usein kirjoitetut rivit synkronoidaan levylle
+    private static final long SYNC_INTERVAL_MILLIS = 200;
+    // Kuinka monen muutoksen jälkeen journal tiivistetään varaustiedostoon vähintään
+    private static final int COMPACTION_THRESHOLD = 1000;
+    // Suurella varaustiedostolla journal tiivistetään vasta, kun muutoksia on tämä osuus varauksista,
+    // jotta tiivistysten kirjoittama määrä pysyy suhteessa muutoksiin esimerkiksi tuotaessa
+    private static final int COMPACTION_DIVISOR = 4;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final String compactingPrefix;
+    private final ScheduledExecutorService executor;
+    private final PersistenceWriter writer;
+
+    // Suojaa journalin tilan. Tavallinen lukko eikä synchronized, koska lukon alla tehdään tiedostojen
+    // lukua ja kirjoitusta, eikä virtuaalisäie saa jäädä odottamaan niitä kantosäikeeseen kiinnitettynä
+    private final ReentrantLock monitor = new ReentrantLock();
+    // Hakemistolukko, jonka alla journaliin kirjoitetaan ja se tiivistetään; null, jos tiedostoja ei jaeta
+    private final DirectoryLock lock;
+
+    private FileChannel channel;
+    // Journalin tunniste (i-solmu); muuttuu, kun jokin sovellus tiivistää journalin
+    private Object journalKey;
+    // Avoimen journalin sukupolvi
+    private long generation;
+    // true, jos jokin journal jäi lukematta ja tila on luettava kokonaan uudelleen
+    private boolean reloadNeeded;
+    // Lukukanava samaan journaliin ja kohta, johon asti muiden kirjoittamat rivit on luettu
+    private FileChannel readChannel;
+    private long readOffset;
+    // Tämän sovelluksen kirjoittamat rivit, joiden ohi luku ei ole vielä edennyt: alku -> loppu
+    private final TreeMap<Long, Long> ownRecords = new TreeMap<>();
+    // Luetut muiden kirjoittamat rivit, joita ei ole vielä palautettu kutsujalle
+    private final List<String> pendingRecords = new ArrayList<>();
+    // Varaustiedoston tarkistussumma ja tiedoston tunniste, jolle se on laskettu
+    private volatile SnapshotState snapshotState;
+    // Tämän sovelluksen lukitsema tiivistettävä journal, jonka perään seuraava tiivistys jatkaa,
+    // jos edellinen epäonnistui; lukko vapautuu vasta, kun tiivistys on valmis
+    private Path claimedFile;
+    private FileChannel claimChannel;
+    private int recordsSinceCompaction;
+    private int compactionThreshold = COMPACTION_THRESHOLD;
+    private boolean unsynced;
+    private boolean compacting;
+
+    /**
+     * Muiden sovellusten journaliin kirjaama muutos.
+     *
+     * @param added   true, jos varaus lisättiin, false, jos se poistettiin
+     * @param booking lisätty tai poistettu varaus
+     */
+    public record Change(boolean added, Booking booking) {
+    }
+
+    /**
+     * Varaustiedoston tarkistussumma ja tiedoston tunniste laskuhetkellä.
+     */
+    private record SnapshotState(CompletableFuture<Long> checksum, List<Object> identity) {
+    }
+
+    /**
+     * Luo journalin annetulle varaustiedostolle. Journal tallennetaan samaan hakemistoon
+     * tiedostoon, jonka nimi on varaustiedoston nimi ja pääte {@code .journal}.
+     *
+     * @param snapshotFile varaustiedosto, johon journal tiivistetään
+     * @param writer       taustakirjoittaja, joka kirjoittaa tiivistetyn varaustiedoston
+     */
+    public BookingJournal(Path snapshotFile, PersistenceWriter writer) {
+        this(snapshotFile, writer, null);
+    }
+
+    /**
+     * Luo journalin annetulle varaustiedostolle, jota muut sovellukset voivat käyttää yhtä aikaa.
+     *
+     * @param snapshotFile varaustiedosto, johon journal tiivistetään
+     * @param writer       taustakirjoittaja, joka kirjoittaa tiivistetyn varaustiedoston saman lukon alla
+     * @param lock         hakemistolukko, tai null, jos tiedostoja ei jaeta muiden sovellusten kanssa
+     */
+    public BookingJournal(Path snapshotFile, PersistenceWriter writer, DirectoryLock lock) {
+        this.snapshotFile = snapshotFile;
+        this.writer = writer;
+        this.lock = lock;
+        this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+        this.compactingPrefix = snapshotFile.getFileName() + ".journal.compacting.";
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "booking-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Toistaa journalin varaustiedostosta luettujen varausten päälle. Avaa journalin tämän
+     * jälkeen uusien muutosten kirjoittamista varten.
+     *
+     * @param snapshot varaustiedostosta luetut varaukset tiedoston järjestyksessä
+     * @param cottages hakemisto mökeistä, joihin journalin varaukset viittaavat
+     * @return voimassa olevat varaukset: varaustiedoston jäljelle jääneet ja sen jälkeen lisätyt
+     * @throws IOException jos journalin lukeminen tai avaaminen epäonnistuu
+     */
+    public List<Booking> load(List<Booking> snapshot, CottageRegistry cottages) throws IOException {
+        monitor.lock();
+        try {
+            return locked(() -> replay(snapshot, cottages));
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private List<Booking> replay(List<Booking> snapshot, CottageRegistry cottages) throws IOException {
+        Replay replay = new Replay(cottages);
+
+        // Kesken jäänyt tiivistys: toista vain, jos varaustiedostoa ei vielä ehditty korvata
+        Path compactingFile = findCompactingFile();
+        if (compactingFile != null) {
+            long checksum = MappedFileParser.checksum(snapshotFile);
+            snapshotState = new SnapshotState(CompletableFuture.completedFuture(checksum), DirectoryLock.identityOf(snapshotFile));
+            if (baseOf(compactingFile) == checksum) {
+                replay.read(compactingFile);
+                // Tiedosto voi olla toisen sovelluksen kesken oleva tiivistys, joten se jätetään
+                // paikalleen; seuraava tiivistys jatkaa sen perään, kun kukaan ei pidä sitä lukittuna
+            } else {
+                Files.delete(compactingFile);
+            }
+        } else {
+            // Tarkistussummaa tarvitaan vasta ensimmäisessä tiivistyksessä, joten se lasketaan taustalla
+            List<Object> identity = DirectoryLock.identityOf(snapshotFile);
+            snapshotState = new SnapshotState(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return MappedFileParser.checksum(snapshotFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor), identity);
+        }
+        if (Files.exists(journalFile)) {
+            recordsSinceCompaction = replay.read(journalFile);
+        }
+        // Uudet rivit kirjoitetaan loppuun, joten katkennut rivi poistetaan, ettei se jatku seuraavalla rivillä
+        for (Path file : new Path[]{compactingFile, journalFile}) {
+            if (file != null && Files.exists(file)) {
+                try (FileChannel torn = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    truncateTornRecord(torn, torn);
+                }
+            }
+        }
+
+        openJournal(0);
+        readOffset = channel.size();
+        executor.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        compactionThreshold = Math.max(COMPACTION_THRESHOLD, snapshot.size() / COMPACTION_DIVISOR);
+        return replay.apply(snapshot, cottages);
+    }
+
+    /**
+     * @return journalitiedosto, johon muutokset kirjoitetaan
+     */
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Kirjaa varauksen lisäyksen journaliin.
+     *
+     * @param booking lisätty varaus
+     */
+    public void append(Booking booking) {
+        write(ADD + booking.toFileString() + "\n", 1);
+    }
+
+    /**
+     * Kirjaa usean varauksen lisäyksen journaliin yhdellä kirjoituksella.
+     *
+     * @param bookings lisätyt varaukset
+     */
+    public void appendAll(List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder(bookings.size() * 40);
+        for (Booking booking : bookings) {
+            records.append(ADD).append(booking.toFileString()).append('\n');
+        }
+        write(records.toString(), bookings.size());
+    }
+
+    /**
+     * Kirjaa varauksen poiston journaliin.
+     *
+     * @param booking poistettu varaus
+     */
+    public void remove(Booking booking) {
+        write(REMOVE + booking.toFileString() + "\n", 1);
+    }
+
+    /**
+     * Lukee muiden sovellusten journaliin kirjoittamat rivit edellisen kutsun jälkeen. Kutsujan
+     * on tehtävä muutokset omiin varauksiinsa ennen seuraavaa tiivistystä, koska tiivistys olettaa
+     * annetun listan sisältävän ne.
+     *
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @param current  kutsujan nykyiset varaukset; kysytään vain, jos journal jäi lukematta
+     * @return muutokset kirjoitusjärjestyksessä
+     */
+    public List<Change> poll(CottageRegistry cottages, Supplier<? extends Collection<Booking>> current) {
+        monitor.lock();
+        try {
+            List<Change> changes = new ArrayList<>();
+            if (channel == null) {
+                return changes;
+            }
+            try {
+                readNew();
+                // Toisen sovelluksen tiivistys vaihtaa journalin; vaihto tehdään lukon alla
+                if (reloadNeeded || !Objects.equals(DirectoryLock.fileKeyOf(journalFile), journalKey)) {
+                    List<Change> reloaded = locked(() -> {
+                        followRotation();
+                        return reloadNeeded ? reload(cottages, current.get()) : null;
+                    });
+                    if (reloaded != null) {
+                        return reloaded;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Virhe journalin lukemisessa: " + e.getMessage());
+            }
+            changes.addAll(takePending(cottages));
+            return changes;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Lukee muiden sovellusten kirjoittamat rivit kuten {@link #poll(CottageRegistry, Supplier)} ja
+     * antaa ne kutsujalle journalin lukon sisällä, jotta tiivistys ei voi ohittaa niitä ennen kuin
+     * kutsuja on tehnyt ne omiin varauksiinsa.
+     *
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @param current  kutsujan nykyiset varaukset; kysytään vain, jos journal jäi lukematta
+     * @param apply    tekee muutokset kutsujan varauksiin
+     */
+    public void poll(CottageRegistry cottages, Supplier<? extends Collection<Booking>> current,
+                     Consumer<List<Change>> apply) {
+        monitor.lock();
+        try {
+            apply.accept(poll(cottages, current));
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Kirjaa kutsujan muutokset journaliin niin, ettei mikään muu sovellus kirjoita väliin. Lukon
+     * alla luetaan ensin muiden sovellusten kirjoittamat rivit, ja {@code commit} saa ne muutoksina.
+     * Sen on tehtävä ne omiin varauksiinsa, tarkistettava omat muutoksensa niitä vasten ja
+     * palautettava muutokset, jotka kirjataan. Koska lukko pidetään koko ajan, kaksi sovellusta ei
+     * voi hyväksyä päällekkäisiä varauksia.
+     * <p>
+     * Jos journalia ei saada lukittua tai luettua, {@code commit} kutsutaan ilman muutoksia. Kuten
+     * muissakin kirjoitusvirheissä, muutokset palautetaan, vaikka niiden kirjaus epäonnistuisi.
+     *
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @param current  kutsujan nykyiset varaukset; kysytään vain, jos journal jäi lukematta
+     * @param commit   saa muiden sovellusten muutokset kirjoitusjärjestyksessä ja palauttaa kirjattavat muutokset
+     * @return kirjattaviksi palautetut muutokset
+     */
+    public List<Change> commit(CottageRegistry cottages, Supplier<? extends Collection<Booking>> current,
+                               Function<List<Change>, List<Change>> commit) {
+        monitor.lock();
+        try {
+            if (channel == null) {
+                return commit.apply(List.of());
+            }
+            AtomicReference<List<Change>> own = new AtomicReference<>();
+            try {
+                return locked(() -> {
+                    followRotation();
+                    List<Change> changes;
+                    if (reloadNeeded) {
+                        changes = reload(cottages, current.get());
+                    } else {
+                        readNew();
+                        changes = takePending(cottages);
+                    }
+                    own.set(commit.apply(changes));
+                    if (!own.get().isEmpty()) {
+                        StringBuilder records = new StringBuilder(own.get().size() * 40);
+                        for (Change change : own.get()) {
+                            records.append(change.added() ? ADD : REMOVE).append(change.booking().toFileString()).append('\n');
+                        }
+                        writeLocked(records.toString(), own.get().size());
+                    }
+                    return own.get();
+                });
+            } catch (IOException e) {
+                System.out.println("Virhe journalin kirjoittamisessa: " + e.getMessage());
+                return own.get() != null ? own.get() : commit.apply(List.of());
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Tiivistää journalin, jos siihen on kertynyt niin monta muutosta, että se kannattaa tiivistää.
+     * Kopio otetaan journalin lukon sisällä, joten se vastaa journaliin kirjattuja muutoksia, kun
+     * kutsuja tekee muutoksensa {@link #commit(CottageRegistry, Supplier, Function)}-metodilla.
+     *
+     * @param bookings antaa kopion kaikista tämänhetkisistä varauksista
+     */
+    public void compactIfNeeded(Supplier<List<Booking>> bookings) {
+        monitor.lock();
+        try {
+            if (shouldCompact()) {
+                compact(bookings.get());
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * @return true, jos journaliin on kertynyt niin monta muutosta, että se kannattaa tiivistää
+     */
+    public boolean shouldCompact() {
+        monitor.lock();
+        try {
+            return !compacting && recordsSinceCompaction >= compactionThreshold;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Tiivistää journalin: kirjoittaa annetut varaukset taustalla uudeksi varaustiedostoksi
+     * ja poistaa sen jälkeen journalin osan, joka sisältyy uuteen tiedostoon.
+     * Metodia kutsutaan samasta säikeestä, joka tekee muutokset, jotta annettu lista vastaa
+     * täsmälleen journaliin siihen mennessä kirjattuja muutoksia. Tiivistys jätetään väliin, jos
+     * journalissa on muiden sovellusten rivejä, joita {@link #poll(CottageRegistry, Supplier)} ei ole vielä
+     * palauttanut, tai jos toinen sovellus on parhaillaan tiivistämässä.
+     *
+     * @param bookings kopio kaikista tämänhetkisistä varauksista
+     */
+    public void compact(List<Booking> bookings) {
+        monitor.lock();
+        try {
+            if (compacting || channel == null) {
+                return;
+            }
+            Path compactingFile;
+            try {
+                compactingFile = locked(() -> {
+                    followRotation();
+                    readNew();
+                    if (reloadNeeded || !pendingRecords.isEmpty() || readOffset < channel.size()) {
+                        return null;
+                    }
+                    Path existing = findCompactingFile();
+                    if (existing != null && !claim(existing)) {
+                        return null;
+                    }
+                    return rotate();
+                });
+            } catch (IOException e) {
+                System.out.println("Virhe journalin tiivistyksen aloittamisessa: " + e.getMessage());
+                return;
+            }
+            if (compactingFile == null) {
+                return;
+            }
+            compacting = true;
+            recordsSinceCompaction = 0;
+            compactionThreshold = Math.max(COMPACTION_THRESHOLD, bookings.size() / COMPACTION_DIVISOR);
+            // Tarkistussumma kirjataan vielä kirjoittajan lukon alla, jotta tunniste vastaa juuri tätä tiedostoa
+            writer.submit(snapshotFile, PersistenceWriter.lines(bookings, Booking::toFileString))
+                    .whenComplete((checksum, error) -> {
+                        if (error == null) {
+                            snapshotState = new SnapshotState(CompletableFuture.completedFuture(checksum), identityOrNull(snapshotFile));
+                        }
+                    })
+                    .whenCompleteAsync((checksum, error) -> compacted(compactingFile, error), executor);
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Synkronoi kirjoittamattomat muutokset levylle ja sulkee journalin. Keskeneräinen
+     * tiivistys kirjoitetaan taustakirjoittajassa, joten se suljetaan ennen journalia.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        monitor.lock();
+        try {
+            sync();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (readChannel != null) {
+                readChannel.close();
+                readChannel = null;
+            }
+            releaseClaim();
+        } catch (IOException e) {
+            System.out.println("Virhe journalin sulkemisessa: " + e.getMessage());
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Kirjoittaa rivit journalin loppuun.
+     *
+     * @param records rivinvaihtoon päättyvät rivit
+     * @param count   rivien määrä
+     */
+    private void write(String records, int count) {
+        monitor.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            try {
+                locked(() -> {
+                    followRotation();
+                    writeLocked(records, count);
+                    return null;
+                });
+            } catch (IOException e) {
+                System.out.println("Virhe journalin kirjoittamisessa: " + e.getMessage());
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Kirjoittaa rivit journalin loppuun. Kutsutaan lukon alla, kun journal on jo vaihdettu uusimpaan.
+     */
+    private void writeLocked(String records, int count) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = records.getBytes(StandardCharsets.UTF_8);
+        // Kaatunut sovellus on voinut jättää journalin loppuun katkenneen rivin; jos kaikki on jo
+        // luettu kokonaisina riveinä, loppua ei tarvitse tarkistaa
+        long position = channel.size();
+        if (readOffset < position) {
+            truncateTornRecord(readChannel, channel);
+            position = channel.size();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        // Oma rivi ohitetaan luettaessa; jos kaikki aiempi on luettu, luku siirtyy suoraan sen ohi
+        if (readOffset == position) {
+            readOffset = position + bytes.length;
+        } else {
+            ownRecords.put(position, position + bytes.length);
+        }
+        unsynced = true;
+        recordsSinceCompaction += count;
+        Metrics.recordSince("journal.append", start);
+        Metrics.increment("journal.bytes", bytes.length);
+    }
+
+    /**
+     * Synkronoi kirjoitetut rivit levylle. Synkronointi tehdään lukon ulkopuolella, jotta kirjaukset
+     * eivät odota sitä; journalin sulkeva tiivistys synkronoi sen itse ennen sulkemista.
+     */
+    private void sync() {
+        FileChannel synced;
+        monitor.lock();
+        try {
+            if (!unsynced || channel == null) {
+                return;
+            }
+            synced = channel;
+            unsynced = false;
+        } finally {
+            monitor.unlock();
+        }
+        long start = System.nanoTime();
+        try {
+            synced.force(false);
+            Metrics.recordSince("journal.sync", start);
+        } catch (ClosedChannelException e) {
+            // Journal vaihtui kesken; vanha synkronoitiin ennen sulkemista
+        } catch (IOException e) {
+            monitor.lock();
+            try {
+                unsynced |= channel == synced;
+            } finally {
+                monitor.unlock();
+            }
+            System.out.println("Virhe journalin synkronoinnissa: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Siirtää nykyisen journalin tiivistettäväksi ja aloittaa uuden tyhjän journalin.
+     * Jos edellinen tiivistys epäonnistui, nykyisen journalin rivit liitetään sen perään.
+     *
+     * @return tiivistettävä journal
+     */
+    private Path rotate() throws IOException {
+        long checksum = snapshotChecksum();
+
+        channel.force(false);
+        channel.close();
+        channel = null;
+        readChannel.close();
+        readChannel = null;
+        unsynced = false;
+        Path compactingFile = findCompactingFile();
+        if (compactingFile != null) {
+            // Tiedosto on tämän sovelluksen lukitsema; kirjoitetaan samalla kanavalla, koska toisen
+            // kanavan sulkeminen voisi vapauttaa lukon
+            claimChannel.write(ByteBuffer.wrap(Files.readAllBytes(journalFile)));
+            claimChannel.force(false);
+            Files.delete(journalFile);
+        } else {
+            compactingFile = snapshotFile.resolveSibling(compactingPrefix + checksum);
+            Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+            claim(compactingFile);
+        }
+        openJournal(generation + 1);
+        readOffset = channel.size();
+        ownRecords.clear();
+        return compactingFile;
+    }
+
+    /**
+     * Palauttaa varaustiedoston tarkistussumman. Jos toinen sovellus on korvannut tiedoston
+     * sen jälkeen, kun summa laskettiin, summa lasketaan uudelleen.
+     */
+    private long snapshotChecksum() throws IOException {
+        SnapshotState state = snapshotState;
+        List<Object> identity = DirectoryLock.identityOf(snapshotFile);
+        if (state != null && identity != null && identity.get(0) != null && identity.equals(state.identity())) {
+            try {
+                return state.checksum().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Tarkistussumman laskeminen keskeytettiin", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Tarkistussumman laskeminen epäonnistui", e.getCause());
+            }
+        }
+        long checksum = MappedFileParser.checksum(snapshotFile);
+        snapshotState = new SnapshotState(CompletableFuture.completedFuture(checksum), identity);
+        return checksum;
+    }
+
+    private static List<Object> identityOrNull(Path file) {
+        try {
+            return DirectoryLock.identityOf(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Siirtyy uuteen journaliin, jos toinen sovellus on tiivistänyt journalin. Vanhan journalin
+     * loppu luetaan ensin, koska sen rivejä ei ole enää missään muualla. Kutsutaan lukon alla.
+     */
+    private void followRotation() throws IOException {
+        Object key = DirectoryLock.fileKeyOf(journalFile);
+        if (Objects.equals(key, journalKey) && (key != null || Files.exists(journalFile))) {
+            return;
+        }
+        readNew();
+        // Synkronoidaan aina: taustasynkronointi on voinut jo nollata merkinnän ja jäädä kesken
+        channel.force(false);
+        unsynced = false;
+        channel.close();
+        readChannel.close();
+        long previous = generation;
+        openJournal(previous + 1);
+        if (generation != previous + 1) {
+            reloadNeeded = true;
+        }
+        readOffset = 0;
+        ownRecords.clear();
+    }
+
+    /**
+     * Lukee varaustiedoston ja journalin kokonaan ja vertaa niitä kutsujan varauksiin.
+     * Kutsutaan lukon alla, kun jokin journal jäi lukematta.
+     *
+     * @return poistot ja lisäykset, joiden jälkeen kutsujan varaukset vastaavat tiedostoja
+     */
+    private List<Change> reload(CottageRegistry cottages, Collection<Booking> current) throws IOException {
+        Replay replay = new Replay(cottages);
+        Path compactingFile = findCompactingFile();
+        long checksum = snapshotChecksum();
+        if (compactingFile != null && baseOf(compactingFile) == checksum) {
+            replay.read(compactingFile);
+        }
+        recordsSinceCompaction = replay.read(journalFile);
+        List<Booking> bookings = replay.apply(new MappedFileParser().parseBookings(snapshotFile, cottages), cottages);
+        readOffset = channel.size();
+        ownRecords.clear();
+        pendingRecords.clear();
+        reloadNeeded = false;
+        Metrics.increment("journal.reload", 1);
+
+        Map<String, Integer> known = new HashMap<>();
+        for (Booking booking : current) {
+            if (booking.getCottage() != null) {
+                known.merge(booking.toFileString(), 1, Integer::sum);
+            }
+        }
+        List<Change> added = new ArrayList<>();
+        for (Booking booking : bookings) {
+            if (booking.getCottage() == null || known.merge(booking.toFileString(), -1, Integer::sum) < 0) {
+                added.add(new Change(true, booking));
+            }
+        }
+        List<Change> changes = new ArrayList<>();
+        known.forEach((line, count) -> {
+            for (int i = 0; i < count; i++) {
+                changes.add(new Change(false, Booking.fromFileString(line, cottages)));
+            }
+        });
+        changes.addAll(added);
+        return changes;
+    }
+
+    /**
+     * Lukee journalin kokonaiset rivit luetusta kohdasta loppuun ja lisää muiden kirjoittamat
+     * rivit palautettaviksi. Keskeneräinen viimeinen rivi luetaan seuraavalla kerralla.
+     */
+    private void readNew() throws IOException {
+        long size = readChannel.size();
+        if (size <= readOffset) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - readOffset, Integer.MAX_VALUE - 8));
+        while (buffer.hasRemaining() && readChannel.read(buffer, readOffset + buffer.position()) > 0) {
+            // Luetaan, kunnes puskuri on täynnä tai tiedosto loppuu
+        }
+        byte[] bytes = buffer.array();
+        int lineStart = 0;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (bytes[i] == '\n') {
+                boolean header = i - lineStart >= GENERATION.length() && bytes[lineStart] == '#';
+                if (ownRecords.remove(readOffset + lineStart) == null && !header) {
+                    pendingRecords.add(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                }
+                lineStart = i + 1;
+            }
+        }
+        readOffset += lineStart;
+    }
+
+    /**
+     * Muuttaa luetut muiden kirjoittamat rivit muutoksiksi ja tyhjentää ne.
+     */
+    private List<Change> takePending(CottageRegistry cottages) {
+        List<Change> changes = new ArrayList<>(pendingRecords.size());
+        for (String record : pendingRecords) {
+            if (!Replay.isComplete(record)) {
+                continue;
+            }
+            try {
+                changes.add(new Change(record.startsWith(ADD), Booking.fromFileString(record.substring(2), cottages)));
+                recordsSinceCompaction++;
+            } catch (DateTimeException | NumberFormatException e) {
+                System.out.println("Virheellinen journalin rivi: " + record);
+            }
+        }
+        pendingRecords.clear();
+        return changes;
+    }
+
+    private <T> T locked(DirectoryLock.Action<T> action) throws IOException {
+        return lock == null ? action.run() : lock.locked(action);
+    }
+
+    /**
+     * Viimeistelee tiivistyksen, kun uusi varaustiedosto on kirjoitettu. Onnistuneen
+     * kirjoituksen jälkeen tiivistetty journal on tarpeeton.
+     */
+    private void compacted(Path compactingFile, Throwable error) {
+        monitor.lock();
+        try {
+            compacting = false;
+            if (error != null) {
+                // Lukko pidetään, jotta seuraava tiivistys jatkaa saman tiedoston perään
+                return;
+            }
+            try {
+                locked(() -> {
+                    Files.deleteIfExists(compactingFile);
+                    releaseClaim();
+                    return null;
+                });
+            } catch (IOException e) {
+                System.out.println("Virhe tiivistetyn journalin poistamisessa: " + e.getMessage());
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Lukitsee tiivistettävän journalin tälle sovellukselle. Lukitus onnistuu, jos tiedosto on jo
+     * tämän sovelluksen tai sen tiivistänyt sovellus on lopettanut. Kutsutaan hakemistolukon alla.
+     *
+     * @return true, jos tiedosto on nyt tämän sovelluksen lukitsema
+     */
+    private boolean claim(Path compactingFile) throws IOException {
+        if (compactingFile.equals(claimedFile)) {
+            return true;
+        }
+        FileChannel claimed = FileChannel.open(compactingFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        FileLock fileLock;
+        try {
+            fileLock = claimed.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            claimed.close();
+            return false;
+        }
+        releaseClaim();
+        claimedFile = compactingFile;
+        claimChannel = claimed;
+        return true;
+    }
+
+    private void releaseClaim() throws IOException {
+        if (claimChannel != null) {
+            claimChannel.close();
+            claimChannel = null;
+            claimedFile = null;
+        }
+    }
+
+    /**
+     * Avaa journalin. Uuden journalin ensimmäiseksi riviksi kirjoitetaan sen sukupolvi.
+     *
+     * @param newGeneration sukupolvi, jos journal luodaan nyt
+     */
+    private void openJournal(long newGeneration) throws IOException {
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        readChannel = FileChannel.open(journalFile, StandardOpenOption.READ);
+        journalKey = DirectoryLock.fileKeyOf(journalFile);
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.wrap((GENERATION + newGeneration + "\n").getBytes(StandardCharsets.UTF_8)));
+            generation = newGeneration;
+        } else {
+            generation = readGeneration();
+        }
+    }
+
+    /**
+     * @return journalin ensimmäisen rivin sukupolvi; 0, jos journal on kirjoitettu ilman sitä
+     */
+    private long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        readChannel.read(buffer, 0);
+        String first = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int end = first.indexOf('\n');
+        if (!first.startsWith(GENERATION) || end < 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(first.substring(GENERATION.length(), end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Palauttaa kohdan, johon tiedoston viimeinen kokonainen rivi päättyy. Jos kirjoittaja kaatui
+     * kesken rivin, kohta on katkenneen rivin alussa; muuten se on tiedoston loppu.
+     */
+    private static long completeLength(FileChannel in) throws IOException {
+        long size = in.size();
+        ByteBuffer last = ByteBuffer.allocate(1);
+        if (size == 0 || in.read(last, size - 1) == 1 && last.get(0) == '\n') {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = size;
+        while (end > 0) {
+            long from = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - from));
+            while (buffer.hasRemaining() && in.read(buffer, from + buffer.position()) > 0) {
+                // Luetaan koko lohko
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    /**
+     * Poistaa tiedoston lopusta kaatumisen katkaiseman rivin, jotta seuraava rivi ei jatku sen perään.
+     * Kutsutaan lukon alla, joten kukaan ei ole kirjoittamassa tiedostoon.
+     */
+    private static void truncateTornRecord(FileChannel in, FileChannel out) throws IOException {
+        long length = completeLength(in);
+        if (length < in.size()) {
+            out.truncate(length);
+            Metrics.increment("journal.torn", 1);
+        }
+    }
+
+    private Path findCompactingFile() throws IOException {
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, compactingPrefix + "*")) {
+            for (Path file : files) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private long baseOf(Path compactingFile) {
+        try {
+            return Long.parseLong(compactingFile.getFileName().toString().substring(compactingPrefix.length()));
+        } catch (NumberFormatException e) {
+            // Rikkinäinen nimi käsitellään kuin pohjaa ei tunnettaisi
+            return -1;
+        }
+    }
+
+    /**
+     * Journalin toisto. Poisto kohdistuu viimeisimpään samanlaiseen journalissa lisättyyn
+     * varaukseen, ja jos sellaista ei ole, varaustiedostosta luettuun varaukseen. Rivit verrataan
+     * nykyisessä muodossa, joten vanhan muodon journal toistuu samoin kuin uusi.
+     */
+    private static class Replay {
+        private final CottageRegistry cottages;
+        private final List<String> added = new ArrayList<>();
+        private final Map<String, Deque<Integer>> positions = new HashMap<>();
+        private final Map<String, Integer> removedFromSnapshot = new HashMap<>();
+
+        Replay(CottageRegistry cottages) {
+            this.cottages = cottages;
+        }
+
+        int read(Path file) throws IOException {
+            int records = 0;
+            // Rivi on kirjoitettu kokonaan vasta, kun sen rivinvaihto on levyllä
+            boolean terminated;
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                terminated = completeLength(in) == in.size();
+            }
+            try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String next = br.readLine();
+                while (next != null) {
+                    String record = next;
+                    next = br.readLine();
+                    if (next == null && !terminated) {
+                        // Kaatumisen katkaisema viimeinen rivi ohitetaan, vaikka sen kentät näyttäisivät
+                        // kelvollisilta: katkennut päivien määrä tai poistettava varaus olisi väärä
+                        break;
+                    }
+                    if (!isComplete(record)) {
+                        continue;
+                    }
+                    String line = Booking.normalize(record.substring(2), cottages);
+                    if (record.startsWith(ADD)) {
+                        positions.computeIfAbsent(line, k -> new ArrayDeque<>()).addLast(added.size());
+                        added.add(line);
+                    } else {
+                        Deque<Integer> indexes = positions.get(line);
+                        if (indexes != null && !indexes.isEmpty()) {
+                            added.set(indexes.removeLast(), null);
+                        } else {
+                            removedFromSnapshot.merge(line, 1, Integer::sum);
+                        }
+                    }
+                    records++;
+                }
+            }
+            return records;
+        }
+
+        List<Booking> apply(List<Booking> snapshot, CottageRegistry cottages) {
+            List<Booking> result = new ArrayList<>(snapshot.size() + added.size());
+            // Muodosta tiedostorivi vain niille varauksille, joiden asiakkaalta on poistoja
+            Set<String> customers = new HashSet<>();
+            for (String line : removedFromSnapshot.keySet()) {
+                customers.add(line.split(";")[1]);
+            }
+            for (Booking booking : snapshot) {
+                if (customers.contains(booking.getCustomerName())) {
+                    String line = booking.toFileString();
+                    Integer pending = removedFromSnapshot.get(line);
+                    if (pending != null) {
+                        if (pending == 1) {
+                            removedFromSnapshot.remove(line);
+                        } else {
+                            removedFromSnapshot.put(line, pending - 1);
+                        }
+                        continue;
+                    }
+                }
+                result.add(booking);
+            }
+            for (String line : added) {
+                if (line != null) {
+                    try {
+                        result.add(Booking.fromFileString(line, cottages));
+                    } catch (DateTimeException | NumberFormatException e) {
+                        // Yksi rikkinäinen rivi ei estä muiden varausten lukemista
+                        System.out.println("Virheellinen journalin rivi: " + line);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static boolean isComplete(String record) {
+            if (!record.startsWith(ADD) && !record.startsWith(REMOVE)) {
+                return false;
+            }
+            // Varausrivillä on neljä kenttää: mökki, asiakas, alkamispäivä ja päivien määrä
+            int separators = 0;
+            for (int i = 2; i < record.length(); i++) {
+                if (record.charAt(i) == ';') {
+                    separators++;
+                }
+            }
+            return separators == 3 && record.charAt(record.length() - 1) != ';';
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.app.villagepeepol.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * BookingService pitää mökit ja varaukset muistissa ilman käyttöliittymää ja tallentaa
+ * muutokset samoihin tiedostoihin kuin työpöytäsovellus. Palvelin käyttää tätä luokkaa
+ * useasta säikeestä yhtä aikaa. Mökit eivät muutu avaamisen jälkeen, joten niitä luetaan
+ * ilman lukkoa; varaukset tekee {@link BookingEngine}, joka lukitsee vain varattavan mökin.
+ * <p>
+ * Muistissa ovat vain aktiivisen jakson varaukset. Jos varaus alkaa ennen aktiivista jaksoa,
+ * sen vuosien arkistoidut varaukset luetaan ensin saatavuushakemistoon, jotta päällekkäisyys
+ * huomataan myös niitä vasten.
+ * <p>
+ * Muiden samaa hakemistoa käyttävien sovellusten journaliin kirjaamat muutokset luetaan, kun
+ * varaus kirjataan journaliin, ja ennen mökin varausten hakua. Muiden sovellusten lisäämiä tai
+ * muuttamia mökkejä ei lueta ennen uudelleenkäynnistystä.
+ */
+public class BookingService implements Closeable {
+    private final BookingFiles files;
+    private final List<Cottage> cottages = new ArrayList<>();
+    private final CottageRegistry cottageRegistry = new CottageRegistry();
+    private final AvailabilityIndex availabilityIndex = new AvailabilityIndex();
+    private final CottageSearch cottageSearch = new CottageSearch(availabilityIndex);
+    private final BookingEngine engine;
+    // Vuodet, joiden arkistoidut varaukset on luettu saatavuushakemistoon; suojattu omalla lukollaan
+    private final Set<Integer> historyYears = new HashSet<>();
+    // Saatavuushakemistoon luetut arkistoidut varaukset; eivät kuulu aktiivisiin varauksiin
+    private final Set<Booking> historyBookings = ConcurrentHashMap.newKeySet();
+
+    private BookingService(BookingFiles files, BinarySnapshot.Contents contents) {
+        this.files = files;
+        for (Cottage cottage : contents.cottages()) {
+            cottages.add(cottage);
+            cottageRegistry.add(cottage);
+            cottageSearch.add(cottage);
+        }
+        List<Booking> bookings = new ArrayList<>(contents.bookings());
+        bookings.forEach(availabilityIndex::add);
+        this.engine = new BookingEngine(availabilityIndex, bookings, files.getJournal(), cottageRegistry);
+    }
+
+    /**
+     * Avaa hakemiston tiedostot ja lukee mökit ja varaukset muistiin. Tiedostot luodaan,
+     * jos niitä ei ole olemassa.
+     *
+     * @param directory hakemisto, jossa mökki- ja varaustiedostot ovat
+     * @param status    saa tiedon lukemisen vaiheesta
+     * @return palvelu, joka on valmis käsittelemään pyyntöjä
+     */
+    public static BookingService open(Path directory, Consumer<String> status) {
+        BookingFiles files = new BookingFiles(directory);
+        files.createIfNotExist();
+        BookingService service = new BookingService(files, files.load(status));
+        // Pitkäksi kasvanut journal tiivistetään heti käynnistyksen jälkeen
+        service.engine.compactIfNeeded();
+        return service;
+    }
+
+    /**
+     * @return kopio kaikista mökeistä
+     */
+    public List<Cottage> getCottages() {
+        return new ArrayList<>(cottages);
+    }
+
+    /**
+     * @return varausten määrä
+     */
+    public int getBookingCount() {
+        return engine.size();
+    }
+
+    /**
+     * Palauttaa sivun varauksia lisäysjärjestyksessä.
+     *
+     * @param offset ensimmäisen palautettavan varauksen kohta
+     * @param limit  palautettavien varausten enimmäismäärä
+     * @return kopio annetun välin varauksista
+     */
+    public List<Booking> getBookings(int offset, int limit) {
+        return engine.getBookings(offset, limit);
+    }
+
+    /**
+     * Hakee mökin nimellä.
+     *
+     * @param name mökin nimi
+     * @return mökki, tai null, jos nimellä ei ole mökkiä
+     */
+    public Cottage findCottage(String name) {
+        return cottageRegistry.findByName(name);
+    }
+
+    /**
+     * Palauttaa mökin aktiivisen jakson varaukset. Varaukset haetaan mökin saatavuushakemistosta,
+     * joten haun kesto riippuu vain mökin varausten määrästä.
+     *
+     * @param cottageName mökin nimi
+     * @return mökin varaukset alkamispäivän mukaisessa järjestyksessä, tai null, jos mökkiä ei ole
+     */
+    public List<Booking> getBookingsOf(String cottageName) {
+        Cottage cottage = cottageRegistry.findByName(cottageName);
+        if (cottage == null) {
+            return null;
+        }
+        engine.pollChanges();
+        List<Booking> bookings = new ArrayList<>();
+        for (Booking booking : availabilityIndex.bookingsOf(cottage)) {
+            if (!historyBookings.contains(booking)) {
+                bookings.add(booking);
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * Hakee vapaat mökit, joihin mahtuu vähintään annettu määrä henkilöitä.
+     *
+     * @param guests    henkilöiden määrä
+     * @param minSize   mökin vähimmäiskoko, 0 jos kokoa ei rajata
+     * @param startDate tulopäivä
+     * @param days      jakson pituus päivissä
+     * @return vapaat mökit pienimmästä sopivasta kapasiteetista alkaen
+     */
+    public List<Cottage> findAvailable(int guests, int minSize, LocalDate startDate, int days) {
+        return cottageSearch.findAvailable(guests, minSize, startDate, days);
+    }
+
+    /**
+     * Varaa mökin, jos se on vapaana koko jakson. Varaus kirjataan varausjournaliin ennen
+     * kuin metodi palaa. Eri mökkien samanaikaiset varaukset eivät odota toisiaan.
+     *
+     * @param cottageName  varattavan mökin nimi
+     * @param customerName asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     * @return tehty varaus
+     * @throws IllegalArgumentException jos mökkiä ei ole, kesto ei ole 1–{@value Booking#MAX_DAYS} päivää tai nimi ei sovi tiedostoon
+     * @throws BookingConflictException jos mökillä on jo päällekkäinen varaus
+     */
+    public Booking book(String cottageName, String customerName, LocalDate startDate, int days)
+            throws BookingConflictException {
+        Cottage cottage = cottageRegistry.findByName(cottageName);
+        if (cottage == null) {
+            throw new IllegalArgumentException("Mökkiä ei löydy: " + cottageName);
+        }
+        Booking.requireValidDays(days);
+        if (!Booking.isValidCustomerName(customerName)) {
+            throw new IllegalArgumentException("Virheellinen asiakkaan nimi");
+        }
+        loadHistory(startDate);
+        return engine.book(cottage, customerName, startDate, days);
+    }
+
+    /**
+     * Varaa erän tarkistettuja varauksia, esimerkiksi tiedostosta tuotaessa. Varaukset tarkistetaan
+     * päällekkäisyyksien osalta kuten {@link #book}-metodissa, myös toisiaan vasten, ja onnistuneet
+     * kirjataan varausjournaliin yhdellä kirjoituksella ennen kuin metodi palaa.
+     *
+     * @param batch varaukset, joiden mökki, kesto ja asiakkaan nimi on jo tarkistettu
+     * @return varaukset, joita ei voitu tehdä, ja niiden kanssa päällekkäiset varaukset
+     */
+    public Map<Booking, List<Booking>> bookAll(List<Booking> batch) {
+        batch.stream().map(Booking::getStartDate).min(LocalDate::compareTo).ifPresent(this::loadHistory);
+        return engine.bookAll(batch);
+    }
+
+    /**
+     * Peruu aktiivisen jakson varauksen. Poisto kirjataan varausjournaliin ennen kuin metodi palaa.
+     *
+     * @param cottageName  mökin nimi
+     * @param customerName asiakkaan nimi
+     * @param startDate    varauksen alkamispäivämäärä
+     * @param days         varauksen kesto päivissä
+     * @return peruttu varaus, tai null, jos mökkiä tai varausta ei ole
+     */
+    public Booking cancel(String cottageName, String customerName, LocalDate startDate, int days) {
+        Cottage cottage = cottageRegistry.findByName(cottageName);
+        if (cottage == null) {
+            return null;
+        }
+        return engine.cancel(cottage, customerName, startDate, days);
+    }
+
+    /**
+     * @return vuodet, joiden varauksia on arkistossa
+     */
+    public SortedSet<Integer> getArchivedYears() {
+        return files.getArchive().years();
+    }
+
+    /**
+     * Lukee vuoden arkistoidut varaukset. Ne eivät kuulu {@link #getBookings(int, int)}-metodin varauksiin.
+     *
+     * @param year vuosi
+     * @return vuonna alkaneet arkistoidut varaukset
+     * @throws IOException jos arkiston lukeminen epäonnistuu
+     */
+    public List<Booking> getArchivedBookings(int year) throws IOException {
+        return files.getArchive().load(year, cottageRegistry);
+    }
+
+    /**
+     * Lukee arkistoidut varaukset saatavuushakemistoon niiltä vuosilta, joille ennen aktiivista
+     * jaksoa alkava varaus voi osua. Edellinen vuosi luetaan mukaan, koska sen lopussa alkanut
+     * varaus voi jatkua seuraavalle vuodelle.
+     *
+     * @param startDate varauksen alkamispäivämäärä
+     */
+    private void loadHistory(LocalDate startDate) {
+        LocalDate activeFrom = files.getActiveFrom();
+        if (!startDate.isBefore(activeFrom)) {
+            return;
+        }
+        synchronized (historyYears) {
+            for (int year = startDate.getYear() - 1; year <= activeFrom.getYear(); year++) {
+                if (historyYears.add(year)) {
+                    try {
+                        for (Booking booking : getArchivedBookings(year)) {
+                            historyBookings.add(booking);
+                            availabilityIndex.add(booking);
+                        }
+                    } catch (IOException e) {
+                        System.out.println("Virhe arkiston lukemisessa: " + e.getMessage());
+                        historyYears.remove(year);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Kirjoittaa odottavat tallennukset ja sulkee tiedostot.
+     */
+    @Override
+    public void close() {
+        files.close();
+    }
+}
@@ -1,10 +1,17 @@
-package com.app.villagepeepol;
+package com.app.villagepeepol.core;
 
 /**
  Tämä luokka edustaa mökkiä, jolla on nimi, koko ja kapasiteetti.
+ Varaukset viittaavat mökkiin sen pysyvällä tunnisteella, joten nimen voi vaihtaa
+ varausten irtoamatta mökistä.
  */
 public class Cottage {
 
+    /**
+     Mökin pysyvä tunniste; 0, jos tunnistetta ei ole vielä annettu.
+     */
+    private int id;
+
     /**
      Mökin nimi.
      */
@@ -27,11 +34,39 @@ public class Cottage {
      @param capacity Mökin kapasiteetti
      */
     public Cottage(String name, int size, int capacity) {
+        this(0, name, size, capacity);
+    }
+
+    /**
+     Luo uuden mökin annetulla tunnisteella, nimellä, koolla ja kapasiteetilla.
+     @param id Mökin pysyvä tunniste
+     @param name Mökin nimi
+     @param size Mökin koko
+     @param capacity Mökin kapasiteetti
+     */
+    public Cottage(int id, String name, int size, int capacity) {
+        this.id = id;
         this.name = name;
         this.size = size;
         this.capacity = capacity;
     }
 
+    /**
+     Palauttaa mökin pysyvän tunnisteen.
+     @return Mökin tunniste, tai 0, jos mökkiä ei ole vielä tallennettu
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     Asettaa mökin tunnisteen. Tunniste annetaan vain kerran, kun mökki tallennetaan ensimmäisen kerran.
+     @param id Mökin tunniste
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
      Palauttaa mökin nimen.
      @return Mökin nimi
@@ -81,20 +116,33 @@ public class Cottage {
     }
 
     /**
-     Muuntaa annetun tiedostostringin mökiksi.
-     @param fileString Tiedostostringi, joka sisältää mökin tiedot erotettuna puolipisteellä (;)
+     Muuntaa annetun tiedostostringin mökiksi. Vanhan muodon rivillä ei ole tunnistetta,
+     jolloin mökin tunniste on 0 ja se annetaan tiedostoja luettaessa.
+     @param fileString Tiedostostringi, joka sisältää mökin tunnisteen, nimen, koon ja kapasiteetin
+     erotettuna puolipisteellä (;), tai vanhassa muodossa pelkän nimen, koon ja kapasiteetin
      @return Uusi mökki, joka on luotu tiedostostringin perusteella
      */
     public static Cottage fromFileString(String fileString) {
         String[] parts = fileString.split(";");
-        return new Cottage(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        if (parts.length == 3) {
+            return new Cottage(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+        return new Cottage(Integer.parseInt(parts[0]), parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
     }
 
     /**
-     Muuntaa mökin tiedot tiedostostringiksi, jossa nimi, koko ja kapasiteetti erotetaan puolipisteellä (;).
+     Muuntaa mökin tiedot tiedostostringiksi, jossa tunniste, nimi, koko ja kapasiteetti erotetaan puolipisteellä (;).
      @return Mökin tiedot tiedostostringinä
      */
     public String toFileString() {
+        return id + ";" + name + ";" + size + ";" + capacity;
+    }
+
+    /**
+     Muuntaa mökin tiedot vanhan muodon tiedostostringiksi ilman tunnistetta.
+     @return Mökin nimi, koko ja kapasiteetti tiedostostringinä
+     */
+    String toLegacyFileString() {
         return name + ";" + size + ";" + capacity;
     }
 
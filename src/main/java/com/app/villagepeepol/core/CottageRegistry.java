@@ -0,0 +1,149 @@
+package com.app.villagepeepol.core;
+
+import java.util.*;
+
+/**
+ * CottageRegistry on mökkien hakemisto, josta mökki löytyy tunnisteella tai nimellä vakioajassa.
+ * Varausten lukijat käyttävät samaa hakemistoa, ja se pidetään ajan tasalla mökkilistan kanssa.
+ */
+public class CottageRegistry {
+    // Saman nimiset mökit lisäysjärjestyksessä; haku palauttaa ensimmäisen kuten listan läpikäynti
+    private final Map<String, List<Cottage>> byName = new HashMap<>();
+    // Mökit tunnisteen mukaan; mökit, joilla ei vielä ole tunnistetta, löytyvät vain nimellä
+    private final Map<Integer, Cottage> byId = new HashMap<>();
+    // true, jos varausrivin mökkikenttä ratkaistaan ensin nimellä
+    private boolean namesFirst;
+
+    /**
+     * Luo tyhjän mökkihakemiston.
+     */
+    public CottageRegistry() {
+    }
+
+    /**
+     * Luo mökkihakemiston annetuista mökeistä.
+     *
+     * @param cottages hakemistoon lisättävät mökit
+     */
+    public CottageRegistry(Collection<Cottage> cottages) {
+        addAll(cottages);
+    }
+
+    /**
+     * Luo hakemiston vanhan muodon tiedostojen lukemiseen: niissä varaus viittaa mökkiin nimellä,
+     * joten numeron näköinen mökkikenttä on mökin nimi eikä tunniste.
+     *
+     * @param cottages hakemistoon lisättävät mökit
+     * @return mökkihakemisto, joka ratkaisee mökkikentän ensin nimellä
+     */
+    public static CottageRegistry forLegacyFiles(Collection<Cottage> cottages) {
+        CottageRegistry registry = new CottageRegistry(cottages);
+        registry.namesFirst = true;
+        return registry;
+    }
+
+    /**
+     * @return true, jos varausrivin mökkikenttä ratkaistaan ensin nimellä
+     */
+    public boolean prefersNames() {
+        return namesFirst;
+    }
+
+    /**
+     * Lisää mökin hakemistoon.
+     *
+     * @param cottage lisättävä mökki
+     */
+    public void add(Cottage cottage) {
+        byName.computeIfAbsent(cottage.getName(), k -> new ArrayList<>(1)).add(cottage);
+        if (cottage.getId() > 0) {
+            byId.put(cottage.getId(), cottage);
+        }
+    }
+
+    /**
+     * Lisää mökit hakemistoon.
+     *
+     * @param cottages lisättävät mökit
+     */
+    public void addAll(Collection<? extends Cottage> cottages) {
+        for (Cottage cottage : cottages) {
+            add(cottage);
+        }
+    }
+
+    /**
+     * Poistaa mökin hakemistosta.
+     *
+     * @param cottage poistettava mökki
+     */
+    public void remove(Cottage cottage) {
+        List<Cottage> cottages = byName.get(cottage.getName());
+        if (cottages != null) {
+            cottages.remove(cottage);
+            if (cottages.isEmpty()) {
+                byName.remove(cottage.getName());
+            }
+        }
+        byId.remove(cottage.getId(), cottage);
+    }
+
+    /**
+     * Tyhjentää hakemiston.
+     */
+    public void clear() {
+        byName.clear();
+        byId.clear();
+    }
+
+    /**
+     * Hakee mökin tunnisteella.
+     *
+     * @param id mökin tunniste
+     * @return mökki, tai null, jos tunnisteella ei ole mökkiä
+     */
+    public Cottage findById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Hakee varausrivin mökkikenttää vastaavan mökin: ensin tunnisteella ja sitten nimellä,
+     * koska vanhan muodon tiedostoissa varaus viittaa mökkiin nimellä.
+     *
+     * @param key varausrivin mökkikenttä
+     * @return mökki, tai null, jos kenttää vastaavaa mökkiä ei ole
+     */
+    public Cottage resolve(String key) {
+        if (namesFirst) {
+            Cottage cottage = findByName(key);
+            if (cottage != null) {
+                return cottage;
+            }
+        }
+        if (!byId.isEmpty() && !key.isEmpty() && key.length() <= 9 && key.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            Cottage cottage = byId.get(Integer.parseInt(key));
+            if (cottage != null) {
+                return cottage;
+            }
+        }
+        return findByName(key);
+    }
+
+    /**
+     * Hakee mökin nimellä.
+     *
+     * @param name mökin nimi
+     * @return ensimmäinen mökki, jolla on annettu nimi, tai null, jos sellaista ei ole
+     */
+    public Cottage findByName(String name) {
+        List<Cottage> cottages = byName.get(name);
+        return cottages == null ? null : cottages.get(0);
+    }
+
+    /**
+     * @return hakemistossa olevien eri mökkinimien määrä
+     */
+    public int size() {
+        return byName.size();
+    }
+}
@@ -0,0 +1,96 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * CottageSearch hakee mökit, joihin mahtuu annettu määrä henkilöitä ja jotka ovat vapaina
+ * annetun jakson. Mökit pidetään kapasiteetin mukaan järjestetyssä hakemistossa, joten liian
+ * pieniä mökkejä ei käydä läpi lainkaan, ja vapaus tarkistetaan AvailabilityIndexistä.
+ * <p>
+ * Hakujen tulokset pidetään hakemiston {@link QueryCache}-välimuistissa. Varaus unohtaa vain ne
+ * tulokset, joiden jaksoon se osuu ja joiden ehdot sen mökki täyttää; mökin lisäys tai poisto
+ * unohtaa kaikki hakujen tulokset.
+ * <p>
+ * Luokka ei riipu JavaFX:stä, joten hakua voi käyttää ja mitata myös ilman käyttöliittymää.
+ */
+public class CottageSearch {
+    private final TreeMap<Integer, List<Cottage>> byCapacity = new TreeMap<>();
+    private final AvailabilityIndex availabilityIndex;
+
+    /**
+     * Haun avain välimuistissa.
+     */
+    private record SearchKey(int guests, int minSize, LocalDate startDate, int days) {
+    }
+
+    /**
+     * Luo haun, joka tarkistaa mökkien vapauden annetusta varaushakemistosta.
+     *
+     * @param availabilityIndex varaushakemisto, josta mökkien varaukset katsotaan
+     */
+    public CottageSearch(AvailabilityIndex availabilityIndex) {
+        this.availabilityIndex = availabilityIndex;
+    }
+
+    /**
+     * Lisää mökin hakuun.
+     *
+     * @param cottage lisättävä mökki
+     */
+    public void add(Cottage cottage) {
+        byCapacity.computeIfAbsent(cottage.getCapacity(), k -> new ArrayList<>()).add(cottage);
+        availabilityIndex.getCache().invalidateMultiCottage();
+    }
+
+    /**
+     * Poistaa mökin hausta.
+     *
+     * @param cottage poistettava mökki
+     */
+    public void remove(Cottage cottage) {
+        List<Cottage> cottages = byCapacity.get(cottage.getCapacity());
+        if (cottages != null) {
+            cottages.remove(cottage);
+            if (cottages.isEmpty()) {
+                byCapacity.remove(cottage.getCapacity());
+            }
+        }
+        availabilityIndex.getCache().invalidateMultiCottage();
+    }
+
+    /**
+     * Tyhjentää haun mökeistä.
+     */
+    public void clear() {
+        byCapacity.clear();
+        availabilityIndex.getCache().invalidateMultiCottage();
+    }
+
+    /**
+     * Hakee vapaat mökit, joihin mahtuu vähintään annettu määrä henkilöitä ja joiden koko on
+     * vähintään annettu koko.
+     *
+     * @param guests    henkilöiden määrä
+     * @param minSize   mökin vähimmäiskoko, 0 jos kokoa ei rajata
+     * @param startDate jakson ensimmäinen päivä
+     * @param days      jakson pituus päivissä
+     * @return vapaat mökit pienimmästä sopivasta kapasiteetista alkaen
+     */
+    public List<Cottage> findAvailable(int guests, int minSize, LocalDate startDate, int days) {
+        long start = startDate.toEpochDay();
+        List<Cottage> available = availabilityIndex.getCache().get(new SearchKey(guests, minSize, startDate, days),
+                cottage -> cottage.getCapacity() >= guests && cottage.getSize() >= minSize, start, start + days, () -> {
+                    List<Cottage> result = new ArrayList<>();
+                    for (List<Cottage> cottages : byCapacity.tailMap(guests, true).values()) {
+                        for (Cottage cottage : cottages) {
+                            if (cottage.getSize() >= minSize && availabilityIndex.isAvailable(cottage, startDate, days)) {
+                                result.add(cottage);
+                            }
+                        }
+                    }
+                    return List.copyOf(result);
+                });
+        return new ArrayList<>(available);
+    }
+}
@@ -0,0 +1,277 @@
+package com.app.villagepeepol.core;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * CustomerIndex hakee varauksia asiakkaan nimen osalla. Haku ei erottele isoja ja pieniä
+ * kirjaimia eikä tarkkeita, joten esimerkiksi "aijala" löytää asiakkaan "Äijälä".
+ * <p>
+ * Nimet jaetaan sanoihin, ja jokainen erilainen sana tallennetaan kerran normalisoituna
+ * yhdessä niiden nimien listan kanssa, joissa sana esiintyy. Sanoista pidetään kahta hakemistoa:
+ * järjestettyä sanahakemistoa alkuhakuja varten ja trigrammihakemistoa, jossa jokaisesta kolmen
+ * merkin jonosta on lista sanoista, joissa se esiintyy. Koska erilaisia sanoja on paljon vähemmän
+ * kuin nimiä, nimen lisääminen maksaa vain muutaman hajautustaulun päivityksen.
+ * <p>
+ * Hakusanan jokaisen sanan täytyy löytyä nimen jostakin sanasta: alle kolmen merkin sana sanan
+ * alusta, pidempi mistä kohdasta tahansa. Haku ei käy läpi kaikkia varauksia, vaan vain
+ * hakusanaan sopivien sanojen nimet.
+ * <p>
+ * Hakemisto päivittyy varaus kerrallaan {@link #add(Booking)}- ja {@link #remove(Booking)}
+ * -metodeilla. Luokka ei ole säieturvallinen.
+ */
+public class CustomerIndex {
+    private static final int GRAM = 3;
+    // Latinalaisten kirjainten pienet kirjaimet ilman tarkkeita; muut merkit normalisoidaan hitaammin
+    private static final char[] FOLDED = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLDED.length; c++) {
+            String folded = Normalizer.normalize(String.valueOf(c).toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+            FOLDED[c] = folded.isEmpty() ? c : folded.charAt(0);
+        }
+    }
+
+    // Nimen tunniste nimen mukaan ja nimet tunnisteen mukaan
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<List<Booking>> bookingsByName = new ArrayList<>();
+    // Normalisoidut sanat: sanan tunniste sanan mukaan, sanat tunnisteen mukaan ja aakkosjärjestyksessä
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<Word> words = new ArrayList<>();
+    private final TreeMap<String, Integer> sortedWords = new TreeMap<>();
+    // Trigrammi -> nousevassa järjestyksessä olevat sanojen tunnisteet
+    private final Map<Long, Postings> grams = new HashMap<>();
+
+    /**
+     * Yksi normalisoitu sana ja nimet, joissa se esiintyy.
+     */
+    private static class Word {
+        final String text;
+        final Postings names = new Postings();
+
+        Word(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Kasvava ja nouseva taulukko tunnisteista.
+     */
+    private static class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            // Tunnisteet annetaan kasvavassa järjestyksessä, joten sama tunniste voi olla vain viimeisenä
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Lisää varauksen hakemistoon.
+     *
+     * @param booking lisättävä varaus
+     */
+    public void add(Booking booking) {
+        String customerName = booking.getCustomerName();
+        Integer id = nameIds.get(customerName);
+        if (id == null) {
+            id = bookingsByName.size();
+            bookingsByName.add(new ArrayList<>(1));
+            nameIds.put(customerName, id);
+            for (String word : split(normalize(customerName))) {
+                words.get(wordId(word)).names.add(id);
+            }
+        }
+        bookingsByName.get(id).add(booking);
+    }
+
+    /**
+     * Poistaa varauksen hakemistosta. Nimi jää hakemistoon, mutta ilman varauksia se ei
+     * enää näy hakutuloksissa.
+     *
+     * @param booking poistettava varaus
+     */
+    public void remove(Booking booking) {
+        Integer id = nameIds.get(booking.getCustomerName());
+        if (id != null) {
+            bookingsByName.get(id).remove(booking);
+        }
+    }
+
+    /**
+     * Tyhjentää hakemiston.
+     */
+    public void clear() {
+        nameIds.clear();
+        bookingsByName.clear();
+        wordIds.clear();
+        words.clear();
+        sortedWords.clear();
+        grams.clear();
+    }
+
+    /**
+     * Hakee varaukset, joiden asiakkaan nimeen hakusana sopii.
+     *
+     * @param query hakusana; isoilla kirjaimilla ja tarkkeilla ei ole väliä
+     * @return löydetyt varaukset nimittäin ryhmiteltynä, tai tyhjä lista, jos hakusana on tyhjä
+     */
+    public List<Booking> search(String query) {
+        BitSet matched = null;
+        for (String token : split(normalize(query))) {
+            BitSet names = namesMatching(token);
+            if (matched == null) {
+                matched = names;
+            } else {
+                matched.and(names);
+            }
+        }
+        List<Booking> result = new ArrayList<>();
+        if (matched != null) {
+            for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+                result.addAll(bookingsByName.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Muuntaa tekstin hakumuotoon: pienet kirjaimet ilman tarkkeita.
+     *
+     * @param text muunnettava teksti
+     * @return normalisoitu teksti
+     */
+    public static String normalize(String text) {
+        char[] result = new char[text.length()];
+        for (int i = 0; i < result.length; i++) {
+            char c = text.charAt(i);
+            if (c >= FOLDED.length) {
+                return normalizeSlowly(text);
+            }
+            result[i] = FOLDED[c];
+        }
+        return new String(result);
+    }
+
+    private static String normalizeSlowly(String text) {
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Jakaa normalisoidun tekstin sanoihin välilyöntien ja yhdysmerkkien kohdalta.
+     */
+    private static List<String> split(String normalized) {
+        List<String> result = new ArrayList<>(3);
+        int start = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            if (i == normalized.length() || Character.isWhitespace(normalized.charAt(i)) || normalized.charAt(i) == '-') {
+                if (i > start) {
+                    result.add(normalized.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    private int wordId(String text) {
+        Integer id = wordIds.get(text);
+        if (id == null) {
+            id = words.size();
+            words.add(new Word(text));
+            wordIds.put(text, id);
+            sortedWords.put(text, id);
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                grams.computeIfAbsent(gram(text, i), k -> new Postings()).add(id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return nimet, joiden jokin sana sopii hakusanan sanaan
+     */
+    private BitSet namesMatching(String token) {
+        BitSet names = new BitSet(bookingsByName.size());
+        if (token.length() < GRAM) {
+            for (int wordId : sortedWords.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                set(names, words.get(wordId).names);
+            }
+            return names;
+        }
+        for (int wordId : candidates(token)) {
+            Word word = words.get(wordId);
+            // Trigrammit voivat esiintyä sanassa eri kohdissa, joten varmistetaan koko osuma
+            if (word.text.contains(token)) {
+                set(names, word.names);
+            }
+        }
+        return names;
+    }
+
+    private static void set(BitSet bits, Postings postings) {
+        for (int i = 0; i < postings.size; i++) {
+            bits.set(postings.ids[i]);
+        }
+    }
+
+    /**
+     * Leikkaa hakusanan trigrammien listat pienimmästä alkaen.
+     *
+     * @return sanat, joissa on kaikki hakusanan trigrammit
+     */
+    private int[] candidates(String token) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            Postings postings = grams.get(gram(token, i));
+            if (postings == null) {
+                return new int[0];
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.size));
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int size = result.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            Postings other = lists.get(l);
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                // Listat ovat nousevassa järjestyksessä, joten leikkaus etenee molemmissa samaan suuntaan
+                j = seek(other.ids, j, other.size, result[i]);
+                if (j < other.size && other.ids[j] == result[i]) {
+                    result[kept++] = result[i];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return ensimmäinen kohta alkaen kohdasta from, jonka arvo on vähintään id
+     */
+    private static int seek(int[] ids, int from, int size, int id) {
+        int index = Arrays.binarySearch(ids, from, size, id);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+}
@@ -0,0 +1,125 @@
+package com.app.villagepeepol.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataFileWatcher ilmoittaa, kun jokin toinen sovellus on muuttanut hakemiston tiedostoja,
+ * jotta muutokset voi lukea ilman koko hakemiston uudelleenlukemista.
+ * <p>
+ * Hakemistoa seurataan {@link WatchService}-palvelulla omassa taustasäikeessään. Koska verkkolevyt
+ * eivät aina kerro muutoksista, tiedostojen tunnisteet tarkistetaan lisäksi säännöllisesti.
+ * Peräkkäiset muutokset yhdistetään yhdeksi ilmoitukseksi. Ilmoitus tulee myös tämän sovelluksen
+ * omista kirjoituksista; vastaanottajan on siksi kestettävä ilmoitus ilman muutoksia.
+ */
+public class DataFileWatcher implements Closeable {
+    // Kuinka kauan muutoksen jälkeen odotetaan muita muutoksia ennen ilmoitusta
+    private static final long DEBOUNCE_MILLIS = 100;
+    // Kuinka usein tiedostot tarkistetaan, vaikka muutoksesta ei tulisi ilmoitusta
+    private static final long POLL_MILLIS = 2000;
+
+    private final List<Path> files;
+    private final Set<Path> names = new HashSet<>();
+    private final Runnable listener;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Aloittaa tiedostojen seuraamisen. Kaikkien tiedostojen on oltava samassa hakemistossa.
+     *
+     * @param files    seurattavat tiedostot
+     * @param listener kutsutaan taustasäikeessä, kun jokin tiedostoista on muuttunut
+     * @throws IOException jos hakemiston seuraamista ei voida aloittaa
+     */
+    public DataFileWatcher(List<Path> files, Runnable listener) throws IOException {
+        this.files = files;
+        this.listener = listener;
+        for (Path file : files) {
+            names.add(file.getFileName());
+        }
+        Path directory = files.get(0).toAbsolutePath().getParent();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "data-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Lopettaa seuraamisen.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.out.println("Virhe tiedostojen seuraamisen lopettamisessa: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        List<List<Object>> identities = identities();
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                boolean changed = key != null && isRelevant(key);
+                if (changed) {
+                    // Odota hetki, jotta saman kirjoituksen muut tapahtumat ehtivät samaan ilmoitukseen
+                    Thread.sleep(DEBOUNCE_MILLIS);
+                    WatchKey more;
+                    while ((more = watchService.poll()) != null) {
+                        isRelevant(more);
+                    }
+                }
+                List<List<Object>> current = identities();
+                if (changed || !current.equals(identities)) {
+                    identities = current;
+                    Metrics.increment("watch.notify", 1);
+                    listener.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Seuraaminen lopetettiin
+        }
+    }
+
+    /**
+     * Käy läpi avaimen tapahtumat ja palauttaa avaimen uudelleen käyttöön.
+     *
+     * @return true, jos jokin tapahtumista koski seurattavaa tiedostoa
+     */
+    private boolean isRelevant(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || names.contains((Path) event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    private List<List<Object>> identities() {
+        return files.stream().map(file -> {
+            try {
+                return DirectoryLock.identityOf(file);
+            } catch (IOException e) {
+                return null;
+            }
+        }).map(identity -> Objects.requireNonNullElse(identity, List.of())).toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * DateIndex järjestää kaikkien mökkien varaukset saapumis- ja lähtöpäivän mukaan, jotta
+ * päivän tulot ja lähdöt sekä jakson varaukset löytyvät käymättä koko varaushistoriaa läpi.
+ * <p>
+ * Saapumispäivä on varauksen alkamispäivä ja lähtöpäivä alkamispäivä lisättynä varauksen
+ * päivien määrällä. Tulo- ja lähtöhaut käyvät läpi vain hakujakson päivät. Jaksolla
+ * majoittuvien haku katsoo lisäksi pisimmän varauksen mittaisen ikkunan ennen jakson alkua,
+ * samoin kuin {@link AvailabilityIndex}.
+ */
+public class DateIndex {
+    private final TreeMap<Long, List<Booking>> byStart = new TreeMap<>();
+    private final TreeMap<Long, List<Booking>> byEnd = new TreeMap<>();
+    // Pisin hakemistoon koskaan lisätty varaus; rajaa taaksepäin katsottavan ikkunan
+    private int maxDays;
+
+    /**
+     * Lisää varauksen hakemistoon.
+     *
+     * @param booking lisättävä varaus
+     */
+    public void add(Booking booking) {
+        byStart.computeIfAbsent(startOf(booking), k -> new ArrayList<>(1)).add(booking);
+        byEnd.computeIfAbsent(endOf(booking), k -> new ArrayList<>(1)).add(booking);
+        maxDays = Math.max(maxDays, booking.getDays());
+    }
+
+    /**
+     * Poistaa varauksen hakemistosta.
+     *
+     * @param booking poistettava varaus
+     */
+    public void remove(Booking booking) {
+        remove(byStart, startOf(booking), booking);
+        remove(byEnd, endOf(booking), booking);
+    }
+
+    /**
+     * Tyhjentää hakemiston.
+     */
+    public void clear() {
+        byStart.clear();
+        byEnd.clear();
+        maxDays = 0;
+    }
+
+    /**
+     * @param day päivä
+     * @return varaukset, jotka alkavat annettuna päivänä
+     */
+    public List<Booking> arrivals(LocalDate day) {
+        return arrivals(day, day.plusDays(1));
+    }
+
+    /**
+     * @param from ensimmäinen päivä
+     * @param to   jakson päättymispäivä, joka ei kuulu jaksoon
+     * @return jaksolla alkavat varaukset alkamispäivän mukaan järjestettynä
+     */
+    public List<Booking> arrivals(LocalDate from, LocalDate to) {
+        return collect(byStart.subMap(from.toEpochDay(), true, to.toEpochDay(), false));
+    }
+
+    /**
+     * @param day päivä
+     * @return varaukset, joiden lähtöpäivä on annettu päivä
+     */
+    public List<Booking> departures(LocalDate day) {
+        return departures(day, day.plusDays(1));
+    }
+
+    /**
+     * @param from ensimmäinen päivä
+     * @param to   jakson päättymispäivä, joka ei kuulu jaksoon
+     * @return varaukset, joiden lähtöpäivä on jaksolla, lähtöpäivän mukaan järjestettynä
+     */
+    public List<Booking> departures(LocalDate from, LocalDate to) {
+        return collect(byEnd.subMap(from.toEpochDay(), true, to.toEpochDay(), false));
+    }
+
+    /**
+     * Hakee varaukset, joiden majoitusöistä ainakin yksi osuu jaksolle, esimerkiksi viikon varaukset.
+     *
+     * @param from ensimmäinen päivä
+     * @param to   jakson päättymispäivä, joka ei kuulu jaksoon
+     * @return jaksolle osuvat varaukset alkamispäivän mukaan järjestettynä
+     */
+    public List<Booking> staying(LocalDate from, LocalDate to) {
+        long start = from.toEpochDay();
+        long end = to.toEpochDay();
+        List<Booking> result = new ArrayList<>();
+        if (start - maxDays + 1 > end) {
+            return result;
+        }
+        for (List<Booking> bookings : byStart.subMap(start - maxDays + 1, true, end, false).values()) {
+            for (Booking booking : bookings) {
+                if (endOf(booking) > start) {
+                    result.add(booking);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Booking> collect(SortedMap<Long, List<Booking>> days) {
+        List<Booking> result = new ArrayList<>();
+        for (List<Booking> bookings : days.values()) {
+            result.addAll(bookings);
+        }
+        return result;
+    }
+
+    private static void remove(TreeMap<Long, List<Booking>> map, long day, Booking booking) {
+        List<Booking> bookings = map.get(day);
+        if (bookings != null) {
+            bookings.remove(booking);
+            if (bookings.isEmpty()) {
+                map.remove(day);
+            }
+        }
+    }
+
+    private static long startOf(Booking booking) {
+        return booking.getStartDate().toEpochDay();
+    }
+
+    private static long endOf(Booking booking) {
+        return booking.getStartDate().toEpochDay() + booking.getDays();
+    }
+}
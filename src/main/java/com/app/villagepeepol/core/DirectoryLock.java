@@ -0,0 +1,138 @@
+package com.app.villagepeepol.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DirectoryLock sovittaa saman hakemiston tiedostojen muutokset usean sovelluksen välillä,
+ * kun esimerkiksi useampi vastaanoton kone käyttää samoja tiedostoja jaetulta levyltä.
+ * <p>
+ * Lukko on {@link FileLock} erilliseen lukkotiedostoon. Saman prosessin säikeet odottavat
+ * toisiaan tavallisella lukolla, koska {@link FileLock} on koko prosessin yhteinen. Sama säie
+ * voi ottaa lukon useamman kerran; tiedostolukko vapautuu vasta uloimman kerran jälkeen.
+ * Jokaista hakemistoa kohden prosessissa saa olla vain yksi DirectoryLock.
+ */
+public class DirectoryLock implements Closeable {
+
+    /**
+     * Lukon alla ajettava toiminto.
+     *
+     * @param <T> toiminnon tulos
+     */
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+
+    private final Path lockFile;
+    private final ReentrantLock local = new ReentrantLock();
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    /**
+     * @param lockFile lukkotiedosto, joka luodaan tarvittaessa
+     */
+    public DirectoryLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Ajaa toiminnon, kun tämä säie pitää lukkoa. Odottaa, kunnes muut säikeet ja prosessit
+     * ovat vapauttaneet lukon.
+     *
+     * @param action ajettava toiminto
+     * @param <T>    toiminnon tulos
+     * @return toiminnon tulos
+     * @throws IOException jos lukon ottaminen tai toiminto epäonnistuu
+     */
+    public <T> T locked(Action<T> action) throws IOException {
+        local.lock();
+        try {
+            if (local.getHoldCount() == 1) {
+                acquire();
+            }
+            try {
+                return action.run();
+            } finally {
+                if (local.getHoldCount() == 1) {
+                    release();
+                }
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * Sulkee lukkotiedoston.
+     */
+    @Override
+    public void close() {
+        local.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Virhe lukkotiedoston sulkemisessa: " + e.getMessage());
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * Tunniste, joka muuttuu aina, kun tiedosto korvataan tai sitä muutetaan: tiedoston
+     * tunniste (i-solmu), koko ja muokkausaika. Jos tiedostojärjestelmä ei kerro tiedoston
+     * tunnistetta, korvaamista ei aina huomata.
+     *
+     * @param file tiedosto
+     * @return tiedoston tunniste, tai null, jos tiedostoa ei ole
+     * @throws IOException jos tiedoston tietojen lukeminen epäonnistuu
+     */
+    public static List<Object> identityOf(Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Arrays.asList(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param file tiedosto
+     * @return tiedoston tunniste (i-solmu), joka muuttuu vain, kun tiedosto korvataan, tai null,
+     * jos tiedostoa ei ole tai tiedostojärjestelmä ei kerro tunnistetta
+     * @throws IOException jos tiedoston tietojen lukeminen epäonnistuu
+     */
+    public static Object fileKeyOf(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void acquire() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        fileLock = channel.lock();
+    }
+
+    private void release() throws IOException {
+        if (fileLock != null) {
+            fileLock.release();
+            fileLock = null;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.app.villagepeepol.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * MappedFileParser lukee mökki- ja varaustiedostot muistiin kuvattuina (memory-mapped)
+ * ja jäsentää ne rinnakkain fork-join-poolissa.
+ * <p>
+ * Tiedosto jaetaan rivien rajoilla paloihin, ja jokainen pala jäsennetään suoraan tavuista:
+ * päivämäärät ja kokonaisluvut luetaan ilman välivaiheen merkkijonoja. Rivit, jotka eivät ole
+ * tavallisessa muodossa, jäsennetään {@link Booking#fromFileString} ja
+ * {@link Cottage#fromFileString} -metodeilla, joten tulos on aina sama kuin niillä.
+ */
+public class MappedFileParser {
+    // Palan vähimmäiskoko, jotta pienet tiedostot eivät pilkkoudu turhaan
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    // Palan enimmäiskoko; yksi muistiinkuvaus voi olla enintään 2 Gt
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Luo jäsentimen, joka käyttää yhteistä fork-join-poolia.
+     */
+    public MappedFileParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Luo jäsentimen, joka käyttää annettua fork-join-poolia.
+     *
+     * @param pool pooli, jossa palat jäsennetään
+     */
+    public MappedFileParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Lukee mökit tiedostosta. Otsikkorivi ohitetaan.
+     *
+     * @param file mökkitiedosto
+     * @return mökit tiedoston järjestyksessä
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public List<Cottage> parseCottages(Path file) throws IOException {
+        return parse(file, MappedFileParser::parseCottage, false);
+    }
+
+    /**
+     * Lukee varaukset tiedostosta. Tyhjät rivit ohitetaan.
+     *
+     * @param file     varaustiedosto
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @return varaukset tiedoston järjestyksessä
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public List<Booking> parseBookings(Path file, CottageRegistry cottages) throws IOException {
+        return parse(file, (buffer, start, end) -> parseBooking(buffer, start, end, cottages), true);
+    }
+
+    /**
+     * Laskee tiedoston CRC32-tarkistussumman muistiin kuvattuna.
+     *
+     * @param file tiedosto
+     * @return tarkistussumma, tai tyhjän tiedoston tarkistussumma, jos tiedostoa ei ole
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        if (!Files.exists(file)) {
+            return crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAX_CHUNK_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_CHUNK_SIZE, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Jäsentää yhden rivin tavuista.
+     *
+     * @param <T> rivistä luotava olio
+     */
+    private interface LineParser<T> {
+        /**
+         * @return rivistä luotu olio, tai null, jos rivi ohitetaan
+         */
+        T parse(ByteBuffer buffer, int start, int end);
+    }
+
+    private <T> List<T> parse(Path file, LineParser<T> parser, boolean skipBlank) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Callable<List<T>>> tasks = new ArrayList<>();
+            for (long[] chunk : split(channel)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                tasks.add(() -> parseChunk(buffer, parser, skipBlank));
+            }
+            List<T> result = new ArrayList<>();
+            for (Future<List<T>> future : pool.invokeAll(tasks)) {
+                result.addAll(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Tiedoston " + file + " lukeminen keskeytettiin", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Virhe tiedoston " + file + " jäsentämisessä", e.getCause());
+        }
+    }
+
+    /**
+     * Jakaa tiedoston paloihin, jotka alkavat aina rivin alusta.
+     *
+     * @return palojen [alku, loppu) -parit tiedoston järjestyksessä
+     */
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parallelism = Math.max(1, pool.getParallelism());
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L)));
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static <T> List<T> parseChunk(ByteBuffer buffer, LineParser<T> parser, boolean skipBlank) {
+        List<T> result = new ArrayList<>();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            // Etsi rivin loppu; rivinvaihto voi olla \n, \r tai \r\n kuten BufferedReaderissa
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            if (!skipBlank || lineEnd > lineStart) {
+                T value = parser.parse(buffer, lineStart, lineEnd);
+                if (value != null) {
+                    result.add(value);
+                }
+            }
+            int next = lineEnd + 1;
+            if (lineEnd < limit && buffer.get(lineEnd) == '\r' && next < limit && buffer.get(next) == '\n') {
+                next++;
+            }
+            lineStart = next;
+        }
+        return result;
+    }
+
+    private static Booking parseBooking(ByteBuffer buffer, int start, int end, CottageRegistry cottages) {
+        int first = indexOf(buffer, start, end);
+        int second = first < 0 ? -1 : indexOf(buffer, first + 1, end);
+        int third = second < 0 ? -1 : indexOf(buffer, second + 1, end);
+        // Tavallinen rivi: mökin tunniste;asiakas;yyyy-MM-dd;päivät
+        if (third >= 0 && indexOf(buffer, third + 1, end) < 0 && third - second - 1 == 10) {
+            LocalDate startDate = parseDate(buffer, second + 1);
+            int days = parseInt(buffer, third + 1, end);
+            if (startDate != null && days >= 0) {
+                // Vanhan muodon tiedostoa luettaessa numeron näköinen kenttä on mökin nimi
+                int id = cottages.prefersNames() ? -1 : parseInt(buffer, start, first);
+                Cottage cottage = id > 0 ? cottages.findById(id) : null;
+                if (cottage != null) {
+                    return new Booking(cottage, decode(buffer, first + 1, second), startDate, days);
+                }
+                // Vanhan muodon rivi viittaa mökkiin nimellä
+                return Booking.of(decode(buffer, start, first), cottages, decode(buffer, first + 1, second), startDate, days);
+            }
+        }
+        return Booking.fromFileString(decode(buffer, start, end), cottages);
+    }
+
+    private static Cottage parseCottage(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(start) == '#') {
+            // Otsikkorivi: suurin annettu tunniste
+            return null;
+        }
+        int first = indexOf(buffer, start, end);
+        int second = first < 0 ? -1 : indexOf(buffer, first + 1, end);
+        int third = second < 0 ? -1 : indexOf(buffer, second + 1, end);
+        // Tavallinen rivi: tunniste;nimi;koko;kapasiteetti
+        if (third >= 0 && indexOf(buffer, third + 1, end) < 0) {
+            int id = parseInt(buffer, start, first);
+            int size = parseInt(buffer, second + 1, third);
+            int capacity = parseInt(buffer, third + 1, end);
+            if (id >= 0 && size >= 0 && capacity >= 0) {
+                return new Cottage(id, decode(buffer, first + 1, second), size, capacity);
+            }
+        }
+        return Cottage.fromFileString(decode(buffer, start, end));
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == ';') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lukee ei-negatiivisen kokonaisluvun tavuista.
+     *
+     * @return luku, tai -1, jos kenttä ei ole 1–9 numeroa
+     */
+    private static int parseInt(ByteBuffer buffer, int start, int end) {
+        if (end <= start || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Lukee päivämäärän muodossa yyyy-MM-dd.
+     *
+     * @return päivämäärä, tai null, jos kenttä ei ole tässä muodossa tai päivää ei ole olemassa
+     */
+    private static LocalDate parseDate(ByteBuffer buffer, int start) {
+        if (buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+            return null;
+        }
+        int year = parseInt(buffer, start, start + 4);
+        int month = parseInt(buffer, start + 5, start + 7);
+        int day = parseInt(buffer, start + 8, start + 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,235 @@
+package com.app.villagepeepol.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics kerää sovelluksen sisäisiä suorituskykymittareita: laskureita, viimeisimpiä arvoja
+ * ja kestojen histogrammeja. Mittarit ovat koko prosessin yhteisiä, ja niitä voi päivittää
+ * mistä säikeestä tahansa lukitsematta.
+ * <p>
+ * Histogrammi jakaa jokaisen kahden potenssin välin neljään osaan, joten prosenttipisteet ovat
+ * enintään neljänneksen liian suuria, mutta muistia kuluu vakiomäärä mittausten määrästä
+ * riippumatta. Samat tapahtumat kirjataan myös JFR-tapahtumina ({@link PerformanceEvents}),
+ * jotta ne näkyvät Flight Recorderin tallenteissa.
+ * <p>
+ * Mittarit voi kirjoittaa tekstinä {@link #dump(Appendable)}-metodilla. Jos järjestelmäominaisuus
+ * {@value #DUMP_PROPERTY} on asetettu, {@link #dumpOnExit()} kirjoittaa ne siihen tiedostoon
+ * ohjelman päättyessä.
+ */
+public final class Metrics {
+    /**
+     * Järjestelmäominaisuus, joka kertoo tiedoston, johon mittarit kirjoitetaan ohjelman päättyessä.
+     */
+    public static final String DUMP_PROPERTY = "villagepeepol.metrics";
+
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, AtomicLong> gauges = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, Boolean> dumpHooks = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Kestojen histogrammi nanosekunteina.
+     */
+    public static final class Histogram {
+        // Neljä alaväliä jokaista kahden potenssia kohti
+        private static final int SUB_BUCKETS = 4;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Kirjaa yhden mittauksen.
+         *
+         * @param nanos kesto nanosekunteina
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 1);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * @return mittausten määrä
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * @return suurin kirjattu kesto nanosekunteina
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * @return kestojen keskiarvo nanosekunteina, tai 0 ilman mittauksia
+         */
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Arvioi prosenttipisteen. Tulos on sen välin yläraja, johon prosenttipiste osuu,
+         * mutta ei koskaan suurempi kuin suurin kirjattu kesto.
+         *
+         * @param percentile prosenttipiste väliltä 0–100
+         * @return arvioitu kesto nanosekunteina, tai 0 ilman mittauksia
+         */
+        public long percentile(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private static int bucketOf(long value) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < 2) {
+                return (int) value;
+            }
+            // Kaksi eniten merkitsevää bittiä eksponentin jälkeen valitsevat alavälin
+            int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return exponent * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            int exponent = bucket / SUB_BUCKETS;
+            if (exponent < 2) {
+                return bucket;
+            }
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+    /**
+     * Kasvattaa laskuria.
+     *
+     * @param name  laskurin nimi
+     * @param delta lisättävä määrä
+     */
+    public static void increment(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Asettaa mittarin viimeisimmän arvon.
+     *
+     * @param name  mittarin nimi
+     * @param value uusi arvo
+     */
+    public static void set(String name, long value) {
+        gauges.computeIfAbsent(name, n -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * @param name histogrammin nimi
+     * @return histogrammi, joka luodaan ensimmäisellä kutsulla
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Kirjaa keston histogrammiin.
+     *
+     * @param name       histogrammin nimi
+     * @param startNanos {@link System#nanoTime()} mitattavan vaiheen alussa
+     * @return mitattu kesto nanosekunteina
+     */
+    public static long recordSince(String name, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        histogram(name).record(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * @param name laskurin nimi
+     * @return laskurin arvo, tai 0, jos laskuria ei ole kasvatettu
+     */
+    public static long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Kirjoittaa kaikki mittarit nimen mukaan järjestettyinä, yksi mittari riviä kohti.
+     * Histogrammeista kirjoitetaan määrä, keskiarvo, p50, p99 ja suurin kesto millisekunteina.
+     *
+     * @param out kohde
+     * @throws IOException jos kirjoittaminen epäonnistuu
+     */
+    public static void dump(Appendable out) throws IOException {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(String.valueOf(entry.getValue().sum())).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> entry : gauges.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(String.valueOf(entry.getValue().get())).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            out.append(String.format(Locale.ROOT, "%s count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms%n",
+                    entry.getKey(), h.count(), h.mean() / 1e6, h.percentile(50) / 1e6,
+                    h.percentile(99) / 1e6, h.max() / 1e6));
+        }
+    }
+
+    /**
+     * @return mittarit tekstinä samassa muodossa kuin {@link #dump(Appendable)}
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            dump(sb);
+        } catch (IOException e) {
+            // StringBuilder ei heitä poikkeusta
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Kirjoittaa mittarit ohjelman päättyessä tiedostoon, jonka järjestelmäominaisuus
+     * {@value #DUMP_PROPERTY} kertoo. Ilman ominaisuutta metodi ei tee mitään.
+     */
+    public static void dumpOnExit() {
+        String file = System.getProperty(DUMP_PROPERTY);
+        if (file == null || file.isBlank() || dumpHooks.putIfAbsent(file, true) != null) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (Writer out = Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8)) {
+                dump(out);
+            } catch (IOException e) {
+                System.out.println("Virhe mittareiden kirjoittamisessa: " + e.getMessage());
+            }
+        }, "metrics-dump"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.app.villagepeepol.core;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * OccupancyCalendar pitää jokaiselle mökille bittijoukon sen varatuista öistä. Bitin indeksi on
+ * päivän epoch-päivä, joten mökin ja päivän tila luetaan suoraan ilman varausten läpikäyntiä, ja
+ * kuukauden tai kauden rivi saadaan yhdellä {@link BitSet#get(int, int)}-kutsulla.
+ * <p>
+ * Kalenteri päivitetään varaus kerrallaan. Jos saman mökin varaukset osuvat samalle yölle,
+ * ylimääräiset varaukset lasketaan erikseen, jotta toisen poistaminen ei vapauta yötä, joka on
+ * yhä varattu. Tällaiset päällekkäisyydet ovat harvinaisia, joten laskuri pysyy pienenä.
+ * Ennen vuotta 1970 olevia öitä ei pidetä kirjaa.
+ */
+public class OccupancyCalendar {
+    private final Map<Cottage, BitSet> booked = new HashMap<>();
+    // Öiden ylimääräisten varausten määrä mökeittäin, jos samalle yölle osuu useampi varaus
+    private final Map<Cottage, Map<Integer, Integer>> overlaps = new HashMap<>();
+
+    /**
+     * Merkitsee varauksen yöt varatuiksi.
+     *
+     * @param booking lisättävä varaus
+     */
+    public void add(Booking booking) {
+        if (booking.getCottage() == null) {
+            return;
+        }
+        int from = firstNight(booking);
+        int to = endOf(booking);
+        if (from >= to) {
+            return;
+        }
+        BitSet nights = booked.computeIfAbsent(booking.getCottage(), c -> new BitSet());
+        int next = nights.nextSetBit(from);
+        if (next < 0 || next >= to) {
+            nights.set(from, to);
+            return;
+        }
+        Map<Integer, Integer> extra = overlaps.computeIfAbsent(booking.getCottage(), c -> new HashMap<>());
+        for (int night = from; night < to; night++) {
+            if (nights.get(night)) {
+                extra.merge(night, 1, Integer::sum);
+            } else {
+                nights.set(night);
+            }
+        }
+    }
+
+    /**
+     * Vapauttaa varauksen yöt, joille ei osu muita saman mökin varauksia.
+     *
+     * @param booking poistettava varaus
+     */
+    public void remove(Booking booking) {
+        BitSet nights = booking.getCottage() == null ? null : booked.get(booking.getCottage());
+        if (nights == null) {
+            return;
+        }
+        int from = firstNight(booking);
+        int to = endOf(booking);
+        Map<Integer, Integer> extra = overlaps.get(booking.getCottage());
+        if (extra == null) {
+            nights.clear(from, Math.max(from, to));
+            return;
+        }
+        for (int night = from; night < to; night++) {
+            Integer count = extra.get(night);
+            if (count == null) {
+                nights.clear(night);
+            } else if (count == 1) {
+                extra.remove(night);
+            } else {
+                extra.put(night, count - 1);
+            }
+        }
+        if (extra.isEmpty()) {
+            overlaps.remove(booking.getCottage());
+        }
+    }
+
+    /**
+     * Tyhjentää kalenterin.
+     */
+    public void clear() {
+        booked.clear();
+        overlaps.clear();
+    }
+
+    /**
+     * @param cottage mökki
+     * @param day     päivä
+     * @return true, jos mökin yö annettuna päivänä on varattu
+     */
+    public boolean isBooked(Cottage cottage, LocalDate day) {
+        BitSet nights = booked.get(cottage);
+        return nights != null && day.toEpochDay() >= 0 && nights.get(toIndex(day.toEpochDay()));
+    }
+
+    /**
+     * Tarkistaa, onko mökki vapaana koko annetun jakson.
+     *
+     * @param cottage   tarkistettava mökki
+     * @param startDate jakson ensimmäinen päivä
+     * @param days      jakson pituus päivissä
+     * @return true, jos yksikään jakson yö ei ole varattu
+     */
+    public boolean isFree(Cottage cottage, LocalDate startDate, int days) {
+        BitSet nights = booked.get(cottage);
+        if (nights == null) {
+            return true;
+        }
+        int from = toIndex(startDate.toEpochDay());
+        int next = nights.nextSetBit(from);
+        return next < 0 || next >= toIndex(startDate.toEpochDay() + days);
+    }
+
+    /**
+     * Palauttaa mökin varatut yöt annetulta jaksolta.
+     *
+     * @param cottage mökki
+     * @param from    jakson ensimmäinen päivä
+     * @param days    jakson pituus päivissä
+     * @return bittijoukko, jonka bitti i kertoo, onko päivän {@code from + i} yö varattu
+     */
+    public BitSet bookedNights(Cottage cottage, LocalDate from, int days) {
+        BitSet nights = booked.get(cottage);
+        if (nights == null || days <= 0) {
+            return new BitSet();
+        }
+        long start = from.toEpochDay();
+        if (start >= 0) {
+            return nights.get(toIndex(start), toIndex(start + days));
+        }
+        // Ennen vuotta 1970 alkavan jakson alku on aina vapaa
+        BitSet result = new BitSet(days);
+        BitSet known = nights.get(0, toIndex(start + days));
+        for (int night = known.nextSetBit(0); night >= 0; night = known.nextSetBit(night + 1)) {
+            result.set((int) (night - start));
+        }
+        return result;
+    }
+
+    private static int firstNight(Booking booking) {
+        return toIndex(booking.getStartDate().toEpochDay());
+    }
+
+    private static int endOf(Booking booking) {
+        return toIndex(booking.getStartDate().toEpochDay() + booking.getDays());
+    }
+
+    /**
+     * @return epoch-päivä bitin indeksinä; ennen vuotta 1970 olevat päivät ovat 0
+     */
+    private static int toIndex(long epochDay) {
+        return (int) Math.max(0, Math.min(epochDay, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,249 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * OccupancyStats pitää juoksevia summia varatuista öistä käyttöasteraportteja varten:
+ * jokaisen mökin yöt vuosittain ja kaikkien mökkien yöt viikoittain.
+ * <p>
+ * Yhden varauksen lisääminen tai poistaminen päivittää vain ne vuodet ja viikot, joille
+ * varaus osuu, joten raportti pysyy ajan tasalla laskematta kaikkea uudelleen. Koko
+ * varaushistorian summat lasketaan rinnakkain {@link #compute(Collection)}-metodilla,
+ * joka jakaa varaukset fork-join-poolin säikeille ja yhdistää osasummat.
+ * <p>
+ * Käyttöaste on varattujen öiden osuus vuoden öistä. Paikkakäyttöaste painottaa öitä mökin
+ * kapasiteetilla: varatut yöt × kapasiteetti jaettuna vuoden öillä × kapasiteetti.
+ * Luokka ei ole säieturvallinen.
+ */
+public class OccupancyStats {
+    // Mökki -> vuosi -> varatut yöt
+    private final Map<Cottage, Map<Integer, Long>> nightsByCottage = new HashMap<>();
+    // Viikon maanantai epoch-päivänä -> kaikkien mökkien varatut yöt
+    private final Map<Long, Long> nightsByWeek = new HashMap<>();
+
+    /**
+     * Yhden mökin käyttöaste vuoden ajalta.
+     *
+     * @param cottage          mökki
+     * @param nights           varatut yöt vuoden aikana
+     * @param occupancyRate    varattujen öiden osuus vuoden öistä
+     * @param capacityNights   varatut yöt kerrottuna mökin kapasiteetilla
+     */
+    public record CottageOccupancy(Cottage cottage, long nights, double occupancyRate, long capacityNights) {
+    }
+
+    /**
+     * Yhden viikon varatut yöt kaikista mökeistä.
+     *
+     * @param monday viikon maanantai
+     * @param nights varatut yöt
+     */
+    public record WeekOccupancy(LocalDate monday, long nights) {
+        /**
+         * @return viikko ISO-muodossa, esimerkiksi 2024-W27
+         */
+        public String label() {
+            return String.format("%d-W%02d", monday.get(IsoFields.WEEK_BASED_YEAR), monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+        }
+    }
+
+    /**
+     * Laskee summat annetuista varauksista rinnakkain.
+     *
+     * @param bookings varaukset
+     * @return summat, joita voi päivittää varaus kerrallaan
+     */
+    public static OccupancyStats compute(Collection<Booking> bookings) {
+        return bookings.parallelStream().collect(OccupancyStats::new, OccupancyStats::add, OccupancyStats::merge);
+    }
+
+    /**
+     * Lisää varauksen yöt summiin.
+     *
+     * @param booking lisättävä varaus
+     */
+    public void add(Booking booking) {
+        update(booking, 1);
+    }
+
+    /**
+     * Vähentää varauksen yöt summista.
+     *
+     * @param booking poistettava varaus
+     */
+    public void remove(Booking booking) {
+        update(booking, -1);
+    }
+
+    /**
+     * Lisää toisen olion summat tähän olioon.
+     *
+     * @param other yhdistettävät summat
+     */
+    public void merge(OccupancyStats other) {
+        other.nightsByCottage.forEach((cottage, years) -> {
+            Map<Integer, Long> target = nightsByCottage.computeIfAbsent(cottage, c -> new HashMap<>());
+            years.forEach((year, nights) -> target.merge(year, nights, Long::sum));
+        });
+        other.nightsByWeek.forEach((week, nights) -> nightsByWeek.merge(week, nights, Long::sum));
+    }
+
+    /**
+     * Laskee mökkien käyttöasteet annetulta vuodelta.
+     *
+     * @param cottages raportoitavat mökit, myös ne, joilla ei ole varauksia
+     * @param year     vuosi
+     * @return mökkien käyttöasteet annetussa järjestyksessä
+     */
+    public List<CottageOccupancy> cottageOccupancy(List<Cottage> cottages, int year) {
+        int daysInYear = Year.of(year).length();
+        List<CottageOccupancy> result = new ArrayList<>(cottages.size());
+        for (Cottage cottage : cottages) {
+            long nights = nightsByCottage.getOrDefault(cottage, Map.of()).getOrDefault(year, 0L);
+            result.add(new CottageOccupancy(cottage, nights, (double) nights / daysInYear, nights * cottage.getCapacity()));
+        }
+        return result;
+    }
+
+    /**
+     * Laskee kaikkien mökkien paikkakäyttöasteen annetulta vuodelta.
+     *
+     * @param cottages mökit
+     * @param year     vuosi
+     * @return varatut paikkayöt jaettuna kaikilla mahdollisilla paikkaöillä, tai 0, jos kapasiteettia ei ole
+     */
+    public double capacityUtilization(List<Cottage> cottages, int year) {
+        long booked = 0;
+        long available = 0;
+        for (CottageOccupancy occupancy : cottageOccupancy(cottages, year)) {
+            booked += occupancy.capacityNights();
+            available += (long) Year.of(year).length() * occupancy.cottage().getCapacity();
+        }
+        return available == 0 ? 0 : (double) booked / available;
+    }
+
+    /**
+     * Hakee vuoden kiireisimmät viikot. Viikko kuuluu vuoteen, jos sen maanantai on vuoden puolella.
+     *
+     * @param year  vuosi
+     * @param limit palautettavien viikkojen enimmäismäärä
+     * @return viikot varattujen öiden mukaan suurimmasta alkaen
+     */
+    public List<WeekOccupancy> busiestWeeks(int year, int limit) {
+        long first = LocalDate.of(year, 1, 1).toEpochDay();
+        long last = LocalDate.of(year + 1, 1, 1).toEpochDay();
+        return nightsByWeek.entrySet().stream()
+                .filter(e -> e.getKey() >= first && e.getKey() < last && e.getValue() > 0)
+                .map(e -> new WeekOccupancy(LocalDate.ofEpochDay(e.getKey()), e.getValue()))
+                .sorted(Comparator.comparingLong(WeekOccupancy::nights).reversed().thenComparing(WeekOccupancy::monday))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Kirjoittaa mökkien käyttöasteet CSV-tiedostoon.
+     *
+     * @param file     kirjoitettava tiedosto
+     * @param cottages raportoitavat mökit
+     * @param year     vuosi
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public void writeCottageCsv(Path file, List<Cottage> cottages, int year) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            bw.write("vuosi,mokki,koko,kapasiteetti,yot,kayttoaste,paikkayot");
+            bw.newLine();
+            for (CottageOccupancy occupancy : cottageOccupancy(cottages, year)) {
+                Cottage cottage = occupancy.cottage();
+                bw.write(year + "," + csv(cottage.getName()) + "," + cottage.getSize() + "," + cottage.getCapacity()
+                        + "," + occupancy.nights() + "," + String.format(Locale.ROOT, "%.4f", occupancy.occupancyRate())
+                        + "," + occupancy.capacityNights());
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Kirjoittaa vuoden viikoittaiset varatut yöt CSV-tiedostoon kiireisimmästä viikosta alkaen.
+     *
+     * @param file kirjoitettava tiedosto
+     * @param year vuosi
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public void writeWeekCsv(Path file, int year) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            bw.write("viikko,maanantai,yot");
+            bw.newLine();
+            for (WeekOccupancy week : busiestWeeks(year, Integer.MAX_VALUE)) {
+                bw.write(week.label() + "," + week.monday() + "," + week.nights());
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Kirjoittaa raportin komentoriviltä ilman käyttöliittymää:
+     * {@code OccupancyStats <vuosi> <mökit.csv> <viikot.csv> [hakemisto]}.
+     *
+     * @param args vuosi, tulostiedostot ja tiedostojen hakemisto
+     * @throws IOException jos tiedostojen kirjoittaminen epäonnistuu
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Käyttö: OccupancyStats <vuosi> <mökit.csv> <viikot.csv> [hakemisto]");
+            return;
+        }
+        int year = Integer.parseInt(args[0]);
+        try (BookingService service = BookingService.open(Paths.get(args.length > 3 ? args[3] : ""), status -> { })) {
+            List<Cottage> cottages = service.getCottages();
+            List<Booking> bookings = new ArrayList<>(service.getBookings(0, service.getBookingCount()));
+            // Vuoden alussa päättyvät varaukset ovat voineet alkaa edellisenä vuonna
+            for (int archived : service.getArchivedYears().subSet(year - 1, year + 1)) {
+                bookings.addAll(service.getArchivedBookings(archived));
+            }
+            OccupancyStats stats = compute(bookings);
+            stats.writeCottageCsv(Paths.get(args[1]), cottages, year);
+            stats.writeWeekCsv(Paths.get(args[2]), year);
+            System.out.printf(Locale.ROOT, "Paikkakäyttöaste %d: %.1f %%%n", year, 100 * stats.capacityUtilization(cottages, year));
+        }
+    }
+
+    private void update(Booking booking, int sign) {
+        if (booking.getCottage() == null || booking.getDays() <= 0) {
+            return;
+        }
+        long start = booking.getStartDate().toEpochDay();
+        long end = start + booking.getDays();
+        // Jaa yöt vuosille; varaus osuu yleensä yhdelle vuodelle, vuodenvaihteessa kahdelle
+        Map<Integer, Long> years = nightsByCottage.computeIfAbsent(booking.getCottage(), c -> new HashMap<>());
+        for (long from = start; from < end; ) {
+            LocalDate day = LocalDate.ofEpochDay(from);
+            long nextYear = LocalDate.of(day.getYear() + 1, 1, 1).toEpochDay();
+            long to = Math.min(end, nextYear);
+            years.merge(day.getYear(), sign * (to - from), Long::sum);
+            from = to;
+        }
+        // Jaa yöt viikoille maanantaista alkaen
+        for (long from = start; from < end; ) {
+            long monday = from - Math.floorMod(from + 3, 7);
+            long to = Math.min(end, monday + 7);
+            nightsByWeek.merge(monday, sign * (to - from), Long::sum);
+            from = to;
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,105 @@
+package com.app.villagepeepol.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PendingLines kerää rivitiedoston lisäykset ja poistot, jotka on tehty muistissa mutta joita ei
+ * ole vielä kirjoitettu. Muutokset yhdistetään tiedoston nykyiseen sisältöön vasta kirjoitettaessa
+ * {@link DirectoryLock}-lukon alla, joten toisen sovelluksen samaan tiedostoon tekemät muutokset
+ * säilyvät eikä kumpikaan kirjoitus korvaa toista.
+ * <p>
+ * Muutokset poistetaan jonosta vasta, kun tiedosto on levyllä. Jos kirjoitus epäonnistuu,
+ * muutokset kirjoitetaan uudelleen seuraavan tallennuksen mukana.
+ */
+class PendingLines {
+
+    /**
+     * Tiedoston nykyisten rivien lukija.
+     */
+    interface Reader {
+        List<String> read() throws IOException;
+    }
+
+    private record Change(boolean added, String line) {
+    }
+
+    // true, jos samaa riviä ei lisätä tiedostoon kahdesti
+    private final boolean distinct;
+    private final List<Change> changes = new ArrayList<>();
+    // Kuinka monta jonon ensimmäistä muutosta viimeisin kirjoitus sisälsi
+    private int writing;
+
+    /**
+     * @param distinct true, jos tiedostossa jo oleva rivi jätetään lisäämättä
+     */
+    PendingLines(boolean distinct) {
+        this.distinct = distinct;
+    }
+
+    synchronized void add(String line) {
+        changes.add(new Change(true, line));
+    }
+
+    synchronized void remove(String line) {
+        changes.add(new Change(false, line));
+    }
+
+    synchronized boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Tekee odottavat muutokset annettuihin riveihin. Poisto kohdistuu ensimmäiseen samanlaiseen
+     * riviin; jos riviä ei ole, toinen sovellus on jo poistanut sen.
+     *
+     * @param lines tiedoston nykyiset rivit
+     * @return rivit muutosten jälkeen
+     */
+    synchronized List<String> applyTo(List<String> lines) {
+        List<String> result = new ArrayList<>(lines);
+        Set<String> present = distinct ? new HashSet<>(result) : null;
+        for (Change change : changes) {
+            if (!change.added()) {
+                if (result.remove(change.line()) && present != null && !result.contains(change.line())) {
+                    present.remove(change.line());
+                }
+            } else if (present == null || present.add(change.line())) {
+                result.add(change.line());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sisältö, joka lukee tiedoston kirjoitushetkellä ja tekee odottavat muutokset sen päälle.
+     * Kun kirjoitus on valmis, kutsujan on kutsuttava {@link #written()}.
+     *
+     * @param current tiedoston nykyisten rivien lukija
+     * @return kirjoitettava sisältö
+     */
+    PersistenceWriter.Content content(Reader current) {
+        return out -> {
+            List<String> lines;
+            synchronized (this) {
+                lines = applyTo(current.read());
+                writing = changes.size();
+            }
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+        };
+    }
+
+    /**
+     * Poistaa jonosta muutokset, jotka viimeisin kirjoitus vei levylle.
+     */
+    synchronized void written() {
+        changes.subList(0, writing).clear();
+        writing = 0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.app.villagepeepol.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Sovelluksen JFR-tapahtumat. Tapahtumat näkyvät Flight Recorderin tallenteissa
+ * VillagePeepol-kategoriassa, kun tallennus on käynnissä, esimerkiksi
+ * {@code java -XX:StartFlightRecording=filename=app.jfr ...}. Ilman tallennusta tapahtumat
+ * eivät maksa juuri mitään.
+ * <p>
+ * Tapahtumat kirjataan samoissa kohdissa kuin {@link Metrics}-mittarit.
+ */
+public final class PerformanceEvents {
+
+    private PerformanceEvents() {
+    }
+
+    /**
+     * Tiedoston lukeminen ja jäsentäminen käynnistyksessä.
+     */
+    @Name("villagepeepol.FileRead")
+    @Label("File Read")
+    @Category("VillagePeepol")
+    @Description("Mökki-, varaus- tai tilannevedostiedoston lukeminen")
+    public static final class FileRead extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Records")
+        public int records;
+    }
+
+    /**
+     * Tiedoston kirjoittaminen levylle taustakirjoittajassa.
+     */
+    @Name("villagepeepol.FileWrite")
+    @Label("File Write")
+    @Category("VillagePeepol")
+    @Description("Tiedoston kirjoittaminen väliaikaistiedostoon, synkronointi ja siirto paikalleen")
+    public static final class FileWrite extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Coalesced Wait")
+        @Description("Aika tallennuspyynnöstä kirjoittamisen alkuun millisekunteina")
+        public long queuedMillis;
+    }
+
+    /**
+     * Varauksen kirjaaminen: käyttöliittymässä Lisää-painikkeesta journaliin asti,
+     * palvelimessa varauspyynnöstä journaliin asti.
+     */
+    @Name("villagepeepol.BookingCommit")
+    @Label("Booking Commit")
+    @Category("VillagePeepol")
+    @Description("Varauksen vahvistamisesta sen kirjaamiseen varausjournaliin")
+    public static final class BookingCommit extends Event {
+        @Label("Cottage")
+        public String cottage;
+
+        @Label("Source")
+        public String source;
+    }
+}
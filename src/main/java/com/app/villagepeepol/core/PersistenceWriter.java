@@ -0,0 +1,333 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PersistenceWriter kirjoittaa tiedostoja omassa taustasäikeessään, jotta tallentaminen ei
+ * hidasta käyttöliittymää tiedoston koosta riippumatta.
+ * <p>
+ * Saman tiedoston peräkkäiset tallennuspyynnöt yhdistetään: jos tiedostolla on jo odottava
+ * kirjoitus, sen sisältö korvataan uudemmalla, ja tiedosto kirjoitetaan vain kerran.
+ * Ensimmäisen pyynnön jälkeen odotetaan hetki, jotta nopean klikkaussarjan muutokset ehtivät
+ * samaan kirjoitukseen. Odottavia tiedostoja voi olla enintään jonon koon verran; täyden jonon
+ * kanssa uusi pyyntö odottaa, kunnes tilaa vapautuu.
+ * <p>
+ * Tiedosto kirjoitetaan ensin väliaikaistiedostoon, synkronoidaan levylle (fsync) ja siirretään
+ * sitten atomisesti alkuperäisen päälle, joten kaatuminen ei koskaan jätä puolikasta tiedostoa.
+ * Tiedostot, joiden nimi päättyy {@code .gz}, pakataan gzip-muotoon.
+ * <p>
+ * Jos kirjoittajalla on {@link DirectoryLock}, tiedosto siirretään paikalleen lukon alla, ja
+ * lupaus täytetään ennen lukon vapauttamista. Väliaikaistiedosto kirjoitetaan lukon ulkopuolella,
+ * jotta suuren tiedoston kirjoittaminen ei pysäytä muiden lukkoa tarvitsevia toimia.
+ * {@link #submitMerged(Path, Content)}-metodilla pyydetty tiedosto kirjoitetaan kokonaan lukon
+ * alla, joten sisältö voi lukea tiedoston nykyisen version ja yhdistää siihen omat muutoksensa
+ * ilman, että toinen prosessi ehtii väliin.
+ */
+public class PersistenceWriter implements Closeable {
+    // Kuinka kauan ensimmäisen pyynnön jälkeen odotetaan muita pyyntöjä ennen kirjoittamista
+    private static final long COALESCE_MILLIS = 50;
+    // Kuinka monta eri tiedostoa voi odottaa kirjoitusta yhtä aikaa
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Tiedoston sisältö, joka kirjoitetaan vasta taustasäikeessä.
+     */
+    public interface Content {
+        /**
+         * Kirjoittaa sisällön annettuun kirjoittimeen.
+         *
+         * @param out kirjoitin, joka kirjoittaa väliaikaistiedostoon
+         * @throws IOException jos kirjoittaminen epäonnistuu
+         */
+        void writeTo(BufferedWriter out) throws IOException;
+    }
+
+    /**
+     * Odottava kirjoitus: tiedoston uusin sisältö ja lupaus, joka täyttyy kirjoituksen jälkeen.
+     */
+    private static class Pending {
+        Content content;
+        // true, jos sisältö lukee tiedoston nykyisen version ja koko kirjoitus tehdään lukon alla
+        boolean merged;
+        final CompletableFuture<Long> written = new CompletableFuture<>();
+        // Ensimmäisen pyynnön aika; tallennuksen viive mitataan tästä levylle asti
+        final long submittedNanos = System.nanoTime();
+
+        Pending(Content content) {
+            this.content = content;
+        }
+    }
+
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    private final DirectoryLock lock;
+    private final Thread thread;
+    private Consumer<Boolean> savingListener = saving -> { };
+    private boolean writing;
+    private boolean closed;
+
+    /**
+     * Luo kirjoittajan ja käynnistää sen taustasäikeen.
+     */
+    public PersistenceWriter() {
+        this(null);
+    }
+
+    /**
+     * Luo kirjoittajan, joka kirjoittaa tiedostot hakemistolukon alla, ja käynnistää sen taustasäikeen.
+     *
+     * @param lock hakemistolukko, tai null, jos tiedostoja ei jaeta muiden prosessien kanssa
+     */
+    public PersistenceWriter(DirectoryLock lock) {
+        this.lock = lock;
+        thread = new Thread(this::run, "persistence-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asettaa kuuntelijan, jolle kerrotaan, onko tallennus kesken. Kuuntelijaa kutsutaan
+     * taustasäikeestä aina, kun tila muuttuu.
+     *
+     * @param savingListener kuuntelija, joka saa arvon true tallennuksen alkaessa ja false sen päättyessä
+     */
+    public synchronized void setSavingListener(Consumer<Boolean> savingListener) {
+        this.savingListener = savingListener;
+        savingListener.accept(isSaving());
+    }
+
+    /**
+     * Pyytää kirjoittamaan tiedoston taustalla. Jos tiedostolla on jo odottava kirjoitus,
+     * sen sisältö korvataan, ja palautetaan sama lupaus kuin aiemmalle pyynnölle.
+     * Sisällön on oltava kopio, jota ei muuteta pyynnön jälkeen.
+     *
+     * @param file    kirjoitettava tiedosto
+     * @param content tiedoston uusi sisältö
+     * @return lupaus, joka täyttyy kirjoitetun tiedoston CRC32-tarkistussummalla, kun tiedosto
+     * on levyllä, tai epäonnistuu, jos kirjoittaminen epäonnistuu
+     */
+    public CompletableFuture<Long> submit(Path file, Content content) {
+        return submit(file, content, false);
+    }
+
+    /**
+     * Pyytää kirjoittamaan tiedoston taustalla kuten {@link #submit(Path, Content)}, mutta koko
+     * kirjoitus tehdään hakemistolukon alla. Sisältö voi siis lukea tiedoston nykyisen version
+     * kirjoitushetkellä ja tehdä omat muutoksensa sen päälle.
+     *
+     * @param file    kirjoitettava tiedosto
+     * @param content tiedoston uusi sisältö, joka voi lukea tiedoston nykyisen version
+     * @return lupaus, joka täyttyy kirjoitetun tiedoston CRC32-tarkistussummalla, kun tiedosto
+     * on levyllä, tai epäonnistuu, jos kirjoittaminen epäonnistuu
+     */
+    public CompletableFuture<Long> submitMerged(Path file, Content content) {
+        return submit(file, content, true);
+    }
+
+    private synchronized CompletableFuture<Long> submit(Path file, Content content, boolean merged) {
+        Pending existing = pending.get(file);
+        if (existing != null) {
+            existing.content = content;
+            existing.merged |= merged;
+            return existing.written;
+        }
+        while (!closed && pending.size() >= QUEUE_CAPACITY) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Tallennus on jo suljettu"));
+        }
+        Pending request = new Pending(content);
+        request.merged = merged;
+        pending.put(file, request);
+        notifyAll();
+        if (pending.size() == 1 && !writing) {
+            savingListener.accept(true);
+        }
+        return request.written;
+    }
+
+    /**
+     * @return true, jos jokin tiedosto odottaa kirjoitusta tai on parhaillaan kirjoitettavana
+     */
+    public synchronized boolean isSaving() {
+        return writing || !pending.isEmpty();
+    }
+
+    /**
+     * Odottaa, kunnes kaikki tähän mennessä pyydetyt kirjoitukset ovat valmiita.
+     */
+    public synchronized void flush() {
+        while (isSaving() && thread.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Kirjoittaa odottavat tiedostot ja pysäyttää taustasäikeen. Uusia pyyntöjä ei enää oteta vastaan.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Map<Path, Pending> batch;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    waitQuietly(0);
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // Kerää samaan kirjoitukseen myös hetken päästä tulevat muutokset
+                long deadline = System.nanoTime() + COALESCE_MILLIS * 1_000_000;
+                long remaining;
+                while (!closed && (remaining = (deadline - System.nanoTime()) / 1_000_000) > 0) {
+                    waitQuietly(remaining);
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                writing = true;
+                notifyAll();
+            }
+            for (Map.Entry<Path, Pending> entry : batch.entrySet()) {
+                Pending request = entry.getValue();
+                try {
+                    if (lock != null && request.merged) {
+                        lock.locked(() -> writeMeasured(entry.getKey(), request));
+                    } else {
+                        writeMeasured(entry.getKey(), request);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Virhe " + entry.getKey() + "-tiedoston kirjoittamisessa: " + e.getMessage());
+                    request.written.completeExceptionally(e);
+                }
+            }
+            synchronized (this) {
+                writing = false;
+                notifyAll();
+                if (pending.isEmpty()) {
+                    savingListener.accept(false);
+                }
+            }
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            // Säie pysähtyy vasta, kun odottavat kirjoitukset on tehty
+        }
+    }
+
+    /**
+     * Kirjoittaa tiedoston, täyttää lupauksen ja kirjaa kirjoitetut tavut, kirjoituksen keston
+     * ja viiveen pyynnöstä levylle mittareihin ja JFR-tapahtumaan.
+     */
+    private boolean writeMeasured(Path file, Pending request) throws IOException {
+        PerformanceEvents.FileWrite event = new PerformanceEvents.FileWrite();
+        event.begin();
+        long start = System.nanoTime();
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        long checksum = writeTemporary(tempFile, file, request.content);
+        long bytes = Files.size(tempFile);
+        // Korvaa tiedosto atomisesti ja täytä lupaus ennen lukon vapauttamista
+        DirectoryLock.Action<Boolean> replace = () -> {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return request.written.complete(checksum);
+        };
+        if (lock != null) {
+            lock.locked(replace);
+        } else {
+            replace.run();
+        }
+        long elapsed = Metrics.recordSince("save.write", start);
+        Metrics.histogram("save.write." + file.getFileName()).record(elapsed);
+        Metrics.recordSince("save.latency", request.submittedNanos);
+        Metrics.increment("save.bytes", bytes);
+        Metrics.increment("save.files", 1);
+        event.file = file.toString();
+        event.bytes = bytes;
+        event.queuedMillis = (start - request.submittedNanos) / 1_000_000;
+        event.commit();
+        return true;
+    }
+
+    /**
+     * Kirjoittaa sisällön väliaikaistiedostoon ja synkronoi sen levylle.
+     *
+     * @return kirjoitettujen tavujen CRC32-tarkistussumma
+     */
+    private static long writeTemporary(Path tempFile, Path file, Content content) throws IOException {
+        CRC32 crc = new CRC32();
+        boolean compressed = file.getFileName().toString().endsWith(".gz");
+        // Kirjoita sisältö väliaikaistiedostoon ja synkronoi se levylle
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile());
+             OutputStream checked = new CheckedOutputStream(out, crc);
+             OutputStream body = compressed ? new GZIPOutputStream(checked, 1 << 16) : checked;
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+            content.writeTo(bw);
+            bw.flush();
+            if (body instanceof GZIPOutputStream gzip) {
+                gzip.finish();
+            }
+            out.getFD().sync();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Luo sisällön, joka kirjoittaa annetut rivit tiedostoon yksi kerrallaan.
+     *
+     * @param items  kirjoitettavat oliot; listan on oltava kopio, jota ei enää muuteta
+     * @param format olion muunnos tiedostoriviksi
+     * @param <T>    kirjoitettava olio
+     * @return tiedoston sisältö
+     */
+    public static <T> Content lines(List<T> items, Function<? super T, String> format) {
+        return out -> {
+            for (T item : items) {
+                out.write(format.apply(item));
+                out.newLine();
+            }
+        };
+    }
+}
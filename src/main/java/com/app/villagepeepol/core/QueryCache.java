@@ -0,0 +1,219 @@
+package com.app.villagepeepol.core;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * QueryCache muistaa saatavuuskyselyjen tulokset, jotta saman kysymyksen toistaminen, kuten
+ * "onko ensi viikonloppuna vapaata", ei käy mökkejä läpi uudelleen. Välimuistissa on enintään
+ * annettu määrä tuloksia, ja kun se täyttyy, pisimpään käyttämätön tulos poistetaan.
+ * <p>
+ * Jokaisella tuloksella on jakso, jonka varaukset vaikuttavat siihen, ja joko yksi mökki tai
+ * ehto mökeistä, joita tulos koskee. Kun varaus lisätään tai poistetaan, unohdetaan vain ne
+ * tulokset, joiden mökkiin ja jaksoon varaus osuu; muut säilyvät. Mökkien lisäys ja poisto
+ * unohtavat kaikki useaa mökkiä koskevat tulokset.
+ * <p>
+ * Osumat, ohitukset, poistot ja unohdetut tulokset kirjataan {@link Metrics}-laskureihin
+ * {@code cache.hit}, {@code cache.miss}, {@code cache.eviction} ja {@code cache.invalidation},
+ * ja tulosten määrä mittariin {@code cache.size}. Välimuistin koon voi asettaa
+ * järjestelmäominaisuudella {@value #SIZE_PROPERTY}; koko 0 poistaa välimuistin käytöstä.
+ * <p>
+ * Välimuistia voi käyttää useasta säikeestä. Tulos lasketaan lukon ulkopuolella, eikä sitä
+ * tallenneta, jos varauksia tai mökkejä muutettiin laskennan aikana, koska laskenta on voinut
+ * nähdä hakemiston ennen muutosta.
+ */
+public class QueryCache {
+    /**
+     * Järjestelmäominaisuus, joka asettaa välimuistin tulosten enimmäismäärän.
+     */
+    public static final String SIZE_PROPERTY = "villagepeepol.cache.size";
+    private static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * Tulos ja mökit ja jakso [alku, loppu), joiden varaukset vaikuttavat siihen.
+     *
+     * @param cottage  mökki, jota tulos koskee, tai null, jos tulos koskee useaa mökkiä
+     * @param cottages useaa mökkiä koskevan tuloksen mökit
+     */
+    private record Entry(Object value, Cottage cottage, Predicate<Cottage> cottages, long start, long end) {
+        boolean overlaps(long otherStart, long otherEnd) {
+            return start < otherEnd && otherStart < end;
+        }
+    }
+
+    private final int maxSize;
+    private final Map<Object, Entry> entries;
+    // Yhtä mökkiä koskevat tulokset mökeittäin, jotta varaus katsoo vain oman mökkinsä tulokset;
+    // erillään entries-kartasta, jotta läpikäynti ei muuta käyttöjärjestystä
+    private final Map<Cottage, Map<Object, Entry>> byCottage = new HashMap<>();
+    // Useaa mökkiä koskevat tulokset
+    private final Map<Object, Entry> multiCottage = new HashMap<>();
+    // Kasvaa jokaisesta muutoksesta; kertoo, muuttuiko hakemisto tuloksen laskennan aikana
+    private long generation;
+
+    /**
+     * Luo välimuistin, jonka koko luetaan järjestelmäominaisuudesta {@value #SIZE_PROPERTY}.
+     */
+    public QueryCache() {
+        this(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE));
+    }
+
+    /**
+     * Luo välimuistin.
+     *
+     * @param maxSize tulosten enimmäismäärä; 0 poistaa välimuistin käytöstä
+     */
+    public QueryCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() <= QueryCache.this.maxSize) {
+                    return false;
+                }
+                unindex(eldest.getKey(), eldest.getValue());
+                Metrics.increment("cache.eviction", 1);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Palauttaa yhtä mökkiä koskevan tuloksen välimuistista tai laskee sen.
+     *
+     * @param key     kyselyn ja sen parametrien avain
+     * @param cottage mökki, jonka varaukset vaikuttavat tulokseen
+     * @param start   tulokseen vaikuttavan jakson ensimmäinen päivä epoch-päivinä
+     * @param end     antaa tuloksesta tulokseen vaikuttavan jakson lopun epoch-päivinä, ei mukaan lukien
+     * @param compute laskee tuloksen, jos sitä ei ole välimuistissa
+     * @param <T>     tulos
+     * @return tulos
+     */
+    public <T> T get(Object key, Cottage cottage, long start, ToLongFunction<? super T> end, Supplier<T> compute) {
+        return get(key, cottage, null, start, end, compute);
+    }
+
+    /**
+     * Palauttaa useaa mökkiä koskevan tuloksen välimuistista tai laskee sen.
+     *
+     * @param key      kyselyn ja sen parametrien avain
+     * @param cottages mökit, joiden varaukset vaikuttavat tulokseen
+     * @param start    tulokseen vaikuttavan jakson ensimmäinen päivä epoch-päivinä
+     * @param end      tulokseen vaikuttavan jakson loppu epoch-päivinä, ei mukaan lukien
+     * @param compute  laskee tuloksen, jos sitä ei ole välimuistissa
+     * @param <T>      tulos
+     * @return tulos
+     */
+    public <T> T get(Object key, Predicate<Cottage> cottages, long start, long end, Supplier<T> compute) {
+        return get(key, null, cottages, start, value -> end, compute);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Object key, Cottage cottage, Predicate<Cottage> cottages, long start,
+                      ToLongFunction<? super T> end, Supplier<T> compute) {
+        if (maxSize == 0) {
+            return compute.get();
+        }
+        long seen;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                Metrics.increment("cache.hit", 1);
+                return (T) entry.value();
+            }
+            seen = generation;
+        }
+        Metrics.increment("cache.miss", 1);
+        T value = compute.get();
+        synchronized (this) {
+            if (generation == seen && !entries.containsKey(key)) {
+                Entry entry = new Entry(value, cottage, cottages, start, end.applyAsLong(value));
+                if (cottage != null) {
+                    byCottage.computeIfAbsent(cottage, c -> new HashMap<>()).put(key, entry);
+                } else {
+                    multiCottage.put(key, entry);
+                }
+                entries.put(key, entry);
+                Metrics.set("cache.size", entries.size());
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Unohtaa tulokset, joihin varaus vaikuttaa: saman mökin tulokset ja ne useaa mökkiä
+     * koskevat tulokset, joihin mökki kuuluu, jos niiden jakso osuu varauksen päiville.
+     * Kutsutaan, kun varaus on lisätty hakemistoon tai poistettu siitä.
+     *
+     * @param booking lisätty tai poistettu varaus
+     */
+    public synchronized void invalidate(Booking booking) {
+        // Samaan aikaan laskettu tulos on voinut nähdä hakemiston ennen muutosta
+        generation++;
+        Cottage cottage = booking.getCottage();
+        if (entries.isEmpty() || cottage == null) {
+            return;
+        }
+        long start = booking.getStartDate().toEpochDay();
+        long end = start + booking.getDays();
+        List<Object> stale = new ArrayList<>();
+        byCottage.getOrDefault(cottage, Map.of()).forEach((key, entry) -> {
+            if (entry.overlaps(start, end)) {
+                stale.add(key);
+            }
+        });
+        multiCottage.forEach((key, entry) -> {
+            if (entry.overlaps(start, end) && entry.cottages().test(cottage)) {
+                stale.add(key);
+            }
+        });
+        remove(stale);
+    }
+
+    /**
+     * Unohtaa kaikki useaa mökkiä koskevat tulokset. Kutsutaan, kun mökki lisätään tai poistetaan.
+     */
+    public synchronized void invalidateMultiCottage() {
+        generation++;
+        remove(new ArrayList<>(multiCottage.keySet()));
+    }
+
+    /**
+     * Tyhjentää välimuistin.
+     */
+    public synchronized void clear() {
+        generation++;
+        remove(new ArrayList<>(entries.keySet()));
+    }
+
+    /**
+     * @return välimuistissa olevien tulosten määrä
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(List<Object> keys) {
+        for (Object key : keys) {
+            unindex(key, entries.remove(key));
+        }
+        if (!keys.isEmpty()) {
+            Metrics.increment("cache.invalidation", keys.size());
+            Metrics.set("cache.size", entries.size());
+        }
+    }
+
+    private void unindex(Object key, Entry entry) {
+        if (entry.cottage() == null) {
+            multiCottage.remove(key);
+            return;
+        }
+        Map<Object, Entry> cottageEntries = byCottage.get(entry.cottage());
+        cottageEntries.remove(key);
+        if (cottageEntries.isEmpty()) {
+            byCottage.remove(entry.cottage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.app.villagepeepol.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TextFiles lukee ja kirjoittaa mökki- ja varaustiedostot rivi kerrallaan
+ * {@code ;}-erotellussa tekstimuodossa. Luokka ei riipu JavaFX:stä, joten samoja metodeja
+ * voidaan käyttää sekä sovelluksessa että ilman käyttöliittymää.
+ */
+public final class TextFiles {
+
+    private TextFiles() {
+    }
+
+    /**
+     * Lukee mökit tiedostosta rivi kerrallaan. Otsikkorivi ohitetaan.
+     *
+     * @param file mökkitiedosto
+     * @return mökit tiedoston järjestyksessä
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public static List<Cottage> readCottages(Path file) throws IOException {
+        List<Cottage> cottages = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                // Otsikkorivi kertoo suurimman annetun tunnisteen
+                if (!line.startsWith("#")) {
+                    cottages.add(Cottage.fromFileString(line));
+                }
+            }
+        }
+        return cottages;
+    }
+
+    /**
+     * Lukee varaukset tiedostosta rivi kerrallaan. Tyhjät rivit ohitetaan.
+     *
+     * @param file     varaustiedosto
+     * @param cottages hakemisto mökeistä, joihin varaukset viittaavat
+     * @return varaukset tiedoston järjestyksessä
+     * @throws IOException jos tiedoston lukeminen epäonnistuu
+     */
+    public static List<Booking> readBookings(Path file, CottageRegistry cottages) throws IOException {
+        List<Booking> bookings = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    bookings.add(Booking.fromFileString(line, cottages));
+                }
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * Kirjoittaa mökit tiedostoon, yksi mökki riviä kohden.
+     *
+     * @param file     mökkitiedosto
+     * @param cottages kirjoitettavat mökit
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public static void writeCottages(Path file, List<Cottage> cottages) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Cottage cottage : cottages) {
+                bw.write(cottage.toFileString());
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Kirjoittaa varaukset tiedostoon, yksi varaus riviä kohden.
+     *
+     * @param file     varaustiedosto
+     * @param bookings kirjoitettavat varaukset
+     * @throws IOException jos tiedoston kirjoittaminen epäonnistuu
+     */
+    public static void writeBookings(Path file, List<Booking> bookings) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Booking booking : bookings) {
+                bw.write(booking.toFileString());
+                bw.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.app.villagepeepol.server;
+
+import com.app.villagepeepol.core.Booking;
+import com.app.villagepeepol.core.BookingConflictException;
+import com.app.villagepeepol.core.BookingService;
+import com.app.villagepeepol.core.Cottage;
+import com.app.villagepeepol.core.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BookingServer tarjoaa mökit ja varaukset HTTP-rajapintana ilman käyttöliittymää.
+ * Palvelin käyttää JDK:n {@code com.sun.net.httpserver}-palvelinta, ja jokainen pyyntö
+ * käsitellään omassa virtuaalisäikeessään.
+ * <p>
+ * Rajapinta palauttaa JSONia:
+ * <ul>
+ *     <li>{@code GET /api/cottages} – kaikki mökit</li>
+ *     <li>{@code GET /api/bookings?offset=0&limit=100} – sivu varauksia</li>
+ *     <li>{@code GET /api/bookings?cottage=nimi} – mökin aktiivisen jakson varaukset alkamispäivän mukaan</li>
+ *     <li>{@code GET /api/search?guests=4&minSize=0&start=2024-06-01&days=3} – vapaat mökit</li>
+ *     <li>{@code POST /api/bookings} lomakkeella {@code cottage, customer, start, days} – uusi varaus</li>
+ *     <li>{@code GET /api/metrics} – suorituskykymittarit riveittäin, ks. {@link Metrics#dump(Appendable)}</li>
+ * </ul>
+ * Päivämäärät ovat muodossa yyyy-MM-dd kuten varaustiedostossa.
+ */
+public class BookingServer {
+    // Varauslistauksen oletus- ja enimmäiskoko
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+
+    private final BookingService service;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Luo palvelimen, joka kuuntelee annettua porttia.
+     *
+     * @param service palvelu, jonka tiedot rajapinta tarjoaa
+     * @param port    portti, 0 jos portti valitaan vapaista
+     * @throws IOException jos porttia ei voida avata
+     */
+    public BookingServer(BookingService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/cottages", exchange -> handle(exchange, this::cottages));
+        server.createContext("/api/bookings", exchange -> handle(exchange, this::bookings));
+        server.createContext("/api/search", exchange -> handle(exchange, this::search));
+        server.createContext("/api/metrics", exchange -> handle(exchange, this::metrics));
+    }
+
+    /**
+     * Käynnistää palvelimen.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return portti, jota palvelin kuuntelee
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Pysäyttää palvelimen. Käsittelyssä olevat pyynnöt saavat valmistua.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Käynnistää palvelimen komentoriviltä:
+     * {@code BookingServer [portti] [hakemisto]}. Oletuksena portti on 8080 ja hakemisto
+     * nykyinen hakemisto, jolloin palvelin käyttää samoja tiedostoja kuin työpöytäsovellus.
+     *
+     * @param args portti ja tiedostojen hakemisto
+     * @throws IOException jos porttia ei voida avata
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path directory = Paths.get(args.length > 1 ? args[1] : "");
+        BookingService service = BookingService.open(directory, System.out::println);
+        BookingServer bookingServer = new BookingServer(service, port);
+        Metrics.dumpOnExit();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            bookingServer.stop();
+            service.close();
+        }));
+        bookingServer.start();
+        System.out.println("Palvelin käynnissä: http://localhost:" + bookingServer.getPort() + "/api/cottages");
+    }
+
+    /**
+     * Yhden rajapinnan käsittelijä, joka palauttaa vastauksen JSONina.
+     */
+    private interface Handler {
+        Response handle(String method, Map<String, String> params) throws BookingConflictException;
+    }
+
+    private record Response(int status, String json) {
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            Map<String, String> params = parseForm(exchange.getRequestURI().getRawQuery());
+            if (exchange.getRequestMethod().equals("POST")) {
+                params.putAll(parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            }
+            response = handler.handle(exchange.getRequestMethod(), params);
+        } catch (BookingConflictException e) {
+            response = new Response(409, "{\"error\":" + quote(e.getMessage())
+                    + ",\"conflicts\":" + toJson(e.getConflicts())
+                    + ",\"nextFree\":" + quote(e.getNextFree().toString()) + "}");
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // NumberFormatException on IllegalArgumentException
+            response = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Virhe pyynnön " + exchange.getRequestURI() + " käsittelyssä: " + e.getMessage());
+            response = error(500, "Sisäinen virhe");
+        }
+        byte[] body = response.json().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        Metrics.recordSince("http" + exchange.getHttpContext().getPath().replace('/', '.'), start);
+        Metrics.increment("http.status." + response.status(), 1);
+    }
+
+    private Response cottages(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Sallittu metodi: GET");
+        }
+        return new Response(200, cottagesToJson(service.getCottages()));
+    }
+
+    private Response bookings(String method, Map<String, String> params) throws BookingConflictException {
+        switch (method) {
+            case "GET" -> {
+                String cottageName = params.get("cottage");
+                if (cottageName != null) {
+                    List<Booking> bookings = service.getBookingsOf(cottageName);
+                    if (bookings == null) {
+                        return error(404, "Mökkiä ei löydy: " + cottageName);
+                    }
+                    return new Response(200, "{\"total\":" + bookings.size() + ",\"bookings\":" + toJson(bookings) + "}");
+                }
+                int offset = intParam(params, "offset", 0);
+                int limit = Math.min(intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+                return new Response(200, "{\"total\":" + service.getBookingCount()
+                        + ",\"bookings\":" + toJson(service.getBookings(offset, limit)) + "}");
+            }
+            case "POST" -> {
+                String cottageName = requiredParam(params, "cottage");
+                if (service.findCottage(cottageName) == null) {
+                    return error(404, "Mökkiä ei löydy: " + cottageName);
+                }
+                int days = Integer.parseInt(requiredParam(params, "days"));
+                if (!Booking.isValidDays(days)) {
+                    return error(400, "Varauksen keston täytyy olla 1–" + Booking.MAX_DAYS + " päivää");
+                }
+                Booking booking = service.book(cottageName, requiredParam(params, "customer"),
+                        LocalDate.parse(requiredParam(params, "start")), days);
+                return new Response(201, toJson(booking));
+            }
+            default -> {
+                return error(405, "Sallitut metodit: GET, POST");
+            }
+        }
+    }
+
+    private Response search(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Sallittu metodi: GET");
+        }
+        int guests = Integer.parseInt(requiredParam(params, "guests"));
+        int minSize = intParam(params, "minSize", 0);
+        LocalDate start = LocalDate.parse(requiredParam(params, "start"));
+        int days = Integer.parseInt(requiredParam(params, "days"));
+        if (days <= 0) {
+            return error(400, "Jakson pituuden täytyy olla positiivinen");
+        }
+        return new Response(200, cottagesToJson(service.findAvailable(guests, minSize, start, days)));
+    }
+
+    private Response metrics(String method, Map<String, String> params) {
+        if (!method.equals("GET")) {
+            return error(405, "Sallittu metodi: GET");
+        }
+        List<String> lines = Metrics.dump().lines().map(BookingServer::quote).toList();
+        return new Response(200, "{\"metrics\":[" + String.join(",", lines) + "]}");
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "{\"error\":" + quote(message == null ? "Virheellinen pyyntö" : message) + "}");
+    }
+
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> params = new HashMap<>();
+        if (form == null || form.isEmpty()) {
+            return params;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String requiredParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Puuttuva parametri: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String cottagesToJson(List<Cottage> cottages) {
+        StringBuilder json = new StringBuilder("[");
+        for (Cottage cottage : cottages) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(cottage.getId())
+                    .append(",\"name\":").append(quote(cottage.getName()))
+                    .append(",\"size\":").append(cottage.getSize())
+                    .append(",\"capacity\":").append(cottage.getCapacity()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String toJson(List<Booking> bookings) {
+        StringBuilder json = new StringBuilder("[");
+        for (Booking booking : bookings) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(toJson(booking));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String toJson(Booking booking) {
+        return "{\"cottage\":" + (booking.getCottage() == null ? "null" : quote(booking.getCottage().getName()))
+                + ",\"customer\":" + quote(booking.getCustomerName())
+                + ",\"start\":" + quote(booking.getStartDate().toString())
+                + ",\"days\":" + booking.getDays() + "}";
+    }
+
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -1,7 +1,11 @@
 module com.app.villagepeepol {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
+    requires jdk.jfr;
 
     requires org.kordamp.ikonli.javafx;
     exports com.app.villagepeepol;
-}
\ No newline at end of file
+    exports com.app.villagepeepol.core;
+    exports com.app.villagepeepol.server;
+}
@@ -0,0 +1,148 @@
+package com.app.villagepeepol;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.app.villagepeepol.PagedDisplayList.MAX_PAGES;
+import static com.app.villagepeepol.PagedDisplayList.PAGE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PagedDisplayListTest {
+    // Enemmän sivuja kuin välimuistiin mahtuu
+    private static final int SIZE = (MAX_PAGES + 2) * PAGE_SIZE;
+
+    private final ObservableList<Integer> source = FXCollections.observableArrayList();
+    private final AtomicInteger mapped = new AtomicInteger();
+    private final PagedDisplayList<Integer, String> rows = new PagedDisplayList<>(source, value -> {
+        mapped.incrementAndGet();
+        return "rivi " + value;
+    });
+    // Näkymän muutokset muodossa "add 3-5", "remove 3 [rivi 3]", "replace 3 [rivi 3]" tai "permutate 0-4"
+    private final List<String> changes = new ArrayList<>();
+
+    PagedDisplayListTest() {
+        for (int i = 0; i < SIZE; i++) {
+            source.add(i);
+        }
+        rows.addListener((ListChangeListener<String>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    changes.add("permutate " + change.getFrom() + "-" + change.getTo());
+                } else if (change.wasReplaced()) {
+                    changes.add("replace " + change.getFrom() + " " + change.getRemoved());
+                } else if (change.wasRemoved()) {
+                    changes.add("remove " + change.getFrom() + " " + change.getRemoved());
+                } else if (change.wasAdded()) {
+                    changes.add("add " + change.getFrom() + "-" + change.getTo());
+                }
+            }
+        });
+    }
+
+    @Test
+    void rowIsMappedOnlyWhenRequestedAndThenKept() {
+        assertEquals(SIZE, rows.size());
+        assertEquals(0, mapped.get());
+
+        String row = rows.get(PAGE_SIZE + 3);
+        assertEquals("rivi " + (PAGE_SIZE + 3), row);
+        assertSame(row, rows.get(PAGE_SIZE + 3));
+        assertEquals(1, mapped.get());
+    }
+
+    @Test
+    void addKeepsEarlierPagesAndRemapsShiftedRows() {
+        String first = rows.get(10);
+        String shifted = rows.get(2 * PAGE_SIZE + 10);
+
+        source.add(PAGE_SIZE + 5, -1);
+
+        assertEquals(List.of("add " + (PAGE_SIZE + 5) + "-" + (PAGE_SIZE + 6)), changes);
+        assertSame(first, rows.get(10));
+        assertEquals("rivi -1", rows.get(PAGE_SIZE + 5));
+        assertNotSame(shifted, rows.get(2 * PAGE_SIZE + 11));
+        assertEquals(shifted, rows.get(2 * PAGE_SIZE + 11));
+        assertEquals("rivi " + (2 * PAGE_SIZE + 10), rows.get(2 * PAGE_SIZE + 11));
+    }
+
+    @Test
+    void removeReportsCachedRowsAndShiftsLaterRows() {
+        String removed = rows.get(PAGE_SIZE);
+        int before = mapped.get();
+
+        source.remove(PAGE_SIZE, PAGE_SIZE + 2);
+
+        // Näkyvissä ollut rivi annetaan sellaisenaan, toinen muunnetaan vasta pyydettäessä
+        assertEquals(List.of("remove " + PAGE_SIZE + " [rivi " + PAGE_SIZE + ", rivi " + (PAGE_SIZE + 1) + "]"), changes);
+        assertEquals(before + 1, mapped.get());
+        assertEquals(SIZE - 2, rows.size());
+        assertEquals("rivi " + (PAGE_SIZE + 2), rows.get(PAGE_SIZE));
+        assertNotSame(removed, rows.get(PAGE_SIZE));
+    }
+
+    @Test
+    void setRemapsOnlyReplacedRow() {
+        String before = rows.get(2);
+        String after = rows.get(3);
+        String later = rows.get(PAGE_SIZE + 3);
+
+        source.set(3, 1000);
+
+        assertEquals(List.of("replace 3 [rivi 3]"), changes);
+        assertEquals("rivi 1000", rows.get(3));
+        assertSame(before, rows.get(2));
+        assertSame(later, rows.get(PAGE_SIZE + 3));
+        assertNotSame(after, rows.get(3));
+    }
+
+    @Test
+    void sortRemapsRowsInNewOrder() {
+        rows.get(0);
+
+        FXCollections.sort(source, Comparator.reverseOrder());
+
+        assertEquals(List.of("permutate 0-" + SIZE), changes);
+        assertEquals("rivi " + (SIZE - 1), rows.get(0));
+    }
+
+    @Test
+    void leastRecentlyUsedPageIsEvicted() {
+        for (int page = 0; page < MAX_PAGES; page++) {
+            rows.get(page * PAGE_SIZE);
+        }
+        // Sivut 0–2 käytetään uudelleen, joten vähiten käytetty on sivu 3
+        String first = rows.get(0);
+        String second = rows.get(PAGE_SIZE);
+        rows.get(1);
+        rows.get(2 * PAGE_SIZE);
+        assertEquals(MAX_PAGES + 1, mapped.get());
+
+        rows.get(MAX_PAGES * PAGE_SIZE);
+
+        int afterNewPage = mapped.get();
+        assertSame(first, rows.get(0));
+        assertSame(second, rows.get(PAGE_SIZE));
+        assertEquals(afterNewPage, mapped.get());
+        rows.get(3 * PAGE_SIZE);
+        assertEquals(afterNewPage + 1, mapped.get());
+    }
+
+    @Test
+    void invalidateRemapsEveryRow() {
+        String row = rows.get(5);
+
+        rows.invalidate();
+
+        assertNotSame(row, rows.get(5));
+        assertEquals(row, rows.get(5));
+    }
+}
@@ -0,0 +1,49 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookingArchiveTest {
+    @TempDir
+    Path directory;
+
+    private final Cottage lake = new Cottage(1, "Rantamökki", 40, 4);
+    private final Cottage forest = new Cottage(2, "Metsämökki", 30, 2);
+    private final CottageRegistry cottages = new CottageRegistry(List.of(lake, forest));
+
+    @Test
+    void removedCottageLeavesNoArchivedBookings() throws IOException {
+        try (PersistenceWriter writer = new PersistenceWriter()) {
+            BookingArchive archive = new BookingArchive(directory, writer);
+            archive.archive(List.of(
+                    new Booking(lake, "Matti", LocalDate.of(2020, 6, 1), 7),
+                    new Booking(forest, "Liisa", LocalDate.of(2020, 6, 1), 7),
+                    new Booking(lake, "Pekka", LocalDate.of(2021, 7, 1), 3)), LocalDate.of(2022, 1, 1));
+
+            archive.removeCottage(lake);
+
+            assertEquals(List.of("2;Liisa;2020-06-01;7"), lines(archive.load(2020, cottages)));
+            assertEquals(List.of(), lines(archive.load(2021, cottages)));
+            writer.flush();
+        }
+
+        // Tiedostoista luettuna mökittömiä rivejä ei ole
+        try (PersistenceWriter writer = new PersistenceWriter()) {
+            BookingArchive archive = new BookingArchive(directory, writer);
+            CottageRegistry remaining = new CottageRegistry(List.of(forest));
+            assertEquals(List.of("2;Liisa;2020-06-01;7"), lines(archive.load(2020, remaining)));
+            assertEquals(List.of(), archive.load(2021, remaining));
+        }
+    }
+
+    private static List<String> lines(List<Booking> bookings) {
+        return bookings.stream().map(Booking::toFileString).toList();
+    }
+}
@@ -0,0 +1,157 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingEngineTest {
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 1000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentBookingsNeverOverlap() throws Exception {
+        writeCottages();
+
+        int total;
+        List<String> lines;
+        try (BookingService service = BookingService.open(directory, status -> {
+        })) {
+            // Ensin kaikki säikeet samaan mökkiin, sitten kukin omaansa; journal tiivistyy välillä
+            int shared = assertTimeoutPreemptively(Duration.ofSeconds(60), () -> run(service, Thread.ofPlatform(), thread -> "Mökki 1"));
+            int own = assertTimeoutPreemptively(Duration.ofSeconds(60), () -> run(service, Thread.ofPlatform(), thread -> "Mökki " + (thread + 2)));
+            total = service.getBookingCount();
+            assertEquals(shared + own, total);
+            assertTrue(shared > 0 && own > 0);
+            List<Booking> bookings = service.getBookings(0, total);
+            assertEquals(List.of(), overlaps(bookings));
+            lines = bookings.stream().map(Booking::toFileString).sorted().toList();
+        }
+
+        try (BookingService reopened = BookingService.open(directory, status -> {
+        })) {
+            List<String> reloaded = reopened.getBookings(0, reopened.getBookingCount()).stream()
+                    .map(Booking::toFileString).sorted().toList();
+            assertEquals(lines, reloaded);
+        }
+    }
+
+    @Test
+    void virtualThreadsCommitTogether() throws Exception {
+        writeCottages();
+
+        List<String> lines;
+        try (BookingService service = BookingService.open(directory, status -> {
+        })) {
+            // Kirjaukset odottavat journalia tavallisella lukolla, joten virtuaalisäikeet eivät jumitu kantosäikeisiin
+            int booked = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                    () -> run(service, Thread.ofVirtual(), thread -> "Mökki " + (thread + 2)));
+            assertEquals(booked, service.getBookingCount());
+            List<Booking> bookings = service.getBookings(0, booked);
+            assertEquals(List.of(), overlaps(bookings));
+            lines = bookings.stream().map(Booking::toFileString).sorted().toList();
+        }
+
+        try (BookingService reopened = BookingService.open(directory, status -> {
+        })) {
+            List<String> reloaded = reopened.getBookings(0, reopened.getBookingCount()).stream()
+                    .map(Booking::toFileString).sorted().toList();
+            assertEquals(lines, reloaded);
+        }
+    }
+
+    private void writeCottages() throws IOException {
+        StringBuilder cottages = new StringBuilder("#;" + (THREADS + 2) + "\n");
+        for (int id = 1; id <= THREADS + 1; id++) {
+            cottages.append(id).append(";Mökki ").append(id).append(";40;4\n");
+        }
+        Files.writeString(directory.resolve(BookingFiles.COTTAGES_FILE), cottages);
+    }
+
+    /**
+     * Käynnistää säikeet yhtä aikaa ja yrittää jokaisessa satunnaisia varauksia.
+     *
+     * @return onnistuneiden varausten määrä
+     */
+    private static int run(BookingService service, Thread.Builder builder, IntFunction<String> cottage)
+            throws InterruptedException {
+        AtomicInteger booked = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            SplittableRandom random = new SplittableRandom(thread);
+            workers.add(builder.start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    try {
+                        service.book(cottage.apply(thread), "Asiakas " + thread,
+                                FIRST_DAY.plusDays(random.nextInt(3650)), 1 + random.nextInt(7));
+                        booked.incrementAndGet();
+                    } catch (BookingConflictException e) {
+                        // Päällekkäinen yritys kuuluu testiin
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return booked.get();
+    }
+
+    /**
+     * @return varausparit, joiden päivät osuvat samalla mökillä päällekkäin
+     */
+    private static List<String> overlaps(List<Booking> bookings) {
+        Map<Cottage, List<Booking>> byCottage = new HashMap<>();
+        for (Booking booking : bookings) {
+            byCottage.computeIfAbsent(booking.getCottage(), c -> new ArrayList<>()).add(booking);
+        }
+        List<String> overlaps = new ArrayList<>();
+        for (List<Booking> cottageBookings : byCottage.values()) {
+            cottageBookings.sort(Comparator.comparing(Booking::getStartDate));
+            // Verrataan aiempaan varaukseen, joka päättyy myöhimmin
+            Booking latest = null;
+            for (Booking booking : cottageBookings) {
+                if (latest != null && end(latest).isAfter(booking.getStartDate())) {
+                    overlaps.add(latest.toFileString() + " / " + booking.toFileString());
+                }
+                if (latest == null || end(booking).isAfter(end(latest))) {
+                    latest = booking;
+                }
+            }
+        }
+        return overlaps;
+    }
+
+    private static LocalDate end(Booking booking) {
+        return booking.getStartDate().plusDays(booking.getDays());
+    }
+}
@@ -0,0 +1,64 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingExportTest {
+    @TempDir
+    Path directory;
+
+    private final Cottage cottage = new Cottage(2, "Mökki \"Ranta\", iso", 60, 8);
+
+    @Test
+    void csvFieldsAreQuotedOnlyWhenNeeded() throws IOException {
+        Path file = directory.resolve("vienti.csv");
+
+        long count = BookingExport.writeCsv(file, Stream.of(
+                new Booking(cottage, "Virtanen, \"Masa\" Matti", LocalDate.of(2030, 6, 1), 7),
+                new Booking(cottage, "Liisa", LocalDate.of(2030, 6, 8), 3),
+                new Booking(null, "Tuntematon", LocalDate.of(2030, 6, 1), 1)));
+
+        assertEquals(2, count);
+        assertEquals(List.of(
+                BookingExport.CSV_HEADER,
+                "2,\"Mökki \"\"Ranta\"\", iso\",\"Virtanen, \"\"Masa\"\" Matti\",2030-06-01,7",
+                "2,\"Mökki \"\"Ranta\"\", iso\",Liisa,2030-06-08,3"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void iCalendarTextIsEscapedAndFolded() throws IOException {
+        Cottage special = new Cottage(3, "Mökki; sauna, \\ranta", 40, 4);
+        String customer = "Äijälä, Öljynen; " + "ä".repeat(60);
+        Path file = directory.resolve(BookingExport.iCalendarFileName(special));
+
+        long count = BookingExport.writeICalendar(file, special, Stream.of(
+                new Booking(special, customer, LocalDate.of(2030, 12, 30), 3),
+                new Booking(cottage, "Toisen mökin varaus", LocalDate.of(2030, 6, 1), 1)));
+
+        assertEquals(1, count);
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(content.endsWith("END:VCALENDAR\r\n"));
+        assertEquals(-1, content.replace("\r\n", "").indexOf('\n'), "rivit päättyvät CRLF-merkkeihin");
+        for (String line : content.split("\r\n")) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, line);
+        }
+        // Jatkorivit yhdistetään poistamalla rivinvaihto ja sitä seuraava välilyönti
+        List<String> lines = List.of(content.replace("\r\n ", "").split("\r\n"));
+        assertTrue(lines.contains("X-WR-CALNAME:Mökki\\; sauna\\, \\\\ranta"));
+        assertTrue(lines.contains("SUMMARY:Äijälä\\, Öljynen\\; " + "ä".repeat(60)));
+        assertTrue(lines.contains("UID:mokki-3-2030-12-30@villagepeepol"));
+        assertTrue(lines.contains("DTSTART;VALUE=DATE:20301230"));
+        assertTrue(lines.contains("DTEND;VALUE=DATE:20310102"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BookingImportTest {
+    @TempDir
+    Path directory;
+
+    private final Cottage lake = new Cottage(1, "Rantamökki", 40, 4);
+    private final Cottage quoted = new Cottage(2, "Mökki \"Ranta\", iso", 60, 8);
+    private final CottageRegistry cottages = new CottageRegistry(List.of(lake, quoted));
+    private final AvailabilityIndex index = new AvailabilityIndex();
+    private final List<Booking> imported = new ArrayList<>();
+
+    @Test
+    void invalidRowsAreWrittenToRejectsFile() throws IOException {
+        Path input = write("tuonti.txt",
+                "# vanhan järjestelmän vienti",
+                "1;Matti;2030-06-01;7",
+                "",
+                "Rantamökki;Liisa;15.06.2030;3",
+                "9;Pekka;2030-06-01;7",
+                "1;Pekka;2030-13-01;7",
+                "1;Pekka;2030-07-01;0",
+                "1;Pekka;2030-07-01;2000000000",
+                "1;Pekka;2030-07-01;" + (Booking.MAX_DAYS + 1),
+                "1;Pekka;2030-07-01",
+                "1;Pekka;2030-06-05;2",
+                "1;Pekka;2030-07-01;" + Booking.MAX_DAYS);
+        Path rejects = BookingImport.defaultRejectsFile(input);
+
+        BookingImport.Result result = newImport().run(input, rejects, progress -> {
+        });
+
+        assertEquals(new BookingImport.Result(10, 3, 7), result);
+        assertEquals(List.of("1;Matti;2030-06-01;7", "1;Liisa;2030-06-15;3", "1;Pekka;2030-07-01;" + Booking.MAX_DAYS),
+                imported.stream().map(Booking::toFileString).toList());
+        assertEquals(List.of(
+                "# rivi 5: Mökkiä ei löydy: 9",
+                "9;Pekka;2030-06-01;7",
+                "# rivi 6: Virheellinen päivämäärä: 2030-13-01",
+                "1;Pekka;2030-13-01;7",
+                "# rivi 7: Varauksen keston täytyy olla 1–" + Booking.MAX_DAYS + " päivää: 0",
+                "1;Pekka;2030-07-01;0",
+                "# rivi 8: Varauksen keston täytyy olla 1–" + Booking.MAX_DAYS + " päivää: 2000000000",
+                "1;Pekka;2030-07-01;2000000000",
+                "# rivi 9: Varauksen keston täytyy olla 1–" + Booking.MAX_DAYS + " päivää: " + (Booking.MAX_DAYS + 1),
+                "1;Pekka;2030-07-01;" + (Booking.MAX_DAYS + 1),
+                "# rivi 10: Rivillä pitää olla 4 kenttää, oli 3",
+                "1;Pekka;2030-07-01",
+                "# rivi 11: Päällekkäinen varaus: Matti, 2030-06-01, 7 pv",
+                "1;Pekka;2030-06-05;2"), Files.readAllLines(rejects, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejectsFileOfCsvImportKeepsHeader() throws IOException {
+        Path input = write("tuonti.csv",
+                "\uFEFF" + BookingExport.CSV_HEADER,
+                "2,\"Mökki \"\"Ranta\"\", iso\",\"Virtanen, Matti\",2030-06-01,7",
+                ",Rantamökki,Liisa,2030-06-01,3",
+                "2,x,\"Kesken,2030-06-01,7");
+        Path rejects = directory.resolve("hylatyt.csv");
+
+        BookingImport.Result result = newImport().run(input, rejects, progress -> {
+        });
+
+        assertEquals(new BookingImport.Result(3, 2, 1), result);
+        assertSame(quoted, imported.get(0).getCottage());
+        assertEquals("Virtanen, Matti", imported.get(0).getCustomerName());
+        assertSame(lake, imported.get(1).getCottage());
+        assertEquals(List.of(BookingExport.CSV_HEADER, "# rivi 4: Lainausmerkki puuttuu", "2,x,\"Kesken,2030-06-01,7"),
+                Files.readAllLines(rejects, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportedCsvImportsBack() throws IOException {
+        List<Booking> bookings = List.of(
+                new Booking(quoted, "Virtanen, \"Masa\" Matti", LocalDate.of(2030, 6, 1), 7),
+                new Booking(lake, "Liisa", LocalDate.of(2030, 6, 1), 3));
+        Path file = directory.resolve("vienti.csv");
+        BookingExport.writeCsv(file, bookings.stream());
+        Path rejects = directory.resolve("hylatyt.csv");
+
+        newImport().run(file, rejects, progress -> {
+        });
+
+        assertEquals(bookings.stream().map(Booking::toFileString).toList(),
+                imported.stream().map(Booking::toFileString).toList());
+        assertFalse(Files.exists(rejects));
+    }
+
+    /**
+     * Tuonti, joka tallentaa varaukset saatavuushakemistoon kuten {@link BookingService#bookAll(List)}.
+     */
+    private BookingImport newImport() {
+        return new BookingImport(cottages, batch -> {
+            Map<Booking, List<Booking>> rejected = new LinkedHashMap<>();
+            for (Booking booking : batch) {
+                List<Booking> conflicts = index.tryAdd(booking);
+                if (conflicts.isEmpty()) {
+                    imported.add(booking);
+                } else {
+                    rejected.put(booking, conflicts);
+                }
+            }
+            return rejected;
+        });
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingJournalTest {
+    @TempDir
+    Path directory;
+
+    private final Cottage cottage = new Cottage(1, "Rantamökki", 40, 4);
+    private final CottageRegistry cottages = new CottageRegistry(List.of(cottage));
+
+    @Test
+    void tornAddIsNotReplayed() throws IOException {
+        // Liisan 14 yön varauksesta ehti levylle vain ensimmäinen numero
+        writeJournal("#;0\n+;1;Matti;2024-06-01;14\n+;1;Liisa;2024-07-01;1");
+
+        List<String> lines = load();
+
+        assertEquals(List.of("1;Matti;2024-06-01;14"), lines);
+    }
+
+    @Test
+    void tornRemoveDoesNotRemoveAnotherBooking() throws IOException {
+        writeJournal("#;0\n+;1;Matti;2024-06-01;1\n+;1;Matti;2024-06-01;14\n-;1;Matti;2024-06-01;1");
+
+        List<String> lines = load();
+
+        assertEquals(List.of("1;Matti;2024-06-01;1", "1;Matti;2024-06-01;14"), lines);
+    }
+
+    @Test
+    void recordAfterTornTailIsKeptAfterRestart() throws IOException {
+        writeJournal("#;0\n+;1;Matti;2024-06-01;14\n+;1;Liisa;2024-0");
+        Path snapshot = directory.resolve("varaukset.txt");
+        try (PersistenceWriter writer = new PersistenceWriter()) {
+            BookingJournal journal = new BookingJournal(snapshot, writer);
+            journal.load(List.of(), cottages);
+            journal.append(new Booking(cottage, "Pekka", LocalDate.of(2024, 8, 1), 3));
+            journal.close();
+        }
+
+        List<String> lines = load();
+
+        assertEquals(List.of("1;Matti;2024-06-01;14", "1;Pekka;2024-08-01;3"), lines);
+    }
+
+    @Test
+    void unparsableRecordIsSkipped() throws IOException {
+        writeJournal("#;0\n+;1;Matti;2024-13-01;3\n+;1;Liisa;2024-07-01;x\n+;1;Pekka;2024-08-01;3\n");
+
+        List<String> lines = load();
+
+        assertEquals(List.of("1;Pekka;2024-08-01;3"), lines);
+    }
+
+    @Test
+    void completeJournalIsNotTruncated() throws IOException {
+        String contents = "#;0\n+;1;Matti;2024-06-01;14\n";
+        writeJournal(contents);
+
+        load();
+
+        assertTrue(Files.readString(directory.resolve("varaukset.txt.journal")).startsWith(contents));
+    }
+
+    private void writeJournal(String contents) throws IOException {
+        Files.writeString(directory.resolve("varaukset.txt"), "");
+        Files.writeString(directory.resolve("varaukset.txt.journal"), contents, StandardCharsets.UTF_8);
+    }
+
+    private List<String> load() throws IOException {
+        try (PersistenceWriter writer = new PersistenceWriter()) {
+            BookingJournal journal = new BookingJournal(directory.resolve("varaukset.txt"), writer);
+            try {
+                return journal.load(List.of(), cottages).stream().map(Booking::toFileString).toList();
+            } finally {
+                journal.close();
+            }
+        }
+    }
+}
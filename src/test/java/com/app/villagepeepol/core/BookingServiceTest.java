@@ -0,0 +1,119 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BookingServiceTest {
+    private static final LocalDate JUNE = LocalDate.of(2030, 6, 1);
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void writeCottages() throws IOException {
+        Files.writeString(directory.resolve(BookingFiles.COTTAGES_FILE), "#;3\n1;Rantamökki;40;4\n2;Metsämökki;30;2\n");
+    }
+
+    @Test
+    void otherInstanceBookingIsCheckedBeforeCommit() throws Exception {
+        try (BookingService first = open(); BookingService second = open()) {
+            first.book("Rantamökki", "Matti", JUNE, 7);
+
+            // Toinen sovellus ei ole lukenut journalia, mutta kirjaus tarkistaa sen lukon alla
+            assertThrows(BookingConflictException.class, () -> second.book("Rantamökki", "Liisa", JUNE.plusDays(3), 2));
+            assertNotNull(second.book("Rantamökki", "Liisa", JUNE.plusDays(7), 2));
+
+            assertEquals(List.of("1;Matti;2030-06-01;7", "1;Liisa;2030-06-08;2"), lines(second.getBookingsOf("Rantamökki")));
+            assertEquals(List.of("1;Matti;2030-06-01;7", "1;Liisa;2030-06-08;2"), lines(first.getBookingsOf("Rantamökki")));
+        }
+    }
+
+    @Test
+    void batchIsCheckedAgainstOtherInstance() throws Exception {
+        try (BookingService first = open(); BookingService second = open()) {
+            first.book("Rantamökki", "Matti", JUNE, 7);
+
+            Booking overlapping = new Booking(second.findCottage("Rantamökki"), "Liisa", JUNE.plusDays(6), 2);
+            Booking free = new Booking(second.findCottage("Metsämökki"), "Liisa", JUNE, 2);
+            var rejected = second.bookAll(List.of(overlapping, free));
+
+            assertEquals(List.of(overlapping), List.copyOf(rejected.keySet()));
+            assertEquals(List.of("1;Matti;2030-06-01;7"), lines(rejected.get(overlapping)));
+            assertEquals(List.of("2;Liisa;2030-06-01;2"), lines(first.getBookingsOf("Metsämökki")));
+        }
+    }
+
+    @Test
+    void otherInstanceCanCancelBookingItHasNotPolled() throws Exception {
+        try (BookingService first = open(); BookingService second = open()) {
+            first.book("Rantamökki", "Matti", JUNE, 7);
+
+            assertNotNull(second.cancel("Rantamökki", "Matti", JUNE, 7));
+
+            assertEquals(List.of(), lines(first.getBookingsOf("Rantamökki")));
+            assertNotNull(first.book("Rantamökki", "Liisa", JUNE, 7));
+        }
+    }
+
+    @Test
+    void cancelKeepsOrderOfRemainingBookings() throws Exception {
+        try (BookingService service = open()) {
+            for (int week = 0; week < 6; week++) {
+                service.book(week % 2 == 0 ? "Rantamökki" : "Metsämökki", "Asiakas " + week, JUNE.plusWeeks(week), 7);
+            }
+
+            // Perumiset jättävät varauslistaan tyhjiä paikkoja, jotka sivun haku tiivistää pois
+            assertNotNull(service.cancel("Rantamökki", "Asiakas 0", JUNE, 7));
+            assertNotNull(service.cancel("Metsämökki", "Asiakas 3", JUNE.plusWeeks(3), 7));
+            assertNull(service.cancel("Metsämökki", "Asiakas 3", JUNE.plusWeeks(3), 7));
+            assertEquals(List.of("1;Asiakas 2;2030-06-15;7", "1;Asiakas 4;2030-06-29;7"), lines(service.getBookings(1, 2)));
+            assertNotNull(service.cancel("Metsämökki", "Asiakas 1", JUNE.plusWeeks(1), 7));
+            assertNotNull(service.cancel("Rantamökki", "Asiakas 4", JUNE.plusWeeks(4), 7));
+            service.book("Metsämökki", "Asiakas 6", JUNE, 7);
+
+            assertEquals(3, service.getBookingCount());
+            assertEquals(List.of("1;Asiakas 2;2030-06-15;7", "2;Asiakas 5;2030-07-06;7", "2;Asiakas 6;2030-06-01;7"),
+                    lines(service.getBookings(0, 10)));
+        }
+        try (BookingService reopened = open()) {
+            assertEquals(List.of("1;Asiakas 2;2030-06-15;7", "2;Asiakas 5;2030-07-06;7", "2;Asiakas 6;2030-06-01;7"),
+                    lines(reopened.getBookings(0, 10)));
+        }
+    }
+
+    @Test
+    void uncheckedOverlappingRecordIsSkipped() throws Exception {
+        try (BookingService service = open()) {
+            service.book("Rantamökki", "Matti", JUNE, 7);
+            // Vanha sovellus kirjoittaa journaliin tarkistamatta päällekkäisyyttä
+            Path journal = directory.resolve(BookingFiles.BOOKINGS_FILE + ".journal");
+            Files.writeString(journal, "+;1;Liisa;2030-06-03;2\n+;1;Pekka;2030-06-10;2\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+            assertEquals(List.of("1;Matti;2030-06-01;7", "1;Pekka;2030-06-10;2"), lines(service.getBookingsOf("Rantamökki")));
+        }
+    }
+
+    private BookingService open() {
+        return BookingService.open(directory, status -> {
+        });
+    }
+
+    private static List<String> lines(List<Booking> bookings) {
+        return bookings.stream().map(Booking::toFileString).toList();
+    }
+}
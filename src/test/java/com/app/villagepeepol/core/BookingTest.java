@@ -0,0 +1,50 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingTest {
+    @Test
+    void stayLengthIsBounded() {
+        assertFalse(Booking.isValidDays(0));
+        assertFalse(Booking.isValidDays(-1));
+        assertTrue(Booking.isValidDays(1));
+        assertTrue(Booking.isValidDays(Booking.MAX_DAYS));
+        assertFalse(Booking.isValidDays(Booking.MAX_DAYS + 1));
+        assertFalse(Booking.isValidDays(2_000_000_000));
+        assertEquals(14, Booking.requireValidDays(14));
+        assertThrows(IllegalArgumentException.class, () -> Booking.requireValidDays(2_000_000_000));
+    }
+
+    @Test
+    void customerNameMustFitOnFileLine() {
+        assertTrue(Booking.isValidCustomerName("Matti Meikäläinen"));
+        assertFalse(Booking.isValidCustomerName(" "));
+        assertFalse(Booking.isValidCustomerName("Matti;Liisa"));
+        assertFalse(Booking.isValidCustomerName("Matti\nLiisa"));
+    }
+
+    @Test
+    void fileStringRoundTripKeepsUnknownCottageField() {
+        Cottage cottage = new Cottage(3, "Rantamökki", 40, 4);
+        CottageRegistry cottages = new CottageRegistry(List.of(cottage));
+
+        Booking known = Booking.fromFileString("3;Matti;2024-06-01;14", cottages);
+        Booking unknown = Booking.fromFileString("99;Liisa;2024-06-01;2", cottages);
+
+        assertSame(cottage, known.getCottage());
+        assertEquals(LocalDate.of(2024, 6, 1), known.getStartDate());
+        assertEquals("3;Matti;2024-06-01;14", known.toFileString());
+        assertNull(unknown.getCottage());
+        assertEquals("99;Liisa;2024-06-01;2", unknown.toFileString());
+    }
+}
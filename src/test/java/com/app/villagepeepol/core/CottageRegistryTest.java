@@ -0,0 +1,94 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class CottageRegistryTest {
+    private static final int COTTAGES = 10_000;
+    private static final int BOOKINGS = 1_000_000;
+    // Lineaarinen haku jokaiselle riville veisi 10^10 vertailua; hakemistolla lukeminen kestää alle sekunnin
+    private static final Duration LOAD_LIMIT = Duration.ofSeconds(10);
+
+    @Test
+    void loadsMillionBookingsAgainstTenThousandCottagesInBoundedTime() {
+        List<Cottage> cottages = cottages();
+        CottageRegistry registry = new CottageRegistry(cottages);
+        String[] lines = new String[BOOKINGS];
+        for (int i = 0; i < BOOKINGS; i++) {
+            lines[i] = (i % COTTAGES + 1) + ";Asiakas " + i + ";2024-06-01;3";
+        }
+
+        Booking[] bookings = assertTimeout(LOAD_LIMIT, () -> {
+            Booking[] loaded = new Booking[BOOKINGS];
+            for (int i = 0; i < BOOKINGS; i++) {
+                loaded[i] = Booking.fromFileString(lines[i], registry);
+            }
+            return loaded;
+        });
+
+        for (int i = 0; i < BOOKINGS; i += 9_973) {
+            assertSame(cottages.get(i % COTTAGES), bookings[i].getCottage());
+        }
+    }
+
+    @Test
+    void loadsMillionLegacyBookingsByNameInBoundedTime() {
+        List<Cottage> cottages = cottages();
+        CottageRegistry registry = CottageRegistry.forLegacyFiles(cottages);
+        String[] lines = new String[BOOKINGS];
+        for (int i = 0; i < BOOKINGS; i++) {
+            lines[i] = "Mökki " + (i % COTTAGES) + ";Asiakas " + i + ";2024-06-01;3";
+        }
+
+        Booking[] bookings = assertTimeout(LOAD_LIMIT, () -> {
+            Booking[] loaded = new Booking[BOOKINGS];
+            for (int i = 0; i < BOOKINGS; i++) {
+                loaded[i] = Booking.fromFileString(lines[i], registry);
+            }
+            return loaded;
+        });
+
+        for (int i = 0; i < BOOKINGS; i += 9_973) {
+            assertSame(cottages.get(i % COTTAGES), bookings[i].getCottage());
+        }
+    }
+
+    @Test
+    void duplicateNameResolvesToFirstCottage() {
+        Cottage first = new Cottage(1, "Rantamökki", 40, 4);
+        Cottage second = new Cottage(2, "Rantamökki", 60, 6);
+        CottageRegistry registry = new CottageRegistry(List.of(first, second));
+
+        assertSame(first, registry.findByName("Rantamökki"));
+        registry.remove(first);
+        assertSame(second, registry.findByName("Rantamökki"));
+        assertNull(registry.findById(1));
+        assertSame(second, registry.resolve("2"));
+    }
+
+    @Test
+    void legacyRegistryPrefersNumericNameOverId() {
+        Cottage named = new Cottage(1, "2", 40, 4);
+        Cottage other = new Cottage(2, "Järvimökki", 60, 6);
+
+        assertSame(named, CottageRegistry.forLegacyFiles(List.of(named, other)).resolve("2"));
+        assertSame(other, new CottageRegistry(List.of(named, other)).resolve("2"));
+        assertEquals(2, new CottageRegistry(List.of(named, other)).size());
+    }
+
+    private static List<Cottage> cottages() {
+        List<Cottage> cottages = new ArrayList<>(COTTAGES);
+        for (int i = 0; i < COTTAGES; i++) {
+            cottages.add(new Cottage(i + 1, "Mökki " + i, 40, 4));
+        }
+        return cottages;
+    }
+}
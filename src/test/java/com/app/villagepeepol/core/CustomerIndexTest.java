@@ -0,0 +1,160 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerIndexTest {
+    private static final LocalDate JUNE = LocalDate.of(2030, 6, 1);
+
+    private final Cottage lake = new Cottage(1, "Rantamökki", 40, 4);
+    private final CustomerIndex index = new CustomerIndex();
+
+    @Test
+    void searchIgnoresCaseAndAccents() {
+        add("Äijälä Pekka");
+        add("Søren Ölund");
+
+        assertEquals(List.of("Äijälä Pekka"), search("aijala"));
+        assertEquals(List.of("Äijälä Pekka"), search("ÄIJÄ"));
+        assertEquals(List.of("Søren Ölund"), search("olund"));
+        assertEquals(List.of("Søren Ölund"), search("SØR"));
+    }
+
+    @Test
+    void shortWordMatchesStartOfWordOnly() {
+        add("Matti Virtanen");
+        add("Emma Laine");
+
+        assertEquals(List.of("Matti Virtanen"), search("ma"));
+        assertEquals(List.of("Emma Laine"), search("mma"));
+        assertEquals(List.of("Emma Laine"), search("l"));
+        assertEquals(List.of(), search("n"));
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        add("Matti Virtanen");
+        add("Matti Meikäläinen");
+        add("Liisa Virtanen");
+        add("Anna-Liisa Korhonen");
+
+        assertEquals(List.of("Matti Virtanen"), search("matti vir"));
+        assertEquals(List.of("Matti Virtanen", "Liisa Virtanen"), search("  virtanen "));
+        assertEquals(List.of("Liisa Virtanen", "Anna-Liisa Korhonen"), search("liisa"));
+        assertEquals(List.of("Anna-Liisa Korhonen"), search("anna-liisa"));
+        assertEquals(List.of(), search("matti korhonen"));
+        assertEquals(List.of(), search(""));
+        assertEquals(List.of(), search("xyz"));
+    }
+
+    @Test
+    void removedBookingIsNotFoundButSameNameKeepsOthers() {
+        Booking first = add("Matti Virtanen");
+        Booking second = add("Matti Virtanen");
+
+        assertEquals(List.of(first, second), index.search("virtanen"));
+        index.remove(first);
+        assertEquals(List.of(second), index.search("virtanen"));
+        index.remove(second);
+        assertEquals(List.of(), index.search("virtanen"));
+
+        Booking again = add("Matti Virtanen");
+        assertEquals(List.of(again), index.search("virtanen"));
+        index.clear();
+        assertEquals(List.of(), index.search("virtanen"));
+    }
+
+    @Test
+    void nonLatinNamesAreNormalizedToo() {
+        add("Σοφία Παπαδοπούλου");
+        add("Ёлкин Пётр");
+
+        assertEquals(List.of("Σοφία Παπαδοπούλου"), search("σοφια"));
+        assertEquals(List.of("Σοφία Παπαδοπούλου"), search("ΠΑΠΑΔ"));
+        assertEquals(List.of("Ёлкин Пётр"), search("петр"));
+    }
+
+    @Test
+    void searchMatchesScanOfAllNames() {
+        Random random = new Random(3);
+        String[] syllables = {"ma", "ti", "vir", "ta", "nen", "äi", "jä", "lä", "li", "sa", "ko", "hö", "Ö", "An", "-"};
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 1 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    name.append(' ');
+                }
+                for (int s = 1 + random.nextInt(4); s > 0; s--) {
+                    name.append(syllables[random.nextInt(syllables.length)]);
+                }
+            }
+            names.add(name.toString());
+            add(name.toString());
+        }
+        for (int i = 0; i < 500; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            int from = random.nextInt(name.length());
+            String query = name.substring(from, from + 1 + random.nextInt(Math.min(6, name.length() - from)));
+            if (random.nextBoolean()) {
+                query = syllables[random.nextInt(syllables.length)] + " " + query;
+            }
+            assertEquals(scan(names, query), search(query), query);
+        }
+    }
+
+    /**
+     * Hakee nimet käymällä kaikki läpi: jokaisen hakusanan täytyy löytyä nimen jostakin sanasta,
+     * alle kolmen merkin sana sanan alusta.
+     */
+    private static List<String> scan(List<String> names, String query) {
+        List<String> queryWords = words(query);
+        List<String> result = new ArrayList<>();
+        if (queryWords.isEmpty()) {
+            return result;
+        }
+        for (String name : names) {
+            List<String> nameWords = words(name);
+            boolean all = true;
+            for (String token : queryWords) {
+                all &= nameWords.stream().anyMatch(word -> token.length() < 3 ? word.startsWith(token) : word.contains(token));
+            }
+            if (all) {
+                result.add(name);
+            }
+        }
+        // Hakemisto ryhmittelee saman nimen varaukset ensimmäisen esiintymän kohdalle
+        return result.stream().distinct()
+                .flatMap(name -> result.stream().filter(name::equals))
+                .sorted(Comparator.comparingInt(names::indexOf))
+                .toList();
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : CustomerIndex.normalize(text).split("[\\s-]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private Booking add(String customerName) {
+        Booking booking = new Booking(lake, customerName, JUNE, 1);
+        index.add(booking);
+        return booking;
+    }
+
+    private List<String> search(String query) {
+        return index.search(query).stream().map(Booking::getCustomerName).toList();
+    }
+}
@@ -0,0 +1,191 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vertaa muistiin kuvattua jäsennintä rivi kerrallaan lukevaan {@link Booking#fromFileString}-
+ * ja {@link Cottage#fromFileString}-polkuun samoilla tiedostoilla.
+ */
+class MappedFileParserTest {
+    // Palan vähimmäiskoko jäsentimessä; tätä suurempi tiedosto jaetaan usealle palalle
+    private static final int CHUNK = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    // Useampi säie myös yhden suorittimen koneella, jotta tiedosto jaetaan paloihin
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final MappedFileParser parser = new MappedFileParser(pool);
+
+    private final List<Cottage> cottages = List.of(
+            new Cottage(1, "Rantamökki", 40, 4),
+            new Cottage(2, "Järvenrannan sauna", 25, 2),
+            new Cottage(3, "7", 60, 6),
+            new Cottage(12, "Ämmälän torppa", 80, 8));
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void bookingsMatchLineByLineParsingAcrossChunks() throws IOException {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 3 * CHUNK + 1000) {
+            sb.append(randomBookingLine(random)).append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+            if (random.nextInt(50) == 0) {
+                sb.append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+        }
+        Path file = write("varaukset.txt", sb.toString());
+
+        assertBookingsMatch(file, new CottageRegistry(cottages));
+        assertBookingsMatch(file, CottageRegistry.forLegacyFiles(cottages));
+    }
+
+    @Test
+    void chunkBoundaryInsideCrlfLineEnding() throws IOException {
+        String line = "1;Matti Meikäläinen;2024-06-01;14\r\n";
+        // Siirretään palan rajaa rivin jokaiseen kohtaan, myös \r- ja \n-merkkien väliin
+        for (int shift = 0; shift <= line.getBytes(StandardCharsets.UTF_8).length; shift++) {
+            StringBuilder sb = new StringBuilder("2;" + "x".repeat(shift) + ";2024-01-01;1\r\n");
+            while (sb.length() < CHUNK + 4096) {
+                sb.append(line);
+            }
+            sb.append("12;Viimeinen;2025-12-31;3");
+            Path file = write("raja-" + shift + ".txt", sb.toString());
+
+            assertBookingsMatch(file, new CottageRegistry(cottages));
+        }
+    }
+
+    @Test
+    void legacyNameKeyedBookingsMatch() throws IOException {
+        Path file = write("vanha.txt", String.join("\n",
+                "Rantamökki;Matti;2024-06-01;3",
+                "7;Liisa;2024-06-02;4",
+                "Järvenrannan sauna;Pekka;2024-06-03;5\r",
+                "Tuntematon;Anna;2024-06-04;6",
+                "99;Aino;2024-06-05;7",
+                ""));
+
+        assertBookingsMatch(file, CottageRegistry.forLegacyFiles(cottages));
+        assertBookingsMatch(file, new CottageRegistry(cottages));
+    }
+
+    @Test
+    void nonCanonicalFieldsFallBackToFromFileString() throws IOException {
+        Path file = write("poikkeavat.txt", String.join("\r\n",
+                "1;Matti;2024-06-01;+3",
+                "1;Liisa;2024-06-01;0003",
+                "1;Pekka;2024-06-01;1234567890",
+                "01;Anna;2024-06-01;3",
+                "1;Aino;2024-06-01;3;ylimääräinen",
+                "1;;2024-06-01;3"));
+
+        assertBookingsMatch(file, new CottageRegistry(cottages));
+    }
+
+    @Test
+    void invalidBookingThrowsSameExceptionAsFromFileString() throws IOException {
+        for (String line : List.of("1;Matti;2024-02-30;3", "1;Matti;2024-6-1;3", "1;Matti;2024-06-01;x", "1;Matti")) {
+            Path file = write("virhe.txt", "1;Liisa;2024-06-01;3\n" + line + "\n");
+            CottageRegistry registry = new CottageRegistry(cottages);
+
+            RuntimeException expected = assertThrows(RuntimeException.class, () -> Booking.fromFileString(line, registry));
+            RuntimeException actual = assertThrows(RuntimeException.class, () -> parser.parseBookings(file, registry));
+            assertEquals(expected.getClass(), actual.getClass(), line);
+        }
+    }
+
+    @Test
+    void cottagesMatchLineByLineParsing() throws IOException {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder("#;250000\r\n");
+        int id = 1;
+        while (sb.length() < 2 * CHUNK + 100) {
+            String name = "Mökki " + Integer.toString(random.nextInt(1_000_000), 36);
+            sb.append(random.nextInt(5) == 0
+                    ? name + ";" + random.nextInt(200) + ";" + random.nextInt(20)
+                    : id++ + ";" + name + ";" + random.nextInt(200) + ";" + random.nextInt(20));
+            sb.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        Path file = write("cottages.txt", sb.toString());
+
+        List<Cottage> expected = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    expected.add(Cottage.fromFileString(line));
+                }
+            }
+        }
+        List<Cottage> actual = parser.parseCottages(file);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).toFileString(), actual.get(i).toFileString());
+        }
+    }
+
+    private String randomBookingLine(Random random) {
+        Cottage cottage = cottages.get(random.nextInt(cottages.size()));
+        String key = switch (random.nextInt(10)) {
+            case 0 -> cottage.getName();
+            case 1 -> "404";
+            default -> Integer.toString(cottage.getId());
+        };
+        String customer = random.nextInt(8) == 0 ? "Åsa Öhman-Äijälä" : "Asiakas " + random.nextInt(100_000);
+        String date = String.format("%04d-%02d-%02d", 2020 + random.nextInt(6), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        return key + ";" + customer + ";" + date + ";" + random.nextInt(30);
+    }
+
+    private void assertBookingsMatch(Path file, CottageRegistry registry) throws IOException {
+        List<Booking> expected = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    expected.add(Booking.fromFileString(line, registry));
+                }
+            }
+        }
+        List<Booking> actual = parser.parseBookings(file, registry);
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), actual.size(), file.getFileName().toString());
+        for (int i = 0; i < expected.size(); i++) {
+            Booking e = expected.get(i);
+            Booking a = actual.get(i);
+            assertSame(e.getCottage(), a.getCottage(), "rivi " + i);
+            assertEquals(e.getCustomerName(), a.getCustomerName(), "rivi " + i);
+            assertEquals(e.getStartDate(), a.getStartDate(), "rivi " + i);
+            assertEquals(e.getDays(), a.getDays(), "rivi " + i);
+            assertEquals(e.toFileString(), a.toFileString(), "rivi " + i);
+        }
+    }
+
+    private Path write(String name, String contents) throws IOException {
+        return Files.writeString(directory.resolve(name), contents, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OccupancyCalendarTest {
+    private static final LocalDate JUNE = LocalDate.of(2030, 6, 1);
+
+    private final Cottage lake = new Cottage(1, "Rantamökki", 40, 4);
+    private final Cottage forest = new Cottage(2, "Metsämökki", 30, 2);
+    private final OccupancyCalendar calendar = new OccupancyCalendar();
+
+    @Test
+    void sharedNightsStayBookedUntilEveryOverlappingBookingIsRemoved() {
+        Booking first = new Booking(lake, "Matti", JUNE, 7);
+        Booking second = new Booking(lake, "Liisa", JUNE.plusDays(4), 6);
+        calendar.add(first);
+        calendar.add(second);
+        assertEquals(nights(0, 10), calendar.bookedNights(lake, JUNE, 14));
+
+        calendar.remove(first);
+        assertEquals(nights(4, 10), calendar.bookedNights(lake, JUNE, 14));
+
+        calendar.remove(second);
+        assertEquals(new BitSet(), calendar.bookedNights(lake, JUNE, 14));
+        assertTrue(calendar.isFree(lake, JUNE, 14));
+    }
+
+    @Test
+    void eachOverlapIsCounted() {
+        Booking booking = new Booking(lake, "Matti", JUNE, 3);
+        calendar.add(booking);
+        calendar.add(new Booking(lake, "Matti", JUNE, 3));
+        calendar.add(new Booking(lake, "Liisa", JUNE.plusDays(1), 1));
+
+        calendar.remove(booking);
+        assertEquals(nights(0, 3), calendar.bookedNights(lake, JUNE, 7));
+        calendar.remove(new Booking(lake, "Matti", JUNE, 3));
+        assertEquals(nights(1, 2), calendar.bookedNights(lake, JUNE, 7));
+        calendar.remove(new Booking(lake, "Liisa", JUNE.plusDays(1), 1));
+        assertEquals(new BitSet(), calendar.bookedNights(lake, JUNE, 7));
+
+        // Ylimääräisten laskuri on tyhjä, joten uusi varaus vapautuu kokonaan
+        calendar.add(new Booking(lake, "Pekka", JUNE, 3));
+        calendar.remove(new Booking(lake, "Pekka", JUNE, 3));
+        assertTrue(calendar.isFree(lake, JUNE, 7));
+    }
+
+    @Test
+    void departureDayIsFreeAndCottagesAreSeparate() {
+        calendar.add(new Booking(lake, "Matti", JUNE, 7));
+
+        assertTrue(calendar.isBooked(lake, JUNE.plusDays(6)));
+        assertFalse(calendar.isBooked(lake, JUNE.plusDays(7)));
+        assertTrue(calendar.isFree(lake, JUNE.plusDays(7), 3));
+        assertFalse(calendar.isFree(lake, JUNE.minusDays(2), 3));
+        assertTrue(calendar.isFree(lake, JUNE.minusDays(2), 2));
+        assertTrue(calendar.isFree(forest, JUNE, 7));
+        assertEquals(nights(3, 10), calendar.bookedNights(lake, JUNE.minusDays(3), 14));
+    }
+
+    @Test
+    void nightsBefore1970AreNotTracked() {
+        LocalDate epoch = LocalDate.ofEpochDay(0);
+        calendar.add(new Booking(lake, "Matti", epoch.minusDays(2), 4));
+        calendar.add(new Booking(lake, "Liisa", LocalDate.of(1960, 1, 1), 7));
+
+        assertFalse(calendar.isBooked(lake, epoch.minusDays(1)));
+        assertTrue(calendar.isBooked(lake, epoch));
+        assertTrue(calendar.isBooked(lake, epoch.plusDays(1)));
+        assertFalse(calendar.isBooked(lake, epoch.plusDays(2)));
+        assertEquals(nights(2, 4), calendar.bookedNights(lake, epoch.minusDays(2), 7));
+    }
+
+    private static BitSet nights(int from, int to) {
+        BitSet nights = new BitSet();
+        nights.set(from, to);
+        return nights;
+    }
+}
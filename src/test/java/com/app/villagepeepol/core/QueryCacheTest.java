@@ -0,0 +1,142 @@
+package com.app.villagepeepol.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryCacheTest {
+    private static final LocalDate JUNE = LocalDate.of(2030, 6, 1);
+    private static final long DAY = JUNE.toEpochDay();
+
+    private final Cottage lake = new Cottage(1, "Rantamökki", 40, 4);
+    private final Cottage forest = new Cottage(2, "Metsämökki", 30, 2);
+    private final QueryCache cache = new QueryCache(16);
+    private final AtomicInteger computed = new AtomicInteger();
+
+    @Test
+    void bookingForgetsOnlyOverlappingResultsOfItsCottage() {
+        getSingle("järvi kesäkuu", lake, DAY, DAY + 10);
+        getSingle("järvi heinäkuu", lake, DAY + 30, DAY + 40);
+        getSingle("metsä kesäkuu", forest, DAY, DAY + 10);
+        assertEquals(3, computed.get());
+
+        cache.invalidate(new Booking(lake, "Matti", JUNE.plusDays(5), 2));
+
+        getSingle("järvi kesäkuu", lake, DAY, DAY + 10);
+        getSingle("järvi heinäkuu", lake, DAY + 30, DAY + 40);
+        getSingle("metsä kesäkuu", forest, DAY, DAY + 10);
+        assertEquals(4, computed.get());
+    }
+
+    @Test
+    void resultPeriodEndsWhereResultSays() {
+        // Esimerkiksi seuraava vapaa jakso: tulos riippuu päivistä vain sen loppuun asti
+        cache.get("vapaa", lake, DAY, (Long end) -> end, count(DAY + 5));
+
+        cache.invalidate(new Booking(lake, "Matti", JUNE.plusDays(5), 2));
+        cache.get("vapaa", lake, DAY, (Long end) -> end, count(DAY + 5));
+        assertEquals(1, computed.get());
+
+        cache.invalidate(new Booking(lake, "Matti", JUNE.plusDays(4), 2));
+        cache.get("vapaa", lake, DAY, (Long end) -> end, count(DAY + 5));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void multiCottageResultIsForgottenWhenMatchingCottageIsBookedInPeriod() {
+        getMulti("neljälle kesäkuussa");
+
+        // Mökki ei kuulu hakuun tai varaus on jakson ulkopuolella
+        cache.invalidate(new Booking(forest, "Matti", JUNE, 7));
+        cache.invalidate(new Booking(lake, "Matti", JUNE.plusDays(10), 7));
+        getMulti("neljälle kesäkuussa");
+        assertEquals(1, computed.get());
+
+        cache.invalidate(new Booking(lake, "Matti", JUNE.plusDays(9), 7));
+        getMulti("neljälle kesäkuussa");
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void cottageChangeForgetsMultiCottageResultsOnly() {
+        getMulti("neljälle kesäkuussa");
+        getSingle("järvi kesäkuu", lake, DAY, DAY + 10);
+
+        cache.invalidateMultiCottage();
+
+        getMulti("neljälle kesäkuussa");
+        getSingle("järvi kesäkuu", lake, DAY, DAY + 10);
+        assertEquals(3, computed.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void resultComputedDuringChangeIsNotStored() {
+        cache.get("järvi kesäkuu", lake, DAY, value -> DAY + 10, () -> {
+            computed.incrementAndGet();
+            // Toinen säie lisää varauksen kesken laskennan
+            cache.invalidate(new Booking(forest, "Matti", JUNE.plusDays(100), 1));
+            return "vanha";
+        });
+
+        assertEquals(0, cache.size());
+        getSingle("järvi kesäkuu", lake, DAY, DAY + 10);
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void leastRecentlyUsedResultIsEvicted() {
+        QueryCache small = new QueryCache(2);
+        small.get("a", lake, DAY, value -> DAY + 1, count("a"));
+        small.get("b", lake, DAY, value -> DAY + 1, count("b"));
+        small.get("a", lake, DAY, value -> DAY + 1, count("a"));
+        small.get("c", lake, DAY, value -> DAY + 1, count("c"));
+        assertEquals(3, computed.get());
+
+        small.get("a", lake, DAY, value -> DAY + 1, count("a"));
+        small.get("b", lake, DAY, value -> DAY + 1, count("b"));
+        assertEquals(4, computed.get());
+        assertEquals(2, small.size());
+    }
+
+    @Test
+    void zeroSizeDisablesCache() {
+        QueryCache disabled = new QueryCache(0);
+        disabled.get("a", lake, DAY, value -> DAY + 1, count("a"));
+        disabled.get("a", lake, DAY, value -> DAY + 1, count("a"));
+        assertEquals(2, computed.get());
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    void availabilityIndexForgetsNextFreeWindowWhenBooked() {
+        AvailabilityIndex index = new AvailabilityIndex(new QueryCache(16));
+        index.add(new Booking(lake, "Matti", JUNE, 7));
+        assertEquals(JUNE.plusDays(7), index.nextFreeWindow(lake, JUNE, 3));
+
+        index.tryAdd(new Booking(lake, "Liisa", JUNE.plusDays(7), 3));
+        assertEquals(JUNE.plusDays(10), index.nextFreeWindow(lake, JUNE, 3));
+
+        index.remove(index.findConflicts(lake, JUNE, 1).get(0));
+        assertEquals(JUNE, index.nextFreeWindow(lake, JUNE, 3));
+    }
+
+    private void getSingle(String key, Cottage cottage, long start, long end) {
+        cache.get(key, cottage, start, value -> end, count(key));
+    }
+
+    private void getMulti(String key) {
+        cache.get(key, cottage -> cottage.getCapacity() >= 4, DAY, DAY + 10, count(key));
+    }
+
+    private <T> Supplier<T> count(T value) {
+        return () -> {
+            computed.incrementAndGet();
+            return value;
+        };
+    }
+}